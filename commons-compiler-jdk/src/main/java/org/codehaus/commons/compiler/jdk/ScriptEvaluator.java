@@ -40,7 +40,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
+import org.codehaus.commons.compiler.BatchResult;
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Cookable;
 import org.codehaus.commons.compiler.IClassBodyEvaluator;
@@ -340,6 +342,66 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     /**
      * @param readers The scripts to cook
      */
+    /**
+     * Cooks all scripts into one class; iff that fails, cooks each script into a separate class. The scripts are not
+     * parsed separately, so the <var>optionalExecutor</var> is not used.
+     */
+    @Override public BatchResult
+    cookBatch(
+        @Nullable String[]        optionalFileNames,
+        String[]                  strings,
+        @Nullable ExecutorService optionalExecutor
+    ) {
+        BatchResult result = new BatchResult(strings.length);
+        long        start  = System.nanoTime();
+        try {
+            this.cook(optionalFileNames, strings);
+            result.addClass();
+        } catch (CompileException ce) {
+            String[]     omns = this.optionalMethodNames;
+            boolean[]    oom  = this.optionalOverrideMethod;
+            boolean[]    osm  = this.optionalStaticMethod;
+            Class<?>[]   orts = this.optionalReturnTypes;
+            String[][]   opns = this.optionalParameterNames;
+            Class<?>[][] opts = this.optionalParameterTypes;
+            Class<?>[][] otes = this.optionalThrownExceptions;
+
+            Method[] methods = new Method[strings.length];
+            try {
+                for (int i = 0; i < strings.length; i++) {
+                    this.optionalMethodNames      = omns == null ? null : new String[] { omns[i] };
+                    this.optionalOverrideMethod   = oom  == null ? null : new boolean[] { oom[i] };
+                    this.optionalStaticMethod     = osm  == null ? null : new boolean[] { osm[i] };
+                    this.optionalReturnTypes      = orts == null ? null : new Class<?>[] { orts[i] };
+                    this.optionalParameterNames   = opns == null ? null : new String[][] { opns[i] };
+                    this.optionalParameterTypes   = opts == null ? null : new Class<?>[][] { opts[i] };
+                    this.optionalThrownExceptions = otes == null ? null : new Class<?>[][] { otes[i] };
+                    try {
+                        this.cook(
+                            optionalFileNames == null ? null : new String[] { optionalFileNames[i] },
+                            new String[] { strings[i] }
+                        );
+                        methods[i] = this.getMethod(0);
+                        result.addClass();
+                    } catch (CompileException ce2) {
+                        result.setException(i, ce2);
+                    }
+                }
+            } finally {
+                this.optionalMethodNames      = omns;
+                this.optionalOverrideMethod   = oom;
+                this.optionalStaticMethod     = osm;
+                this.optionalReturnTypes      = orts;
+                this.optionalParameterNames   = opns;
+                this.optionalParameterTypes   = opts;
+                this.optionalThrownExceptions = otes;
+            }
+            this.result = methods;
+        }
+        result.setCompileNanos(System.nanoTime() - start);
+        return result;
+    }
+
     protected final void
     cook(@Nullable String[] optionalFileNames, Reader[] readers, String[] imports)
     throws CompileException, IOException {
@@ -46,6 +46,63 @@ import org.codehaus.commons.nullanalysis.Nullable;
 public abstract
 class AbstractJavaSourceClassLoader extends ClassLoader {
 
+    /**
+     * The (accessible) {@code ClassLoader.registerAsParallelCapable()} method (Java 7+), or {@code null} iff this JVM
+     * does not support "parallel capable" class loaders. It is invoked reflectively, so that this library still
+     * compiles for Java 6.
+     */
+    @Nullable protected static final Method
+    REGISTER_AS_PARALLEL_CAPABLE = AbstractJavaSourceClassLoader.getRegisterAsParallelCapableMethod();
+
+    /**
+     * Whether this JVM supports "parallel capable" class loaders, i.e. has {@code
+     * ClassLoader.registerAsParallelCapable()} (Java 7+). On older JVMs, {@link ClassLoader#loadClass(String)} always
+     * locks the entire class loader.
+     * <p>
+     *   {@code registerAsParallelCapable()} registers its <em>immediate caller</em>, and only if the caller's
+     *   superclass is registered, too. Therefore each derived class loader that wants to be parallel capable must
+     *   invoke it from its own static initializer:
+     * </p>
+     * <pre>
+     *     static {
+     *         Method m = REGISTER_AS_PARALLEL_CAPABLE;
+     *         if (PARALLEL_CAPABLE_SUPPORTED &amp;&amp; m != null) {
+     *             try {
+     *                 m.invoke(null);
+     *             } catch (Exception e) {
+     *                 ;  // Then this class loader is simply not parallel capable.
+     *             }
+     *         }
+     *     }
+     * </pre>
+     */
+    public static final boolean
+    PARALLEL_CAPABLE_SUPPORTED = AbstractJavaSourceClassLoader.REGISTER_AS_PARALLEL_CAPABLE != null;
+
+    static {
+        Method m = AbstractJavaSourceClassLoader.REGISTER_AS_PARALLEL_CAPABLE;
+        if (AbstractJavaSourceClassLoader.PARALLEL_CAPABLE_SUPPORTED && m != null) {
+            try {
+                m.invoke(null);
+            } catch (Exception e) {
+                ;  // Then this class loader is simply not parallel capable.
+            }
+        }
+    }
+
+    @Nullable private static Method
+    getRegisterAsParallelCapableMethod() {
+        try {
+            Method m = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            m.setAccessible(true);
+            return m;
+        } catch (Exception e) {
+
+            // "NoSuchMethodException" before Java 7, or "SecurityException".
+            return null;
+        }
+    }
+
     /**
      * @see ClassLoader#defineClass(String, byte[], int, int, ProtectionDomain)
      */
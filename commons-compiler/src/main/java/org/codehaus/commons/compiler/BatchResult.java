@@ -0,0 +1,106 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.commons.compiler;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * The outcome of {@link IScriptEvaluator#cookBatch(String[], String[], java.util.concurrent.ExecutorService)}: The
+ * exceptions of the scripts that could not be cooked, and some statistics.
+ */
+public final
+class BatchResult {
+
+    private final CompileException[] exceptions;
+    private int                      classCount;
+    private long                     parseNanos, compileNanos;
+
+    public
+    BatchResult(int scriptCount) { this.exceptions = new CompileException[scriptCount]; }
+
+    /**
+     * Records that the indexed script could not be cooked.
+     */
+    public void
+    setException(int idx, CompileException ce) { this.exceptions[idx] = ce; }
+
+    /**
+     * Records that one more class was generated.
+     */
+    public void
+    addClass() { this.classCount++; }
+
+    public void
+    setParseNanos(long parseNanos) { this.parseNanos = parseNanos; }
+
+    public void
+    setCompileNanos(long compileNanos) { this.compileNanos = compileNanos; }
+
+    /**
+     * @return The exception that the indexed script caused, or {@code null} if it was cooked successfully
+     */
+    @Nullable public CompileException
+    getException(int idx) { return this.exceptions[idx]; }
+
+    /**
+     * @return The number of scripts that could not be cooked
+     */
+    public int
+    getFailureCount() {
+        int result = 0;
+        for (CompileException ce : this.exceptions) {
+            if (ce != null) result++;
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of classes that were generated for the successfully cooked scripts
+     */
+    public int
+    getClassCount() { return this.classCount; }
+
+    /**
+     * @return The (wall-clock) time it took to scan and parse all scripts
+     */
+    public long
+    getParseNanos() { return this.parseNanos; }
+
+    /**
+     * @return The time it took to compile and load all scripts, including failed attempts
+     */
+    public long
+    getCompileNanos() { return this.compileNanos; }
+
+    /**
+     * @return The total time divided by the number of scripts
+     */
+    public long
+    getAmortizedNanosPerScript() {
+        return this.exceptions.length == 0 ? 0 : (this.parseNanos + this.compileNanos) / this.exceptions.length;
+    }
+}
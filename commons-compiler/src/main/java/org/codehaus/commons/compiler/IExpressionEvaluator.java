@@ -103,6 +103,10 @@ import org.codehaus.commons.nullanalysis.Nullable;
  *    Notice that these methods have array parameters in contrast to their one-expression brethren.
  *  </p>
  * <p>
+ *   {@link #cookBatch(String[], String[], java.util.concurrent.ExecutorService)} cooks such an array of expressions
+ *   such that one bad expression does not prevent the others from being cooked.
+ * </p>
+ * <p>
  *   Notice that for <em>functionally</em> identical {@link IExpressionEvaluator}s, {@link
  *   java.lang.Object#equals(java.lang.Object)} will return {@code true}. E.g. "a+b" and "c + d" are functionally
  *   identical if "a" and "c" have the same type, and so do "b" and "d".
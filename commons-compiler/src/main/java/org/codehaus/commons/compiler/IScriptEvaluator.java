@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 
 import org.codehaus.commons.nullanalysis.Nullable;
 
@@ -265,6 +266,25 @@ interface IScriptEvaluator extends IClassBodyEvaluator {
      */
     void cook(@Nullable String[] optionalFileNames, String[] strings) throws CompileException;
 
+    /**
+     * Like {@link #cook(String[], String[])}, but isolates the scripts from each other: A script that fails to parse or
+     * to compile does not prevent the others from being cooked, and the scripts are compiled into as few classes as
+     * possible.
+     * <p>
+     *   After this method returns, {@link #getMethod(int)} returns the methods of the successfully cooked scripts, and
+     *   {@link BatchResult#getException(int)} the exceptions of the others.
+     * </p>
+     *
+     * @param optionalExecutor If non-{@code null}, then the implementation may scan and parse the scripts concurrently
+     *                         through it
+     */
+    BatchResult
+    cookBatch(
+        @Nullable String[]        optionalFileNames,
+        String[]                  strings,
+        @Nullable ExecutorService optionalExecutor
+    ) throws InterruptedException;
+
     /**
      * Same as {@link #evaluate(Object[])}, but for multiple scripts.
      */
@@ -0,0 +1,198 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.ClassFile.AttributeInfo;
+import org.codehaus.janino.util.ClassFile.CodeAttribute;
+import org.codehaus.janino.util.ClassFile.MethodInfo;
+
+/**
+ * Compiles each {@link Corpus} kernel with JANINO and with JAVAC, and prints the bytecode size of each generated
+ * method side by side.
+ * <p>
+ *   Usage:
+ * </p>
+ * <pre>
+ *   java -cp target/benchmarks.jar org.codehaus.janino.benchmarks.BytecodeSizeReport [ <var>kernel-name</var> ... ]
+ * </pre>
+ */
+public final
+class BytecodeSizeReport {
+
+    private BytecodeSizeReport() {}
+
+    public static void
+    main(String[] args) throws CompileException, IOException {
+
+        String[] kernelNames = args.length == 0 ? Corpus.KERNEL_NAMES : args;
+
+        long janinoTotal = 0, javacTotal = 0;
+
+        System.out.printf("%-60s %8s %8s %7s%n", "Method", "janino", "javac", "ratio");
+        for (String kernelName : kernelNames) {
+
+            Map<String, Integer> janinoSizes = BytecodeSizeReport.janinoMethodSizes(kernelName);
+            Map<String, Integer> javacSizes  = BytecodeSizeReport.javacMethodSizes(kernelName);
+
+            Map<String, int[]> sizes = new TreeMap<String, int[]>();
+            for (Entry<String, Integer> e : janinoSizes.entrySet()) {
+                sizes.put(e.getKey(), new int[] { e.getValue(), -1 });
+            }
+            for (Entry<String, Integer> e : javacSizes.entrySet()) {
+                int[] s = sizes.get(e.getKey());
+                if (s == null) sizes.put(e.getKey(), (s = new int[] { -1, -1 }));
+                s[1] = e.getValue();
+            }
+
+            for (Entry<String, int[]> e : sizes.entrySet()) {
+                int janinoSize = e.getValue()[0], javacSize = e.getValue()[1];
+                System.out.printf(
+                    "%-60s %8s %8s %7s%n",
+                    e.getKey(),
+                    janinoSize == -1 ? "-" : Integer.toString(janinoSize),
+                    javacSize == -1 ? "-" : Integer.toString(javacSize),
+                    janinoSize == -1 || javacSize <= 0 ? "" : String.format("%.2f", (double) janinoSize / javacSize)
+                );
+                if (janinoSize != -1) janinoTotal += janinoSize;
+                if (javacSize != -1)  javacTotal  += javacSize;
+            }
+        }
+        System.out.printf(
+            "%-60s %8d %8d %7.2f%n",
+            "Total",
+            janinoTotal,
+            javacTotal,
+            (double) janinoTotal / javacTotal
+        );
+    }
+
+    /**
+     * @return Maps "<var>class-name</var>{@code .}<var>method-name</var><var>method-descriptor</var>" to the size of
+     *         the method's bytecode, as generated by JANINO
+     */
+    private static Map<String, Integer>
+    janinoMethodSizes(String kernelName) throws CompileException, IOException {
+
+        ClassFile[] classFiles = new UnitCompiler(
+            new Parser(new Scanner(kernelName + ".java", new StringReader(Corpus.source(kernelName))))
+            .parseCompilationUnit(),
+            new ClassLoaderIClassLoader(Kernel.class.getClassLoader())
+        ).compileUnit(false, false, false);
+
+        Map<String, Integer> result = new TreeMap<String, Integer>();
+        for (ClassFile cf : classFiles) {
+
+            // Serialize and re-load the class file, because only loaded class files have "CodeAttribute"s.
+            BytecodeSizeReport.addMethodSizes(new ClassFile(new ByteArrayInputStream(cf.toByteArray())), result);
+        }
+        return result;
+    }
+
+    /**
+     * @return Maps "<var>class-name</var>{@code .}<var>method-name</var><var>method-descriptor</var>" to the size of
+     *         the method's bytecode, as generated by JAVAC
+     */
+    private static Map<String, Integer>
+    javacMethodSizes(String kernelName) throws IOException {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("JAVAC not available - run with a JDK, not a JRE");
+
+        File tempDir = File.createTempFile("janino-bytecode-size", "");
+        try {
+            if (!tempDir.delete() || !tempDir.mkdir()) throw new IOException("Cannot create \"" + tempDir + "\"");
+
+            File         sourceFile = new File(tempDir, kernelName + ".java");
+            OutputStream os         = new FileOutputStream(sourceFile);
+            try {
+                os.write(Corpus.source(kernelName).getBytes("UTF-8"));
+            } finally {
+                os.close();
+            }
+
+            int exitCode = compiler.run(null, null, null, new String[] {
+                "-g:none",
+                "-encoding", "UTF-8",
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", tempDir.getPath(),
+                sourceFile.getPath(),
+            });
+            if (exitCode != 0) throw new IllegalStateException("JAVAC failed to compile \"" + kernelName + "\"");
+
+            Map<String, Integer> result = new TreeMap<String, Integer>();
+            for (File f : tempDir.listFiles()) {
+                if (!f.getName().endsWith(".class")) continue;
+
+                InputStream is = new FileInputStream(f);
+                try {
+                    BytecodeSizeReport.addMethodSizes(new ClassFile(is), result);
+                } finally {
+                    is.close();
+                }
+            }
+            return result;
+        } finally {
+            for (File f : tempDir.listFiles()) f.delete();
+            tempDir.delete();
+        }
+    }
+
+    private static void
+    addMethodSizes(ClassFile cf, Map<String, Integer> result) {
+        for (MethodInfo mi : cf.methodInfos) {
+            for (AttributeInfo ai : mi.getAttributes()) {
+                if (ai instanceof CodeAttribute) {
+                    result.put(
+                        cf.getThisClassName() + '.' + mi.getName() + mi.getDescriptor(),
+                        ((CodeAttribute) ai).getCodeLength()
+                    );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.ICompilerFactory;
+import org.codehaus.commons.compiler.IExpressionEvaluator;
+import org.codehaus.commons.compiler.IScriptEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the end-to-end "cook" latency of the {@link IExpressionEvaluator}, the {@link IScriptEvaluator} and the
+ * {@link IClassBodyEvaluator}, for both the JANINO and the JDK implementation of the "commons-compiler" API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public
+class CookBenchmark {
+
+    /**
+     * "janino" or "jdk".
+     */
+    @Param({ "janino", "jdk" }) public String compiler;
+
+    /**
+     * One of {@link Inputs#SIZES}.
+     */
+    @Param({ "small", "medium", "pathological" }) public String size;
+
+    private ICompilerFactory compilerFactory;
+    private String           expression;
+    private String           script;
+    private String           classBody;
+
+    @Setup public void
+    setUp() {
+        if ("janino".equals(this.compiler)) {
+            this.compilerFactory = new org.codehaus.janino.CompilerFactory();
+        } else
+        if ("jdk".equals(this.compiler)) {
+            this.compilerFactory = new org.codehaus.commons.compiler.jdk.CompilerFactory();
+        } else
+        {
+            throw new IllegalArgumentException(this.compiler);
+        }
+
+        this.expression = Inputs.expression(this.size);
+        this.script     = Inputs.script(this.size);
+        this.classBody  = Inputs.classBody(this.size);
+    }
+
+    @Benchmark public IExpressionEvaluator
+    cookExpression() throws CompileException {
+        IExpressionEvaluator ee = this.compilerFactory.newExpressionEvaluator();
+        ee.setExpressionType(long.class);
+        ee.setParameters(Inputs.PARAMETER_NAMES, Inputs.PARAMETER_TYPES);
+        ee.cook(this.expression);
+        return ee;
+    }
+
+    @Benchmark public IScriptEvaluator
+    cookScript() throws CompileException {
+        IScriptEvaluator se = this.compilerFactory.newScriptEvaluator();
+        se.setReturnType(long.class);
+        se.setParameters(Inputs.PARAMETER_NAMES, Inputs.PARAMETER_TYPES);
+        se.cook(this.script);
+        return se;
+    }
+
+    @Benchmark public IClassBodyEvaluator
+    cookClassBody() throws CompileException {
+        IClassBodyEvaluator cbe = this.compilerFactory.newClassBodyEvaluator();
+        cbe.cook(this.classBody);
+        return cbe;
+    }
+}
@@ -0,0 +1,91 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+
+/**
+ * The corpus of {@link Kernel}s for {@link GeneratedCodeBenchmark} and {@link BytecodeSizeReport}. Each kernel is a
+ * compilation unit stored as a resource "{@code corpus/}<var>kernelName</var>{@code .java}" next to this class, and
+ * declares the top-level class <var>kernelName</var>.
+ */
+public final
+class Corpus {
+
+    private Corpus() {}
+
+    /**
+     * The names of all kernels of the corpus; suitable for JMH's {@code @Param} annotation.
+     */
+    public static final String[] KERNEL_NAMES = {
+        "Arithmetic",
+        "StringBuilding",
+        "TryFinally",
+        "Switches",
+        "Boxing",
+    };
+
+    /**
+     * @return The source code of the named kernel
+     */
+    public static String
+    source(String kernelName) throws IOException {
+
+        InputStream is = Corpus.class.getResourceAsStream("corpus/" + kernelName + ".java");
+        if (is == null) throw new IllegalArgumentException(kernelName);
+
+        try {
+            ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[4096];
+            for (int n = is.read(buffer); n != -1; n = is.read(buffer)) baos.write(buffer, 0, n);
+            return new String(baos.toByteArray(), "UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Compiles the named kernel with the given <var>compiler</var> and instantiates it.
+     */
+    public static Kernel
+    compile(String kernelName, ISimpleCompiler compiler) throws CompileException, IOException {
+
+        compiler.setParentClassLoader(Kernel.class.getClassLoader());
+        compiler.cook(kernelName + ".java", Corpus.source(kernelName));
+
+        try {
+            return (Kernel) compiler.getClassLoader().loadClass(kernelName).newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException(kernelName, e);
+        }
+    }
+}
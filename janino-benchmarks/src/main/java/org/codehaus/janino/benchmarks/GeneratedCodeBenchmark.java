@@ -0,0 +1,111 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the quality of the generated code: Each {@link Corpus} kernel is compiled once with {@link
+ * org.codehaus.janino.SimpleCompiler} and once with {@link org.codehaus.commons.compiler.jdk.SimpleCompiler} (which
+ * uses JAVAC), and then the throughput of the resulting bytecode is measured, both after JIT compilation and in
+ * interpreted mode ("{@code -Xint}").
+ * <p>
+ *   See {@link BytecodeSizeReport} for the static counterpart, i.e. the size of the generated methods.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public
+class GeneratedCodeBenchmark {
+
+    /**
+     * "janino" or "jdk".
+     */
+    @Param({ "janino", "jdk" }) public String compiler;
+
+    /**
+     * One of {@link Corpus#KERNEL_NAMES}.
+     */
+    @Param({ "Arithmetic", "StringBuilding", "TryFinally", "Switches", "Boxing" }) public String kernelName;
+
+    /**
+     * The problem size passed to {@link Kernel#run(int)}.
+     */
+    @Param({ "1000" }) public int n;
+
+    private Kernel kernel;
+
+    @Setup public void
+    setUp() throws CompileException, IOException {
+
+        ISimpleCompiler sc;
+        if ("janino".equals(this.compiler)) {
+            sc = new org.codehaus.janino.SimpleCompiler();
+        } else
+        if ("jdk".equals(this.compiler)) {
+            sc = new org.codehaus.commons.compiler.jdk.SimpleCompiler();
+        } else
+        {
+            throw new IllegalArgumentException(this.compiler);
+        }
+
+        this.kernel = Corpus.compile(this.kernelName, sc);
+    }
+
+    /**
+     * The throughput after the JIT compiler has optimized the generated code.
+     */
+    @Benchmark public long
+    steadyState() { return this.kernel.run(this.n); }
+
+    /**
+     * The throughput of the bytecode interpreter, which is what short-lived generated code mostly runs in, and which
+     * reflects the size and the quality of the generated bytecode much more directly than JIT-compiled code.
+     */
+    @Benchmark @Fork(value = 1, jvmArgsAppend = "-Xint") @Warmup(iterations = 1) @Measurement(iterations = 3)
+    public long
+    interpreted() { return this.kernel.run(this.n); }
+}
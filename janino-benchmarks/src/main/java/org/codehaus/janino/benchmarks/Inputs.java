@@ -0,0 +1,235 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+/**
+ * Generators for the source code that the benchmarks compile. Each generator supports the sizes "small", "medium" and
+ * "pathological"; the latter stresses the recursive descent parser and the code generator with deeply nested
+ * expressions, long operand chains, huge SWITCH statements and many local variables.
+ */
+public final
+class Inputs {
+
+    private Inputs() {}
+
+    /**
+     * The sizes supported by the generators; suitable for JMH's {@code @Param} annotation.
+     */
+    public static final String[] SIZES = { "small", "medium", "pathological" };
+
+    /**
+     * The names of the parameters of the generated expressions and scripts.
+     */
+    public static final String[] PARAMETER_NAMES = { "a", "b", "s" };
+
+    /**
+     * The types of the parameters of the generated expressions and scripts.
+     */
+    public static final Class<?>[] PARAMETER_TYPES = { long.class, long.class, String.class };
+
+    /**
+     * @return The text of a compilation unit with top-level classes of the given <var>size</var>
+     */
+    public static String
+    compilationUnit(String size) {
+        StringBuilder sb = new StringBuilder();
+        if ("small".equals(size)) {
+            Inputs.appendClass(sb, "C0", 3, 5);
+        } else
+        if ("medium".equals(size)) {
+            for (int i = 0; i < 10; i++) Inputs.appendClass(sb, "C" + i, 20, 20);
+        } else
+        if ("pathological".equals(size)) {
+            sb.append("public class P {\n");
+            Inputs.appendPathologicalMethods(sb);
+            sb.append("}\n");
+        } else
+        {
+            throw new IllegalArgumentException(size);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The text of a class body (for the {@code ClassBodyEvaluator}) of the given <var>size</var>
+     */
+    public static String
+    classBody(String size) {
+        StringBuilder sb = new StringBuilder();
+        if ("small".equals(size)) {
+            Inputs.appendMethods(sb, 3, 5);
+        } else
+        if ("medium".equals(size)) {
+            Inputs.appendMethods(sb, 50, 20);
+        } else
+        if ("pathological".equals(size)) {
+            Inputs.appendPathologicalMethods(sb);
+        } else
+        {
+            throw new IllegalArgumentException(size);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The text of a script with parameters {@link #PARAMETER_NAMES} and return type {@code long}
+     */
+    public static String
+    script(String size) {
+        StringBuilder sb = new StringBuilder();
+        if ("small".equals(size)) {
+            Inputs.appendStatements(sb, 5);
+        } else
+        if ("medium".equals(size)) {
+            Inputs.appendStatements(sb, 200);
+        } else
+        if ("pathological".equals(size)) {
+            sb.append("long acc = ").append(Inputs.deepExpression(100)).append(";\n");
+            sb.append("switch ((int) acc) {\n");
+            for (int i = 0; i < 1000; i++) sb.append("case ").append(i).append(": acc += ").append(i * 7).append(";\n");
+            sb.append("}\n");
+            sb.append("return acc + s.length();\n");
+        } else
+        {
+            throw new IllegalArgumentException(size);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The text of an expression with parameters {@link #PARAMETER_NAMES} and type {@code long}
+     */
+    public static String
+    expression(String size) {
+        if ("small".equals(size)) return "a + b * 7";
+
+        if ("medium".equals(size)) {
+            StringBuilder sb = new StringBuilder("s.length()");
+            for (int i = 1; i <= 30; i++) {
+                sb.append(" + Math.max(a, b * ").append(i).append(") % ").append(i + 1);
+            }
+            return sb.toString();
+        }
+
+        if ("pathological".equals(size)) return Inputs.deepExpression(100);
+
+        throw new IllegalArgumentException(size);
+    }
+
+    private static void
+    appendClass(StringBuilder sb, String className, int methodCount, int statementCount) {
+        sb.append("public class ").append(className).append(" {\n");
+        Inputs.appendMethods(sb, methodCount, statementCount);
+        sb.append("}\n");
+    }
+
+    private static void
+    appendMethods(StringBuilder sb, int methodCount, int statementCount) {
+        for (int j = 0; j < methodCount; j++) {
+            sb.append("public static long m").append(j).append("(long a, long b, String s) {\n");
+            Inputs.appendStatements(sb, statementCount);
+            sb.append("}\n");
+        }
+    }
+
+    /**
+     * Appends a method body that uses parameters <var>a</var>, <var>b</var> and <var>s</var>, and returns a {@code
+     * long} value.
+     */
+    private static void
+    appendStatements(StringBuilder sb, int statementCount) {
+        sb.append("long acc = a;\n");
+        for (int k = 0; k < statementCount; k++) {
+            switch (k % 5) {
+            case 0:
+                sb.append("acc += a * ").append(k).append(" + b;\n");
+                break;
+            case 1:
+                sb.append("if (acc > ").append(k).append(") { acc -= ").append(k).append("; } else { acc ^= ");
+                sb.append(k).append("; }\n");
+                break;
+            case 2:
+                sb.append("for (int i = 0; i < ").append(k).append("; i++) acc += i * b;\n");
+                break;
+            case 3:
+                sb.append("acc += String.valueOf(acc).length() + s.length();\n");
+                break;
+            default:
+                sb.append("try { acc += Long.parseLong(s) / (b - ").append(k).append("); }");
+                sb.append(" catch (ArithmeticException e) { acc--; }\n");
+                break;
+            }
+        }
+        sb.append("return acc;\n");
+    }
+
+    private static void
+    appendPathologicalMethods(StringBuilder sb) {
+
+        // Deeply nested expression.
+        sb.append("public static long deep(long a, long b) {\n");
+        sb.append("    return ").append(Inputs.deepExpression(100)).append(";\n");
+        sb.append("}\n");
+
+        // Long string concatenation.
+        sb.append("public static String concat(String s) {\n");
+        sb.append("    return s");
+        for (int i = 0; i < 500; i++) sb.append(" + ").append(i).append(" + s");
+        sb.append(";\n");
+        sb.append("}\n");
+
+        // Huge SWITCH statement.
+        sb.append("public static int sw(int x) {\n");
+        sb.append("    switch (x) {\n");
+        for (int i = 0; i < 1000; i++) sb.append("    case ").append(i * 3).append(": return ").append(i).append(";\n");
+        sb.append("    }\n");
+        sb.append("    return -1;\n");
+        sb.append("}\n");
+
+        // Many local variables.
+        sb.append("public static long locals(long a) {\n");
+        sb.append("    long l0 = a;\n");
+        for (int i = 1; i < 300; i++) {
+            sb.append("    long l").append(i).append(" = l").append(i - 1).append(" * 31 + ").append(i).append(";\n");
+        }
+        sb.append("    return l299;\n");
+        sb.append("}\n");
+    }
+
+    /**
+     * @return An expression of type {@code long} with parameters <var>a</var> and <var>b</var>, nested
+     *         <var>depth</var> levels deep
+     */
+    private static String
+    deepExpression(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append('(');
+        sb.append('a');
+        for (int i = 0; i < depth; i++) sb.append(i % 2 == 0 ? " + b)" : " * 3)");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,168 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.IClassLoader;
+import org.codehaus.janino.Java.CompilationUnit;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.TokenType;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the individual stages of the JANINO compilation pipeline, each in isolation: Scanning, parsing, compiling,
+ * serializing the class files, and defining the classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public
+class PipelineBenchmark {
+
+    /**
+     * One of {@link Inputs#SIZES}.
+     */
+    @Param({ "small", "medium", "pathological" }) public String size;
+
+    private String      source;
+    private IClassLoader iClassLoader;
+    private ClassFile[] classFiles;
+    private String[]    classNames;
+    private byte[][]    classBytes;
+
+    @Setup public void
+    setUp() throws CompileException, IOException {
+        this.source = Inputs.compilationUnit(this.size);
+
+        // Sharing the IClassLoader between iterations keeps the loading of the JRE classes out of the "compile"
+        // measurement.
+        this.iClassLoader = new ClassLoaderIClassLoader(PipelineBenchmark.class.getClassLoader());
+
+        this.classFiles = new UnitCompiler(this.parse(), this.iClassLoader).compileUnit(true, true, true);
+        this.classNames = new String[this.classFiles.length];
+        this.classBytes = new byte[this.classFiles.length][];
+        for (int i = 0; i < this.classFiles.length; i++) {
+            this.classNames[i] = this.classFiles[i].getThisClassName();
+            this.classBytes[i] = this.classFiles[i].toByteArray();
+        }
+    }
+
+    /**
+     * A freshly parsed compilation unit for each invocation, because the {@link UnitCompiler} attaches state to the
+     * AST nodes, and thus cannot compile the same AST twice.
+     */
+    @State(Scope.Thread)
+    public static
+    class FreshUnit {
+
+        CompilationUnit compilationUnit;
+
+        @Setup(Level.Invocation) public void
+        setUp(PipelineBenchmark benchmark) throws CompileException, IOException {
+            this.compilationUnit = benchmark.parse();
+        }
+    }
+
+    /**
+     * Scans the entire source into tokens.
+     */
+    @Benchmark public int
+    scan() throws CompileException, IOException {
+        Scanner scanner = new Scanner(null, new StringReader(this.source));
+        int     count   = 0;
+        while (scanner.produce().type != TokenType.END_OF_INPUT) count++;
+        return count;
+    }
+
+    /**
+     * Scans and parses the entire source into an AST.
+     */
+    @Benchmark public CompilationUnit
+    parse() throws CompileException, IOException {
+        return new Parser(new Scanner(null, new StringReader(this.source))).parseCompilationUnit();
+    }
+
+    /**
+     * Compiles a parsed compilation unit into {@link ClassFile}s.
+     */
+    @Benchmark public ClassFile[]
+    compile(FreshUnit unit) throws CompileException {
+        return new UnitCompiler(unit.compilationUnit, this.iClassLoader).compileUnit(true, true, true);
+    }
+
+    /**
+     * Serializes the {@link ClassFile}s into bytecode.
+     */
+    @Benchmark public int
+    toByteArray() {
+        int result = 0;
+        for (ClassFile cf : this.classFiles) result += cf.toByteArray().length;
+        return result;
+    }
+
+    /**
+     * Defines the generated classes in a new class loader (without linking or initializing them).
+     */
+    @Benchmark public Class<?>
+    defineClass() {
+        DefiningClassLoader cl     = new DefiningClassLoader(PipelineBenchmark.class.getClassLoader());
+        Class<?>            result = null;
+        for (int i = 0; i < this.classNames.length; i++) result = cl.define(this.classNames[i], this.classBytes[i]);
+        return result;
+    }
+
+    private static
+    class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader(ClassLoader parent) { super(parent); }
+
+        Class<?>
+        define(String name, byte[] b) { return this.defineClass(name, b, 0, b.length); }
+    }
+}
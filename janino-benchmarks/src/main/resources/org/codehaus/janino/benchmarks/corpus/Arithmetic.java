@@ -0,0 +1,25 @@
+
+/**
+ * Integer and floating-point arithmetic in tight loops.
+ */
+public
+class Arithmetic implements org.codehaus.janino.benchmarks.Kernel {
+
+    @Override public long
+    run(int n) {
+        long acc = 0;
+        for (int i = 0; i < n; i++) {
+            acc += (i * 31L) ^ (acc >>> 3);
+            acc  = acc % 1000003 + i / 7;
+        }
+
+        double d = 0;
+        for (int i = 1; i <= n; i++) d += Math.sqrt(i) * 0.5 - 1.0 / i;
+
+        int[] a = new int[64];
+        for (int i = 0; i < n; i++) a[i & 63] += i << (i & 7);
+        for (int i = 0; i < a.length; i++) acc += a[i];
+
+        return acc + (long) d;
+    }
+}
@@ -0,0 +1,24 @@
+
+/**
+ * Autoboxing and -unboxing through collections.
+ */
+public
+class Boxing implements org.codehaus.janino.benchmarks.Kernel {
+
+    @Override public long
+    run(int n) {
+        java.util.List<Integer>      list = new java.util.ArrayList<Integer>();
+        java.util.Map<Integer, Long> map  = new java.util.HashMap<Integer, Long>();
+        for (int i = 0; i < n; i++) {
+            list.add(i);
+            Integer key = i % 100;
+            Long    old = (Long) map.get(key);
+            map.put(key, old == null ? 1L : old + i);
+        }
+
+        long acc = 0;
+        for (int i = 0; i < list.size(); i++) acc += (Integer) list.get(i);
+        for (Object value : map.values()) acc += (Long) value;
+        return acc;
+    }
+}
@@ -0,0 +1,20 @@
+
+/**
+ * String concatenation and {@link StringBuilder} usage.
+ */
+public
+class StringBuilding implements org.codehaus.janino.benchmarks.Kernel {
+
+    @Override public long
+    run(int n) {
+        long          result = 0;
+        StringBuilder sb     = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            String s = "item" + i + ',' + (i * 2) + ';';
+            result += s.length();
+            sb.append(s).append(i % 10);
+            if (sb.length() > 1000) sb.setLength(0);
+        }
+        return result + sb.length();
+    }
+}
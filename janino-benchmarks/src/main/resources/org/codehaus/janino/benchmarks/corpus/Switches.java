@@ -0,0 +1,34 @@
+
+/**
+ * SWITCH statements on strings and enums.
+ */
+public
+class Switches implements org.codehaus.janino.benchmarks.Kernel {
+
+    enum Color { RED, GREEN, BLUE, CYAN, MAGENTA, YELLOW }
+
+    private static final String[] NAMES = { "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta" };
+
+    @Override public long
+    run(int n) {
+        Color[] colors = Color.values();
+        long    acc    = 0;
+        for (int i = 0; i < n; i++) {
+            switch (Switches.NAMES[i % Switches.NAMES.length]) {
+            case "alpha":   acc += 1; break;
+            case "beta":    acc += 2; break;
+            case "gamma":   acc ^= 3; break;
+            case "delta":   acc -= 4; break;
+            case "epsilon": acc += 5; break;
+            default:        acc++;    break;
+            }
+            switch (colors[i % colors.length]) {
+            case RED:   acc += 10; break;
+            case GREEN: acc -= 20; break;
+            case BLUE:  acc ^= 30; break;
+            default:    acc--;     break;
+            }
+        }
+        return acc;
+    }
+}
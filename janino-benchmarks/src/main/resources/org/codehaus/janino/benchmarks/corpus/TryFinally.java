@@ -0,0 +1,38 @@
+
+/**
+ * Loops with TRY...FINALLY, including BREAK, CONTINUE and RETURN out of the protected blocks.
+ */
+public
+class TryFinally implements org.codehaus.janino.benchmarks.Kernel {
+
+    private long counter;
+
+    @Override public long
+    run(int n) {
+        long acc = 0;
+        for (int i = 0; i < n; i++) {
+            try {
+                if (i % 3 == 0) continue;
+                try {
+                    acc += this.step(i);
+                    if (acc < 0) break;
+                } finally {
+                    this.counter++;
+                }
+            } finally {
+                acc ^= i;
+            }
+        }
+        return acc + this.counter;
+    }
+
+    private int
+    step(int i) {
+        try {
+            if ((i & 1) == 0) return i;
+            return -i / 2;
+        } finally {
+            this.counter += 2;
+        }
+    }
+}
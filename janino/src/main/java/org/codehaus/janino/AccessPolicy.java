@@ -0,0 +1,56 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+/**
+ * Decides which types and members compiled code may reference; see {@link UnitCompiler#setAccessPolicy(AccessPolicy)}.
+ * <p>
+ *   In contrast with the {@link org.codehaus.commons.compiler.Sandbox}, the policy is enforced at compile time; thus
+ *   the compiled code runs at full speed, and there is no global effect on the JVM.
+ * </p>
+ *
+ * @see PatternAccessPolicy
+ */
+public
+interface AccessPolicy {
+
+    /**
+     * @param className The fully qualified name of a referenced type, e.g. {@code "java.util.Map$Entry"}
+     * @return          Whether compiled code may reference that type, e.g. in a variable declaration, a cast or a
+     *                  class literal
+     */
+    boolean
+    isTypeAllowed(String className);
+
+    /**
+     * @param className  The fully qualified name of the type that declares the member
+     * @param memberName The name of the field or method, or {@code "<init>"} for a constructor
+     * @return           Whether compiled code may access that member
+     */
+    boolean
+    isMemberAllowed(String className, String memberName);
+}
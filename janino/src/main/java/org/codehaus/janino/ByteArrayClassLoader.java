@@ -53,6 +53,15 @@ class ByteArrayClassLoader extends ClassLoader {
         this.classes = classes;
     }
 
+    /**
+     * Iff non-{@code null}, then each class definition is reported as {@link
+     * CompilationListener.Phase#CLASS_DEFINITION} to the given listener.
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.optionalCompilationListener = optionalCompilationListener;
+    }
+
     /**
      * Implements {@link ClassLoader#findClass(String)}.
      * <p>
@@ -74,14 +83,25 @@ class ByteArrayClassLoader extends ClassLoader {
         // JNLP. See
         //     http://jira.codehaus.org/browse/JANINO-104
         //     http://www.nabble.com/-Help-jel--java.security.AccessControlException-to13073723.html
-        return super.defineClass(
+        Object   defineEvent = JfrEvents.CLASS_DEFINITION.begin();
+        long     start       = System.nanoTime();
+        Class<?> result      = super.defineClass(
             name,                                 // name
             data,                                 // b
             0,                                    // off
             data.length,                          // len
             this.getClass().getProtectionDomain() // protectionDomain
         );
+        CompilationEvents.phaseCompleted(
+            this.optionalCompilationListener,
+            CompilationListener.Phase.CLASS_DEFINITION,
+            name,
+            start
+        );
+        JfrEvents.commit(defineEvent, new Object[] { name, (long) data.length });
+        return result;
     }
 
     private final Map<String /*className-or-classFileName*/, byte[] /*data*/> classes;
+    @Nullable private CompilationListener                                    optionalCompilationListener;
 }
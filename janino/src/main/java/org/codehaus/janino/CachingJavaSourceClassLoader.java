@@ -26,15 +26,32 @@
 
 package org.codehaus.janino;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.codehaus.commons.compiler.AbstractJavaSourceClassLoader;
 import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.Java.PackageMemberTypeDeclaration;
 import org.codehaus.janino.util.ClassFile;
 import org.codehaus.janino.util.resource.DirectoryResourceCreator;
 import org.codehaus.janino.util.resource.DirectoryResourceFinder;
@@ -52,6 +69,21 @@ import org.codehaus.janino.util.resource.ResourceFinder;
  *   (see {@link #CachingJavaSourceClassLoader(ClassLoader, ResourceFinder, String, ResourceFinder, ResourceCreator)}.
  * </p>
  * <p>
+ *   The cache holds one entry per compilation unit, which contains the class files of all classes declared in the
+ *   unit, plus a hash of the unit's source code and hashes of the sources of all the units it depends on. An entry is
+ *   regarded as up-to-date iff all these hashes still match; modification times are not used, because they are not
+ *   preserved reliably by many deployment mechanisms. A unit is regarded as depending on another unit iff its source
+ *   code (directly or indirectly) mentions, as an identifier, the simple name of any of the top-level types declared
+ *   by the other unit.
+ * </p>
+ * <p>
+ *   Notice that versions of this class before 3.0.13 cached one {@code pkg/Cls.class} resource per class; such
+ *   resources are ignored (and hence cause one recompilation of each unit), and may safely be deleted.
+ * </p>
+ * <p>
+ *   Each source is read at most once; the bytes that were hashed are exactly those that were compiled.
+ * </p>
+ * <p>
  *   See {@link org.codehaus.janino.JavaSourceClassLoader#main(String[])} for an example how to use this class.
  * </p>
  * <p>
@@ -64,9 +96,39 @@ import org.codehaus.janino.util.resource.ResourceFinder;
  */
 public
 class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
-    private final ResourceFinder  classFileCacheResourceFinder;
-    private final ResourceCreator classFileCacheResourceCreator;
-    private final ResourceFinder  sourceFinder;
+
+    static {
+        Method m = AbstractJavaSourceClassLoader.REGISTER_AS_PARALLEL_CAPABLE;
+        if (AbstractJavaSourceClassLoader.PARALLEL_CAPABLE_SUPPORTED && m != null) {
+            try {
+                m.invoke(null);
+            } catch (Exception e) {
+                ;  // Then this class loader is simply not parallel capable.
+            }
+        }
+    }
+
+    /**
+     * The first bytes of each cache entry; "JNCE".
+     */
+    private static final int   CACHE_ENTRY_MAGIC   = 0x4a4e4345;
+    private static final short CACHE_ENTRY_VERSION = 1;
+
+    private final ResourceFinder        classFileCacheResourceFinder;
+    private final ResourceCreator       classFileCacheResourceCreator;
+    private final RecordingSourceFinder sourceFinder;
+    @Nullable private String            optionalCharacterEncoding;
+
+    /**
+     * The hashes of the sources that were read so far. Guarded by the {@link JavaSourceIClassLoader}.
+     */
+    private final Map<String /*sourceResourceName*/, byte[] /*hash*/> sourceHashes = new HashMap<String, byte[]>();
+
+    /**
+     * The units parsed so far, or {@code null} for units without a source resource. Guarded by the {@link
+     * JavaSourceIClassLoader}.
+     */
+    private final Map<UnitCompiler, /*@Nullable*/ Unit> units = new HashMap<UnitCompiler, Unit>();
 
     /**
      * See {@link #CachingJavaSourceClassLoader(ClassLoader, ResourceFinder, String, ResourceFinder, ResourceCreator)}.
@@ -95,24 +157,19 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
     }
 
     /**
-     * Notice that this class is thread-safe if and only if the <var>classFileCacheResourceCreator</var> stores its
-     * data atomically, i.e. the <var>classFileCacheResourceFinder</var> sees the resource written by the {@code
-     * classFileCacheResourceCreator} only after the {@link OutputStream} is closed.
-     * <p>
-     *   In order to make the caching scheme work, both the <var>classFileCacheResourceFinder</var> and the {@code
-     *   sourceFinder} must support the {@link org.codehaus.janino.util.resource.Resource#lastModified()} method, so
-     *   that the modification time of the source and the class files can be compared.
-     * </p>
+     * Notice that this class is thread-safe (and, on Java 7+, parallel capable) if and only if the {@code
+     * classFileCacheResourceCreator} stores its data atomically, i.e. the <var>classFileCacheResourceFinder</var> sees
+     * the resource written by the {@code classFileCacheResourceCreator} only after the {@link OutputStream} is closed.
      *
      * @param parentClassLoader             Attempt to load classes through this one before looking for source files
      * @param sourceFinder                  Finds Java source for class {@code pkg.Cls} in resource {@code
      *                                      pkg/Cls.java}
      * @param optionalCharacterEncoding     Encoding of Java source or {@code null} for platform default
      *                                      encoding
-     * @param classFileCacheResourceFinder  Finds precompiled class {@code pkg.Cls} in resource {@code pkg/Cls.class}
-     *                                      (see class description)
-     * @param classFileCacheResourceCreator Stores compiled class {@code pkg.Cls} in resource {@code pkg/Cls.class} (see
-     *                                      class description)
+     * @param classFileCacheResourceFinder  Finds the cache entry for class {@code pkg.Cls} in resource {@code
+     *                                      pkg/Cls.cache} (see class description)
+     * @param classFileCacheResourceCreator Stores the cache entry for class {@code pkg.Cls} in resource {@code
+     *                                      pkg/Cls.cache} (see class description)
      */
     public
     CachingJavaSourceClassLoader(
@@ -121,11 +178,35 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
         @Nullable String optionalCharacterEncoding,
         ResourceFinder   classFileCacheResourceFinder,
         ResourceCreator  classFileCacheResourceCreator
+    ) {
+        this(
+            parentClassLoader,
+            new RecordingSourceFinder(sourceFinder),
+            optionalCharacterEncoding,
+            classFileCacheResourceFinder,
+            classFileCacheResourceCreator
+        );
+    }
+
+    private
+    CachingJavaSourceClassLoader(
+        ClassLoader           parentClassLoader,
+        RecordingSourceFinder sourceFinder,
+        @Nullable String      optionalCharacterEncoding,
+        ResourceFinder        classFileCacheResourceFinder,
+        ResourceCreator       classFileCacheResourceCreator
     ) {
         super(parentClassLoader, sourceFinder, optionalCharacterEncoding);
         this.classFileCacheResourceFinder  = classFileCacheResourceFinder;
         this.classFileCacheResourceCreator = classFileCacheResourceCreator;
         this.sourceFinder                  = sourceFinder;
+        this.optionalCharacterEncoding     = optionalCharacterEncoding;
+    }
+
+    @Override public void
+    setSourceFileCharacterEncoding(@Nullable String optionalCharacterEncoding) {
+        super.setSourceFileCharacterEncoding(optionalCharacterEncoding);
+        this.optionalCharacterEncoding = optionalCharacterEncoding;
     }
 
     /**
@@ -137,30 +218,31 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
      */
     @Override @Nullable protected Map<String /*name*/, byte[] /*bytecode*/>
     generateBytecodes(String className) throws ClassNotFoundException {
-        // Check whether a class file resource exists in the cache.
+
+        // Check whether an entry exists in the cache.
         {
-            Resource classFileResource = this.classFileCacheResourceFinder.findResource(
-                ClassFile.getClassFileResourceName(className)
+            Resource cacheEntryResource = this.classFileCacheResourceFinder.findResource(
+                CachingJavaSourceClassLoader.getCacheEntryResourceName(className)
             );
-            if (classFileResource != null) {
+            if (cacheEntryResource != null) {
 
                 // Check whether a source file resource exists.
-                Resource sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
+                String   sourceResourceName = ClassFile.getSourceResourceName(className);
+                Resource sourceResource     = this.sourceFinder.findResource(sourceResourceName);
                 if (sourceResource == null) return null;
 
-                // Check whether the class file is up-to-date.
-                if (sourceResource.lastModified() < classFileResource.lastModified()) {
+                // Check whether the cache entry is up-to-date.
+                try {
+                    CacheEntry cacheEntry = CachingJavaSourceClassLoader.readCacheEntry(cacheEntryResource);
+                    if (cacheEntry != null && this.isUpToDate(cacheEntry, sourceResourceName, sourceResource)) {
 
-                    // Yes, it is... read the bytecode from the file and define the class.
-                    byte[] bytecode;
-                    try {
-                        bytecode = CachingJavaSourceClassLoader.readResource(classFileResource);
-                    } catch (IOException ex) {
-                        throw new ClassNotFoundException("Reading class file from \"" + classFileResource + "\"", ex);
+                        // Yes, it is... return the bytecode of all classes of the compilation unit. The unit will
+                        // not be compiled, so its source is no longer needed.
+                        this.sourceFinder.forget(sourceResourceName);
+                        return cacheEntry.bytecodes;
                     }
-                    Map<String /*name*/, byte[] /*bytecode*/> m = new HashMap<String, byte[]>();
-                    m.put(className, bytecode);
-                    return m;
+                } catch (IOException ex) {
+                    throw new ClassNotFoundException("Reading cache entry from \"" + cacheEntryResource + "\"", ex);
                 }
             }
         }
@@ -170,59 +252,368 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
         if (bytecodes == null) return null;
 
         // Write the generated bytecodes to the class file cache.
-        for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
-            String className2 = (String) me.getKey();
-            byte[] bytecode   = (byte[]) me.getValue();
+        try {
+            this.writeCacheEntries(bytecodes);
+        } catch (IOException ex) {
+            throw new ClassNotFoundException("Writing class file cache entries for \"" + className + "\"", ex);
+        }
 
-            try {
-                CachingJavaSourceClassLoader.writeResource(
-                    this.classFileCacheResourceCreator,
-                    ClassFile.getClassFileResourceName(className2),
-                    bytecode
-                );
-            } catch (IOException ex) {
-                throw new ClassNotFoundException(
-                    "Writing class file to \"" + ClassFile.getClassFileResourceName(className2) + "\"",
-                    ex
-                );
+        return bytecodes;
+    }
+
+    /**
+     * @return Whether the hashes of the unit's source and of the sources it depends on still match
+     */
+    private boolean
+    isUpToDate(CacheEntry cacheEntry, String sourceResourceName, Resource sourceResource) throws IOException {
+
+        if (!Arrays.equals(cacheEntry.sourceHash, this.getSourceHash(sourceResourceName, sourceResource))) {
+            return false;
+        }
+
+        for (Map.Entry<String, byte[]> me : cacheEntry.dependencyHashes.entrySet()) {
+            String   dependencySourceResourceName = (String) me.getKey();
+            Resource dependencySourceResource     = this.sourceFinder.findResource(dependencySourceResourceName);
+            if (dependencySourceResource == null) return false;
+            if (!Arrays.equals(
+                (byte[]) me.getValue(),
+                this.getSourceHash(dependencySourceResourceName, dependencySourceResource)
+            )) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Analyzes the units that the {@link JavaSourceIClassLoader} parsed since the last invocation, and writes a cache
+     * entry for each unit that has bytecode in <var>bytecodes</var>.
+     */
+    private void
+    writeCacheEntries(Map<String /*name*/, byte[] /*bytecode*/> bytecodes) throws IOException {
+
+        List<Unit> newUnits = new ArrayList<Unit>();
+        for (UnitCompiler uc : this.getIClassLoader().getUnitCompilers()) {
+            if (this.units.containsKey(uc)) continue;
+
+            Unit unit = this.analyze(uc);
+            this.units.put(uc, unit);
+            if (unit != null) newUnits.add(unit);
+        }
+
+        for (Unit unit : newUnits) {
+
+            Map<String /*name*/, byte[] /*bytecode*/> unitBytecodes = new HashMap<String, byte[]>();
+            for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
+                String className = (String) me.getKey();
+                int    idx       = className.indexOf('$');
+                if (unit.topLevelClassNames.contains(idx == -1 ? className : className.substring(0, idx))) {
+                    unitBytecodes.put(className, (byte[]) me.getValue());
+                }
             }
+            if (unitBytecodes.isEmpty()) continue;
+
+            // Determine the units that this unit depends on, directly or indirectly.
+            Set<Unit>  dependencies = new HashSet<Unit>();
+            List<Unit> todo         = new ArrayList<Unit>();
+            todo.add(unit);
+            while (!todo.isEmpty()) {
+                Unit u = (Unit) todo.remove(todo.size() - 1);
+                for (Unit v : this.units.values()) {
+                    if (v == null || v == unit || dependencies.contains(v)) continue;
+                    if (Collections.disjoint(u.identifiers, v.topLevelSimpleNames)) continue;
+                    dependencies.add(v);
+                    todo.add(v);
+                }
+            }
+
+            CacheEntry cacheEntry = new CacheEntry(unit.sourceHash, unitBytecodes);
+            for (Unit dependency : dependencies) {
+                cacheEntry.dependencyHashes.put(dependency.sourceResourceName, dependency.sourceHash);
+            }
+
+            CachingJavaSourceClassLoader.writeCacheEntry(
+                this.classFileCacheResourceCreator,
+                CachingJavaSourceClassLoader.getCacheEntryResourceName(unit.primaryClassName),
+                cacheEntry
+            );
         }
+    }
 
-        return bytecodes;
+    /**
+     * @return {@code null} iff none of the unit's top-level types has a source resource
+     */
+    @Nullable private Unit
+    analyze(UnitCompiler uc) throws IOException {
+
+        Unit unit = null;
+        for (PackageMemberTypeDeclaration pmtd : uc.getCompilationUnit().packageMemberTypeDeclarations) {
+            String className = pmtd.getClassName();
+
+            if (unit == null) {
+                String   sourceResourceName = ClassFile.getSourceResourceName(className);
+                Resource sourceResource     = this.sourceFinder.findResource(sourceResourceName);
+                if (sourceResource != null) {
+
+                    // Re-use the source that the JavaSourceIClassLoader read.
+                    byte[] source = this.sourceFinder.getSource(sourceResourceName, sourceResource);
+                    this.sourceFinder.forget(sourceResourceName);
+
+                    byte[] sourceHash = CachingJavaSourceClassLoader.hash(source);
+                    this.sourceHashes.put(sourceResourceName, sourceHash);
+
+                    unit = new Unit(
+                        className,
+                        sourceResourceName,
+                        sourceHash,
+                        JavaSourceReloader.scanIdentifiers(
+                            sourceResource.getFileName(),
+                            source,
+                            this.optionalCharacterEncoding
+                        )
+                    );
+                }
+            }
+        }
+        if (unit == null) return null;
+
+        for (PackageMemberTypeDeclaration pmtd : uc.getCompilationUnit().packageMemberTypeDeclarations) {
+            unit.topLevelClassNames.add(pmtd.getClassName());
+            unit.topLevelSimpleNames.add(pmtd.getName());
+        }
+
+        return unit;
+    }
+
+    private byte[]
+    getSourceHash(String sourceResourceName, Resource sourceResource) throws IOException {
+        byte[] result = (byte[]) this.sourceHashes.get(sourceResourceName);
+        if (result == null) {
+            result = CachingJavaSourceClassLoader.hash(this.sourceFinder.getSource(sourceResourceName, sourceResource));
+            this.sourceHashes.put(sourceResourceName, result);
+        }
+        return result;
     }
 
     /**
-     * Reads all bytes from the given resource.
+     * Remembers the contents of each source when it is read for the first time, and serves all subsequent reads from
+     * that copy, until the source is {@link #forget(String) forgotten}. Thus each source is read only once, although
+     * it is hashed <em>and</em> compiled.
      */
+    private static
+    class RecordingSourceFinder extends ResourceFinder {
+
+        private final ResourceFinder delegate;
+
+        /**
+         * Sources may be read without holding the lock of the {@link JavaSourceIClassLoader}; see {@link
+         * JavaSourceIClassLoader#preparse(String)}.
+         */
+        private final Map<String /*sourceResourceName*/, byte[] /*source*/>
+        sources = new ConcurrentHashMap<String, byte[]>();
+
+        RecordingSourceFinder(ResourceFinder delegate) { this.delegate = delegate; }
+
+        @Override @Nullable public Resource
+        findResource(final String resourceName) {
+
+            final Resource delegate = this.delegate.findResource(resourceName);
+            if (delegate == null) return null;
+
+            return new Resource() {
+
+                @Override public InputStream
+                open() throws IOException {
+                    return new ByteArrayInputStream(RecordingSourceFinder.this.getSource(resourceName, delegate));
+                }
+
+                @Override public String getFileName()  { return delegate.getFileName();  }
+                @Override public long   lastModified() { return delegate.lastModified(); }
+                @Override public String toString()     { return delegate.toString();     }
+            };
+        }
+
+        /**
+         * @return The contents of the <var>sourceResource</var>, which is read only if it was not read before
+         */
+        byte[]
+        getSource(String sourceResourceName, Resource sourceResource) throws IOException {
+            byte[] result = (byte[]) this.sources.get(sourceResourceName);
+            if (result == null) {
+                result = JavaSourceReloader.readAll(sourceResource.open());
+                this.sources.put(sourceResourceName, result);
+            }
+            return result;
+        }
+
+        /**
+         * Releases the recorded contents of the named source.
+         */
+        void
+        forget(String sourceResourceName) { this.sources.remove(sourceResourceName); }
+    }
+
     private static byte[]
-    readResource(Resource r) throws IOException {
-        ByteArrayOutputStream baos   = new ByteArrayOutputStream();
-        byte[]                buffer = new byte[4096];
+    hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException nsae) {
+
+            // Every JRE is required to support SHA-1.
+            throw new InternalCompilerException("SHA-1", nsae);
+        }
+    }
+
+    /**
+     * @return E.g. "pkg1/pkg2/Outer.cache" for "pkg1.pkg2.Outer$Inner"
+     */
+    private static String
+    getCacheEntryResourceName(String className) {
+        int idx = className.indexOf('$');
+        if (idx != -1) className = className.substring(0, idx);
+        return className.replace('.', '/') + ".cache";
+    }
+
+    /**
+     * The information about a compilation unit that is required to create its cache entry.
+     */
+    private static
+    class Unit {
+
+        /**
+         * The name of the top-level class that the source resource is named after.
+         */
+        final String      primaryClassName;
+        final String      sourceResourceName;
+        final byte[]      sourceHash;
+        final Set<String> identifiers;
+        final Set<String> topLevelClassNames  = new HashSet<String>();
+        final Set<String> topLevelSimpleNames = new HashSet<String>();
 
-        InputStream is = r.open();
+        Unit(String primaryClassName, String sourceResourceName, byte[] sourceHash, Set<String> identifiers) {
+            this.primaryClassName   = primaryClassName;
+            this.sourceResourceName = sourceResourceName;
+            this.sourceHash         = sourceHash;
+            this.identifiers        = identifiers;
+        }
+    }
+
+    /**
+     * The contents of one cache entry.
+     */
+    private static
+    class CacheEntry {
+
+        final byte[]                                            sourceHash;
+        final Map<String /*sourceResourceName*/, byte[] /*hash*/> dependencyHashes = new HashMap<String, byte[]>();
+        final Map<String /*className*/, byte[] /*bytecode*/>      bytecodes;
+
+        CacheEntry(byte[] sourceHash, Map<String, byte[]> bytecodes) {
+            this.sourceHash = sourceHash;
+            this.bytecodes  = bytecodes;
+        }
+    }
+
+    /**
+     * Reads a cache entry. Its layout is:
+     * <pre>
+     *   int    magic, short version
+     *   hash   sourceHash
+     *   int    dependencyCount, { UTF sourceResourceName, hash sourceHash } ...
+     *   int    classCount,      { UTF className, int length } ...
+     *   byte[] bytecodes (concatenated, in the order of the index)
+     * </pre>
+     * where {@code hash} is a {@code short} length followed by that many bytes.
+     *
+     * @return {@code null} iff the resource is not a valid cache entry
+     */
+    @Nullable private static CacheEntry
+    readCacheEntry(Resource r) throws IOException {
+
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(r.open()));
         try {
-            for (;;) {
-                int cnt = is.read(buffer);
-                if (cnt == -1) break;
-                baos.write(buffer, 0, cnt);
+            if (dis.readInt() != CachingJavaSourceClassLoader.CACHE_ENTRY_MAGIC) return null;
+            if (dis.readShort() != CachingJavaSourceClassLoader.CACHE_ENTRY_VERSION) return null;
+
+            byte[] sourceHash = CachingJavaSourceClassLoader.readHash(dis);
+
+            Map<String, byte[]> dependencyHashes = new HashMap<String, byte[]>();
+            for (int i = dis.readInt(); i > 0; i--) {
+                dependencyHashes.put(dis.readUTF(), CachingJavaSourceClassLoader.readHash(dis));
+            }
+
+            // Read the index, then read each class file into an array of exactly the right size.
+            int      classCount = dis.readInt();
+            String[] classNames = new String[classCount];
+            int[]    lengths    = new int[classCount];
+            for (int i = 0; i < classCount; i++) {
+                classNames[i] = dis.readUTF();
+                lengths[i]    = dis.readInt();
             }
+            Map<String, byte[]> bytecodes = new HashMap<String, byte[]>();
+            for (int i = 0; i < classCount; i++) {
+                byte[] bytecode = new byte[lengths[i]];
+                dis.readFully(bytecode);
+                bytecodes.put(classNames[i], bytecode);
+            }
+
+            CacheEntry result = new CacheEntry(sourceHash, bytecodes);
+            result.dependencyHashes.putAll(dependencyHashes);
+            return result;
+        } catch (EOFException eofe) {
+
+            // Truncated cache entry.
+            return null;
         } finally {
-            try { is.close(); } catch (IOException ex) {}
+            try { dis.close(); } catch (IOException ex) {}
         }
+    }
 
-        return baos.toByteArray();
+    private static byte[]
+    readHash(DataInputStream dis) throws IOException {
+        byte[] result = new byte[dis.readShort()];
+        dis.readFully(result);
+        return result;
     }
 
     /**
-     * Creates a resource with the given name and store the data in it.
+     * Creates a resource with the given name and stores the cache entry in it.
+     *
+     * @see #readCacheEntry(Resource)
      */
     private static void
-    writeResource(ResourceCreator resourceCreator, String resourceName, byte[] data) throws IOException {
+    writeCacheEntry(ResourceCreator resourceCreator, String resourceName, CacheEntry cacheEntry) throws IOException {
+
         OutputStream os = resourceCreator.createResource(resourceName);
         try {
-            os.write(data);
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+
+            dos.writeInt(CachingJavaSourceClassLoader.CACHE_ENTRY_MAGIC);
+            dos.writeShort(CachingJavaSourceClassLoader.CACHE_ENTRY_VERSION);
+
+            CachingJavaSourceClassLoader.writeHash(dos, cacheEntry.sourceHash);
+
+            dos.writeInt(cacheEntry.dependencyHashes.size());
+            for (Map.Entry<String, byte[]> me : cacheEntry.dependencyHashes.entrySet()) {
+                dos.writeUTF((String) me.getKey());
+                CachingJavaSourceClassLoader.writeHash(dos, (byte[]) me.getValue());
+            }
+
+            dos.writeInt(cacheEntry.bytecodes.size());
+            for (Map.Entry<String, byte[]> me : cacheEntry.bytecodes.entrySet()) {
+                dos.writeUTF((String) me.getKey());
+                dos.writeInt(((byte[]) me.getValue()).length);
+            }
+            for (byte[] bytecode : cacheEntry.bytecodes.values()) dos.write(bytecode);
+
+            dos.flush();
         } finally {
             try { os.close(); } catch (IOException ex) {}
         }
     }
+
+    private static void
+    writeHash(DataOutputStream dos, byte[] hash) throws IOException {
+        dos.writeShort(hash.length);
+        dos.write(hash);
+    }
 }
@@ -63,6 +63,11 @@ class ClassBodyEvaluator extends SimpleCompiler implements IClassBodyEvaluator {
     private Class<?>[]         implementedTypes = ClassBodyEvaluator.ZERO_CLASSES;
     @Nullable private Class<?> result; // null=uncooked
 
+    /**
+     * The (possibly {@link #uniqueClassName(String) uniquified}) name of the class being cooked.
+     */
+    @Nullable private String cookedClassName;
+
     /**
      * Equivalent to
      * <pre>
@@ -217,8 +222,23 @@ class ClassBodyEvaluator extends SimpleCompiler implements IClassBodyEvaluator {
     @Deprecated @Override public void
     setImplementedTypes(Class<?>[] implementedInterfaces) { this.setImplementedInterfaces(implementedInterfaces); }
 
+    /**
+     * @return The configured extended class, or {@code null}
+     */
+    @Nullable protected final Class<?>
+    getExtendedClass() { return this.optionalExtendedType; }
+
+    /**
+     * @return The configured implemented interfaces
+     */
+    protected final Class<?>[]
+    getImplementedInterfaces() { return this.implementedTypes; }
+
     @Override public void
     cook(Scanner scanner) throws CompileException, IOException {
+        Object cookEvent = JfrEvents.COOK.begin();
+        long   start     = System.nanoTime();
+        scanner.setCompilationListener(this.getCompilationListener());
 
         Parser               parser          = new Parser(scanner);
         Java.CompilationUnit compilationUnit = this.makeCompilationUnit(parser);
@@ -230,9 +250,11 @@ class ClassBodyEvaluator extends SimpleCompiler implements IClassBodyEvaluator {
         while (!parser.peek(TokenType.END_OF_INPUT)) {
             parser.parseClassBodyDeclaration(cd);
         }
+        this.parsed(scanner, start);
 
         // Compile and load it.
         this.result = this.compileToClass(compilationUnit);
+        SimpleCompiler.cooked(cookEvent, compilationUnit, scanner.getCharacterCount());
     }
 
     /**
@@ -281,7 +303,7 @@ class ClassBodyEvaluator extends SimpleCompiler implements IClassBodyEvaluator {
      */
     protected Java.PackageMemberClassDeclaration
     addPackageMemberClassDeclaration(Location location, Java.CompilationUnit compilationUnit) throws CompileException {
-        String cn  = this.className;
+        String cn  = (this.cookedClassName = this.uniqueClassName(this.className));
         int    idx = cn.lastIndexOf('.');
         if (idx != -1) {
             compilationUnit.setPackageDeclaration(new Java.PackageDeclaration(location, cn.substring(0, idx)));
@@ -309,16 +331,20 @@ class ClassBodyEvaluator extends SimpleCompiler implements IClassBodyEvaluator {
     protected final Class<?>
     compileToClass(Java.CompilationUnit compilationUnit) throws CompileException {
 
+        String cn = this.cookedClassName;
+        if (cn == null) cn = this.className;
+        this.cookedClassName = null;
+
         // Compile and load the compilation unit.
-        ClassLoader cl = this.compileToClassLoader(compilationUnit);
+        this.compileToClassLoader(compilationUnit);
 
         // Find the generated class by name.
         try {
-            return cl.loadClass(this.className);
+            return this.loadCookedClass(cn);
         } catch (ClassNotFoundException ex) {
             throw new InternalCompilerException((
                 "SNO: Generated compilation unit does not declare class '"
-                + this.className
+                + cn
                 + "'"
             ), ex);
         }
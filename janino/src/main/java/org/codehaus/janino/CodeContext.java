@@ -127,6 +127,24 @@ class CodeContext {
     public ClassFile
     getClassFile() { return this.classFile; }
 
+    /**
+     * @return The length of the code generated so far, in bytes
+     */
+    public int
+    getCodeLength() { return this.end.offset; }
+
+    /**
+     * @return The maximum operand stack depth, as computed by {@link #flowAnalysis(String)}
+     */
+    public int
+    getMaxStack() { return this.maxStack; }
+
+    /**
+     * @return The number of local variable slots allocated so far
+     */
+    public int
+    getMaxLocals() { return this.maxLocals; }
+
 
     /**
      * Allocates space for a local variable of the given size (1 or 2) on the local variable array.
@@ -384,13 +402,15 @@ class CodeContext {
         while (analyzedExceptionHandlers != this.exceptionTableEntries.size()) {
             for (ExceptionTableEntry exceptionTableEntry : this.exceptionTableEntries) {
                 if (stackSizes[exceptionTableEntry.startPc.offset] != CodeContext.UNEXAMINED) {
+
+                    // The JVM clears the operand stack and pushes the exception object before it enters the handler.
                     this.flowAnalysis(
                         functionName,
-                        this.code,                                          // code
-                        this.end.offset,                                    // codeSize
-                        exceptionTableEntry.handlerPc.offset,               // offset
-                        stackSizes[exceptionTableEntry.startPc.offset] + 1, // stackSize
-                        stackSizes                                          // stackSizes
+                        this.code,                            // code
+                        this.end.offset,                      // codeSize
+                        exceptionTableEntry.handlerPc.offset, // offset
+                        1,                                    // stackSize
+                        stackSizes                            // stackSizes
                     );
                     ++analyzedExceptionHandlers;
                 }
@@ -0,0 +1,72 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Counter;
+import org.codehaus.janino.CompilationListener.Phase;
+import org.codehaus.janino.util.ClassFile;
+
+/**
+ * Helpers for reporting to an optional {@link CompilationListener}.
+ */
+final
+class CompilationEvents {
+
+    private CompilationEvents() {}
+
+    /**
+     * Reports that the <var>phase</var>, which began at <var>startNanos</var>, has completed.
+     */
+    static void
+    phaseCompleted(
+        @Nullable CompilationListener optionalListener,
+        Phase                         phase,
+        @Nullable String              subject,
+        long                          startNanos
+    ) {
+        if (optionalListener != null) optionalListener.phaseCompleted(phase, subject, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Serializes the <var>classFile</var> and reports {@link Phase#CLASS_FILE_SERIALIZATION}, {@link
+     * Counter#BYTECODE_SIZE} and {@link Counter#CONSTANT_POOL_SIZE}.
+     */
+    static byte[]
+    toByteArray(ClassFile classFile, @Nullable CompilationListener optionalListener) {
+
+        if (optionalListener == null) return classFile.toByteArray();
+
+        long   start     = System.nanoTime();
+        byte[] result    = classFile.toByteArray();
+        String className = classFile.getThisClassName();
+        optionalListener.phaseCompleted(Phase.CLASS_FILE_SERIALIZATION, className, System.nanoTime() - start);
+        optionalListener.counted(Counter.BYTECODE_SIZE, className, result.length);
+        optionalListener.counted(Counter.CONSTANT_POOL_SIZE, className, classFile.getConstantPoolSize());
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Receives structured events from the JANINO compilation pipeline, e.g. in order to feed them into a metrics system.
+ * <p>
+ *   Durations are measured with {@link System#nanoTime()}. Phases may nest: {@link Phase#SCAN} happens during {@link
+ *   Phase#PARSE}, and {@link Phase#TYPE_RESOLUTION} and {@link Phase#FLOW_ANALYSIS} happen during {@link
+ *   Phase#CODE_GENERATION}; the durations of the enclosing phases <em>include</em> those of the nested phases.
+ * </p>
+ * <p>
+ *   Some events (notably {@link Counter#ICLASS_CACHE_HITS}) are reported very frequently, so implementations should be
+ *   cheap, and must be thread-safe iff the same listener is used by multiple threads.
+ * </p>
+ *
+ * @see SimpleCompiler#setCompilationListener(CompilationListener)
+ * @see JavaSourceClassLoader#setCompilationListener(CompilationListener)
+ * @see Compiler#setCompilationListener(CompilationListener)
+ */
+public
+interface CompilationListener {
+
+    /**
+     * The phases of the compilation pipeline.
+     */
+    enum Phase {
+
+        /**
+         * Breaking one source into tokens; reported when the scanner reaches the end of input. The subject is the
+         * file name.
+         */
+        SCAN,
+
+        /**
+         * Scanning and parsing one compilation unit (resp. expression, script or class body) into an AST. The subject
+         * is the file name.
+         */
+        PARSE,
+
+        /**
+         * Loading one {@link IClass} that was not in the cache of the {@link IClassLoader}. The subject is the field
+         * descriptor of the type.
+         */
+        TYPE_RESOLUTION,
+
+        /**
+         * Compiling one compilation unit into {@link org.codehaus.janino.util.ClassFile}s. The subject is the file
+         * name.
+         */
+        CODE_GENERATION,
+
+        /**
+         * The operand stack analysis of all methods of one compilation unit. The subject is the file name.
+         */
+        FLOW_ANALYSIS,
+
+        /**
+         * Serializing one class file into bytecode. The subject is the class name.
+         */
+        CLASS_FILE_SERIALIZATION,
+
+        /**
+         * Defining one class in the JVM. The subject is the class name.
+         */
+        CLASS_DEFINITION
+    }
+
+    /**
+     * The quantities that are reported through {@link CompilationListener#counted(Counter, String, long)}.
+     */
+    enum Counter {
+
+        /**
+         * One {@link IClass} was loaded by an {@link IClassLoader}; the value is 1. The subject is the field
+         * descriptor of the type.
+         */
+        ICLASSES_LOADED,
+
+        /**
+         * An {@link IClass} (or the fact that it does not exist) was found in the cache of an {@link IClassLoader};
+         * the value is 1. The subject is the field descriptor of the type.
+         */
+        ICLASS_CACHE_HITS,
+
+        /**
+         * An {@link IClass} was not in the cache of an {@link IClassLoader}; the value is 1. The subject is the field
+         * descriptor of the type.
+         */
+        ICLASS_CACHE_MISSES,
+
+        /**
+         * The size of one class file, in bytes. The subject is the class name.
+         */
+        BYTECODE_SIZE,
+
+        /**
+         * The number of entries of the constant pool of one class file. The subject is the class name.
+         */
+        CONSTANT_POOL_SIZE
+    }
+
+    /**
+     * Reports that one <var>phase</var> of the compilation of the <var>subject</var> completed successfully.
+     *
+     * @param subject The file name, type or class name that the phase processed (see {@link Phase}), or {@code null}
+     *                if it is unknown
+     */
+    void phaseCompleted(Phase phase, @Nullable String subject, long durationNanos);
+
+    /**
+     * Reports a <var>value</var> for the given <var>counter</var>; counters are cumulative, i.e. the receiver is
+     * expected to sum up the values.
+     *
+     * @param subject The file name, type or class name that the value relates to (see {@link Counter}), or {@code
+     *                null} if it is unknown
+     */
+    void counted(Counter counter, @Nullable String subject, long value);
+}
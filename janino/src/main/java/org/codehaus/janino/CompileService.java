@@ -0,0 +1,274 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ICookable;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Cooks {@link ICookable}s asynchronously, on a bounded set of worker threads, so that the threads that request
+ * compilations are not blocked, and bursts of compilations do not compete with them for CPU.
+ * <p>
+ *   Compilations are started in the order of their priority, and, among equal priorities, in the order of their
+ *   submission. A compilation can be cancelled through {@link Future#cancel(boolean)}, and can have a deadline.
+ *   JANINO checks for cancellation and deadline expiry before each statement that it parses or compiles, and then
+ *   abandons the compilation; a cancelled compilation completes with a {@link
+ *   java.util.concurrent.CancellationException}, and an expired one with a {@link CompileException} (wrapped in an
+ *   {@link ExecutionException}). {@code cancel(true)} additionally interrupts the worker thread, which may be
+ *   necessary to stop an {@link ICookable} that blocks, e.g. on I/O.
+ * </p>
+ * <p>
+ *   Notice that an {@link ICookable} is not thread-safe: Do not use it until its compilation has completed. Also
+ *   notice that only JANINO's own {@link ICookable}s can be stopped early; others run to completion, and their result
+ *   is discarded.
+ * </p>
+ * <p>
+ *   This class is thread-safe.
+ * </p>
+ */
+public
+class CompileService {
+
+    /**
+     * The compilation that the current thread executes, if any.
+     */
+    private static final ThreadLocal<Job<?>> CURRENT_JOB = new ThreadLocal<Job<?>>();
+
+    /**
+     * The number of compilations that are currently executing, in all {@link CompileService}s; while it is zero,
+     * {@link #checkStopped(Location)} need not look up the {@link #CURRENT_JOB}.
+     */
+    private static final AtomicInteger RUNNING_JOBS = new AtomicInteger();
+
+    private final ThreadPoolExecutor workers;
+    private final int                maxQueuedCompilations;
+    private final AtomicLong         nextSequenceNumber = new AtomicLong();
+
+    /**
+     * Creates a service with daemon worker threads.
+     *
+     * @see #CompileService(int, int, ThreadFactory)
+     */
+    public
+    CompileService(int maxConcurrentCompilations, int maxQueuedCompilations) {
+        this(maxConcurrentCompilations, maxQueuedCompilations, CompileService.daemonThreadFactory("janino-compile"));
+    }
+
+    /**
+     * @param maxConcurrentCompilations The number of worker threads
+     * @param maxQueuedCompilations     How many compilations may wait for a worker thread; further submissions are
+     *                                  rejected
+     * @param threadFactory             Creates the worker threads; e.g. a factory for virtual threads
+     */
+    public
+    CompileService(int maxConcurrentCompilations, int maxQueuedCompilations, ThreadFactory threadFactory) {
+        this.maxQueuedCompilations = maxQueuedCompilations;
+        this.workers               = new ThreadPoolExecutor(
+            maxConcurrentCompilations,             // corePoolSize
+            maxConcurrentCompilations,             // maximumPoolSize
+            60, TimeUnit.SECONDS,                  // keepAliveTime
+            new PriorityBlockingQueue<Runnable>(), // workQueue
+            threadFactory                          // threadFactory
+        );
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Equivalent to {@link #submit(ICookable, String, String, int, long) submit(cookable, null, source, 0, 0)}.
+     */
+    public <T extends ICookable> Future<T>
+    submit(T cookable, String source) { return this.submit(cookable, null, source, 0, 0); }
+
+    /**
+     * Schedules the cooking of the given <var>source</var> by the given <var>cookable</var>.
+     *
+     * @param priority                   Compilations with higher values are started first
+     * @param timeoutMillis              The deadline of the compilation, relative to now, and including the time that
+     *                                   the compilation waits for a worker thread; zero or less means no deadline
+     * @return                           Completes with the <var>cookable</var> when the cooking has completed
+     * @throws RejectedExecutionException Too many compilations are waiting for a worker thread, or the service was
+     *                                    shut down
+     */
+    public synchronized <T extends ICookable> Future<T>
+    submit(T cookable, @Nullable String optionalFileName, String source, int priority, long timeoutMillis) {
+
+        if (this.workers.getQueue().size() >= this.maxQueuedCompilations) {
+
+            // Maybe some of the waiting compilations were cancelled.
+            this.workers.purge();
+            if (this.workers.getQueue().size() >= this.maxQueuedCompilations) {
+                throw new RejectedExecutionException("Too many pending compilations");
+            }
+        }
+
+        Job<T> job = new Job<T>(
+            cookable,
+            optionalFileName,
+            source,
+            priority,
+            this.nextSequenceNumber.getAndIncrement(),
+            timeoutMillis > 0 ? Long.valueOf(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) : null
+        );
+
+        this.workers.execute(job);
+
+        return job;
+    }
+
+    /**
+     * Lets the pending compilations complete, but accepts no new ones.
+     */
+    public void
+    shutdown() { this.workers.shutdown(); }
+
+    /**
+     * Cancels all pending compilations, and accepts no new ones.
+     */
+    public void
+    shutdownNow() {
+        for (Object r : this.workers.shutdownNow()) ((Job<?>) r).cancel(true);
+    }
+
+    /**
+     * Invoked by the parser and the compiler before each statement.
+     *
+     * @throws CompileException The compilation that the current thread executes was cancelled, or its deadline has
+     *                          expired
+     */
+    static void
+    checkStopped(@Nullable Location location) throws CompileException {
+
+        // Fast path for the (common) cooks that do not execute through a compile service.
+        if (CompileService.RUNNING_JOBS.get() == 0) return;
+
+        Job<?> job = (Job<?>) CompileService.CURRENT_JOB.get();
+        if (job == null) return;
+
+        if (job.cancelled) throw new CompileException("Compilation cancelled", location);
+
+        Long deadline = job.deadline;
+        if (deadline != null && System.nanoTime() - deadline.longValue() >= 0) {
+            throw new CompileException("Compilation deadline exceeded", location);
+        }
+    }
+
+    private static ThreadFactory
+    daemonThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+
+            private final AtomicLong count = new AtomicLong();
+
+            @Override public Thread
+            newThread(@Nullable Runnable r) {
+                Thread result = new Thread(r, namePrefix + "-" + this.count.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        };
+    }
+
+    /**
+     * One scheduled compilation.
+     */
+    private static
+    class Job<T extends ICookable> extends FutureTask<T> implements Comparable<Object> {
+
+        private final int  priority;
+        private final long sequenceNumber;
+
+        /**
+         * The {@link System#nanoTime()} at which the compilation should be abandoned, or {@code null}.
+         */
+        @Nullable final Long deadline;
+
+        volatile boolean cancelled;
+
+        Job(
+            final T                cookable,
+            @Nullable final String optionalFileName,
+            final String           source,
+            int                    priority,
+            long                   sequenceNumber,
+            @Nullable Long         deadline
+        ) {
+            super(new Callable<T>() {
+
+                @Override public T
+                call() throws Exception {
+                    CompileService.checkStopped(null);
+                    cookable.cook(optionalFileName, new StringReader(source));
+                    return cookable;
+                }
+            });
+            this.priority       = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.deadline       = deadline;
+        }
+
+        @Override public void
+        run() {
+            CompileService.CURRENT_JOB.set(this);
+            CompileService.RUNNING_JOBS.incrementAndGet();
+            try {
+                super.run();
+            } finally {
+                CompileService.RUNNING_JOBS.decrementAndGet();
+                CompileService.CURRENT_JOB.remove();
+            }
+        }
+
+        @Override public boolean
+        cancel(boolean mayInterruptIfRunning) {
+            this.cancelled = true;
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override public int
+        compareTo(@Nullable Object o) {
+            Job<?> that = (Job<?>) o;
+            assert that != null;
+
+            if (this.priority != that.priority) return this.priority > that.priority ? -1 : 1;
+            return this.sequenceNumber < that.sequenceNumber ? -1 : this.sequenceNumber > that.sequenceNumber ? 1 : 0;
+        }
+    }
+}
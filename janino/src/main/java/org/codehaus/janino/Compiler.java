@@ -247,6 +247,8 @@ class Compiler {
     @Nullable private ErrorHandler    compileErrorHandler;
     private EnumSet<JaninoOption>     options = EnumSet.noneOf(JaninoOption.class);
 
+    @Nullable private CompilationListener compilationListener;
+
     private final IClassLoader       iClassLoader;
     private final List<UnitCompiler> parsedCompilationUnits = new ArrayList<UnitCompiler>();
 
@@ -423,6 +425,18 @@ class Compiler {
     public void
     setWarningHandler(@Nullable WarningHandler warningHandler) { this.warningHandler = warningHandler; }
 
+    /**
+     * Reports the scanning, parsing, type resolution, compilation and class file serialization to the given listener;
+     * see {@link CompilationListener}. This is a structured alternative to {@link #setVerbose(boolean)}.
+     *
+     * @param compilationListener {@code null} to disable reporting (which is the default)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener compilationListener) {
+        this.compilationListener = compilationListener;
+        this.iClassLoader.setCompilationListener(compilationListener);
+    }
+
     /**
      * @return A reference to the currently effective compilation options; changes to it take
      *         effect immediately
@@ -523,6 +537,7 @@ class Compiler {
 
                 unitCompiler.setCompileErrorHandler(this.compileErrorHandler);
                 unitCompiler.setWarningHandler(this.warningHandler);
+                unitCompiler.setCompilationListener(this.compilationListener);
 
                 this.benchmark.beginReporting("Compiling compilation unit \"" + sourceFile + "\"");
                 ClassFile[] classFiles;
@@ -569,15 +584,24 @@ class Compiler {
         @Nullable String characterEncoding
     ) throws CompileException, IOException {
         try {
+            long start = System.nanoTime();
 
             Scanner scanner = new Scanner(fileName, inputStream, characterEncoding);
+            scanner.setCompilationListener(this.compilationListener);
 
             Parser parser = new Parser(scanner);
             parser.setWarningHandler(this.warningHandler);
 
             this.benchmark.beginReporting("Parsing \"" + fileName + "\"");
             try {
-                return parser.parseCompilationUnit();
+                Java.CompilationUnit result = parser.parseCompilationUnit();
+                CompilationEvents.phaseCompleted(
+                    this.compilationListener,
+                    CompilationListener.Phase.PARSE,
+                    fileName,
+                    start
+                );
+                return result;
             } finally {
                 this.benchmark.endReporting();
             }
@@ -645,9 +669,10 @@ class Compiler {
                 }
             };
         }
-        OutputStream os = rc.createResource(classFileResourceName);
+        byte[]       bytecode = CompilationEvents.toByteArray(classFile, this.compilationListener);
+        OutputStream os       = rc.createResource(classFileResourceName);
         try {
-            classFile.store(os);
+            os.write(bytecode);
         } catch (IOException ioe) {
             try { os.close(); } catch (IOException e) {}
             os = null;
@@ -0,0 +1,241 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Limits the CPU time and the memory allocation of code that was compiled with option {@link
+ * JaninoOption#EXECUTION_BUDGET_CHECKS}, e.g.
+ * <pre>
+ *     ExecutionBudget budget = new ExecutionBudget(100, 10000000); // 100 ms, 10 MB
+ *     budget.start();
+ *     try {
+ *         scriptEvaluator.evaluate(arguments);
+ *     } finally {
+ *         budget.stop();
+ *     }
+ * </pre>
+ * <p>
+ *   The compiled code invokes {@link #tick()} at the start of each method; that method merely counts down a counter
+ *   of the current thread's budget, and only every {@value #CHECK_INTERVAL} invocations examines the budget. Each
+ *   method invocation also keeps a countdown in a local variable, which is decremented on each loop iteration, and
+ *   only when it reaches zero the compiled code invokes {@link #check()}. Either way, if the budget is exhausted, an
+ *   {@link ExhaustedError} is thrown. Thus the limits are enforced with some delay, but with very little overhead.
+ * </p>
+ * <p>
+ *   Once exhausted, a budget remains exhausted until it is {@link #start()}ed again. The compiled code invokes {@link
+ *   #rethrowIfExhausted()} at the start of each CATCH clause and of the exception handler of each FINALLY clause,
+ *   so that it cannot catch the {@link ExhaustedError} and carry on. (Consequently, when the budget is exhausted,
+ *   CATCH and FINALLY clauses are not executed for the {@link ExhaustedError}.)
+ * </p>
+ * <p>
+ *   Notice that the class loader of the compiled code must be able to load this class.
+ * </p>
+ */
+public final
+class ExecutionBudget {
+
+    /**
+     * How many method invocations, or how many loop iterations within one method invocation, happen before the budget
+     * of the current thread is examined.
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    private static final ThreadLocal<ExecutionBudget> CURRENT = new ThreadLocal<ExecutionBudget>();
+
+    /**
+     * {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)}, or {@code null} if this JVM does not
+     * support measuring the memory allocation of threads.
+     */
+    @Nullable private static final Method GET_THREAD_ALLOCATED_BYTES = ExecutionBudget.getThreadAllocatedBytesMethod();
+
+    private final long maxNanos;
+    private final long maxAllocatedBytes;
+
+    // Set by "start()".
+    private long                      deadline;
+    private long                      allocationLimit;
+    @Nullable private ExecutionBudget previous;
+
+    /**
+     * Counts down the invocations of {@link #tick()}. Needs no synchronization, because a budget is only effective
+     * for the thread that {@link #start()}ed it.
+     */
+    private int countdown;
+
+    /**
+     * The message of the {@link ExhaustedError}, or {@code null} while this budget is not exhausted.
+     */
+    @Nullable private String exhaustion;
+
+    /**
+     * @param maxMillis         The maximum execution time in milliseconds, or -1 for "unlimited"
+     * @param maxAllocatedBytes The maximum number of bytes to allocate on the heap, or -1 for "unlimited"
+     */
+    public
+    ExecutionBudget(long maxMillis, long maxAllocatedBytes) {
+        this.maxNanos          = maxMillis == -1 ? -1 : maxMillis * 1000000L;
+        this.maxAllocatedBytes = maxAllocatedBytes;
+    }
+
+    /**
+     * @return Whether this JVM supports budgets for memory allocation
+     */
+    public static boolean
+    isAllocationMeasurementSupported() { return ExecutionBudget.GET_THREAD_ALLOCATED_BYTES != null; }
+
+    /**
+     * Starts the time and the allocation measurement, and makes this budget effective for the current thread, until
+     * {@link #stop()} is invoked.
+     *
+     * @throws UnsupportedOperationException A memory allocation limit is configured, but this JVM does not support
+     *                                       measuring the memory allocation of threads
+     */
+    public void
+    start() {
+        if (this.maxNanos != -1) this.deadline = System.nanoTime() + this.maxNanos;
+        if (this.maxAllocatedBytes != -1) {
+            if (!ExecutionBudget.isAllocationMeasurementSupported()) {
+                throw new UnsupportedOperationException("Measuring the memory allocation of threads");
+            }
+            this.allocationLimit = ExecutionBudget.allocatedBytes() + this.maxAllocatedBytes;
+        }
+        this.countdown  = ExecutionBudget.CHECK_INTERVAL;
+        this.exhaustion = null;
+
+        this.previous = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        ExecutionBudget.CURRENT.set(this);
+    }
+
+    /**
+     * Makes the budget that was effective before {@link #start()} effective again.
+     */
+    public void
+    stop() {
+        ExecutionBudget.CURRENT.set(this.previous);
+        this.previous = null;
+    }
+
+    /**
+     * Invoked by the compiled code at the start of each method; examines the budget of the current thread only every
+     * {@value #CHECK_INTERVAL} invocations.
+     *
+     * @throws ExhaustedError The budget of the current thread is exhausted
+     */
+    public static void
+    tick() {
+        ExecutionBudget budget = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        if (budget == null || --budget.countdown > 0) return;
+
+        budget.countdown = ExecutionBudget.CHECK_INTERVAL;
+        budget.check2();
+    }
+
+    /**
+     * Invoked by the compiled code when the loop iteration countdown of a method invocation reaches zero; examines
+     * the budget of the current thread.
+     *
+     * @throws ExhaustedError The budget of the current thread is exhausted
+     */
+    public static void
+    check() {
+        ExecutionBudget budget = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        if (budget != null) budget.check2();
+    }
+
+    /**
+     * Invoked by the compiled code at the start of each exception handler.
+     *
+     * @throws ExhaustedError The budget of the current thread was exhausted before
+     */
+    public static void
+    rethrowIfExhausted() {
+        ExecutionBudget budget = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        if (budget == null) return;
+
+        String message = budget.exhaustion;
+        if (message != null) throw new ExhaustedError(message);
+    }
+
+    private void
+    check2() {
+        if (this.exhaustion == null) {
+            if (this.maxNanos != -1 && System.nanoTime() - this.deadline > 0) {
+                this.exhaustion = "Execution time exceeds " + this.maxNanos / 1000000L + " ms";
+            } else
+            if (this.maxAllocatedBytes != -1 && ExecutionBudget.allocatedBytes() > this.allocationLimit) {
+                this.exhaustion = "Memory allocation exceeds " + this.maxAllocatedBytes + " bytes";
+            } else
+            {
+                return;
+            }
+        }
+        throw new ExhaustedError(this.exhaustion);
+    }
+
+    /**
+     * Is thrown by {@link ExecutionBudget#check()} when the budget of the current thread is exhausted. It is an {@link
+     * Error} (and not an {@link Exception}) so that it is not accidentally caught by the compiled code.
+     */
+    public static
+    class ExhaustedError extends Error {
+
+        private static final long serialVersionUID = 1L;
+
+        public
+        ExhaustedError(String message) { super(message); }
+    }
+
+    private static long
+    allocatedBytes() {
+        Method m = ExecutionBudget.GET_THREAD_ALLOCATED_BYTES;
+        assert m != null;
+        try {
+            return (Long) m.invoke(ManagementFactory.getThreadMXBean(), new Object[] { Thread.currentThread().getId() });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nullable private static Method
+    getThreadAllocatedBytesMethod() {
+        try {
+            Method result = Class.forName("com.sun.management.ThreadMXBean").getMethod(
+                "getThreadAllocatedBytes",
+                new Class<?>[] { long.class }
+            );
+            result.invoke(ManagementFactory.getThreadMXBean(), new Object[] { Thread.currentThread().getId() });
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * The base class of the "bindings" classes that {@link ExpressionEvaluator#cookWithBindings(String, String[],
+ * Class[])} generates. A bindings object has one typed field ("slot") per variable, and evaluates the expression
+ * against these fields.
+ * <p>
+ *   The {@code set...()} methods store a value into the slot with the given index, where the indexes are determined
+ *   through {@link ExpressionEvaluator#getSlot(String)}. The generated class overrides the methods that match the
+ *   types of its slots, e.g. {@link #setInt(int, int)} for its {@code int} slots, so that these store the value
+ *   without boxing. Likewise, it overrides the {@code evaluate...()} method that matches the expression type, e.g.
+ *   {@link #evaluateInt()} for an {@code int} expression, so that it returns the value without boxing.
+ * </p>
+ * <p>
+ *   Bindings objects are not thread-safe; use one per thread.
+ * </p>
+ */
+public abstract
+class ExpressionBindings {
+
+    /**
+     * @return The value of the expression, evaluated against the current slot values, and boxed if the expression
+     *         type is primitive
+     */
+    @Nullable public abstract Object
+    evaluate();
+
+    /**
+     * @return The value of an {@code int} (or {@code byte}, {@code short} or {@code char}) expression
+     */
+    public int
+    evaluateInt() { return ((Number) ExpressionBindings.notNull(this.evaluate())).intValue(); }
+
+    /**
+     * @return The value of a {@code long} expression
+     */
+    public long
+    evaluateLong() { return ((Number) ExpressionBindings.notNull(this.evaluate())).longValue(); }
+
+    /**
+     * @return The value of a {@code double} (or {@code float}) expression
+     */
+    public double
+    evaluateDouble() { return ((Number) ExpressionBindings.notNull(this.evaluate())).doubleValue(); }
+
+    /**
+     * @return The value of a {@code boolean} expression
+     */
+    public boolean
+    evaluateBoolean() { return ((Boolean) ExpressionBindings.notNull(this.evaluate())).booleanValue(); }
+
+    /**
+     * Stores the <var>value</var> into the given slot; a primitive slot requires a value of the corresponding wrapper
+     * type.
+     *
+     * @throws IndexOutOfBoundsException The <var>slot</var> does not exist
+     * @throws ClassCastException        The <var>value</var> does not match the type of the <var>slot</var>
+     */
+    public void
+    set(int slot, @Nullable Object value) { throw new IndexOutOfBoundsException("Slot " + slot); }
+
+    /**
+     * Stores the <var>value</var> into the given {@code int} slot.
+     */
+    public void
+    setInt(int slot, int value) { this.set(slot, value); }
+
+    /**
+     * Stores the <var>value</var> into the given {@code long} slot.
+     */
+    public void
+    setLong(int slot, long value) { this.set(slot, value); }
+
+    /**
+     * Stores the <var>value</var> into the given {@code double} slot.
+     */
+    public void
+    setDouble(int slot, double value) { this.set(slot, value); }
+
+    /**
+     * Stores the <var>value</var> into the given {@code boolean} slot.
+     */
+    public void
+    setBoolean(int slot, boolean value) { this.set(slot, value); }
+
+    private static Object
+    notNull(@Nullable Object value) {
+        if (value == null) throw new NullPointerException("Expression value is null");
+        return value;
+    }
+}
@@ -28,7 +28,10 @@ package org.codehaus.janino;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashSet;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -39,12 +42,14 @@ import org.codehaus.commons.compiler.ICookable;
 import org.codehaus.commons.compiler.IExpressionEvaluator;
 import org.codehaus.commons.compiler.IScriptEvaluator;
 import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.codehaus.commons.compiler.Location;
 import org.codehaus.commons.nullanalysis.Nullable;
 import org.codehaus.janino.Java.AmbiguousName;
 import org.codehaus.janino.Java.BlockStatement;
 import org.codehaus.janino.Java.MethodDeclarator;
 import org.codehaus.janino.Java.Rvalue;
 import org.codehaus.janino.util.AbstractTraverser;
+import org.codehaus.janino.util.DeepCopier;
 
 /**
  * This {@link IExpressionEvaluator} is implemented by creating and compiling a temporary compilation unit defining one
@@ -251,6 +256,57 @@ class ExpressionEvaluator extends ScriptEvaluator implements IExpressionEvaluato
 
     public ExpressionEvaluator() {}
 
+    /**
+     * The parameters of the expression while {@link #cookColumnar(String, String[], Class[])} is executing, otherwise
+     * {@code null}.
+     */
+    @Nullable private String[]   columnarParameterNames;
+    @Nullable private Class<?>[] columnarParameterTypes;
+
+    /**
+     * The variable types while {@link #cookWithBindings(String, String[], Class[])} is executing, otherwise {@code
+     * null}.
+     */
+    @Nullable private Class<?>[] bindingVariableTypes;
+
+    /**
+     * The variable names iff the last cook was a successful {@link #cookWithBindings(String, String[], Class[])},
+     * otherwise {@code null}.
+     */
+    @Nullable private String[] bindingVariableNames;
+
+    /**
+     * Determines which of the names that {@link #cookInferringParameters(Scanner, ParameterTypeResolver)} finds in an
+     * expression are parameters, and their types.
+     */
+    public
+    interface ParameterTypeResolver {
+
+        /**
+         * @return The type of the parameter, or {@code null} if the name does not designate a parameter (but, e.g., a
+         *         field or a type)
+         */
+        @Nullable Class<?>
+        getParameterType(String name);
+    }
+
+    /**
+     * Makes all inferred parameters of type {@link Object}.
+     */
+    private static final ParameterTypeResolver OBJECT_PARAMETER_TYPES = new ParameterTypeResolver() {
+        @Override @Nullable public Class<?> getParameterType(String name) { return Object.class; }
+    };
+
+    /**
+     * Non-{@code null} while {@link #cookInferringParameters(Scanner, ParameterTypeResolver)} is executing.
+     */
+    @Nullable private ParameterTypeResolver parameterTypeResolver;
+
+    /**
+     * The parameter names inferred by {@link #cookInferringParameters(Scanner, ParameterTypeResolver)}.
+     */
+    @Nullable private String[] inferredParameterNames;
+
     /**
      * @deprecated Must not be used on an {@link IExpressionEvaluator}; use {@link #setExpressionType(Class)} instead
      */
@@ -284,7 +340,13 @@ class ExpressionEvaluator extends ScriptEvaluator implements IExpressionEvaluato
         // Parse the expression.
         Rvalue value = parser.parseExpression().toRvalueOrCompileException();
 
+        ParameterTypeResolver ptr = this.parameterTypeResolver;
+        if (ptr != null) this.inferParameters(value, ptr);
+
         Class<?> et = this.getReturnType(idx);
+        if (this.columnarParameterNames != null) {
+            resultStatements.add(this.makeColumnarLoops(value));
+        } else
         if (et == void.class) {
             resultStatements.add(new Java.ExpressionStatement(value));
         } else {
@@ -296,6 +358,570 @@ class ExpressionEvaluator extends ScriptEvaluator implements IExpressionEvaluato
         }
     }
 
+    /**
+     * Cooks the expression with parameters that are inferred from the expression itself. This is like
+     * <pre>
+     *     String[] parameterNames = ExpressionEvaluator.guessParameterNames(scanner);
+     *     ee.setParameters(parameterNames, <var>types-from-resolver</var>);
+     *     ee.cook(scanner);
+     * </pre>
+     * , except that the expression is scanned and parsed only <em>once</em>: The parameters are inferred from the
+     * parsed expression (with the same strategy as {@link #guessParameterNames(Scanner)}) before the method is
+     * generated.
+     *
+     * @param optionalResolver Determines the types of the inferred parameters, and may reject names as parameters;
+     *                         {@code null} means that all inferred parameters are of type {@link Object}
+     * @return                 The names of the inferred parameters, in order of their first appearance in the
+     *                         expression; these are also the parameters of the generated method
+     */
+    public final String[]
+    cookInferringParameters(Scanner scanner, @Nullable ParameterTypeResolver optionalResolver)
+    throws CompileException, IOException {
+
+        this.setScriptCount(1);
+
+        this.inferredParameterNames = null;
+        this.parameterTypeResolver  = (
+            optionalResolver != null
+            ? optionalResolver
+            : ExpressionEvaluator.OBJECT_PARAMETER_TYPES
+        );
+        try {
+            this.cook(scanner);
+        } finally {
+            this.parameterTypeResolver = null;
+        }
+
+        String[] result = this.inferredParameterNames;
+        assert result != null;
+        return result;
+    }
+
+    /**
+     * Configures the parameters that {@link #cookInferringParameters(Scanner, ParameterTypeResolver)} infers from the
+     * parsed <var>expression</var>.
+     */
+    private void
+    inferParameters(Rvalue expression, ParameterTypeResolver resolver) {
+
+        List<String>   names = new ArrayList<String>();
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        for (Object o : ExpressionEvaluator.freeNames(expression)) {
+            String   name = (String) o;
+            Class<?> type = resolver.getParameterType(name);
+            if (type == null) continue;
+            names.add(name);
+            types.add(type);
+        }
+
+        String[] pns = (String[]) names.toArray(new String[names.size()]);
+        this.setParameters(pns, (Class[]) types.toArray(new Class<?>[types.size()]));
+        this.inferredParameterNames = pns;
+    }
+
+    /**
+     * Cooks the <var>expression</var> for "columnar" evaluation, i.e. for evaluating it for many "rows" of parameter
+     * values with only one method invocation. The generated method has the signature
+     * <pre>
+     *     public static void eval0(
+     *         int      rowCount,
+     *         int[]    selection,
+     *         <var>P1</var>[]     column1,
+     *         <var>P2</var>[]     column2,
+     *         ...
+     *         <var>R</var>[]      result
+     *     )
+     * </pre>
+     * where <var>P1</var>, <var>P2</var>, ... are the <var>parameterTypes</var>, and <var>R</var> is the {@link
+     * #setExpressionType(Class) expression type}; e.g. {@code int[]} for an {@code int} parameter, and {@code
+     * Object[]} for an {@code Object} parameter. For each row index {@code i} in {@code 0 ... rowCount-1} (or, if
+     * the {@code selection} is not {@code null}, in {@code selection[0 ... rowCount-1]}), it evaluates the
+     * expression with the parameter values {@code column1[i]}, {@code column2[i]}, ..., and stores the value in {@code
+     * result[i]}.
+     * <p>
+     *   Compared to calling a {@link #createFastEvaluator(String, Class, String[]) fast evaluator} once per row, this
+     *   eliminates the per-row interface invocation and argument boxing; and the loop is monomorphic, which makes it
+     *   easy for the JIT compiler to optimize.
+     * </p>
+     * <p>
+     *   Invoke the generated method through {@link #evaluateColumnar(int, int[], Object[], Object)} (reflectively, but
+     *   only once per batch of rows), or through {@link #getMethod()}.
+     * </p>
+     *
+     * @throws IllegalArgumentException The expression type is {@code void}
+     */
+    public final void
+    cookColumnar(String expression, String[] parameterNames, Class<?>[] parameterTypes) throws CompileException {
+
+        this.setScriptCount(1);
+
+        Class<?> resultType = this.getReturnType(0);
+        if (resultType == void.class) throw new IllegalArgumentException("Expression type must not be VOID");
+
+        int        n   = parameterNames.length;
+        String[]   pns = new String[n + 3];
+        Class<?>[] pts = new Class<?>[n + 3];
+        pns[0] = "#rowCount";
+        pts[0] = int.class;
+        pns[1] = "#selection";
+        pts[1] = int[].class;
+        for (int i = 0; i < n; i++) {
+            pns[2 + i] = parameterNames[i] + "#column";
+            pts[2 + i] = Array.newInstance(parameterTypes[i], 0).getClass();
+        }
+        pns[n + 2] = "#result";
+        pts[n + 2] = Array.newInstance(resultType, 0).getClass();
+
+        // Configure the signature of the generated method only while cooking, and restore the configuration
+        // afterwards, so that it is not changed for the following cooks.
+        String[]   originalParameterNames = this.getParameterNames(0);
+        Class<?>[] originalParameterTypes = this.getParameterTypes(0);
+        this.setParameters(pns, pts);
+        this.setExpressionType(void.class);
+
+        this.columnarParameterNames = parameterNames;
+        this.columnarParameterTypes = parameterTypes;
+        try {
+            this.cook(expression);
+        } finally {
+            this.columnarParameterNames = null;
+            this.columnarParameterTypes = null;
+            this.setParameters(originalParameterNames, originalParameterTypes);
+            this.setExpressionType(resultType);
+        }
+    }
+
+    /**
+     * Invokes the method generated by {@link #cookColumnar(String, String[], Class[])}.
+     *
+     * @param columns One array per parameter, e.g. an {@code int[]} for an {@code int} parameter
+     * @param result  An array of the expression type
+     */
+    public final void
+    evaluateColumnar(int rowCount, @Nullable int[] selection, Object[] columns, Object result)
+    throws InvocationTargetException {
+
+        Object[] arguments = new Object[columns.length + 3];
+        arguments[0] = rowCount;
+        arguments[1] = selection;
+        System.arraycopy(columns, 0, arguments, 2, columns.length);
+        arguments[columns.length + 2] = result;
+
+        this.evaluate(0, arguments);
+    }
+
+    /**
+     * Creates the statements of the method generated by {@link #cookColumnar(String, String[], Class[])}:
+     * <pre>
+     *     if (#selection == null) {
+     *         for (int #row = 0; #row < #rowCount; ++#row) {
+     *             final P1 p1 = p1#column[#row];
+     *             ...
+     *             #result[#row] = <var>value</var>;
+     *         }
+     *     } else {
+     *         for (int #i = 0; #i < #rowCount; ++#i) {
+     *             final int #row = #selection[#i];
+     *             final P1 p1 = p1#column[#row];
+     *             ...
+     *             #result[#row] = <var>value</var>;
+     *         }
+     *     }
+     * </pre>
+     * The synthetic names contain a "#", so that they cannot clash with, and are not visible to, the names in the
+     * expression.
+     */
+    private Java.BlockStatement
+    makeColumnarLoops(Rvalue value) throws CompileException {
+        Location loc = value.getLocation();
+
+        // Without selection vector.
+        Java.Block body1 = new Java.Block(loc);
+        this.addColumnarLoopBody(body1, value);
+        Java.ForStatement loop1 = ExpressionEvaluator.countingLoop(loc, "#row", body1);
+
+        // With selection vector; the expression must be copied, because an AST node can only appear once.
+        Java.Block body2 = new Java.Block(loc);
+        body2.addStatement(ExpressionEvaluator.intVariable(loc, "#row", new Java.ArrayAccessExpression(
+            loc,
+            ExpressionEvaluator.name(loc, "#selection"),
+            ExpressionEvaluator.name(loc, "#i")
+        )));
+        this.addColumnarLoopBody(body2, new DeepCopier().copyRvalue(value));
+        Java.ForStatement loop2 = ExpressionEvaluator.countingLoop(loc, "#i", body2);
+
+        return new Java.IfStatement(
+            loc,
+            new Java.BinaryOperation(loc, ExpressionEvaluator.name(loc, "#selection"), "==", new Java.NullLiteral(loc)),
+            loop1,
+            loop2
+        );
+    }
+
+    private void
+    addColumnarLoopBody(Java.Block block, Rvalue value) throws CompileException {
+        Location loc = value.getLocation();
+
+        String[]   pns = this.columnarParameterNames;
+        Class<?>[] pts = this.columnarParameterTypes;
+        assert pns != null && pts != null;
+
+        for (int i = 0; i < pns.length; i++) {
+            block.addStatement(new Java.LocalVariableDeclarationStatement(
+                loc,                                 // location
+                new Java.Modifiers(Mod.FINAL),       // modifiers
+                this.classToType(loc, pts[i]),       // type
+                new Java.VariableDeclarator[] {      // variableDeclarators
+                    new Java.VariableDeclarator(loc, pns[i], 0, new Java.ArrayAccessExpression(
+                        loc,
+                        ExpressionEvaluator.name(loc, pns[i] + "#column"),
+                        ExpressionEvaluator.name(loc, "#row")
+                    )),
+                }
+            ));
+        }
+        block.addStatement(new Java.ExpressionStatement(new Java.Assignment(
+            loc,
+            new Java.ArrayAccessExpression(
+                loc,
+                ExpressionEvaluator.name(loc, "#result"),
+                ExpressionEvaluator.name(loc, "#row")
+            ),
+            "=",
+            value
+        )));
+    }
+
+    /**
+     * @return A FOR statement that counts the local variable <var>counter</var> from zero to {@code #rowCount - 1}
+     */
+    private static Java.ForStatement
+    countingLoop(Location loc, String counter, Java.BlockStatement body) throws CompileException {
+
+        Rvalue condition = new Java.BinaryOperation(
+            loc,
+            ExpressionEvaluator.name(loc, counter),
+            "<",
+            ExpressionEvaluator.name(loc, "#rowCount")
+        );
+
+        return new Java.ForStatement(
+            loc,                                                                                  // location
+            ExpressionEvaluator.intVariable(loc, counter, new Java.IntegerLiteral(loc, "0")),     // optionalInit
+            condition,                                                                            // optionalCondition
+            new Rvalue[] { new Java.Crement(loc, "++", ExpressionEvaluator.name(loc, counter)) }, // optionalUpdate
+            body                                                                                  // body
+        );
+    }
+
+    private static Java.LocalVariableDeclarationStatement
+    intVariable(Location loc, String name, Rvalue initializer) throws CompileException {
+        return new Java.LocalVariableDeclarationStatement(
+            loc,                                             // location
+            new Java.Modifiers(),                            // modifiers
+            new Java.PrimitiveType(loc, Java.Primitive.INT), // type
+            new Java.VariableDeclarator[] {                  // variableDeclarators
+                new Java.VariableDeclarator(loc, name, 0, initializer),
+            }
+        );
+    }
+
+    private static Java.AmbiguousName
+    name(Location loc, String name) { return new Java.AmbiguousName(loc, new String[] { name }); }
+
+    /**
+     * Cooks the <var>expression</var> for evaluation against a "bindings object" that has one typed field ("slot") per
+     * variable, instead of against method parameters. Free names in the expression designate the slots, e.g.
+     * <pre>
+     *     ExpressionEvaluator ee = new ExpressionEvaluator();
+     *     ee.setExpressionType(double.class);
+     *     ee.cookWithBindings(
+     *         "price * quantity",
+     *         new String[] { "price", "quantity" },
+     *         new Class[] { double.class, int.class }
+     *     );
+     *
+     *     int priceSlot = ee.getSlot("price"), quantitySlot = ee.getSlot("quantity");
+     *     ExpressionBindings b = ee.newBindings();
+     *     for (...) {
+     *         b.setDouble(priceSlot, ...);
+     *         b.setInt(quantitySlot, ...);
+     *         double total = b.evaluateDouble();
+     *     }
+     * </pre>
+     * <p>
+     *   Compared to {@link #evaluate(Object[])}, this eliminates the argument array, the boxing of primitive values
+     *   and the reflective method invocation; slots that do not change need not be set again.
+     * </p>
+     * <p>
+     *   The generated class extends {@link ExpressionBindings}, thus the {@link #setParentClassLoader(ClassLoader)
+     *   parent class loader} must be able to load that class. The configured extended class, implemented interfaces,
+     *   method name, parameters and thrown exceptions are ignored while cooking, and remain in effect for the
+     *   following cooks.
+     * </p>
+     *
+     * @param variableTypes The types of the variables; these must have a canonical name, i.e. local and anonymous
+     *                      classes are not allowed
+     * @throws IllegalArgumentException The expression type is {@code void}
+     */
+    public final void
+    cookWithBindings(String expression, String[] variableNames, Class<?>[] variableTypes) throws CompileException {
+
+        if (variableNames.length != variableTypes.length) {
+            throw new IllegalArgumentException("Variable names and types do not match");
+        }
+
+        this.setScriptCount(1);
+
+        if (this.getReturnType(0) == void.class) throw new IllegalArgumentException("Expression type must not be VOID");
+
+        // Configure the generated class and method only while cooking, and restore the configuration afterwards,
+        // so that it is not changed for the following cooks.
+        @Nullable Class<?> originalExtendedClass         = this.getExtendedClass();
+        Class<?>[]         originalImplementedInterfaces = this.getImplementedInterfaces();
+        boolean            originalStaticMethod          = this.isStaticMethod(0);
+        String             originalMethodName            = this.getMethodName(0);
+        String[]           originalParameterNames        = this.getParameterNames(0);
+        Class<?>[]         originalParameterTypes        = this.getParameterTypes(0);
+        Class<?>[]         originalThrownExceptions      = this.getThrownExceptions(0);
+        this.setExtendedClass(ExpressionBindings.class);
+        this.setImplementedInterfaces(new Class<?>[0]);
+        this.setStaticMethod(false);
+        this.setMethodName("evaluate$");
+        this.setParameters(new String[0], new Class<?>[0]);
+        this.setThrownExceptions(new Class<?>[0]);
+
+        this.bindingVariableNames = (String[]) variableNames.clone();
+        this.bindingVariableTypes = variableTypes;
+        boolean cooked = false;
+        try {
+            this.cook(expression);
+            cooked = true;
+        } finally {
+            this.bindingVariableTypes = null;
+            if (!cooked) this.bindingVariableNames = null;
+            this.setExtendedClass(originalExtendedClass);
+            this.setImplementedInterfaces(originalImplementedInterfaces);
+            this.setStaticMethod(originalStaticMethod);
+            this.setMethodName(originalMethodName);
+            this.setParameters(originalParameterNames, originalParameterTypes);
+            this.setThrownExceptions(originalThrownExceptions);
+        }
+    }
+
+    /**
+     * @return The index of the slot that holds the named variable
+     * @throws IllegalStateException    The expression was not cooked with {@link #cookWithBindings(String, String[],
+     *                                  Class[])}
+     * @throws IllegalArgumentException The variable is not declared
+     */
+    public final int
+    getSlot(String variableName) {
+
+        String[] vns = this.bindingVariableNames;
+        if (vns == null) throw new IllegalStateException("Must only be called after 'cookWithBindings()'");
+
+        for (int i = 0; i < vns.length; i++) {
+            if (vns[i].equals(variableName)) return i;
+        }
+        throw new IllegalArgumentException("Unknown variable \"" + variableName + "\"");
+    }
+
+    /**
+     * @return A new bindings object for the expression cooked by {@link #cookWithBindings(String, String[], Class[])};
+     *         its slots have their default values ({@code 0}, {@code false}, {@code null})
+     */
+    public final ExpressionBindings
+    newBindings() {
+
+        if (this.bindingVariableNames == null) {
+            throw new IllegalStateException("Must only be called after 'cookWithBindings()'");
+        }
+
+        try {
+            return (ExpressionBindings) this.getMethod().getDeclaringClass().newInstance();
+        } catch (InstantiationException ie) {
+            throw new InternalCompilerException("Instantiating the bindings class", ie);
+        } catch (IllegalAccessException iae) {
+            throw new InternalCompilerException("Instantiating the bindings class", iae);
+        }
+    }
+
+    /**
+     * Adds the slot fields and the {@link ExpressionBindings} methods to the class generated by {@link
+     * #cookWithBindings(String, String[], Class[])}.
+     */
+    @Override protected void
+    addMemberDeclarations(Java.AbstractClassDeclaration cd) throws CompileException {
+
+        Class<?>[] vts = this.bindingVariableTypes;
+        if (vts == null) {
+
+            // Not cooking with bindings; forget the variables of any previous "cookWithBindings()".
+            this.bindingVariableNames = null;
+            return;
+        }
+
+        String[] vns = this.bindingVariableNames;
+        assert vns != null;
+
+        Location loc = cd.getLocation();
+
+        // The slots.
+        for (int i = 0; i < vts.length; i++) {
+            if (vts[i].getCanonicalName() == null) {
+                throw new IllegalArgumentException("Type \"" + vts[i] + "\" has no canonical name");
+            }
+            cd.addFieldDeclaration(new Java.FieldDeclaration(
+                loc,                            // location
+                null,                           // optionalDocComment
+                new Java.Modifiers(Mod.PUBLIC), // modifiers
+                this.classToType(loc, vts[i]),  // type
+                new Java.VariableDeclarator[] { // variableDeclarators
+                    new Java.VariableDeclarator(loc, vns[i], 0, null),
+                }
+            ));
+        }
+
+        // The "evaluate...()" methods.
+        Class<?> et = this.getReturnType(0);
+        this.addEvaluateMethod(cd, "evaluate", Object.class);
+        if (et == int.class || et == short.class || et == byte.class || et == char.class) {
+            this.addEvaluateMethod(cd, "evaluateInt", int.class);
+        } else
+        if (et == long.class) {
+            this.addEvaluateMethod(cd, "evaluateLong", long.class);
+        } else
+        if (et == double.class || et == float.class) {
+            this.addEvaluateMethod(cd, "evaluateDouble", double.class);
+        } else
+        if (et == boolean.class) {
+            this.addEvaluateMethod(cd, "evaluateBoolean", boolean.class);
+        }
+
+        // The "set...()" methods.
+        this.addSetter(cd, "set", Object.class, vns, vts);
+        this.addSetter(cd, "setInt", int.class, vns, vts);
+        this.addSetter(cd, "setLong", long.class, vns, vts);
+        this.addSetter(cd, "setDouble", double.class, vns, vts);
+        this.addSetter(cd, "setBoolean", boolean.class, vns, vts);
+    }
+
+    /**
+     * Adds a method that returns the value of the expression, i.e. {@code return this.evaluate$();}.
+     */
+    private void
+    addEvaluateMethod(Java.AbstractClassDeclaration cd, String methodName, Class<?> returnType) {
+        Location loc = cd.getLocation();
+
+        List<BlockStatement> statements = new ArrayList<BlockStatement>();
+        statements.add(new Java.ReturnStatement(
+            loc,
+            new Java.MethodInvocation(loc, new Java.ThisReference(loc), "evaluate$", new Rvalue[0])
+        ));
+
+        cd.addDeclaredMethod(this.makeMethodDeclaration(
+            loc,                    // location
+            new Java.Annotation[0], // annotations
+            false,                  // staticMethod
+            returnType,             // returnType
+            methodName,             // methodName
+            new Class<?>[0],        // parameterTypes
+            new String[0],          // parameterNames
+            new Class<?>[0],        // thrownExceptions
+            statements,             // statements
+            false                   // typesByName
+        ));
+    }
+
+    /**
+     * Adds a method that stores a <var>type</var> value into any of the slots of that type, and delegates to the
+     * superclass for all other slots:
+     * <pre>
+     *     public void <var>methodName</var>(int slot, <var>type</var> value) {
+     *         switch (slot) {
+     *         case 0: this.<var>name0</var> = value; return;
+     *         ...
+     *         }
+     *         super.<var>methodName</var>(slot, value);
+     *     }
+     * </pre>
+     * An {@link Object} <var>type</var> designates the setter for all slots, which casts (and unboxes) the value.
+     */
+    private void
+    addSetter(Java.AbstractClassDeclaration cd, String methodName, Class<?> type, String[] names, Class<?>[] types)
+    throws CompileException {
+        Location loc = cd.getLocation();
+
+        List<Java.SwitchStatement.SwitchBlockStatementGroup>
+        sbsgs = new ArrayList<Java.SwitchStatement.SwitchBlockStatementGroup>();
+        for (int i = 0; i < types.length; i++) {
+
+            Rvalue value = ExpressionEvaluator.name(loc, "value");
+            if (type == Object.class) {
+                Java.Type t = ScriptEvaluator.typeByName(loc, ExpressionEvaluator.boxedType(types[i]));
+                value = new Java.Cast(loc, t, value);
+            } else
+            if (types[i] != type) {
+                continue;
+            }
+
+            List<Rvalue> caseLabels = new ArrayList<Rvalue>();
+            caseLabels.add(new Java.IntegerLiteral(loc, Integer.toString(i)));
+
+            List<BlockStatement> statements = new ArrayList<BlockStatement>();
+            statements.add(new Java.ExpressionStatement(new Java.Assignment(
+                loc,
+                new Java.FieldAccessExpression(loc, new Java.ThisReference(loc), names[i]),
+                "=",
+                value
+            )));
+            statements.add(new Java.ReturnStatement(loc, null));
+
+            sbsgs.add(new Java.SwitchStatement.SwitchBlockStatementGroup(loc, caseLabels, false, statements));
+        }
+        if (sbsgs.isEmpty()) return;
+
+        List<BlockStatement> statements = new ArrayList<BlockStatement>();
+        statements.add(new Java.SwitchStatement(loc, ExpressionEvaluator.name(loc, "slot"), sbsgs));
+        statements.add(new Java.ExpressionStatement(new Java.SuperclassMethodInvocation(
+            loc,
+            methodName,
+            new Rvalue[] { ExpressionEvaluator.name(loc, "slot"), ExpressionEvaluator.name(loc, "value") }
+        )));
+
+        cd.addDeclaredMethod(this.makeMethodDeclaration(
+            loc,                                 // location
+            new Java.Annotation[0],              // annotations
+            false,                               // staticMethod
+            void.class,                          // returnType
+            methodName,                          // methodName
+            new Class<?>[] { int.class, type },  // parameterTypes
+            new String[] { "slot", "value" },    // parameterNames
+            new Class<?>[0],                     // thrownExceptions
+            statements,                          // statements
+            false                                // typesByName
+        ));
+    }
+
+    /**
+     * @return The wrapper type of the given primitive type, or the type itself
+     */
+    private static Class<?>
+    boxedType(Class<?> type) {
+        return (
+            type == boolean.class ? Boolean.class   :
+            type == byte.class    ? Byte.class      :
+            type == short.class   ? Short.class     :
+            type == char.class    ? Character.class :
+            type == int.class     ? Integer.class   :
+            type == long.class    ? Long.class      :
+            type == float.class   ? Float.class     :
+            type == double.class  ? Double.class    :
+            type
+        );
+    }
+
     /**
      * @deprecated Use {@link #createFastEvaluator(String, Class, String[])} instead:
      */
@@ -375,8 +1001,19 @@ class ExpressionEvaluator extends ScriptEvaluator implements IExpressionEvaluato
             throw new CompileException("Unexpected token \"" + parser.peek() + "\"", scanner.location());
         }
 
-        // Traverse the expression for ambiguous names and guess which of them are parameter names.
-        final Set<String> parameterNames = new HashSet<String>();
+        Set<String> parameterNames = ExpressionEvaluator.freeNames(rvalue);
+        return (String[]) parameterNames.toArray(new String[parameterNames.size()]);
+    }
+
+    /**
+     * Traverses the <var>expression</var> for ambiguous names and guesses which of them are parameter names.
+     *
+     * @see #guessParameterNames(Scanner)
+     */
+    private static Set<String>
+    freeNames(Rvalue expression) {
+
+        final Set<String> parameterNames = new LinkedHashSet<String>();
         new AbstractTraverser<RuntimeException>() {
 
             @Override public void
@@ -391,8 +1028,8 @@ class ExpressionEvaluator extends ScriptEvaluator implements IExpressionEvaluato
                 // It's most probably a parameter name (although it could be a field name as well).
                 parameterNames.add(an.identifiers[0]);
             }
-        }.visitAtom(rvalue);
+        }.visitAtom(expression);
 
-        return (String[]) parameterNames.toArray(new String[parameterNames.size()]);
+        return parameterNames;
     }
 }
@@ -0,0 +1,147 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codehaus.janino;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Pre-Java-15-compatible facade for {@code java.lang.invoke.MethodHandles.Lookup.defineHiddenClass()}.
+ * <p>
+ *   A hidden class is not defined by a class loader "by name", and can thus be unloaded as soon as it is no longer
+ *   reachable, independently from all other classes.
+ * </p>
+ */
+final
+class HiddenClasses {
+
+    private HiddenClasses() {}
+
+    // SUPPRESS CHECKSTYLE ConstantName:4
+    @Nullable private static final Class<?> java_lang_invoke_MethodHandles_Lookup;
+    @Nullable private static final Method   java_lang_invoke_MethodHandles_Lookup_defineHiddenClass;
+    @Nullable private static final Method   java_lang_invoke_MethodHandles_Lookup_lookupClass;
+    @Nullable private static final Object   java_lang_invoke_MethodHandles_Lookup_ClassOption_EMPTY;
+    static {
+        Class<?> lookupClass             = null;
+        Method   defineHiddenClassMethod = null;
+        Method   lookupClassMethod       = null;
+        Object   emptyClassOptions       = null;
+        try {
+            lookupClass = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+
+            Class<?> classOptionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            emptyClassOptions = Array.newInstance(classOptionClass, 0);
+
+            defineHiddenClassMethod = lookupClass.getMethod(
+                "defineHiddenClass",
+                byte[].class,
+                boolean.class,
+                emptyClassOptions.getClass()
+            );
+            lookupClassMethod = lookupClass.getMethod("lookupClass");
+        } catch (Exception e) {
+
+            // Pre-Java-15 JVM.
+            defineHiddenClassMethod = null;
+        }
+        java_lang_invoke_MethodHandles_Lookup                   = lookupClass;
+        java_lang_invoke_MethodHandles_Lookup_defineHiddenClass = defineHiddenClassMethod;
+        java_lang_invoke_MethodHandles_Lookup_lookupClass       = lookupClassMethod;
+        java_lang_invoke_MethodHandles_Lookup_ClassOption_EMPTY = emptyClassOptions;
+    }
+
+    /**
+     * @return Whether the running JVM supports hidden classes
+     */
+    static boolean
+    isSupported() { return HiddenClasses.java_lang_invoke_MethodHandles_Lookup_defineHiddenClass != null; }
+
+    /**
+     * @throws IllegalArgumentException The <var>lookup</var> is not a {@code java.lang.invoke.MethodHandles.Lookup}
+     */
+    static void
+    checkLookup(Object lookup) {
+        Class<?> lookupClass = HiddenClasses.java_lang_invoke_MethodHandles_Lookup;
+        if (lookupClass == null || !lookupClass.isInstance(lookup)) {
+            throw new IllegalArgumentException("\"" + lookup + "\" is not a \"java.lang.invoke.MethodHandles.Lookup\"");
+        }
+    }
+
+    /**
+     * @return {@code lookup.lookupClass()}
+     */
+    static Class<?>
+    lookupClass(Object lookup) {
+        Method m = HiddenClasses.java_lang_invoke_MethodHandles_Lookup_lookupClass;
+        assert m != null;
+
+        try {
+            return (Class<?>) m.invoke(lookup);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Defines and initializes a hidden class. The class is <em>not</em> a nestmate of, and is not "strongly" bound
+     * to the class loader of, the lookup class.
+     * <p>
+     *   Equivalent with {@code lookup.defineHiddenClass(bytecode, true).lookupClass()}.
+     * </p>
+     *
+     * @throws IllegalArgumentException The class is not in the same package as the lookup class
+     * @throws IllegalStateException    The <var>lookup</var> does not have full privilege access
+     */
+    static Class<?>
+    define(Object lookup, byte[] bytecode) {
+        Method m = HiddenClasses.java_lang_invoke_MethodHandles_Lookup_defineHiddenClass;
+        assert m != null;
+
+        try {
+
+//          return lookup.defineHiddenClass(bytecode, true).lookupClass();
+            Object hiddenClassLookup = m.invoke(
+                lookup,
+                bytecode,
+                true,
+                HiddenClasses.java_lang_invoke_MethodHandles_Lookup_ClassOption_EMPTY
+            );
+            return HiddenClasses.lookupClass(hiddenClassLookup);
+        } catch (InvocationTargetException ite) {
+            Throwable te = ite.getTargetException();
+            if (te instanceof IllegalAccessException) throw new IllegalStateException(te.getMessage(), te);
+            if (te instanceof RuntimeException) throw (RuntimeException) te;
+            if (te instanceof Error) throw (Error) te;
+            throw new AssertionError(te);
+        } catch (IllegalAccessException iae) {
+            throw new AssertionError(iae);
+        }
+    }
+}
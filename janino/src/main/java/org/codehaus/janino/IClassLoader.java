@@ -283,13 +283,23 @@ class IClassLoader {
         IClass result;
 
         synchronized (this) {
+            CompilationListener cl = this.optionalCompilationListener;
 
             // Class could not be loaded before?
-            if (this.unloadableIClasses.contains(fieldDescriptor)) return null;
+            if (this.unloadableIClasses.contains(fieldDescriptor)) {
+                if (cl != null) cl.counted(CompilationListener.Counter.ICLASS_CACHE_HITS, fieldDescriptor, 1);
+                return null;
+            }
 
             // Class already loaded?
             result = (IClass) this.loadedIClasses.get(fieldDescriptor);
-            if (result != null) return result;
+            if (result != null) {
+                if (cl != null) cl.counted(CompilationListener.Counter.ICLASS_CACHE_HITS, fieldDescriptor, 1);
+                return result;
+            }
+
+            if (cl != null) cl.counted(CompilationListener.Counter.ICLASS_CACHE_MISSES, fieldDescriptor, 1);
+            long start = cl == null ? 0 : System.nanoTime();
 
             // Special handling for array types.
             if (Descriptor.isArrayReference(fieldDescriptor)) {
@@ -303,13 +313,17 @@ class IClassLoader {
                 // Now get and define the array type.
                 IClass arrayIClass = componentIClass.getArrayIClass(this.TYPE_java_lang_Object);
                 this.loadedIClasses.put(fieldDescriptor, arrayIClass);
+                if (cl != null) cl.counted(CompilationListener.Counter.ICLASSES_LOADED, fieldDescriptor, 1);
                 return arrayIClass;
             }
 
             // Load the class through the {@link #findIClass(String)} method implemented by the derived class.
             // By contract, {@link findIClass(String)} <em>must</em> invoke {@link #defineIClass(IClass)}!
             IClassLoader.LOGGER.log(Level.FINE, "About to call \"findIClass({0})\"", fieldDescriptor);
+            Object loadEvent = JfrEvents.ICLASS_LOAD.begin();
             result = this.findIClass(fieldDescriptor);
+            CompilationEvents.phaseCompleted(cl, CompilationListener.Phase.TYPE_RESOLUTION, fieldDescriptor, start);
+            JfrEvents.commit(loadEvent, new Object[] { fieldDescriptor, result != null });
             if (result == null) {
                 if (this.loadedIClasses.containsKey(fieldDescriptor)) {
                     throw new InternalCompilerException((
@@ -328,6 +342,7 @@ class IClassLoader {
                     + "\")\" did not call \"defineIClass()\"!?"
                 ));
             }
+            if (cl != null) cl.counted(CompilationListener.Counter.ICLASSES_LOADED, fieldDescriptor, 1);
         }
 
         if (!result.getDescriptor().equalsIgnoreCase(fieldDescriptor)) {
@@ -398,6 +413,22 @@ class IClassLoader {
         }
     }
 
+    /**
+     * Reports the loading of {@link IClass}es by <em>this</em> {@link IClassLoader} (but not by its parent) to the
+     * given listener, see {@link CompilationListener.Phase#TYPE_RESOLUTION} and {@link
+     * CompilationListener.Counter#ICLASSES_LOADED}.
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.optionalCompilationListener = optionalCompilationListener;
+    }
+
+    /**
+     * @see #setCompilationListener(CompilationListener)
+     */
+    @Nullable public CompilationListener
+    getCompilationListener() { return this.optionalCompilationListener; }
+
     /**
      * Creates an {@link IClassLoader} that looks for classes in the given "boot class path", then in the given
      * "extension directories", and then in the given "class path".
@@ -449,4 +480,5 @@ class IClassLoader {
     @Nullable private final IClassLoader             parentIClassLoader;
     private final Map<String /*descriptor*/, IClass> loadedIClasses     = new HashMap<String, IClass>();
     private final Set<String /*descriptor*/>         unloadableIClasses = new HashSet<String>();
+    @Nullable private CompilationListener            optionalCompilationListener;
 }
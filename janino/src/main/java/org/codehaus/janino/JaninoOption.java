@@ -47,4 +47,51 @@ enum JaninoOption {
      * Contrary to the JLS, allow <em>any</em> expression as a resource in a TRY-with-resources statement.
      */
     EXPRESSIONS_IN_TRY_WITH_RESOURCES_ALLOWED,
+
+    /**
+     * Insert an invocation of {@link ExecutionBudget#tick()} at the start of each method, and a countdown at each loop
+     * iteration, so that the execution of the compiled code can be limited with an {@link ExecutionBudget}.
+     */
+    EXECUTION_BUDGET_CHECKS,
+
+    /**
+     * Insert an invocation of {@link MethodProfile#enter(long)} at the start of each method, so that the invocations
+     * can be counted per method; see {@link MethodProfile}.
+     */
+    METHOD_PROFILING,
+
+    /**
+     * Like {@link #METHOD_PROFILING}, but additionally measure the time spent in each method (which costs two {@link
+     * System#nanoTime()} invocations per method invocation).
+     */
+    METHOD_PROFILING_WITH_TIMING,
+
+    /**
+     * Compile invocations of small methods that are declared in the same class and cannot be overridden ({@code
+     * static}, {@code private} and {@code final} methods) by substituting the method body, so that the generated code
+     * uses up less of the JVM's inlining budget. The method itself is still generated.
+     */
+    INLINE_METHODS,
+
+    /**
+     * Within each expression statement, {@code return} statement and local variable initializer, evaluate repeated
+     * side-effect-free subexpressions (e.g. {@code a.b.c}, {@code x * y} or {@code Math.sqrt(d)}) only once, and
+     * reuse the value through a synthetic local variable. Only field reads and {@link PurityPolicy pure} method
+     * invocations are regarded as side-effect-free.
+     */
+    ELIMINATE_COMMON_SUBEXPRESSIONS,
+
+    /**
+     * Simplify arithmetic operations where the result is guaranteed to be identical: {@code x * 1}, {@code x / 1},
+     * {@code x + 0} and {@code x - 0} become {@code x}, integral {@code x * 2^n} becomes {@code x << n}, and {@code
+     * Math.pow(x, 2)} becomes {@code x * x}.
+     */
+    ALGEBRAIC_SIMPLIFICATION,
+
+    /**
+     * Compile each FINALLY clause by duplicating its code at each exit of the TRY statement (normal completion,
+     * BREAK, CONTINUE, RETURN and the "catch-all" exception handler), instead of into a JSR/RET subroutine. JSR and
+     * RET are forbidden in class files of version 51 (Java 7) and later; JANINO generates version 50 class files.
+     */
+    INLINE_FINALLY_CLAUSES,
 }
@@ -3296,10 +3296,10 @@ class Java {
         accept(Visitor.BlockStatementVisitor<R, EX> visitor) throws EX { return visitor.visitTryStatement(this); }
 
         /**
-         * This one's created iff the TRY statement has a FINALLY clause when the compilation of the TRY statement
-         * begins.
+         * The FINALLY subroutines that are currently being compiled, innermost last; a TRY-with-resources statement
+         * has one for each resource, plus one iff it has a FINALLY clause.
          */
-        @Nullable CodeContext.Offset finallyOffset;
+        final List<CodeContext.Offset> finallyOffsets = new ArrayList<CodeContext.Offset>();
     }
 
     /**
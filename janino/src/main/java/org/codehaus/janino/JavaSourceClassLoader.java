@@ -28,10 +28,16 @@ package org.codehaus.janino;
 
 import java.io.File;
 import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.codehaus.commons.compiler.AbstractJavaSourceClassLoader;
 import org.codehaus.commons.compiler.CompileException;
@@ -56,6 +62,17 @@ import org.codehaus.janino.util.resource.ResourceFinder;
 public
 class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
 
+    static {
+        Method m = AbstractJavaSourceClassLoader.REGISTER_AS_PARALLEL_CAPABLE;
+        if (AbstractJavaSourceClassLoader.PARALLEL_CAPABLE_SUPPORTED && m != null) {
+            try {
+                m.invoke(null);
+            } catch (Exception e) {
+                ;  // Then this class loader is simply not parallel capable.
+            }
+        }
+    }
+
     public
     JavaSourceClassLoader() { this(ClassLoader.getSystemClassLoader()); }
 
@@ -164,12 +181,101 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
         this.iClassLoader.setWarningHandler(optionalWarningHandler);
     }
 
+    /**
+     * Reports the scanning, parsing, compilation and definition of classes to the given listener; see {@link
+     * CompilationListener}. Notice that the listener must be thread-safe if {@link #precompile(Collection,
+     * ExecutorService)} is used.
+     *
+     * @param optionalCompilationListener {@code null} to disable reporting (which is the default)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.iClassLoader.setCompilationListener(optionalCompilationListener);
+    }
+
+    /**
+     * @return The {@link JavaSourceIClassLoader} that finds, scans and parses the compilation units
+     */
+    JavaSourceIClassLoader
+    getIClassLoader() { return this.iClassLoader; }
+
+    /**
+     * Compiles the named classes ahead of time, so that later {@link #loadClass(String)} calls need not compile
+     * them, and thus have only very little latency. The sources are scanned and parsed concurrently on the given
+     * <var>executor</var>, while the compilation is executed by the calling thread.
+     * <p>
+     *   This method returns when all classes have been compiled; invoke it from a background thread to warm up
+     *   asynchronously.
+     * </p>
+     *
+     * @throws ClassNotFoundException One of the classes could not be found, or one of the compilation units failed to
+     *                                compile
+     */
+    public void
+    precompile(Collection<String> classNames, ExecutorService executor)
+    throws ClassNotFoundException, InterruptedException {
+
+        this.iClassLoader.preparse(classNames, executor);
+
+        synchronized (this.iClassLoader) {
+            for (String name : classNames) {
+                if (this.precompiledClasses.containsKey(name)) continue;
+
+                Map<String /*name*/, byte[] /*bytecode*/> bytecodes = this.generateBytecodes(name);
+                if (bytecodes == null) throw new ClassNotFoundException(name);
+                this.precompiledClasses.putAll(bytecodes);
+            }
+        }
+    }
+
+    /**
+     * Compiles ahead of time the classes of all "{@code .java}" files under the given <var>sourceDirectory</var>,
+     * which should be one of the directories of this class loader's source path.
+     *
+     * @see #precompile(Collection, ExecutorService)
+     */
+    public void
+    precompile(File sourceDirectory, ExecutorService executor) throws ClassNotFoundException, InterruptedException {
+        List<String> classNames = new ArrayList<String>();
+        JavaSourceClassLoader.findClassNames(sourceDirectory, "", classNames);
+        this.precompile(classNames, executor);
+    }
+
+    /**
+     * Adds the names of the classes of all "{@code .java}" files under the given <var>directory</var> to the
+     * <var>result</var>.
+     */
+    private static void
+    findClassNames(File directory, String packageNamePrefix, List<String> result) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+            String memberName = member.getName();
+            if (member.isDirectory()) {
+                JavaSourceClassLoader.findClassNames(member, packageNamePrefix + memberName + '.', result);
+            } else
+            if (memberName.endsWith(".java")) {
+                result.add(packageNamePrefix + memberName.substring(0, memberName.length() - 5));
+            }
+        }
+    }
+
     /**
      * Implementation of {@link ClassLoader#findClass(String)}.
+     * <p>
+     *   This class loader is "parallel capable" (on Java 7+), i.e. {@link ClassLoader#loadClass(String)} locks only
+     *   the requested class name and not the entire loader. Classes that were already compiled (e.g. as a side effect
+     *   of compiling another class of the same compilation unit) are defined without any further locking. The
+     *   compilation unit is scanned and parsed concurrently with other threads; only the actual compilation is
+     *   serialized, because all compilation units share the (not thread-safe) {@link IClass}es and {@link
+     *   UnitCompiler}s of the {@link JavaSourceIClassLoader}.
+     * </p>
      *
      * @throws ClassNotFoundException
      */
-    @Override protected /*synchronized <- No need to synchronize, because 'loadClass()' is synchronized */ Class<?>
+    @Override protected Class<?>
     findClass(@Nullable String name) throws ClassNotFoundException {
         assert name != null;
 
@@ -177,21 +283,31 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
         byte[] bytecode = (byte[]) this.precompiledClasses.remove(name);
         if (bytecode == null) {
 
-            // Read, scan, parse and compile the right compilation unit.
-            {
-                Map<String /*name*/, byte[] /*bytecode*/> bytecodes = this.generateBytecodes(name);
-                if (bytecodes == null) throw new ClassNotFoundException(name);
-                this.precompiledClasses.putAll(bytecodes);
-            }
+            this.iClassLoader.preparse(name);
+
+            synchronized (this.iClassLoader) {
 
-            // Now the bytecode for our class should be available.
-            bytecode = (byte[]) this.precompiledClasses.remove(name);
-            if (bytecode == null) {
-                throw new InternalCompilerException(
-                    "SNO: Scanning, parsing and compiling class \""
-                    + name
-                    + "\" did not create a class file!?"
-                );
+                // Maybe another thread generated the bytecode while we were waiting for the lock.
+                bytecode = (byte[]) this.precompiledClasses.remove(name);
+                if (bytecode == null) {
+
+                    // Read, scan, parse and compile the right compilation unit.
+                    {
+                        Map<String /*name*/, byte[] /*bytecode*/> bytecodes = this.generateBytecodes(name);
+                        if (bytecodes == null) throw new ClassNotFoundException(name);
+                        this.precompiledClasses.putAll(bytecodes);
+                    }
+
+                    // Now the bytecode for our class should be available.
+                    bytecode = (byte[]) this.precompiledClasses.remove(name);
+                    if (bytecode == null) {
+                        throw new InternalCompilerException(
+                            "SNO: Scanning, parsing and compiling class \""
+                            + name
+                            + "\" did not create a class file!?"
+                        );
+                    }
+                }
             }
         }
 
@@ -200,17 +316,24 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
         return this.defineBytecode(name, bytecode);
     }
 
+    /**
+     * The {@link UnitCompiler}s that were already compiled. Guarded by the {@link #iClassLoader}.
+     */
     private final Set<UnitCompiler> compiledUnitCompilers = new HashSet<UnitCompiler>();
 
     /**
      * This {@link Map} keeps those classes which were already compiled, but not yet defined i.e. which were not yet
      * passed to {@link ClassLoader#defineClass(java.lang.String, byte[], int, int)}.
      */
-    private final Map<String /*name*/, byte[] /*bytecode*/> precompiledClasses = new HashMap<String, byte[]>();
+    private final Map<String /*name*/, byte[] /*bytecode*/>
+    precompiledClasses = new ConcurrentHashMap<String, byte[]>();
 
     /**
      * Finds, scans, parses the right compilation unit. Compile the parsed compilation unit to bytecode. This may cause
      * more compilation units being scanned and parsed. Continue until all compilation units are compiled.
+     * <p>
+     *   Is always invoked while holding the lock of the underlying {@link JavaSourceIClassLoader}.
+     * </p>
      *
      * @return String name =&gt; byte[] bytecode, or {@code null} if no source code could be found
      * @throws ClassNotFoundException on compilation problems
@@ -230,7 +353,12 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
                     } catch (CompileException ex) {
                         throw new ClassNotFoundException(ex.getMessage(), ex);
                     }
-                    for (ClassFile cf : cfs) bytecodes.put(cf.getThisClassName(), cf.toByteArray());
+                    for (ClassFile cf : cfs) {
+                        bytecodes.put(
+                            cf.getThisClassName(),
+                            CompilationEvents.toByteArray(cf, this.iClassLoader.getCompilationListener())
+                        );
+                    }
                     this.compiledUnitCompilers.add(uc);
                     continue COMPILE_UNITS;
                 }
@@ -246,11 +374,21 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
     private Class<?>
     defineBytecode(String className, byte[] ba) {
 
-        return this.defineClass(className, ba, 0, ba.length, (
+        Object   defineEvent = JfrEvents.CLASS_DEFINITION.begin();
+        long     start       = System.nanoTime();
+        Class<?> result      = this.defineClass(className, ba, 0, ba.length, (
             this.optionalProtectionDomainFactory != null
             ? this.optionalProtectionDomainFactory.getProtectionDomain(ClassFile.getSourceResourceName(className))
             : null
         ));
+        CompilationEvents.phaseCompleted(
+            this.iClassLoader.getCompilationListener(),
+            CompilationListener.Phase.CLASS_DEFINITION,
+            className,
+            start
+        );
+        JfrEvents.commit(defineEvent, new Object[] { className, (long) ba.length });
+        return result;
     }
 
     private final JavaSourceIClassLoader iClassLoader;
@@ -28,9 +28,20 @@ package org.codehaus.janino;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +76,24 @@ class JavaSourceIClassLoader extends IClassLoader {
      */
     private final Set<UnitCompiler>  unitCompilers = new HashSet<UnitCompiler>();
 
+    /**
+     * Compilation units that were parsed by {@link #preparse(Collection, ExecutorService)}, but not yet loaded.
+     */
+    private final Map<String /*topLevelClassName*/, CompilationUnit>
+    preparsedCompilationUnits = new ConcurrentHashMap<String, CompilationUnit>();
+
+    /**
+     * The top-level class names of the {@link #unitCompilers}; unlike these, readable without holding the lock of this
+     * {@link JavaSourceIClassLoader}.
+     */
+    private final Set<String /*topLevelClassName*/>
+    loadedTopLevelClassNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Guards the {@link #sourceFinder}, because {@link ResourceFinder}s are generally not thread-safe.
+     */
+    private final Object sourceFinderLock = new Object();
+
     @Nullable private ErrorHandler   optionalCompileErrorHandler;
     @Nullable private WarningHandler optionalWarningHandler;
 
@@ -174,15 +203,18 @@ class JavaSourceIClassLoader extends IClassLoader {
         }
 
         try {
-            Java.CompilationUnit cu = this.findCompilationUnit(className);
+            Java.CompilationUnit cu = (Java.CompilationUnit) this.preparsedCompilationUnits.remove(topLevelClassName);
+            if (cu == null) cu = this.findCompilationUnit(className);
             if (cu == null) return null;
 
             UnitCompiler uc = new UnitCompiler(cu, this).options(this.options);
             uc.setCompileErrorHandler(this.optionalCompileErrorHandler);
             uc.setWarningHandler(this.optionalWarningHandler);
+            uc.setCompilationListener(this.getCompilationListener());
 
             // Remember compilation unit for later compilation.
             this.unitCompilers.add(uc);
+            this.loadedTopLevelClassNames.add(topLevelClassName);
 
             // Find the class/interface declaration in the compiled unit.
             IClass res = uc.findClass(className);
@@ -213,24 +245,165 @@ class JavaSourceIClassLoader extends IClassLoader {
     findCompilationUnit(String className) throws IOException, CompileException {
 
         // Find source file.
-        Resource sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
+        Resource sourceResource;
+        synchronized (this.sourceFinderLock) {
+            sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
+        }
         JavaSourceIClassLoader.LOGGER.log(Level.FINE, "sourceResource={0}", sourceResource);
         if (sourceResource == null) return null;
 
-        // Scan and parse the source file.
+        return this.parse(sourceResource);
+    }
+
+    /**
+     * Scans and parses the sources of the named classes <em>concurrently</em>, using the given <var>executor</var>,
+     * so that later {@link #findIClass(String)} calls need not parse them. Notice that only parsing is concurrent;
+     * finding the sources (through the {@link ResourceFinder}) and compiling are not.
+     * <p>
+     *   Class names for which no source can be found are ignored.
+     * </p>
+     *
+     * @throws ClassNotFoundException Scanning or parsing one of the sources failed; the others are parsed
+     *                                nevertheless
+     */
+    public void
+    preparse(Collection<String> classNames, ExecutorService executor)
+    throws ClassNotFoundException, InterruptedException {
+
+        // Find the source resources; "ResourceFinder"s are generally not thread-safe.
+        final Map<String /*topLevelClassName*/, Resource> sourceResources = new HashMap<String, Resource>();
+        synchronized (this) {
+            CLASS_NAMES:
+            for (String className : classNames) {
+                int    idx               = className.indexOf('$');
+                String topLevelClassName = idx == -1 ? className : className.substring(0, idx);
+
+                if (sourceResources.containsKey(topLevelClassName)) continue;
+                if (this.preparsedCompilationUnits.containsKey(topLevelClassName)) continue;
+                for (UnitCompiler uc : this.unitCompilers) {
+                    if (uc.findClass(topLevelClassName) != null) continue CLASS_NAMES;
+                }
+
+                Resource sourceResource;
+                synchronized (this.sourceFinderLock) {
+                    sourceResource = this.sourceFinder.findResource(
+                        ClassFile.getSourceResourceName(topLevelClassName)
+                    );
+                }
+                if (sourceResource != null) sourceResources.put(topLevelClassName, sourceResource);
+            }
+        }
+
+        // Parse them concurrently.
+        List<Future<CompilationUnit>> futures = new ArrayList<Future<CompilationUnit>>();
+        for (final Resource sourceResource : sourceResources.values()) {
+            futures.add(executor.submit(new Callable<CompilationUnit>() {
+
+                @Override public CompilationUnit
+                call() throws IOException, CompileException {
+                    return JavaSourceIClassLoader.this.parse(sourceResource);
+                }
+            }));
+        }
+
+        ClassNotFoundException firstException = null;
+        int                    i              = 0;
+        for (String topLevelClassName : sourceResources.keySet()) {
+            try {
+                this.addPreparsedCompilationUnit(
+                    topLevelClassName,
+                    (CompilationUnit) ((Future<CompilationUnit>) futures.get(i++)).get()
+                );
+            } catch (ExecutionException ee) {
+                if (firstException == null) {
+                    firstException = new ClassNotFoundException(
+                        "Parsing compilation unit '" + topLevelClassName + "'",
+                        ee.getCause()
+                    );
+                }
+            }
+        }
+        if (firstException != null) throw firstException;
+    }
+
+    /**
+     * Scans and parses the source of the named class, unless that compilation unit was already parsed. Other than
+     * {@link #findIClass(String)}, this method scans and parses <em>without</em> the lock of this {@link
+     * JavaSourceIClassLoader}, so that multiple threads can scan and parse different compilation units concurrently;
+     * it takes the lock only to store the parsed compilation unit. The next {@link #findIClass(String)} then uses it.
+     * <p>
+     *   Scanning and parsing errors are ignored here; they are reported when {@link #findIClass(String)} parses the
+     *   source again.
+     * </p>
+     */
+    public void
+    preparse(String className) {
+
+        int    idx               = className.indexOf('$');
+        String topLevelClassName = idx == -1 ? className : className.substring(0, idx);
+
+        if (topLevelClassName.startsWith("java.")) return;
+        if (this.loadedTopLevelClassNames.contains(topLevelClassName)) return;
+        if (this.preparsedCompilationUnits.containsKey(topLevelClassName)) return;
+
+        Resource sourceResource;
+        synchronized (this.sourceFinderLock) {
+            sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(topLevelClassName));
+        }
+        if (sourceResource == null) return;
+
+        CompilationUnit cu;
+        try {
+            cu = this.parse(sourceResource);
+        } catch (IOException ioe) {
+            return;
+        } catch (CompileException ce) {
+            return;
+        }
+
+        this.addPreparsedCompilationUnit(topLevelClassName, cu);
+    }
+
+    /**
+     * Stores a preparsed compilation unit for the next {@link #findIClass(String)}, unless another thread loaded that
+     * compilation unit in the meantime. Runs under the same lock as {@link #findIClass(String)}, so that the check and
+     * the store cannot interleave with the loading; otherwise a stale compilation unit could be left behind.
+     */
+    private synchronized void
+    addPreparsedCompilationUnit(String topLevelClassName, CompilationUnit cu) {
+        if (!this.loadedTopLevelClassNames.contains(topLevelClassName)) {
+            this.preparsedCompilationUnits.put(topLevelClassName, cu);
+        }
+    }
+
+    /**
+     * Scans and parses the given source resource.
+     */
+    private CompilationUnit
+    parse(Resource sourceResource) throws IOException, CompileException {
+
         InputStream inputStream = sourceResource.open();
         try {
+            long start = System.nanoTime();
 
             Scanner scanner = new Scanner(
                 sourceResource.getFileName(),
                 inputStream,
                 this.optionalCharacterEncoding
             );
+            scanner.setCompilationListener(this.getCompilationListener());
 
             Parser parser = new Parser(scanner);
             parser.setWarningHandler(this.optionalWarningHandler);
 
-            return parser.parseCompilationUnit();
+            CompilationUnit result = parser.parseCompilationUnit();
+            CompilationEvents.phaseCompleted(
+                this.getCompilationListener(),
+                CompilationListener.Phase.PARSE,
+                scanner.getFileName(),
+                start
+            );
+            return result;
         } finally {
             try { inputStream.close(); } catch (IOException ex) {}
         }
@@ -0,0 +1,573 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ICookable;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.Java.PackageMemberTypeDeclaration;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.resource.MapResourceFinder;
+import org.codehaus.janino.util.resource.Resource;
+import org.codehaus.janino.util.resource.ResourceFinder;
+
+/**
+ * Manages a sequence of {@link JavaSourceClassLoader} "generations" over one source tree, and reloads modified
+ * sources incrementally.
+ * <p>
+ *   {@link #getClassLoader()} returns the current generation. {@link #reload()} (or the optional background polling,
+ *   see {@link #startPolling(long)}) checks the sources of all compilation units that were compiled so far for
+ *   modifications (through {@link Resource#lastModified()}). If any were modified or deleted, then a new generation is
+ *   created and published atomically; classes loaded through the previous generation are not affected.
+ * </p>
+ * <p>
+ *   The new generation re-scans, re-parses and re-compiles only the modified compilation units, plus the units that
+ *   (directly or indirectly) depend on them. All other units are defined from the bytecode that the previous
+ *   generation generated for them, and the {@link IClass}es of the "library" types (i.e. those loaded through the
+ *   parent class loader) are shared by all generations.
+ * </p>
+ * <p>
+ *   A unit is regarded as depending on another unit iff its source code mentions (as an identifier) the simple name of
+ *   any of the top-level types declared by the other unit. That is a conservative approximation which, unlike an
+ *   analysis of the generated bytecode, also catches constants that were inlined at compile time.
+ * </p>
+ * <p>
+ *   Notice: Modifications are detected only if the source {@link ResourceFinder} supports {@link
+ *   Resource#lastModified()}. Source files that are <em>added</em> to the source tree are picked up when a class
+ *   with that name is loaded for the first time through a generation.
+ * </p>
+ */
+public
+class JavaSourceReloader {
+
+    private static final Logger LOGGER = Logger.getLogger(JavaSourceReloader.class.getName());
+
+    private final ClassLoader      parentClassLoader;
+    private final ResourceFinder   sourceFinder;
+    @Nullable private final String optionalCharacterEncoding;
+
+    /**
+     * Loads the "library" types through the {@link #parentClassLoader}; shared by all generations. Since the {@link
+     * IClass}es that it produces are not thread-safe, compilations of different generations synchronize on it.
+     */
+    private final IClassLoader libraryIClassLoader;
+
+    private boolean debugSource = Boolean.getBoolean(ICookable.SYSTEM_PROPERTY_SOURCE_DEBUGGING_ENABLE);
+    private boolean debugLines  = this.debugSource;
+    private boolean debugVars   = this.debugSource;
+
+    private volatile Generation currentGeneration;
+    private int                 generationNumber;
+
+    @Nullable private Timer pollingTimer;
+
+    public
+    JavaSourceReloader(
+        ClassLoader      parentClassLoader,
+        ResourceFinder   sourceFinder,
+        @Nullable String optionalCharacterEncoding
+    ) {
+        this.parentClassLoader         = parentClassLoader;
+        this.sourceFinder              = sourceFinder;
+        this.optionalCharacterEncoding = optionalCharacterEncoding;
+        this.libraryIClassLoader       = new ClassLoaderIClassLoader(parentClassLoader);
+        this.currentGeneration         = new Generation(new HashMap<String, CompiledUnit>());
+    }
+
+    /**
+     * @return The current generation, i.e. the {@link JavaSourceClassLoader} that was most recently published
+     */
+    public JavaSourceClassLoader
+    getClassLoader() { return this.currentGeneration.classLoader; }
+
+    /**
+     * @return The number of generations published after the initial one
+     */
+    public synchronized int
+    getGenerationNumber() { return this.generationNumber; }
+
+    /**
+     * Affects only compilations of future generations; bytecode that is carried over from previous generations is
+     * not recompiled.
+     *
+     * @see JavaSourceClassLoader#setDebuggingInfo(boolean, boolean, boolean)
+     */
+    public synchronized void
+    setDebuggingInfo(boolean debugSource, boolean debugLines, boolean debugVars) {
+        this.debugSource = debugSource;
+        this.debugLines  = debugLines;
+        this.debugVars   = debugVars;
+        this.currentGeneration.classLoader.setDebuggingInfo(debugSource, debugLines, debugVars);
+    }
+
+    /**
+     * Checks the sources of all compilation units of the current generation for modifications, and, if any were
+     * modified, creates and publishes a new generation.
+     *
+     * @return Whether a new generation was published
+     */
+    public synchronized boolean
+    reload() {
+
+        Generation previousGeneration = this.currentGeneration;
+
+        // Take a snapshot of the units of the current generation.
+        Map<String /*sourceResourceName*/, CompiledUnit> units;
+        boolean                                          hadCompileErrors;
+        synchronized (previousGeneration.javaSourceIClassLoader) {
+            units            = new HashMap<String, CompiledUnit>(previousGeneration.units);
+            hadCompileErrors = previousGeneration.hadCompileErrors;
+        }
+
+        // Determine the modified (or deleted) units.
+        Set<CompiledUnit> staleUnits = new HashSet<CompiledUnit>();
+        for (CompiledUnit unit : units.values()) {
+            if (this.lastModified(unit.sourceResourceName) != unit.lastModified) staleUnits.add(unit);
+        }
+
+        if (staleUnits.isEmpty()) {
+
+            // The cause of a compile error may be outside the units that were compiled successfully, so a generation
+            // that failed to compile is replaced as soon as ANY of the sources that it looked up was modified, added
+            // or deleted.
+            if (!hadCompileErrors) return false;
+            if (!this.anySourceModified(previousGeneration.lookedUpSources)) return false;
+        }
+
+        // Add the units that depend on stale units, until the set is stable.
+        for (boolean changed = true; changed;) {
+            changed = false;
+
+            Set<String> staleSimpleNames = new HashSet<String>();
+            for (CompiledUnit unit : staleUnits) staleSimpleNames.addAll(unit.declaredSimpleNames);
+
+            for (CompiledUnit unit : units.values()) {
+                if (staleUnits.contains(unit)) continue;
+                for (String identifier : unit.identifiers) {
+                    if (staleSimpleNames.contains(identifier)) {
+                        staleUnits.add(unit);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        units.values().removeAll(staleUnits);
+
+        JavaSourceReloader.LOGGER.log(
+            Level.FINE,
+            "Publishing generation #{0}; {1} unit(s) are stale, {2} unit(s) are carried over",
+            new Object[] { this.generationNumber + 1, staleUnits.size(), units.size() }
+        );
+
+        this.currentGeneration = new Generation(units);
+        this.generationNumber++;
+        return true;
+    }
+
+    /**
+     * @return Whether any of the given sources was modified, added or deleted
+     */
+    private boolean
+    anySourceModified(Map<String /*sourceResourceName*/, Long /*lastModified*/> sources) {
+        for (Map.Entry<String, Long> me : sources.entrySet()) {
+            if (this.lastModified((String) me.getKey()) != ((Long) me.getValue()).longValue()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The modification time of the named source, or {@link #NOT_FOUND}
+     */
+    private long
+    lastModified(String sourceResourceName) {
+        Resource sourceResource = this.sourceFinder.findResource(sourceResourceName);
+        return sourceResource == null ? JavaSourceReloader.NOT_FOUND : sourceResource.lastModified();
+    }
+
+    /**
+     * The pseudo modification time of a source that does not exist.
+     */
+    private static final long NOT_FOUND = -1;
+
+    /**
+     * Starts a daemon thread that invokes {@link #reload()} every <var>periodMillis</var> milliseconds.
+     *
+     * @throws IllegalStateException Polling is already active
+     */
+    public synchronized void
+    startPolling(long periodMillis) {
+
+        if (this.pollingTimer != null) throw new IllegalStateException("Already polling");
+
+        Timer timer = (this.pollingTimer = new Timer(JavaSourceReloader.class.getSimpleName(), true));
+        timer.schedule(new TimerTask() {
+
+            @Override public void
+            run() {
+                try {
+                    JavaSourceReloader.this.reload();
+                } catch (RuntimeException re) {
+                    JavaSourceReloader.LOGGER.log(Level.WARNING, "Reloading sources", re);
+                }
+            }
+        }, periodMillis, periodMillis);
+    }
+
+    /**
+     * Stops the polling that was started with {@link #startPolling(long)}; is a no-op if polling is not active.
+     */
+    public synchronized void
+    stopPolling() {
+        Timer timer = this.pollingTimer;
+        if (timer == null) return;
+        timer.cancel();
+        this.pollingTimer = null;
+    }
+
+    /**
+     * The artifacts of one compilation unit, as far as they are relevant for reloading.
+     */
+    private static
+    class CompiledUnit {
+
+        final String      sourceResourceName;
+        final long        lastModified;
+        final Set<String> identifiers;
+
+        /**
+         * The simple names of the top-level types that the unit declares.
+         */
+        final Set<String> declaredSimpleNames = new HashSet<String>();
+
+        final Map<String /*className*/, byte[] /*bytecode*/> bytecodes = new HashMap<String, byte[]>();
+
+        CompiledUnit(String sourceResourceName, long lastModified, Set<String> identifiers) {
+            this.sourceResourceName = sourceResourceName;
+            this.lastModified       = lastModified;
+            this.identifiers        = identifiers;
+        }
+    }
+
+    /**
+     * The source of a compilation unit as it was read by a generation.
+     */
+    private static
+    class SourceRecord {
+
+        final String sourceResourceName;
+        final long   lastModified;
+
+        @Nullable Set<String> identifiers;
+
+        SourceRecord(String sourceResourceName, long lastModified) {
+            this.sourceResourceName = sourceResourceName;
+            this.lastModified       = lastModified;
+        }
+    }
+
+    /**
+     * One {@link JavaSourceClassLoader} plus the state required to create its successor.
+     */
+    private
+    class Generation {
+
+        /**
+         * The units that were compiled by, or carried over into, this generation. Guarded by the {@link
+         * #javaSourceIClassLoader}.
+         */
+        final Map<String /*sourceResourceName*/, CompiledUnit> units;
+
+        /**
+         * The units that were carried over from the previous generation and not yet defined by this generation, keyed
+         * by the names of all classes that they declare. Guarded by the {@link #javaSourceIClassLoader}.
+         */
+        final Map<String /*className*/, CompiledUnit> carriedUnits = new HashMap<String, CompiledUnit>();
+
+        /**
+         * Records the sources that this generation reads, keyed by {@link Resource#getFileName()}. Sources may be
+         * read without holding the lock of the {@link #javaSourceIClassLoader}; see {@link
+         * JavaSourceIClassLoader#preparse(String)}.
+         */
+        final Map<String /*fileName*/, SourceRecord> sourceRecords = new ConcurrentHashMap<String, SourceRecord>();
+
+        /**
+         * The modification times of all sources that this generation looked up, including those that it did
+         * <em>not</em> find (as {@link #NOT_FOUND}).
+         */
+        final Map<String /*sourceResourceName*/, Long /*lastModified*/>
+        lookedUpSources = new ConcurrentHashMap<String, Long>();
+
+        final Set<UnitCompiler> recordedUnitCompilers = new HashSet<UnitCompiler>();
+
+        boolean hadCompileErrors;
+
+        final JavaSourceIClassLoader javaSourceIClassLoader;
+        final GenerationClassLoader  classLoader;
+
+        Generation(Map<String, CompiledUnit> carriedUnits) {
+            this.units = carriedUnits;
+
+            // The IClasses of the carried-over units are loaded from their bytecode, so that their sources need not be
+            // parsed again.
+            MapResourceFinder carriedClassFiles = new MapResourceFinder();
+            for (CompiledUnit unit : carriedUnits.values()) {
+                for (Map.Entry<String, byte[]> me : unit.bytecodes.entrySet()) {
+                    String className = (String) me.getKey();
+                    carriedClassFiles.addResource(
+                        ClassFile.getClassFileResourceName(className),
+                        (byte[]) me.getValue()
+                    );
+                    this.carriedUnits.put(className, unit);
+                }
+            }
+
+            this.javaSourceIClassLoader = new JavaSourceIClassLoader(
+                this.recordingSourceFinder(),                      // sourceFinder
+                JavaSourceReloader.this.optionalCharacterEncoding, // optionalCharacterEncoding
+                new ResourceFinderIClassLoader(                    // optionalParentIClassLoader
+                    carriedClassFiles,
+                    JavaSourceReloader.this.libraryIClassLoader
+                )
+            );
+
+            this.classLoader = new GenerationClassLoader(this);
+            this.classLoader.setDebuggingInfo(
+                JavaSourceReloader.this.debugSource,
+                JavaSourceReloader.this.debugLines,
+                JavaSourceReloader.this.debugVars
+            );
+        }
+
+        /**
+         * Defines carried-over units from their bytecode, and compiles all others. Is invoked while holding the lock
+         * of the {@link #javaSourceIClassLoader}.
+         */
+        @Nullable Map<String /*name*/, byte[] /*bytecode*/>
+        generateBytecodes(String name, GenerationClassLoader gcl) throws ClassNotFoundException {
+
+            CompiledUnit carriedUnit = (CompiledUnit) this.carriedUnits.get(name);
+            if (carriedUnit != null) {
+                this.carriedUnits.values().removeAll(Collections.singleton(carriedUnit));
+                return new HashMap<String, byte[]>(carriedUnit.bytecodes);
+            }
+
+            Map<String /*name*/, byte[] /*bytecode*/> bytecodes;
+            synchronized (JavaSourceReloader.this.libraryIClassLoader) {
+                try {
+                    bytecodes = gcl.compile(name);
+                } catch (ClassNotFoundException cnfe) {
+                    this.hadCompileErrors = true;
+                    throw cnfe;
+                } catch (RuntimeException re) {
+                    this.hadCompileErrors = true;
+                    throw re;
+                }
+            }
+            if (bytecodes == null) return null;
+
+            // Record the newly compiled units, so that the next generation can decide whether to carry them over.
+            for (UnitCompiler uc : this.javaSourceIClassLoader.getUnitCompilers()) {
+                if (!this.recordedUnitCompilers.add(uc)) continue;
+
+                SourceRecord sr = (SourceRecord) this.sourceRecords.get(uc.getCompilationUnit().optionalFileName);
+                if (sr == null || sr.identifiers == null) continue;
+
+                CompiledUnit unit = new CompiledUnit(sr.sourceResourceName, sr.lastModified, sr.identifiers);
+                for (PackageMemberTypeDeclaration pmtd : uc.getCompilationUnit().getPackageMemberTypeDeclarations()) {
+                    unit.declaredSimpleNames.add(pmtd.getName());
+                }
+                for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
+                    String className = (String) me.getKey();
+                    if (JavaSourceReloader.declaringUnitCompiler(
+                        className,
+                        this.javaSourceIClassLoader.getUnitCompilers()
+                    ) == uc) unit.bytecodes.put(className, (byte[]) me.getValue());
+                }
+                this.units.put(unit.sourceResourceName, unit);
+            }
+
+            return bytecodes;
+        }
+
+        /**
+         * @return A {@link ResourceFinder} that records the sources read by the {@link #javaSourceIClassLoader}, and
+         *         the identifiers that they contain
+         */
+        private ResourceFinder
+        recordingSourceFinder() {
+
+            return new ResourceFinder() {
+
+                @Override @Nullable public Resource
+                findResource(final String resourceName) {
+
+                    final Resource delegate = JavaSourceReloader.this.sourceFinder.findResource(resourceName);
+                    Generation.this.lookedUpSources.put(
+                        resourceName,
+                        delegate == null ? JavaSourceReloader.NOT_FOUND : delegate.lastModified()
+                    );
+                    if (delegate == null) return null;
+
+                    // Get the modification time BEFORE the source is read, so that a modification that happens while
+                    // the source is being read is detected.
+                    final SourceRecord sr = new SourceRecord(resourceName, delegate.lastModified());
+
+                    return new Resource() {
+
+                        @Override public InputStream
+                        open() throws IOException {
+                            byte[] source = JavaSourceReloader.readAll(delegate.open());
+                            sr.identifiers = JavaSourceReloader.scanIdentifiers(
+                                delegate.getFileName(),
+                                source,
+                                JavaSourceReloader.this.optionalCharacterEncoding
+                            );
+                            Generation.this.sourceRecords.put(delegate.getFileName(), sr);
+                            return new ByteArrayInputStream(source);
+                        }
+
+                        @Override public String getFileName()  { return delegate.getFileName(); }
+                        @Override public long   lastModified() { return sr.lastModified;        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * The {@link JavaSourceClassLoader} of one {@link Generation}.
+     */
+    private
+    class GenerationClassLoader extends JavaSourceClassLoader {
+
+        private final Generation generation;
+
+        GenerationClassLoader(Generation generation) {
+            super(JavaSourceReloader.this.parentClassLoader, generation.javaSourceIClassLoader);
+            this.generation = generation;
+        }
+
+        @Override @Nullable protected Map<String /*name*/, byte[] /*bytecode*/>
+        generateBytecodes(String name) throws ClassNotFoundException {
+            return this.generation.generateBytecodes(name, this);
+        }
+
+        /**
+         * Compiles the source of the named class, through the original {@link
+         * JavaSourceClassLoader#generateBytecodes(String)}.
+         */
+        @Nullable Map<String /*name*/, byte[] /*bytecode*/>
+        compile(String name) throws ClassNotFoundException { return super.generateBytecodes(name); }
+    }
+
+    /**
+     * @return The set of all identifiers that the given source contains; these are a conservative approximation of
+     *         the simple names of the types that the source depends on
+     */
+    static Set<String>
+    scanIdentifiers(String fileName, byte[] source, @Nullable String optionalCharacterEncoding) throws IOException {
+
+        Set<String> result = new HashSet<String>();
+
+        Scanner scanner = new Scanner(fileName, new ByteArrayInputStream(source), optionalCharacterEncoding);
+        scanner.setIgnoreWhiteSpace(true);
+        try {
+            for (;;) {
+                Token t = scanner.produce();
+                if (t.type == TokenType.END_OF_INPUT) break;
+                if (t.type == TokenType.IDENTIFIER) result.add(t.value);
+            }
+        } catch (CompileException ce) {
+
+            // The source is not even scannable; the parser will report the problem.
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The element of <var>unitCompilers</var> that declares the named class, or {@code null}; that is the
+     *         unit that declares the top-level type with the <em>longest</em> name that equals <var>className</var>,
+     *         or that <var>className</var> starts with, followed by "$" (so that type names that contain "$" are
+     *         handled correctly)
+     */
+    @Nullable private static UnitCompiler
+    declaringUnitCompiler(String className, Iterable<UnitCompiler> unitCompilers) {
+
+        UnitCompiler result       = null;
+        int          resultLength = -1;
+        for (UnitCompiler uc : unitCompilers) {
+            for (PackageMemberTypeDeclaration pmtd : uc.getCompilationUnit().getPackageMemberTypeDeclarations()) {
+                String tlcn = pmtd.getClassName();
+                if (
+                    tlcn.length() > resultLength
+                    && (className.equals(tlcn) || className.startsWith(tlcn + '$'))
+                ) {
+                    result       = uc;
+                    resultLength = tlcn.length();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads all bytes from, and then closes, the given stream.
+     */
+    static byte[]
+    readAll(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[4096];
+            for (;;) {
+                int cnt = is.read(buffer);
+                if (cnt == -1) break;
+                baos.write(buffer, 0, cnt);
+            }
+            return baos.toByteArray();
+        } finally {
+            try { is.close(); } catch (IOException ex) {}
+        }
+    }
+}
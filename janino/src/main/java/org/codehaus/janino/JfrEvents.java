@@ -0,0 +1,307 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Pre-Java-9-compatible facade for emitting JANINO's custom <em>Java Flight Recorder</em> events.
+ * <p>
+ *   The event types are created reflectively through {@code jdk.jfr.EventFactory}, so that JANINO still runs on
+ *   JVMs without JFR; there all operations are no-ops. While no recording is active (or an event type is disabled in
+ *   the recording settings), the overhead of an emission site is a single {@code EventType.isEnabled()} check.
+ * </p>
+ * <p>
+ *   The events appear under the category "Janino" in JDK Mission Control and {@code jfr print --categories Janino}:
+ * </p>
+ * <dl>
+ *   <dt>{@code org.codehaus.janino.Cook}</dt>
+ *   <dd>A {@code cook()} from source, with the name of the (first) generated class and the source size</dd>
+ *   <dt>{@code org.codehaus.janino.IClassLoad}</dt>
+ *   <dd>A miss of the {@link IClassLoader} cache, i.e. the cost of finding and loading one {@link IClass}</dd>
+ *   <dt>{@code org.codehaus.janino.MethodGenerated}</dt>
+ *   <dd>The code size, max stack and max locals of each generated method</dd>
+ *   <dt>{@code org.codehaus.janino.ClassDefinition}</dt>
+ *   <dd>The definition of a generated class in the JVM, with its bytecode size</dd>
+ * </dl>
+ */
+final
+class JfrEvents {
+
+    private JfrEvents() {}
+
+    /**
+     * A JANINO-specific JFR event type; a no-op iff the running JVM has no JFR.
+     */
+    static final
+    class Type {
+
+        @Nullable private final Object eventFactory; // jdk.jfr.EventFactory
+        @Nullable private final Object eventType;    // jdk.jfr.EventType
+
+        Type(@Nullable Object eventFactory, @Nullable Object eventType) {
+            this.eventFactory = eventFactory;
+            this.eventType    = eventType;
+        }
+
+        /**
+         * Creates an event of this type and begins its timing; must be followed by {@link JfrEvents#commit(Object,
+         * Object[])}.
+         *
+         * @return {@code null} iff JFR is not available, or this event type is currently not enabled
+         */
+        @Nullable Object
+        begin() {
+            Object eventFactory = this.eventFactory;
+            if (eventFactory == null) return null;
+            try {
+                if (!((Boolean) JfrEvents.jdk_jfr_EventType_isEnabled.invoke(this.eventType))) return null;
+
+                Object event = JfrEvents.jdk_jfr_EventFactory_newEvent.invoke(eventFactory);
+                JfrEvents.jdk_jfr_Event_begin.invoke(event);
+                return event;
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    // SUPPRESS CHECKSTYLE ConstantName:6
+    @Nullable private static final Method jdk_jfr_EventFactory_newEvent;
+    @Nullable private static final Method jdk_jfr_EventFactory_getEventType;
+    @Nullable private static final Method jdk_jfr_EventType_isEnabled;
+    @Nullable private static final Method jdk_jfr_Event_begin;
+    @Nullable private static final Method jdk_jfr_Event_set;
+    @Nullable private static final Method jdk_jfr_Event_commit;
+
+    /**
+     * Fields: {@code String className, long sourceSize}.
+     */
+    static final Type COOK;
+
+    /**
+     * Fields: {@code String descriptor, boolean found}.
+     */
+    static final Type ICLASS_LOAD;
+
+    /**
+     * Fields: {@code String className, String method, long codeSize, long maxStack, long maxLocals}.
+     */
+    static final Type METHOD_GENERATED;
+
+    /**
+     * Fields: {@code String className, long bytecodeSize}.
+     */
+    static final Type CLASS_DEFINITION;
+
+    static {
+        Method newEventMethod     = null;
+        Method getEventTypeMethod = null;
+        Method isEnabledMethod    = null;
+        Method beginMethod        = null;
+        Method setMethod          = null;
+        Method commitMethod       = null;
+        Type   cook               = null;
+        Type   iClassLoad         = null;
+        Type   methodGenerated    = null;
+        Type   classDefinition    = null;
+        try {
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventTypeClass    = Class.forName("jdk.jfr.EventType");
+            Class<?> eventClass        = Class.forName("jdk.jfr.Event");
+
+            newEventMethod     = eventFactoryClass.getMethod("newEvent");
+            getEventTypeMethod = eventFactoryClass.getMethod("getEventType");
+            isEnabledMethod    = eventTypeClass.getMethod("isEnabled");
+            beginMethod        = eventClass.getMethod("begin");
+            setMethod          = eventClass.getMethod("set", int.class, Object.class);
+            commitMethod       = eventClass.getMethod("commit");
+
+            JfrEvents.Factory f = new JfrEvents.Factory(eventFactoryClass, getEventTypeMethod);
+
+            cook = f.create(
+                "Cook",
+                "Cook",
+                "Scanning, parsing, compiling and loading of Java source code",
+                true,
+                new Object[][] {
+                    { String.class, "className",  "Class Name" },
+                    { long.class,   "sourceSize", "Source Size" }
+                }
+            );
+            iClassLoad = f.create(
+                "IClassLoad",
+                "IClass Load",
+                "Loading of a type that was not yet in the cache of an IClassLoader",
+                false,
+                new Object[][] {
+                    { String.class,  "descriptor", "Descriptor" },
+                    { boolean.class, "found",      "Found" }
+                }
+            );
+            methodGenerated = f.create(
+                "MethodGenerated",
+                "Method Generated",
+                "Bytecode generation for one method, constructor or class initializer",
+                false,
+                new Object[][] {
+                    { String.class, "className", "Class Name" },
+                    { String.class, "method",    "Method" },
+                    { long.class,   "codeSize",  "Code Size" },
+                    { long.class,   "maxStack",  "Max Stack" },
+                    { long.class,   "maxLocals", "Max Locals" }
+                }
+            );
+            classDefinition = f.create(
+                "ClassDefinition",
+                "Class Definition",
+                "Definition of a generated class in the JVM",
+                false,
+                new Object[][] {
+                    { String.class, "className",    "Class Name" },
+                    { long.class,   "bytecodeSize", "Bytecode Size" }
+                }
+            );
+        } catch (Exception e) {
+
+            // JVM without JFR (pre-Java-9 or a stripped runtime image).
+            cook            = null;
+            iClassLoad      = null;
+            methodGenerated = null;
+            classDefinition = null;
+        }
+        jdk_jfr_EventFactory_newEvent     = newEventMethod;
+        jdk_jfr_EventFactory_getEventType = getEventTypeMethod;
+        jdk_jfr_EventType_isEnabled       = isEnabledMethod;
+        jdk_jfr_Event_begin               = beginMethod;
+        jdk_jfr_Event_set                 = setMethod;
+        jdk_jfr_Event_commit              = commitMethod;
+        COOK             = cook != null ? cook : new Type(null, null);
+        ICLASS_LOAD      = iClassLoad != null ? iClassLoad : new Type(null, null);
+        METHOD_GENERATED = methodGenerated != null ? methodGenerated : new Type(null, null);
+        CLASS_DEFINITION = classDefinition != null ? classDefinition : new Type(null, null);
+    }
+
+    /**
+     * @return Whether the running JVM supports JFR events
+     */
+    static boolean
+    isSupported() { return JfrEvents.COOK.eventFactory != null; }
+
+    /**
+     * Sets the fields of the <var>event</var> and commits it. A no-op iff <var>event</var> is {@code null}.
+     *
+     * @param event  The value previously returned by {@link Type#begin()}
+     * @param values The field values, in the order documented for the event type
+     */
+    static void
+    commit(@Nullable Object event, Object[] values) {
+        if (event == null) return;
+
+        Method set = JfrEvents.jdk_jfr_Event_set;
+        assert set != null;
+        try {
+            for (int i = 0; i < values.length; i++) set.invoke(event, new Object[] { i, values[i] });
+            JfrEvents.jdk_jfr_Event_commit.invoke(event);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Creates JFR event types through {@code jdk.jfr.EventFactory.create(List, List)}.
+     */
+    private static final
+    class Factory {
+
+        private final Method         create;
+        private final Method         getEventType;
+        private final Constructor<?> annotationElementConstructor; // AnnotationElement(Class, Object)
+        private final Constructor<?> valueDescriptorConstructor;   // ValueDescriptor(Class, String, List)
+        private final Class<?>       name, label, description, category, stackTrace;
+
+        Factory(Class<?> eventFactoryClass, Method getEventType) throws Exception {
+
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass   = Class.forName("jdk.jfr.ValueDescriptor");
+
+            this.create                       = eventFactoryClass.getMethod("create", List.class, List.class);
+            this.getEventType                 = getEventType;
+            this.annotationElementConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+            this.valueDescriptorConstructor   = valueDescriptorClass.getConstructor(
+                Class.class,
+                String.class,
+                List.class
+            );
+            this.name        = Class.forName("jdk.jfr.Name");
+            this.label       = Class.forName("jdk.jfr.Label");
+            this.description = Class.forName("jdk.jfr.Description");
+            this.category    = Class.forName("jdk.jfr.Category");
+            this.stackTrace  = Class.forName("jdk.jfr.StackTrace");
+        }
+
+        /**
+         * @param fields Triplets of field type, field name and field label
+         */
+        Type
+        create(String name, String label, String description, boolean stackTrace, Object[][] fields)
+        throws Exception {
+
+            List<Object> annotations = new ArrayList<Object>();
+            annotations.add(this.annotation(this.name, "org.codehaus.janino." + name));
+            annotations.add(this.annotation(this.label, label));
+            annotations.add(this.annotation(this.description, description));
+            annotations.add(this.annotation(this.category, new String[] { "Janino" }));
+            annotations.add(this.annotation(this.stackTrace, stackTrace));
+
+            List<Object> valueDescriptors = new ArrayList<Object>();
+            for (Object[] field : fields) {
+                valueDescriptors.add(this.valueDescriptorConstructor.newInstance(new Object[] {
+                    field[0],
+                    field[1],
+                    Arrays.asList(new Object[] { this.annotation(this.label, field[2]) })
+                }));
+            }
+
+            Object eventFactory = this.create.invoke(null, new Object[] { annotations, valueDescriptors });
+            return new Type(eventFactory, this.getEventType.invoke(eventFactory));
+        }
+
+        private Object
+        annotation(Class<?> annotationType, Object value) throws Exception {
+            assert Annotation.class.isAssignableFrom(annotationType);
+            return this.annotationElementConstructor.newInstance(new Object[] { annotationType, value });
+        }
+    }
+}
@@ -0,0 +1,321 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * The invocation counter and (optionally) the execution timer of one method that was compiled with option {@link
+ * JaninoOption#METHOD_PROFILING} or {@link JaninoOption#METHOD_PROFILING_WITH_TIMING}, e.g.
+ * <pre>
+ *     ScriptEvaluator se = new ScriptEvaluator();
+ *     se.options(EnumSet.of(JaninoOption.METHOD_PROFILING_WITH_TIMING));
+ *     se.cook(scripts);
+ *     ...
+ *     for (int i = 0; i &lt; scripts.length; i++) {
+ *         MethodProfile mp = se.getMethodProfile(i);
+ *         System.out.println(mp.getInvocationCount() + " " + mp.getTotalNanos());
+ *     }
+ * </pre>
+ * <p>
+ *   The compiled code invokes {@link #enter(long)} (or {@link #enterTimed(long)} and {@link #exit(long, long)}) at the
+ *   start (and before each {@code return}) of the method. Like {@code java.util.concurrent.atomic.LongAdder}, the
+ *   counters are updated with a single CAS as long as there is no contention; only when threads collide, they
+ *   "inflate" into striped cells, so that concurrently executing threads do not contend for the same cache line.
+ * </p>
+ * <p>
+ *   Notice that invocations that complete abruptly (by throwing an exception) are counted, but not timed. Notice also
+ *   that each profile is retained in a global registry until it is {@link #unregister()}ed, and that the class loader
+ *   of the compiled code must be able to load this class.
+ * </p>
+ *
+ * @see SimpleCompiler#getMethodProfiles()
+ * @see ScriptEvaluator#getMethodProfile(int)
+ */
+public final
+class MethodProfile {
+
+    /**
+     * The number of stripes that the counters inflate to; a power of two.
+     */
+    private static final int STRIPES = MethodProfile.stripes(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The distance between two stripes in the cell array; 8 longs are 64 bytes, the typical cache line size.
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * All registered profiles, indexed by the low 32 bits of their {@link #handle}; replaced with a larger copy when
+     * full. The slots of {@link #unregister()}ed profiles are {@code null} and are reused.
+     */
+    private static volatile MethodProfile[] profiles = new MethodProfile[64];
+    private static int                      usedSlotCount;
+    private static int[]                    freeSlots = new int[16];
+    private static int                      freeSlotCount;
+    private static int                      registrationCount;
+
+    /**
+     * The slot in {@link #profiles} (low 32 bits), and the number of the registration (high 32 bits), so that code
+     * that was compiled for an unregistered profile does not update the profile that reuses its slot.
+     */
+    private final long   handle;
+    private final String className;
+    private final String methodName;
+    private final String methodDescriptor;
+
+    // The uncontended counters.
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong totalNanos      = new AtomicLong();
+
+    /**
+     * Created on the first contention; holds, for each stripe, the invocation count and the total nanos.
+     */
+    @Nullable private volatile AtomicLongArray cells;
+
+    private
+    MethodProfile(long handle, String className, String methodName, String methodDescriptor) {
+        this.handle           = handle;
+        this.className        = className;
+        this.methodName       = methodName;
+        this.methodDescriptor = methodDescriptor;
+    }
+
+    /**
+     * Creates a profile and makes it available through {@link #getAll()}. Invoked by the {@link UnitCompiler}.
+     */
+    static synchronized MethodProfile
+    register(String className, String methodName, String methodDescriptor) {
+
+        MethodProfile[] ps = MethodProfile.profiles;
+
+        int slot;
+        if (MethodProfile.freeSlotCount > 0) {
+            slot = MethodProfile.freeSlots[--MethodProfile.freeSlotCount];
+        } else {
+            if (MethodProfile.usedSlotCount == ps.length) ps = (MethodProfile[]) Arrays.copyOf(ps, 2 * ps.length);
+            slot = MethodProfile.usedSlotCount++;
+        }
+
+        long          handle = (long) ++MethodProfile.registrationCount << 32 | slot;
+        MethodProfile result = new MethodProfile(handle, className, methodName, methodDescriptor);
+        ps[slot] = result;
+
+        // Publish the (possibly new) array only AFTER the profile was stored in it.
+        MethodProfile.profiles = ps;
+
+        return result;
+    }
+
+    /**
+     * Removes this profile from the registry, so that it can be garbage-collected. Afterwards, invocations of the
+     * profiled method are no longer counted. Has no effect if this profile is not registered.
+     */
+    public void
+    unregister() {
+        synchronized (MethodProfile.class) {
+            MethodProfile[] ps   = MethodProfile.profiles;
+            int             slot = (int) this.handle;
+            if (ps[slot] != this) return;
+
+            ps[slot] = null;
+            MethodProfile.profiles = ps;
+
+            int[] fs = MethodProfile.freeSlots;
+            if (MethodProfile.freeSlotCount == fs.length) {
+                fs = (MethodProfile.freeSlots = Arrays.copyOf(fs, 2 * fs.length));
+            }
+            fs[MethodProfile.freeSlotCount++] = slot;
+        }
+    }
+
+    /**
+     * @return A snapshot of all profiles that are currently registered
+     */
+    public static List<MethodProfile>
+    getAll() {
+        synchronized (MethodProfile.class) {
+            List<MethodProfile> result = new ArrayList<MethodProfile>();
+            MethodProfile[]     ps     = MethodProfile.profiles;
+            for (int i = 0; i < MethodProfile.usedSlotCount; i++) {
+                if (ps[i] != null) result.add(ps[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Resets the counters of all profiles to zero.
+     */
+    public static void
+    resetAll() { for (MethodProfile mp : MethodProfile.getAll()) mp.reset(); }
+
+    /**
+     * Counts one invocation of the method with the given profile <var>handle</var>. Invoked by the compiled code.
+     */
+    public static void
+    enter(long handle) {
+        MethodProfile mp = MethodProfile.profiles[(int) handle];
+        if (mp != null && mp.handle == handle) mp.add(0, 1);
+    }
+
+    /**
+     * Counts one invocation of the method with the given profile <var>handle</var>. Invoked by the compiled code.
+     *
+     * @return The value to pass to {@link #exit(long, long)} when the method completes
+     */
+    public static long
+    enterTimed(long handle) {
+        MethodProfile.enter(handle);
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since <var>startNanos</var> to the method with the given profile <var>handle</var>.
+     * Invoked by the compiled code.
+     */
+    public static void
+    exit(long handle, long startNanos) {
+        MethodProfile mp = MethodProfile.profiles[(int) handle];
+        if (mp != null && mp.handle == handle) mp.add(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * The number that identifies this profile in the compiled code.
+     */
+    long
+    getHandle() { return this.handle; }
+
+    /**
+     * @return The name of the class that declares the profiled method, as defined by {@link Class#getName()}
+     */
+    public String
+    getClassName() { return this.className; }
+
+    /**
+     * @return The name of the profiled method, e.g. "eval0" or "&lt;init>"
+     */
+    public String
+    getMethodName() { return this.methodName; }
+
+    /**
+     * @return The descriptor of the profiled method, e.g. "(I)Ljava/lang/String;"
+     */
+    public String
+    getMethodDescriptor() { return this.methodDescriptor; }
+
+    /**
+     * @return How often the method was invoked (since the last {@link #reset()})
+     */
+    public long
+    getInvocationCount() { return this.sum(0, this.invocationCount); }
+
+    /**
+     * @return The total time spent in the method (since the last {@link #reset()}), or 0 if the method was not
+     *         compiled with {@link JaninoOption#METHOD_PROFILING_WITH_TIMING}
+     */
+    public long
+    getTotalNanos() { return this.sum(1, this.totalNanos); }
+
+    /**
+     * Resets the counters to zero. Updates that happen concurrently may or may not be lost.
+     */
+    public void
+    reset() {
+        this.invocationCount.set(0);
+        this.totalNanos.set(0);
+        AtomicLongArray cs = this.cells;
+        if (cs != null) {
+            for (int i = 0; i < cs.length(); i++) cs.set(i, 0);
+        }
+    }
+
+    @Override public String
+    toString() {
+        return (
+            this.className
+            + '.'
+            + this.methodName
+            + this.methodDescriptor
+            + ": "
+            + this.getInvocationCount()
+            + " invocations, "
+            + this.getTotalNanos()
+            + " ns"
+        );
+    }
+
+    private void
+    add(int offset, long delta) {
+
+        AtomicLongArray cs = this.cells;
+        if (cs == null) {
+            AtomicLong base = offset == 0 ? this.invocationCount : this.totalNanos;
+            long       v    = base.get();
+            if (base.compareAndSet(v, v + delta)) return;
+
+            // Contention; inflate into stripes.
+            cs = this.inflate();
+        }
+
+        int stripe = (int) Thread.currentThread().getId() & (MethodProfile.STRIPES - 1);
+        cs.addAndGet(stripe * MethodProfile.STRIDE + offset, delta);
+    }
+
+    private synchronized AtomicLongArray
+    inflate() {
+        AtomicLongArray result = this.cells;
+        if (result == null) result = (this.cells = new AtomicLongArray(MethodProfile.STRIPES * MethodProfile.STRIDE));
+        return result;
+    }
+
+    private long
+    sum(int offset, AtomicLong base) {
+        long            result = base.get();
+        AtomicLongArray cs     = this.cells;
+        if (cs != null) {
+            for (int i = offset; i < cs.length(); i += MethodProfile.STRIDE) result += cs.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return The smallest power of two that is greater than or equal to <var>n</var>, but at most 64
+     */
+    private static int
+    stripes(int n) {
+        int result = 1;
+        while (result < n && result < 64) result <<= 1;
+        return result;
+    }
+}
@@ -1152,7 +1152,7 @@ class Parser {
                     throw this.compileException("Modifier \"default\" not allowed on member enum declaration");
                 }
                 interfaceDeclaration.addMemberTypeDeclaration(
-                    (MemberTypeDeclaration) this.parseClassDeclarationRest(
+                    (MemberTypeDeclaration) this.parseEnumDeclarationRest(
                         optionalDocComment,                                // optionalDocComment
                         modifiers.add(Mod.STATIC | Mod.PUBLIC | Mod.ENUM), // modifiers
                         ClassDeclarationContext.TYPE_DECLARATION           // context
@@ -1722,6 +1722,8 @@ class Parser {
     public BlockStatement
     parseBlockStatement() throws CompileException, IOException {
 
+        CompileService.checkStopped(this.location());
+
         // Statement?
         if (
             (this.peek(TokenType.IDENTIFIER) && this.peekNextButOne(":"))
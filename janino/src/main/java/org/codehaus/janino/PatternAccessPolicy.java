@@ -0,0 +1,65 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.Arrays;
+
+import org.codehaus.janino.util.StringPattern;
+
+/**
+ * An {@link AccessPolicy} that is configured with a {@link StringPattern#parseCombinedPattern(String) combined
+ * pattern}. A type is allowed iff its fully qualified name (e.g. {@code "java.util.Map$Entry"}) matches, and a member
+ * is allowed iff the name of its declaring type, a period and its name (e.g. {@code "java.lang.System.exit"}, {@code
+ * "java.io.File.<init>"}) matches. E.g.
+ * <pre>
+ *     new PatternAccessPolicy("java.lang.*-java.lang.System.*-java.lang.Runtime*-java.lang.Class*+java.util.*")
+ * </pre>
+ * <p>
+ *   Notice that nothing is allowed unless a pattern matches.
+ * </p>
+ */
+public
+class PatternAccessPolicy implements AccessPolicy {
+
+    private final StringPattern[] patterns;
+
+    public
+    PatternAccessPolicy(String combinedPattern) {
+        this.patterns = StringPattern.parseCombinedPattern(combinedPattern);
+    }
+
+    @Override public boolean
+    isTypeAllowed(String className) { return StringPattern.matches(this.patterns, className); }
+
+    @Override public boolean
+    isMemberAllowed(String className, String memberName) {
+        return StringPattern.matches(this.patterns, className + '.' + memberName);
+    }
+
+    @Override public String
+    toString() { return Arrays.toString(this.patterns); }
+}
@@ -0,0 +1,208 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codehaus.janino;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Defines the classes of many cooked units into a small number of shared class loaders ("generations"), instead of
+ * creating one {@link ByteArrayClassLoader} per {@link SimpleCompiler#cook(Map)}. This saves the per-loader overhead
+ * (lock map, package table, protection domain bookkeeping) when very many small units are cooked.
+ * <p>
+ *   A generation accepts units until either its class count or its bytecode size would exceed the configured limit,
+ *   or until it is {@link Generation#retire() retired}; then a new generation is started. A generation (and all its
+ *   classes) can only be garbage-collected as a whole, i.e. when none of its classes, their instances and the
+ *   evaluators that cooked them are reachable any longer. Retire a generation when you know that the evaluators
+ *   that use it are about to be released, so that no new units keep it alive.
+ * </p>
+ * <p>
+ *   To avoid name collisions between the units of one generation, {@link ClassBodyEvaluator} and its subclasses
+ *   automatically make their class names unique (see {@link #uniqueClassName(String)}) when a {@link
+ *   PooledClassDefiner} is configured.
+ * </p>
+ * <p>
+ *   This class is thread-safe, and one instance is typically shared by many {@link SimpleCompiler}s.
+ * </p>
+ *
+ * @see SimpleCompiler#setPooledClassDefiner(PooledClassDefiner)
+ */
+public
+class PooledClassDefiner {
+
+    private final ClassLoader parentClassLoader;
+    private final int         maxClassesPerGeneration;
+    private final long        maxBytesPerGeneration;
+
+    @Nullable private Generation currentGeneration;
+    private long                 nextUniqueNumber = 1;
+
+    /**
+     * @param parentClassLoader       The parent of all generations; also the loader that the compilers should use
+     *                                for type resolution (see {@link SimpleCompiler#setParentClassLoader(ClassLoader)})
+     * @param maxClassesPerGeneration The maximum number of classes per generation
+     * @param maxBytesPerGeneration   The maximum total bytecode size per generation
+     */
+    public
+    PooledClassDefiner(ClassLoader parentClassLoader, int maxClassesPerGeneration, long maxBytesPerGeneration) {
+        this.parentClassLoader       = parentClassLoader;
+        this.maxClassesPerGeneration = maxClassesPerGeneration;
+        this.maxBytesPerGeneration   = maxBytesPerGeneration;
+    }
+
+    /**
+     * @return The parent class loader of all generations
+     */
+    public ClassLoader
+    getParentClassLoader() { return this.parentClassLoader; }
+
+    /**
+     * Adds the given classes to the current generation, or, if they don't fit into it, to a new generation. The
+     * classes are defined lazily, when they are loaded through the returned generation.
+     *
+     * @param classes Maps fully qualified classes names to bytecodes
+     * @return        The generation that loads the <var>classes</var>
+     */
+    public synchronized Generation
+    define(Map<String /*className*/, byte[] /*bytecode*/> classes) {
+
+        long byteCount = 0;
+        for (byte[] bytecode : classes.values()) byteCount += bytecode.length;
+
+        Generation g = this.currentGeneration;
+        if (g == null || !g.accepts(classes, byteCount)) {
+            g = (this.currentGeneration = (Generation) AccessController.doPrivileged(
+                new PrivilegedAction<Generation>() {
+
+                    @Override public Generation
+                    run() { return new Generation(); }
+                }
+            ));
+        }
+
+        g.classes.putAll(classes);
+        g.classNames.addAll(classes.keySet());
+        g.byteCount += byteCount;
+
+        return g;
+    }
+
+    /**
+     * @return The generation that {@link #define(Map)} currently adds classes to, or {@code null} if there is none
+     */
+    @Nullable public synchronized Generation
+    getCurrentGeneration() { return this.currentGeneration; }
+
+    /**
+     * Retires the current generation (if any); the next invocation of {@link #define(Map)} will start a new one.
+     */
+    public synchronized void
+    retireCurrentGeneration() {
+        Generation g = this.currentGeneration;
+        if (g != null) g.retire();
+    }
+
+    /**
+     * @return E.g. "pkg.SC$$17" for "pkg.SC"; unique for this {@link PooledClassDefiner}
+     */
+    public synchronized String
+    uniqueClassName(String className) { return className + "$$" + this.nextUniqueNumber++; }
+
+    /**
+     * A class loader that defines the classes of many units.
+     */
+    public final
+    class Generation extends ClassLoader {
+
+        /**
+         * The bytecode of the classes that were not yet defined.
+         */
+        final Map<String /*className*/, byte[] /*bytecode*/> classes = new ConcurrentHashMap<String, byte[]>();
+
+        // Guarded by the enclosing PooledClassDefiner.
+        final Set<String> classNames = new HashSet<String>();
+        long              byteCount;
+        boolean           retired;
+
+        Generation() { super(PooledClassDefiner.this.parentClassLoader); }
+
+        /**
+         * After a generation is retired, no more classes are added to it.
+         */
+        public void
+        retire() {
+            synchronized (PooledClassDefiner.this) {
+                this.retired = true;
+                if (PooledClassDefiner.this.currentGeneration == this) PooledClassDefiner.this.currentGeneration = null;
+            }
+        }
+
+        /**
+         * @return The number of classes that were added to this generation
+         */
+        public int
+        getClassCount() {
+            synchronized (PooledClassDefiner.this) { return this.classNames.size(); }
+        }
+
+        boolean
+        accepts(Map<String, byte[]> classes, long byteCount) {
+
+            if (this.retired) return false;
+
+            // A unit that exceeds the limits all by itself gets a generation of its own.
+            if (this.classNames.isEmpty()) return true;
+
+            if (this.classNames.size() + classes.size() > PooledClassDefiner.this.maxClassesPerGeneration) return false;
+            if (this.byteCount + byteCount > PooledClassDefiner.this.maxBytesPerGeneration) return false;
+
+            return Collections.disjoint(this.classNames, classes.keySet());
+        }
+
+        @Override protected Class<?>
+        findClass(@Nullable String name) throws ClassNotFoundException {
+            assert name != null;
+
+            byte[] data = (byte[]) this.classes.remove(name);
+            if (data == null) throw new ClassNotFoundException(name);
+
+            return super.defineClass(
+                name,                                 // name
+                data,                                 // b
+                0,                                    // off
+                data.length,                          // len
+                this.getClass().getProtectionDomain() // protectionDomain
+            );
+        }
+    }
+}
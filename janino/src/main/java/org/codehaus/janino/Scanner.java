@@ -210,6 +210,21 @@ class Scanner {
     public void
     setIgnoreWhiteSpace(boolean value) { this.ignoreWhiteSpace = value; }
 
+    /**
+     * Iff non-{@code null}, then the time spent in {@link #produce()} is accumulated, and reported as {@link
+     * CompilationListener.Phase#SCAN} when the end of input is reached.
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.optionalCompilationListener = optionalCompilationListener;
+    }
+
+    /**
+     * @return The number of characters read so far from the (unicode-unescaped) input
+     */
+    public long
+    getCharacterCount() { return this.characterCount; }
+
     /**
      * @return The file name optionally passed to the constructor
      */
@@ -249,6 +264,24 @@ class Scanner {
     public Token
     produce() throws CompileException, IOException {
 
+        CompilationListener cl = this.optionalCompilationListener;
+        if (cl == null) return this.produce2();
+
+        long  start  = System.nanoTime();
+        Token result = this.produce2();
+        this.scanNanos += System.nanoTime() - start;
+
+        if (result.type == TokenType.END_OF_INPUT && !this.scanReported) {
+            this.scanReported = true;
+            cl.phaseCompleted(CompilationListener.Phase.SCAN, this.optionalFileName, this.scanNanos);
+        }
+
+        return result;
+    }
+
+    private Token
+    produce2() throws CompileException, IOException {
+
         if (this.peek() == -1) return this.token(TokenType.END_OF_INPUT, "end-of-input");
 
         // Funny... the JLS calls it "white space", and the JRE calls it "whitespace"!?
@@ -745,6 +778,7 @@ class Scanner {
         } catch (UnicodeUnescapeException ex) {
             throw new CompileException(ex.getMessage(), this.location(), ex);
         }
+        if (result != -1) ++this.characterCount;
         if (result == '\r') {
             ++this.nextCharLineNumber;
             this.nextCharColumnNumber = 0;
@@ -790,6 +824,13 @@ class Scanner {
      */
     private int tokenColumnNumber;
 
+    private long characterCount;
+
+    // Used for reporting the SCAN phase.
+    @Nullable private CompilationListener optionalCompilationListener;
+    private long                          scanNanos;
+    private boolean                       scanReported;
+
     private static final Set<String> JAVA_KEYWORDS = new HashSet<String>(Arrays.asList(
 
         // SUPPRESS CHECKSTYLE WrapMethod:16
@@ -33,14 +33,30 @@ import java.io.StringReader;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.commons.compiler.BatchResult;
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Cookable;
 import org.codehaus.commons.compiler.IExpressionEvaluator;
@@ -62,6 +78,8 @@ import org.codehaus.janino.Java.Type;
 import org.codehaus.janino.Java.VariableDeclarator;
 import org.codehaus.janino.Parser.ClassDeclarationContext;
 import org.codehaus.janino.util.AbstractTraverser;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.DeepCopier;
 import org.codehaus.janino.util.Objects;
 
 /**
@@ -122,7 +140,7 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
 
         private Class<?>[] thrownExceptions = new Class<?>[0];
 
-        @Nullable private Method result; // null=uncooked
+        @Nullable private volatile Method result; // null=uncooked; replaced by profile-guided recompilation
 
         Script(String methodName) { this.methodName = methodName; }
 
@@ -143,6 +161,39 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
      */
     @Nullable private Script[] scripts;
 
+    private static final Logger LOGGER = Logger.getLogger(ScriptEvaluator.class.getName());
+
+    private int                tieredCompilationThreshold = -1;
+    @Nullable private Executor tieredCompilationExecutor;
+
+    private int                   recompilationThreshold = -1;
+    @Nullable private Executor    recompilationExecutor;
+    private EnumSet<JaninoOption> recompilationOptions   = EnumSet.noneOf(JaninoOption.class);
+
+    /**
+     * Non-{@code null} while the evaluations of the scripts are being profiled; see {@link
+     * #setProfileGuidedRecompilation(int, Executor, EnumSet)}.
+     */
+    @Nullable private volatile Recompiler recompiler;
+
+    /**
+     * Non-{@code null} while a compilation unit for later recompilation is being built; maps the types created by
+     * {@link #classToType(Location, Class)} to their classes.
+     */
+    @Nullable private Map<Type, Class<?>> reflectedTypes;
+
+    /**
+     * Non-{@code null} while the scripts are being interpreted, i.e. have not yet been compiled; see {@link
+     * #setTieredCompilation(int, Executor)}.
+     */
+    @Nullable private volatile Tier tier;
+
+    /**
+     * The interface method that {@link #createFastEvaluator(Scanner, Class, String[], Class[])} must bridge to the
+     * script method, if any.
+     */
+    @Nullable private Method bridgedMethod;
+
     /**
      * @throws IllegalArgumentException <var>count</var> is different from previous invocations of
      *                                  this method
@@ -581,6 +632,83 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
         for (int i = 0; i < thrownExceptions.length; i++) this.getScript(i).thrownExceptions = thrownExceptions[i];
     }
 
+    /**
+     * Enables "tiered execution": The next {@code cook()} only parses the scripts and resolves their names and types,
+     * and prepares them for interpretation; it does not generate code. {@link #evaluate(int, Object[])} then
+     * interprets the scripts, until they were evaluated <var>compileThreshold</var> times (all scripts together).
+     * Then the scripts are compiled and loaded in the background, and, when that has completed, all further
+     * evaluations execute the compiled code.
+     * <p>
+     *   This pays off for scripts that are evaluated only a few times, and particularly for scripts that are
+     *   <em>never</em> evaluated, because generating, defining, verifying and warming up a class is much more
+     *   expensive than interpreting a script a few times.
+     * </p>
+     * <p>
+     *   Only a subset of the Java language can be interpreted; if any of the scripts uses other constructs, declares
+     *   local methods, is not static, or if {@link #setPermissions(java.security.Permissions) permissions} are
+     *   configured, then the scripts are compiled and loaded immediately, as usual.
+     * </p>
+     * <p>
+     *   Scanning, parsing and name resolution errors are reported by {@code cook()}. Errors that only the code
+     *   generator detects (e.g. a method that grows beyond 64 KB) are reported when the scripts are
+     *   compiled, through {@link #getDeferredCompileException()}. The scripts then continue to be interpreted, and
+     *   are not compiled again.
+     * </p>
+     * <p>
+     *   {@link #getMethod(int)} compiles and loads the scripts immediately (if that has not yet happened).
+     * </p>
+     *
+     * @param compileThreshold A value of zero or less disables tiered execution (which is the default)
+     * @param optionalExecutor Executes the background compilation; {@code null} means to compile synchronously, in
+     *                         the thread that evaluates the script for the <var>compileThreshold</var>th time
+     */
+    public void
+    setTieredCompilation(int compileThreshold, @Nullable Executor optionalExecutor) {
+        this.tieredCompilationThreshold = compileThreshold;
+        this.tieredCompilationExecutor  = optionalExecutor;
+    }
+
+    /**
+     * Enables "profile-guided recompilation": After the next {@code cook()}, {@link #evaluate(int, Object[])} records,
+     * for each script, how often it was evaluated, and which of its arguments had the same value in all evaluations.
+     * When a script was evaluated <var>threshold</var> times, it is recompiled in the background, with the
+     * <var>recompilationOptions</var> (typically more expensive optimizations) in addition to the {@link #options()},
+     * and specialized for the arguments that were constant so far: Their values are substituted into a copy of the
+     * script, which the compiler can then fold, and which the recompiled method invokes when the actual arguments
+     * equal the recorded values. When the recompilation has completed, further evaluations execute the recompiled
+     * method.
+     * <p>
+     *   Only static scripts are recompiled, and only parameters of type {@code boolean}, {@code byte}, {@code short},
+     *   {@code char}, {@code int}, {@code long} and {@link String} (if not {@code null}) are specialized, and only if
+     *   the script does not assign to them. If {@link
+     *   #setPermissions(java.security.Permissions) permissions} or an {@link #setAccessPolicy(AccessPolicy) access
+     *   policy} are configured, if the scripts are interpreted (see {@link #setTieredCompilation(int, Executor)}), or
+     *   for {@link #createFastEvaluator(Reader, Class, String[]) fast evaluators}, no profiling takes place. Notice
+     *   that a {@link Method} obtained through {@link #getMethod(int)} before the recompilation will continue to
+     *   execute the original code.
+     * </p>
+     * <p>
+     *   Branch frequencies are <em>not</em> recorded, and the recompiled code keeps the block order of the script:
+     *   HotSpot's JIT compiler lays out the machine code according to its own branch profile, so a "hot path first"
+     *   order of the bytecode would gain next to nothing. For local method inlining, pass {@link
+     *   JaninoOption#INLINE_METHODS} in the <var>recompilationOptions</var>.
+     * </p>
+     *
+     * @param threshold        A value of zero or less disables profile-guided recompilation (which is the default)
+     * @param optionalExecutor Executes the background recompilation; {@code null} means to recompile synchronously, in
+     *                         the thread that evaluates the script for the <var>threshold</var>th time
+     */
+    public void
+    setProfileGuidedRecompilation(
+        int                   threshold,
+        @Nullable Executor    optionalExecutor,
+        EnumSet<JaninoOption> recompilationOptions
+    ) {
+        this.recompilationThreshold = threshold;
+        this.recompilationExecutor  = optionalExecutor;
+        this.recompilationOptions   = recompilationOptions;
+    }
+
     // ---------------------------------------------------------------
 
     @Override public final void
@@ -666,20 +794,33 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
      */
     public final void
     cook(Parser[] parsers) throws CompileException, IOException {
+        Object cookEvent = JfrEvents.COOK.begin();
+        long   start     = System.nanoTime();
+        for (Parser p : parsers) p.getScanner().setCompilationListener(this.getCompilationListener());
 
         this.setScriptCount(parsers.length);
+        this.discardTier();
+
+        boolean recompile = (
+            this.recompilationThreshold > 0
+            && this.bridgedMethod == null
+            && !this.hasPermissions()
+            && !this.hasAccessPolicy()
+        );
+        this.reflectedTypes = recompile ? new IdentityHashMap<Type, Class<?>>() : null;
 
         // Create compilation unit.
         Java.CompilationUnit compilationUnit = this.makeCompilationUnit(parsers.length == 1 ? parsers[0] : null);
 
         // Create class declaration.
-        final Java.AbstractClassDeclaration
+        final Java.PackageMemberClassDeclaration
         cd = this.addPackageMemberClassDeclaration(parsers[0].location(), compilationUnit);
+        this.addMemberDeclarations(cd);
 
         // Create methods with one block each.
+        List<List<Java.BlockStatement>> allStatements   = new ArrayList<List<Java.BlockStatement>>();
+        boolean                         hasLocalMethods = false;
         for (int i = 0; i < parsers.length; ++i) {
-
-            Script es     = this.getScript(i);
             Parser parser = parsers[i];
 
             // Create the statements of the method.
@@ -687,31 +828,942 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
             List<Java.MethodDeclarator> localMethods = new ArrayList<Java.MethodDeclarator>();
             this.makeStatements(i, parser, statements, localMethods);
 
-            // Create the method that holds the statements.
-            Location loc = parser.location();
-            cd.addDeclaredMethod(this.makeMethodDeclaration(
-                loc,                 // location
-                (                    // annotations
-                    es.overrideMethod
-                    ? new Java.Annotation[] { new Java.MarkerAnnotation(this.classToType(loc, Override.class)) }
-                    : new Java.Annotation[0]
-                ),
-                es.staticMethod,     // staticMethod
-                es.returnType,       // returnType
-                es.methodName,       // methodName
-                es.parameterTypes,   // parameterTypes
-                es.parameterNames,   // parameterNames
-                es.thrownExceptions, // thrownExceptions
-                statements           // statements
-            ));
+            this.addScriptMethod(cd, i, parser.location(), statements, localMethods);
+
+            Method bm = this.bridgedMethod;
+            if (bm != null) cd.addDeclaredMethod(this.makeBridgeMethod(parser.location(), bm, this.getScript(i)));
 
-            // Also add the "local methods" that a script my declare.
-            for (MethodDeclarator method : localMethods) {
-                cd.addDeclaredMethod(method);
+            allStatements.add(statements);
+            hasLocalMethods |= !localMethods.isEmpty();
+        }
+        this.parsed(parsers[0].getScanner(), start);
+
+        // Interpret the scripts instead of compiling them right away? Notice that preparing the interpreters resolves
+        // all names and types, so that these errors are reported here, and not at some later evaluation.
+        if (this.tieredCompilationThreshold > 0 && !hasLocalMethods) {
+            ScriptInterpreter[] interpreters = this.makeInterpreters(compilationUnit, cd, allStatements);
+            if (interpreters != null) {
+                assert this.scripts != null;
+                for (Script s : this.scripts) s.result = null;
+                this.tier           = new Tier(compilationUnit, cd.getClassName(), interpreters);
+                this.reflectedTypes = null;
+                SimpleCompiler.cooked(cookEvent, compilationUnit, ScriptEvaluator.characterCount(parsers));
+                return;
             }
         }
 
+        // Keep a pristine copy of the compilation unit for profile-guided recompilation.
+        Map<Type, Class<?>> rt = this.reflectedTypes;
+        if (rt != null) {
+            this.reflectedTypes = null;
+            this.recompiler     = new Recompiler(
+                ScriptEvaluator.copyCompilationUnit(compilationUnit, new TypeByNameCopier(rt))
+            );
+        }
+
         this.cook2(compilationUnit);
+        SimpleCompiler.cooked(cookEvent, compilationUnit, ScriptEvaluator.characterCount(parsers));
+    }
+
+    private static long
+    characterCount(Parser[] parsers) {
+        long result = 0;
+        for (Parser p : parsers) result += p.getScanner().getCharacterCount();
+        return result;
+    }
+
+    /**
+     * @return {@code null} iff any of the scripts cannot be interpreted
+     */
+    @Nullable private ScriptInterpreter[]
+    makeInterpreters(
+        CompilationUnit                    compilationUnit,
+        Java.PackageMemberClassDeclaration cd,
+        List<List<Java.BlockStatement>>    statements
+    ) throws CompileException {
+
+        // The interpreter cannot run in a protection domain, and does not enforce an access policy or execution
+        // budgets, nor does it profile.
+        if (this.hasPermissions() || this.hasAccessPolicy()) return null;
+        if (this.options().contains(JaninoOption.EXECUTION_BUDGET_CHECKS)) return null;
+        if (this.options().contains(JaninoOption.METHOD_PROFILING)) return null;
+        if (this.options().contains(JaninoOption.METHOD_PROFILING_WITH_TIMING)) return null;
+
+        // Simple names could designate inherited members, which the interpreter cannot access.
+        if (cd.optionalExtendedType != null || cd.implementedTypes.length > 0) return null;
+
+        // The interpreters are prepared on a COPY of the compilation unit, because preparing attributes the AST, and
+        // the original is to be compiled later.
+        Java.CompilationUnit    cu2 = new Java.CompilationUnit(compilationUnit.optionalFileName);
+        DeepCopier              dc  = new DeepCopier();
+        Java.PackageDeclaration opd = compilationUnit.optionalPackageDeclaration;
+        if (opd != null) cu2.setPackageDeclaration(new Java.PackageDeclaration(opd.getLocation(), opd.packageName));
+
+        // Simple names could also designate statically imported fields.
+        boolean namesMayReferToFields = false;
+        for (Java.CompilationUnit.ImportDeclaration id : compilationUnit.importDeclarations) {
+            cu2.addImportDeclaration(dc.copyImportDeclaration(id));
+            namesMayReferToFields |= (
+                id instanceof Java.CompilationUnit.SingleStaticImportDeclaration
+                || id instanceof Java.CompilationUnit.StaticImportOnDemandDeclaration
+            );
+        }
+
+        Java.PackageMemberClassDeclaration cd2 = new Java.PackageMemberClassDeclaration(
+            cd.getLocation(),               // location
+            null,                           // optionalDocComment
+            new Java.Modifiers(Mod.PUBLIC), // modifiers
+            cd.getName(),                   // name
+            null,                           // optionalTypeParameters
+            null,                           // optionalExtendedType
+            new Type[0]                     // implementedTypes
+        );
+        cu2.addPackageMemberTypeDeclaration(cd2);
+
+        List<List<Java.BlockStatement>> statements2 = new ArrayList<List<Java.BlockStatement>>();
+        for (int i = 0; i < statements.size(); i++) {
+            List<Java.BlockStatement> bss = dc.copyBlockStatements(
+                (List<Java.BlockStatement>) statements.get(i)
+            );
+            this.addScriptMethod(cd2, i, cd.getLocation(), bss, new ArrayList<Java.MethodDeclarator>());
+            statements2.add(bss);
+        }
+
+        ClassLoader  cl = this.getParentClassLoader();
+        UnitCompiler uc = new UnitCompiler(cu2, new ClassLoaderIClassLoader(cl));
+
+        ScriptInterpreter[] result = new ScriptInterpreter[statements2.size()];
+        for (int i = 0; i < result.length; i++) {
+            Script s = this.getScript(i);
+            if (!s.staticMethod) return null;
+
+            result[i] = ScriptInterpreter.prepare(
+                uc,                                             // unitCompiler
+                cl,                                             // classLoader
+                namesMayReferToFields,                          // namesMayReferToFields
+                s.returnType,                                   // returnType
+                s.parameterNames,                               // parameterNames
+                s.parameterTypes,                               // parameterTypes
+                s.thrownExceptions,                             // thrownExceptions
+                (List<Java.BlockStatement>) statements2.get(i)  // statements
+            );
+            if (result[i] == null) return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Stops the interpretation and the profiling of previously cooked scripts.
+     */
+    private void
+    discardTier() {
+        this.recompiler = null;
+
+        Tier t = this.tier;
+        if (t == null) return;
+        synchronized (t) {
+            t.discarded = true;
+            this.tier   = null;
+        }
+    }
+
+    /**
+     * The interpreted state of the scripts; see {@link #setTieredCompilation(int, Executor)}.
+     */
+    private
+    class Tier {
+
+        private final CompilationUnit     compilationUnit;
+        private final String              className;
+        private final ScriptInterpreter[] interpreters;
+        private final AtomicInteger       evaluationCount      = new AtomicInteger();
+        private final AtomicBoolean       compilationScheduled = new AtomicBoolean();
+
+        // Guarded by "this".
+        boolean                             discarded;
+        @Nullable volatile CompileException compileException;
+
+        Tier(CompilationUnit compilationUnit, String className, ScriptInterpreter[] interpreters) {
+            this.compilationUnit = compilationUnit;
+            this.className       = className;
+            this.interpreters    = interpreters;
+        }
+
+        @Nullable Object
+        evaluate(int idx, @Nullable Object[] arguments) throws InvocationTargetException {
+
+            if (
+                !this.compilationScheduled.get()
+                && this.evaluationCount.incrementAndGet() >= ScriptEvaluator.this.tieredCompilationThreshold
+                && this.compilationScheduled.compareAndSet(false, true)
+            ) {
+                Executor e = ScriptEvaluator.this.tieredCompilationExecutor;
+                if (e == null) {
+                    this.compile();
+                } else {
+                    try {
+                        e.execute(new Runnable() { @Override public void run() { Tier.this.compile(); } });
+                    } catch (RejectedExecutionException ree) {
+
+                        // Retry with the next evaluation.
+                        this.compilationScheduled.set(false);
+                    }
+                }
+            }
+
+            return this.interpreters[idx].evaluate(arguments);
+        }
+
+        /**
+         * Compiles and loads the scripts and, on success, ends the interpretation.
+         */
+        synchronized void
+        compile() {
+
+            if (this.discarded || this.compileException != null) return;
+
+            ClassFile[] classFiles;
+            try {
+                classFiles = ScriptEvaluator.this.compileToClassFiles(this.compilationUnit);
+            } catch (CompileException ce) {
+                this.compilationFailed(ce);
+                return;
+            } catch (InternalCompilerException ice) {
+                this.compilationFailed(ScriptEvaluator.toCompileException(ice));
+                return;
+            }
+
+            ScriptEvaluator.this.cook(classFiles);
+
+            Class<?> c;
+            try {
+                c = ScriptEvaluator.this.loadCookedClass(this.className);
+            } catch (ClassNotFoundException cnfe) {
+                throw new InternalCompilerException((
+                    "SNO: Generated compilation unit does not declare class '"
+                    + this.className
+                    + "'"
+                ), cnfe);
+            }
+
+            assert ScriptEvaluator.this.scripts != null;
+            int[] indices = new int[ScriptEvaluator.this.scripts.length];
+            for (int i = 0; i < indices.length; i++) indices[i] = i;
+            ScriptEvaluator.this.assignMethods(c, indices);
+
+            this.discarded            = true;
+            ScriptEvaluator.this.tier = null;
+        }
+
+        private void
+        compilationFailed(CompileException ce) {
+            ScriptEvaluator.LOGGER.log(Level.WARNING, "Compiling the interpreted scripts failed", ce);
+            this.compileException = ce;
+        }
+    }
+
+    /**
+     * The evaluation profile of the scripts; see {@link #setProfileGuidedRecompilation(int, Executor, EnumSet)}.
+     */
+    private final
+    class Recompiler {
+
+        /**
+         * Marks an argument that was not the same in all evaluations.
+         */
+        private final Object varying = new Object();
+
+        private final CompilationUnit pristineCompilationUnit;
+        private final AtomicInteger[] evaluationCounts;
+
+        /**
+         * The arguments of the first evaluation of each script; elements are replaced with {@link #varying} when a
+         * later evaluation has a different argument. Guarded by the lock of this {@link Recompiler}, because
+         * several threads may evaluate the same script.
+         */
+        private final Object[][] observedArguments;
+
+        Recompiler(CompilationUnit pristineCompilationUnit) {
+            assert ScriptEvaluator.this.scripts != null;
+            int n = ScriptEvaluator.this.scripts.length;
+
+            this.pristineCompilationUnit = pristineCompilationUnit;
+            this.evaluationCounts        = new AtomicInteger[n];
+            this.observedArguments       = new Object[n][];
+            for (int i = 0; i < n; i++) this.evaluationCounts[i] = new AtomicInteger();
+        }
+
+        void
+        record(int idx, @Nullable Object[] arguments) {
+
+            AtomicInteger ec = this.evaluationCounts[idx];
+            if (ec.get() >= ScriptEvaluator.this.recompilationThreshold) return;
+
+            Object[] args = arguments == null ? new Object[0] : arguments;
+            synchronized (this) {
+                Object[] oa = this.observedArguments[idx];
+                if (oa == null) {
+                    this.observedArguments[idx] = (Object[]) args.clone();
+                } else {
+                    for (int i = 0; i < oa.length && i < args.length; i++) {
+                        if (oa[i] != this.varying && !(oa[i] == null ? args[i] == null : oa[i].equals(args[i]))) {
+                            oa[i] = this.varying;
+                        }
+                    }
+                }
+            }
+
+            if (ec.incrementAndGet() != ScriptEvaluator.this.recompilationThreshold) return;
+
+            final int idx2 = idx;
+            Executor  e    = ScriptEvaluator.this.recompilationExecutor;
+            if (e == null) {
+                this.recompile(idx2);
+            } else {
+                try {
+                    e.execute(new Runnable() { @Override public void run() { Recompiler.this.recompile(idx2); } });
+                } catch (RejectedExecutionException ree) {
+
+                    // Retry with the next evaluation.
+                    ec.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Recompiles the indexed script and, on success, replaces its method.
+         */
+        void
+        recompile(int idx) {
+
+            Script s = ScriptEvaluator.this.getScript(idx);
+            if (!s.staticMethod) return;
+
+            // The script was reconfigured after it was cooked, e.g. by "ExpressionEvaluator.cookColumnar()".
+            if (!Arrays.equals(s.getResult().getParameterTypes(), s.parameterTypes)) return;
+
+            // Determine the arguments that were the same in all evaluations so far.
+            Object[] oa;
+            synchronized (this) {
+                oa = this.observedArguments[idx];
+                if (oa != null) oa = (Object[]) oa.clone();
+            }
+            Map<String, Object> constants = new HashMap<String, Object>();
+            for (int i = 0; oa != null && i < oa.length && i < s.parameterTypes.length; i++) {
+                if (oa[i] != this.varying && ScriptEvaluator.isSpecializable(s.parameterTypes[i], oa[i])) {
+                    constants.put(s.parameterNames[i], oa[i]);
+                }
+            }
+
+            Method m;
+            try {
+                MethodDeclarator md = this.getMethodDeclarator(s);
+
+                // A parameter that the script assigns to is not a constant.
+                List<? extends BlockStatement> statements = md.optionalStatements;
+                assert statements != null;
+                constants.keySet().removeAll(ScriptEvaluator.assignedVariableNames(statements));
+
+                if (constants.isEmpty() && ScriptEvaluator.this.recompilationOptions.isEmpty()) return;
+
+                CompilationUnit cu = this.makeCompilationUnit(s, constants);
+
+                EnumSet<JaninoOption> options = EnumSet.copyOf(ScriptEvaluator.this.options());
+                options.addAll(ScriptEvaluator.this.recompilationOptions);
+
+                SimpleCompiler sc = new SimpleCompiler();
+                sc.setParentClassLoader(ScriptEvaluator.this.getParentClassLoader());
+                sc.options(options);
+                sc.cook(cu);
+
+                m = sc.getClassLoader().loadClass(
+                    cu.getPackageMemberTypeDeclarations()[0].getClassName()
+                ).getDeclaredMethod(s.methodName, s.parameterTypes);
+            } catch (Exception e) {
+                ScriptEvaluator.LOGGER.log(Level.WARNING, "Recompiling script " + idx + " failed", e);
+                return;
+            }
+
+            // Swap in the recompiled method, unless the scripts were re-cooked in the meantime.
+            if (ScriptEvaluator.this.recompiler == this) s.result = m;
+        }
+
+        /**
+         * @return The declaration of the method of the script <var>s</var> in the pristine compilation unit
+         */
+        private MethodDeclarator
+        getMethodDeclarator(Script s) {
+
+            List<MethodDeclarator> mds = (
+                (Java.AbstractClassDeclaration) this.pristineCompilationUnit.getPackageMemberTypeDeclarations()[0]
+            ).getMethodDeclarations();
+            for (int i = 0; i < mds.size(); i++) {
+                MethodDeclarator md = (MethodDeclarator) mds.get(i);
+                if (ScriptEvaluator.declares(md, s)) return md;
+            }
+            throw new InternalCompilerException("SNO: Method \"" + s.methodName + "\" not declared");
+        }
+
+        /**
+         * @return A copy of the compilation unit, which declares only the method of the script <var>s</var> (and no
+         *         other scripts' methods); iff there are <var>constants</var>, that method checks the arguments and
+         *         invokes an additional, specialized method
+         */
+        private CompilationUnit
+        makeCompilationUnit(Script s, Map<String, Object> constants) throws CompileException, IOException {
+
+            CompilationUnit cu = ScriptEvaluator.copyCompilationUnit(this.pristineCompilationUnit, new DeepCopier());
+
+            Java.AbstractClassDeclaration cd = (
+                (Java.AbstractClassDeclaration) cu.getPackageMemberTypeDeclarations()[0]
+            );
+
+            // Remove the methods of all scripts from the class declaration, and remember the one of "s".
+            MethodDeclarator md = null;
+            assert ScriptEvaluator.this.scripts != null;
+            for (Iterator<MethodDeclarator> it = cd.getMethodDeclarations().iterator(); it.hasNext();) {
+                MethodDeclarator md2 = (MethodDeclarator) it.next();
+                for (Script s2 : ScriptEvaluator.this.scripts) {
+                    if (ScriptEvaluator.declares(md2, s2)) {
+                        if (s2 == s) md = md2;
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+            assert md != null;
+            List<? extends BlockStatement> statements = md.optionalStatements;
+            assert statements != null;
+
+            List<BlockStatement> genericStatements = new ArrayList<BlockStatement>();
+            if (!constants.isEmpty()) {
+                cd.addDeclaredMethod(ScriptEvaluator.this.makeMethodDeclaration(
+                    md.getLocation(),                                                    // location
+                    new Java.Annotation[0],                                              // annotations
+                    true,                                                                // staticMethod
+                    s.returnType,                                                        // returnType
+                    s.methodName + "$specialized",                                       // methodName
+                    s.parameterTypes,                                                    // parameterTypes
+                    s.parameterNames,                                                    // parameterNames
+                    s.thrownExceptions,                                                  // thrownExceptions
+                    new ParameterSpecializer(constants).copyBlockStatements(statements), // statements
+                    true                                                                 // typesByName
+                ));
+                genericStatements.add(ScriptEvaluator.makeGuard(s, constants));
+            }
+            genericStatements.addAll(new DeepCopier().copyBlockStatements(statements));
+
+            cd.addDeclaredMethod(ScriptEvaluator.this.makeMethodDeclaration(
+                md.getLocation(),       // location
+                new Java.Annotation[0], // annotations
+                true,                   // staticMethod
+                s.returnType,           // returnType
+                s.methodName,           // methodName
+                s.parameterTypes,       // parameterTypes
+                s.parameterNames,       // parameterNames
+                s.thrownExceptions,     // thrownExceptions
+                genericStatements,      // statements
+                true                    // typesByName
+            ));
+
+            return cu;
+        }
+    }
+
+    /**
+     * @return Whether <var>md</var> is the method generated for the script <var>s</var>, as opposed to a local method
+     */
+    private static boolean
+    declares(MethodDeclarator md, Script s) {
+
+        if (!md.name.equals(s.methodName)) return false;
+
+        Java.FunctionDeclarator.FormalParameter[] fps = md.formalParameters.parameters;
+        if (fps.length != s.parameterNames.length) return false;
+        for (int i = 0; i < fps.length; i++) {
+            if (!fps[i].name.equals(s.parameterNames[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The simple names that the <var>statements</var> assign to, or increment or decrement
+     */
+    private static Set<String>
+    assignedVariableNames(List<? extends BlockStatement> statements) {
+
+        final Set<String> result = new HashSet<String>();
+        AbstractTraverser<RuntimeException> at = new AbstractTraverser<RuntimeException>() {
+
+            @Override public void
+            traverseAssignment(Java.Assignment a) {
+                this.addName(a.lhs);
+                super.traverseAssignment(a);
+            }
+
+            @Override public void
+            traverseCrement(Java.Crement c) {
+                this.addName(c.operand);
+                super.traverseCrement(c);
+            }
+
+            private void
+            addName(Java.Rvalue rv) {
+                while (rv instanceof Java.ParenthesizedExpression) rv = ((Java.ParenthesizedExpression) rv).value;
+                if (rv instanceof Java.AmbiguousName && ((Java.AmbiguousName) rv).n == 1) {
+                    result.add(((Java.AmbiguousName) rv).identifiers[0]);
+                }
+            }
+        };
+        for (int i = 0; i < statements.size(); i++) at.visitBlockStatement((BlockStatement) statements.get(i));
+
+        return result;
+    }
+
+    /**
+     * @return Whether an argument <var>value</var> of the given parameter <var>type</var> can be substituted by a
+     *         constant
+     */
+    private static boolean
+    isSpecializable(Class<?> type, @Nullable Object value) {
+        return (
+            (type == String.class && value instanceof String)
+            || (type == boolean.class && value instanceof Boolean)
+            || (type == byte.class && value instanceof Byte)
+            || (type == short.class && value instanceof Short)
+            || (type == char.class && value instanceof Character)
+            || (type == int.class && value instanceof Integer)
+            || (type == long.class && value instanceof Long)
+        );
+    }
+
+    /**
+     * @return {@code if (p1 == c1 && ...) return eval$specialized(p1, p2, ...);}
+     */
+    private static BlockStatement
+    makeGuard(Script s, Map<String, Object> constants) throws CompileException, IOException {
+
+        StringBuilder sb = new StringBuilder("if (");
+        for (Iterator<Map.Entry<String, Object>> it = constants.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Object> e = (Map.Entry<String, Object>) it.next();
+
+            String name  = (String) e.getKey();
+            Object value = e.getValue();
+            if (value instanceof String) {
+                sb.append(ScriptEvaluator.toJavaLiteral(value)).append(".equals(").append(name).append(')');
+            } else {
+                sb.append(name).append(" == ").append(ScriptEvaluator.toJavaLiteral(value));
+            }
+            if (it.hasNext()) sb.append(" && ");
+        }
+        sb.append(") ");
+
+        StringBuilder invocation = new StringBuilder(s.methodName).append("$specialized(");
+        for (int i = 0; i < s.parameterNames.length; i++) {
+            if (i > 0) invocation.append(", ");
+            invocation.append(s.parameterNames[i]);
+        }
+        invocation.append(')');
+
+        if (s.returnType == void.class) {
+            sb.append("{ ").append(invocation).append("; return; }");
+        } else {
+            sb.append("return ").append(invocation).append(';');
+        }
+
+        return new Parser(new Scanner(null, new StringReader(sb.toString()))).parseBlockStatement();
+    }
+
+    /**
+     * @return The Java literal that represents the <var>value</var>, which must be a {@link String}, {@link Boolean},
+     *         {@link Byte}, {@link Short}, {@link Character}, {@link Integer} or {@link Long}
+     */
+    private static String
+    toJavaLiteral(Object value) {
+
+        if (value instanceof String) {
+            String        s  = (String) value;
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else
+                if (c >= ' ' && c < 127) {
+                    sb.append(c);
+                } else
+                if (c < 256) {
+                    sb.append('\\').append(Integer.toOctalString(01000 | c).substring(1));
+                } else
+                {
+                    sb.append("\\u").append(Integer.toHexString(0x10000 | c).substring(1));
+                }
+            }
+            return sb.append('"').toString();
+        }
+
+        if (value instanceof Character) return "(char) 0x" + Integer.toHexString(((Character) value).charValue());
+        if (value instanceof Byte)      return "(byte) " + value;
+        if (value instanceof Short)     return "(short) " + value;
+        if (value instanceof Integer)   return "0x" + Integer.toHexString(((Integer) value).intValue());
+        if (value instanceof Long)      return "0x" + Long.toHexString(((Long) value).longValue()) + 'L';
+        return value.toString();
+    }
+
+    /**
+     * Copies the import declarations and the type declarations of the <var>subject</var>.
+     */
+    private static CompilationUnit
+    copyCompilationUnit(CompilationUnit subject, DeepCopier dc) throws CompileException {
+
+        CompilationUnit         result = new CompilationUnit(subject.optionalFileName);
+        Java.PackageDeclaration opd    = subject.optionalPackageDeclaration;
+        if (opd != null) result.setPackageDeclaration(new Java.PackageDeclaration(opd.getLocation(), opd.packageName));
+
+        for (Java.CompilationUnit.ImportDeclaration id : subject.importDeclarations) {
+            result.addImportDeclaration(dc.copyImportDeclaration(id));
+        }
+        for (Java.PackageMemberTypeDeclaration pmtd : subject.getPackageMemberTypeDeclarations()) {
+            result.addPackageMemberTypeDeclaration((Java.PackageMemberTypeDeclaration) dc.copyTypeDeclaration(pmtd));
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies an AST, and replaces the types that were created by {@link #classToType(Location, Class)} with types that
+     * are resolved by name, so that the copy can be compiled by a different compiler.
+     */
+    private static final
+    class TypeByNameCopier extends DeepCopier {
+
+        private final Map<Type, Class<?>> reflectedTypes;
+
+        TypeByNameCopier(Map<Type, Class<?>> reflectedTypes) { this.reflectedTypes = reflectedTypes; }
+
+        @Override public Type
+        copyType(Type subject) throws CompileException {
+            Class<?> clazz = (Class<?>) this.reflectedTypes.get(subject);
+            return clazz != null ? ScriptEvaluator.typeByName(subject.getLocation(), clazz) : super.copyType(subject);
+        }
+    }
+
+    /**
+     * Copies an AST, and replaces all references to the given parameters with constants. References within nested
+     * class declarations are not replaced, because there the names may designate other variables.
+     */
+    private static final
+    class ParameterSpecializer extends DeepCopier {
+
+        private final Map<String /*parameterName*/, Object /*value*/> constants;
+        private int                                                    classDeclarationDepth;
+
+        ParameterSpecializer(Map<String, Object> constants) { this.constants = constants; }
+
+        @Override public Java.Rvalue
+        copyRvalue(Java.Rvalue subject) throws CompileException {
+
+            if (this.classDeclarationDepth == 0 && subject instanceof Java.AmbiguousName) {
+                Java.AmbiguousName an = (Java.AmbiguousName) subject;
+                if (an.n == 1 && this.constants.containsKey(an.identifiers[0])) {
+                    return ParameterSpecializer.constant(an.getLocation(), this.constants.get(an.identifiers[0]));
+                }
+            }
+
+            return super.copyRvalue(subject);
+        }
+
+        @Override public Java.AnonymousClassDeclaration
+        copyAnonymousClassDeclaration(Java.AnonymousClassDeclaration subject) throws CompileException {
+            this.classDeclarationDepth++;
+            try {
+                return super.copyAnonymousClassDeclaration(subject);
+            } finally {
+                this.classDeclarationDepth--;
+            }
+        }
+
+        @Override public LocalClassDeclaration
+        copyLocalClassDeclaration(LocalClassDeclaration subject) throws CompileException {
+            this.classDeclarationDepth++;
+            try {
+                return super.copyLocalClassDeclaration(subject);
+            } finally {
+                this.classDeclarationDepth--;
+            }
+        }
+
+        private static Java.Rvalue
+        constant(Location location, Object value) {
+            if (value instanceof String)    return new Java.SimpleConstant(location, (String) value);
+            if (value instanceof Boolean)   return new Java.SimpleConstant(location, ((Boolean) value).booleanValue());
+            if (value instanceof Byte)      return new Java.SimpleConstant(location, ((Byte) value).byteValue());
+            if (value instanceof Short)     return new Java.SimpleConstant(location, ((Short) value).shortValue());
+            if (value instanceof Character) return new Java.SimpleConstant(location, ((Character) value).charValue());
+            if (value instanceof Integer)   return new Java.SimpleConstant(location, ((Integer) value).intValue());
+            if (value instanceof Long)      return new Java.SimpleConstant(location, ((Long) value).longValue());
+            throw new AssertionError(value);
+        }
+    }
+
+    /**
+     * Like {@link #cook(String[], String[])}, but isolates the scripts from each other: A script that fails to parse or
+     * to compile does not prevent the others from being cooked. The scripts are compiled into as few classes as
+     * possible; ideally, into only one.
+     * <p>
+     *   Each script is configured as usual, e.g. through {@link #setParameters(String[][], Class[][])} and {@link
+     *   #setReturnTypes(Class[])}. After this method returns, {@link #getMethod(int)} returns the methods of the
+     *   successfully cooked scripts, and {@link BatchResult#getException(int)} the exceptions of the others.
+     * </p>
+     * <p>
+     *   When a compilation fails, the failing script is identified through the file name of the exception's {@link
+     *   Location}, if possible; thus specify distinct <var>optionalFileNames</var> to make isolation cheap. Otherwise,
+     *   the set of scripts is bisected and the halves are compiled separately. An {@link InternalCompilerException} is
+     *   isolated in the same way, and reported as a {@link CompileException} of the failing script.
+     * </p>
+     * <p>
+     *   Scripts that declare equally named local methods are compiled into different classes.
+     * </p>
+     *
+     * @param optionalExecutor If non-{@code null}, then the scripts are scanned and parsed concurrently through it;
+     *                         notice that {@link #makeStatements(int, Parser, List, List)} must then be thread-safe
+     */
+    @Override public final BatchResult
+    cookBatch(
+        @Nullable String[]        optionalFileNames,
+        String[]                  strings,
+        @Nullable ExecutorService optionalExecutor
+    ) throws InterruptedException {
+
+        this.discardTier();
+
+        if (optionalFileNames != null) this.setScriptCount(optionalFileNames.length);
+        this.setScriptCount(strings.length);
+
+        final BatchResult result = new BatchResult(strings.length);
+
+        // Scan and parse the scripts, possibly concurrently.
+        long                 start   = System.nanoTime();
+        final ParsedScript[] parsed  = new ParsedScript[strings.length];
+        List<Future<?>>      futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < strings.length; i++) {
+            final int    idx      = i;
+            final String fileName = optionalFileNames == null ? null : optionalFileNames[i];
+            final String string   = strings[i];
+
+            Runnable parse = new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        parsed[idx] = ScriptEvaluator.this.parseScript(idx, fileName, string);
+                    } catch (CompileException ce) {
+                        result.setException(idx, ce);
+                    } catch (InternalCompilerException ice) {
+                        result.setException(idx, ScriptEvaluator.toCompileException(ice));
+                    }
+                }
+            };
+            if (optionalExecutor == null) {
+                parse.run();
+            } else {
+                futures.add(optionalExecutor.submit(parse));
+            }
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new InternalCompilerException(cause.toString(), cause);
+            }
+        }
+        result.setParseNanos(System.nanoTime() - start);
+
+        // Compile the successfully parsed scripts.
+        start = System.nanoTime();
+        {
+            int[] indices    = new int[parsed.length];
+            int   indexCount = 0;
+            for (int i = 0; i < parsed.length; i++) {
+                if (parsed[i] != null) {
+                    indices[indexCount++] = i;
+                } else {
+                    this.getScript(i).result = null;
+                }
+            }
+
+            // Scripts that declare equally named local methods cannot share a class.
+            int[][] groups = this.partitionByMethodNames(Arrays.copyOf(indices, indexCount), parsed);
+            for (int[] group : groups) this.cookBatch2(group, parsed, result);
+        }
+        result.setCompileNanos(System.nanoTime() - start);
+
+        return result;
+    }
+
+    /**
+     * Compiles the indexed scripts into one class; on failure, isolates the failing script(s).
+     */
+    private void
+    cookBatch2(int[] indices, ParsedScript[] parsed, BatchResult result) {
+
+        try {
+            Java.CompilationUnit compilationUnit = this.makeCompilationUnit(null);
+
+            final Java.AbstractClassDeclaration
+            cd = this.addPackageMemberClassDeclaration(
+                parsed[indices[0]].location,
+                compilationUnit
+            );
+
+            // Compile COPIES of the parsed scripts, because a failed compilation leaves its AST unusable.
+            DeepCopier dc = new DeepCopier();
+            for (int i : indices) {
+                ParsedScript ps = parsed[i];
+
+                List<Java.MethodDeclarator> localMethods = new ArrayList<Java.MethodDeclarator>();
+                for (MethodDeclarator md : ps.localMethods) {
+                    localMethods.add((MethodDeclarator) dc.copyFunctionDeclarator(md));
+                }
+                this.addScriptMethod(cd, i, ps.location, dc.copyBlockStatements(ps.statements), localMethods);
+            }
+
+            Class<?> c = this.compileToClass(compilationUnit);
+
+            this.assignMethods(c, indices);
+
+            result.addClass();
+        } catch (CompileException ce) {
+            this.isolateFailure(indices, parsed, result, ce);
+        } catch (InternalCompilerException ice) {
+            this.isolateFailure(indices, parsed, result, ScriptEvaluator.toCompileException(ice));
+        } catch (IOException ioe) {
+            throw new InternalCompilerException("SNO: IOException despite no parser", ioe);
+        }
+    }
+
+    /**
+     * Records the <var>ce</var> as the failure of the script that caused it, and cooks the other indexed scripts.
+     */
+    private void
+    isolateFailure(int[] indices, ParsedScript[] parsed, BatchResult result, CompileException ce) {
+
+        if (indices.length == 1) {
+            this.getScript(indices[0]).result = null;
+            result.setException(indices[0], ce);
+            return;
+        }
+
+        // Attempt to identify the failing script through the file name.
+        Location loc      = ce.getLocation();
+        String   fileName = loc == null ? null : loc.getFileName();
+        int      culprit  = -1;
+        if (fileName != null) {
+            for (int i : indices) {
+                if (fileName.equals(parsed[i].fileName)) {
+                    if (culprit != -1) {
+                        culprit = -1;
+                        break;
+                    }
+                    culprit = i;
+                }
+            }
+        }
+        if (culprit != -1) {
+            this.getScript(culprit).result = null;
+            result.setException(culprit, ce);
+
+            int[] rest = new int[indices.length - 1];
+            int   j    = 0;
+            for (int i : indices) {
+                if (i != culprit) rest[j++] = i;
+            }
+            this.cookBatch2(rest, parsed, result);
+            return;
+        }
+
+        // Otherwise, bisect.
+        int half = indices.length / 2;
+        this.cookBatch2(Arrays.copyOfRange(indices, 0, half), parsed, result);
+        this.cookBatch2(Arrays.copyOfRange(indices, half, indices.length), parsed, result);
+    }
+
+    /**
+     * Distributes the indexed scripts over as few groups as possible, such that no two scripts in a group declare
+     * equally named methods (script methods or local methods).
+     */
+    private int[][]
+    partitionByMethodNames(int[] indices, ParsedScript[] parsed) {
+
+        List<Set<String>> groupMethodNames = new ArrayList<Set<String>>();
+        int[]             groupOf          = new int[indices.length];
+        int[]             groupSizes       = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            ParsedScript ps = parsed[indices[i]];
+
+            Set<String> methodNames = new HashSet<String>();
+            methodNames.add(this.getScript(indices[i]).methodName);
+            for (int j = 0; j < ps.localMethods.size(); j++) {
+                methodNames.add(((MethodDeclarator) ps.localMethods.get(j)).name);
+            }
+
+            int g = 0;
+            for (; g < groupMethodNames.size(); g++) {
+                if (Collections.disjoint((Set<String>) groupMethodNames.get(g), methodNames)) break;
+            }
+            if (g == groupMethodNames.size()) groupMethodNames.add(new HashSet<String>());
+            ((Set<String>) groupMethodNames.get(g)).addAll(methodNames);
+
+            groupOf[i] = g;
+            groupSizes[g]++;
+        }
+
+        int[][] result = new int[groupMethodNames.size()][];
+        for (int g = 0; g < result.length; g++) result[g] = new int[groupSizes[g]];
+        int[] fill = new int[result.length];
+        for (int i = 0; i < indices.length; i++) result[groupOf[i]][fill[groupOf[i]]++] = indices[i];
+
+        return result;
+    }
+
+    private static CompileException
+    toCompileException(InternalCompilerException ice) {
+        return new CompileException("Internal compiler error: " + ice.getMessage(), null, ice);
+    }
+
+    private ParsedScript
+    parseScript(int idx, @Nullable String optionalFileName, String script) throws CompileException {
+
+        try {
+            Parser parser = new Parser(new Scanner(optionalFileName, new StringReader(script)));
+
+            ParsedScript result = new ParsedScript(optionalFileName, parser.location());
+            this.makeStatements(idx, parser, result.statements, result.localMethods);
+            return result;
+        } catch (IOException ioe) {
+            throw new InternalCompilerException("SNO: IOException despite StringReader", ioe);
+        }
+    }
+
+    /**
+     * A script that was parsed by {@link #cookBatch(String[], String[], ExecutorService)}.
+     */
+    private static
+    class ParsedScript {
+
+        @Nullable final String            fileName;
+        final Location                    location;
+        final List<Java.BlockStatement>   statements   = new ArrayList<Java.BlockStatement>();
+        final List<Java.MethodDeclarator> localMethods = new ArrayList<Java.MethodDeclarator>();
+
+        ParsedScript(@Nullable String fileName, Location location) {
+            this.fileName = fileName;
+            this.location = location;
+        }
     }
 
     /**
@@ -722,21 +1774,70 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     cook2(CompilationUnit compilationUnit) throws CompileException {
 
         // Compile and load the compilation unit.
-        final Class<?> c = this.compileToClass(compilationUnit);
+        Class<?> c = this.compileToClass(compilationUnit);
 
         // Find the script methods by name and parameter types.
         assert this.scripts != null;
-        int count = this.scripts.length;
+        int[] indices = new int[this.scripts.length];
+        for (int i = 0; i < indices.length; i++) indices[i] = i;
+        this.assignMethods(c, indices);
+    }
+
+    /**
+     * Adds a method that holds the given <var>statements</var>, and the script's local methods, to the class
+     * declaration.
+     */
+    private void
+    addScriptMethod(
+        Java.AbstractClassDeclaration cd,
+        int                           idx,
+        Location                      loc,
+        List<Java.BlockStatement>     statements,
+        List<Java.MethodDeclarator>   localMethods
+    ) throws CompileException {
+
+        Script es = this.getScript(idx);
+
+        // Create the method that holds the statements.
+        cd.addDeclaredMethod(this.makeMethodDeclaration(
+            loc,                 // location
+            (                    // annotations
+                es.overrideMethod
+                ? new Java.Annotation[] { new Java.MarkerAnnotation(this.classToType(loc, Override.class)) }
+                : new Java.Annotation[0]
+            ),
+            es.staticMethod,     // staticMethod
+            es.returnType,       // returnType
+            es.methodName,       // methodName
+            es.parameterTypes,   // parameterTypes
+            es.parameterNames,   // parameterNames
+            es.thrownExceptions, // thrownExceptions
+            statements,          // statements
+            false                // typesByName
+        ));
+
+        // Also add the "local methods" that a script my declare.
+        for (MethodDeclarator method : localMethods) {
+            cd.addDeclaredMethod(method);
+        }
+    }
+
+    /**
+     * Finds the methods of the indexed scripts in the given class, and makes them available through {@link
+     * #getMethod(int)}.
+     */
+    private void
+    assignMethods(Class<?> c, int[] indices) {
 
         // Clear the generated methods.
-        for (int i = 0; i < count; ++i) this.getScript(i).result = null;
+        for (int i : indices) this.getScript(i).result = null;
 
         // "Class.getDeclaredMethod(name, parameterTypes)" is slow when the class declares MANY methods (say, in
         // the thousands). So let's use "Class.getDeclaredMethods()" instead.
 
         // Create a (temporary) mapping of method key to method index.
-        Map<Object /*methodKey*/, Integer /*methodIndex*/> dms = new HashMap<Object, Integer>(2 * count);
-        for (int i = 0; i < count; ++i) {
+        Map<Object /*methodKey*/, Integer /*methodIndex*/> dms = new HashMap<Object, Integer>(2 * indices.length);
+        for (int i : indices) {
             Script  es   = this.getScript(i);
             Integer prev = (Integer) dms.put(ScriptEvaluator.methodKey(es.methodName, es.parameterTypes), i);
             assert prev == null;
@@ -754,7 +1855,7 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
         }
 
         // Verify that the class declared "all our" methods.
-        for (int i = 0; i < count; ++i) {
+        for (int i : indices) {
             Script es = this.getScript(i);
             if (es.result == null) {
                 throw new InternalCompilerException(
@@ -794,6 +1895,12 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     @Override @Nullable public Object
     evaluate(int idx, @Nullable Object[] arguments) throws InvocationTargetException {
 
+        Tier t = this.tier;
+        if (t != null) return t.evaluate(idx, arguments);
+
+        Recompiler r = this.recompiler;
+        if (r != null) r.record(idx, arguments);
+
         Method method = this.getMethod(idx);
 
         try {
@@ -806,8 +1913,63 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     @Override public Method
     getMethod() { return this.getMethod(0); }
 
+    /**
+     * @return The exception that the compilation of the interpreted scripts threw, or {@code null} if the scripts are
+     *         not interpreted, or were compiled successfully, or were not yet compiled; see {@link
+     *         #setTieredCompilation(int, Executor)}
+     */
+    @Nullable public CompileException
+    getDeferredCompileException() {
+        Tier t = this.tier;
+        return t == null ? null : t.compileException;
+    }
+
+    /**
+     * @throws IllegalStateException The scripts are being interpreted, and compiling them failed; see {@link
+     *                               #getDeferredCompileException()}
+     */
     @Override public Method
-    getMethod(int idx) { return this.getScript(idx).getResult(); }
+    getMethod(int idx) {
+
+        // Compile the scripts if they are currently being interpreted.
+        Tier t = this.tier;
+        if (t != null) {
+            t.compile();
+            CompileException ce = t.compileException;
+            if (ce != null) throw new IllegalStateException("Compiling the interpreted scripts failed", ce);
+        }
+
+        return this.getScript(idx).getResult();
+    }
+
+    /**
+     * @return The profile of the indexed script's method, or {@code null} iff the scripts were compiled without {@link
+     *         JaninoOption#METHOD_PROFILING} and {@link JaninoOption#METHOD_PROFILING_WITH_TIMING}
+     * @see    MethodProfile
+     */
+    @Nullable public MethodProfile
+    getMethodProfile(int idx) {
+        Method method = this.getMethod(idx);
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[]   parameterFds   = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterFds[i] = Descriptor.fromClassName(parameterTypes[i].getName());
+        }
+        String md = new MethodDescriptor(
+            Descriptor.fromClassName(method.getReturnType().getName()),
+            parameterFds
+        ).toString();
+
+        for (MethodProfile mp : this.getMethodProfiles()) {
+            if (
+                mp.getClassName().equals(method.getDeclaringClass().getName())
+                && mp.getMethodName().equals(method.getName())
+                && mp.getMethodDescriptor().equals(md)
+            ) return mp;
+        }
+        return null;
+    }
 
     /**
      * @return {@code void.class}
@@ -822,6 +1984,43 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     protected final Class<?>
     getReturnType(int index) { return this.getScript(index).returnType; }
 
+    /**
+     * @return The parameter names of the indexed script
+     */
+    protected final String[]
+    getParameterNames(int index) { return this.getScript(index).parameterNames; }
+
+    /**
+     * @return The parameter types of the indexed script
+     */
+    protected final Class<?>[]
+    getParameterTypes(int index) { return this.getScript(index).parameterTypes; }
+
+    /**
+     * @return Whether the method generated for the indexed script is static
+     */
+    protected final boolean
+    isStaticMethod(int index) { return this.getScript(index).staticMethod; }
+
+    /**
+     * @return The name of the method generated for the indexed script
+     */
+    protected final String
+    getMethodName(int index) { return this.getScript(index).methodName; }
+
+    /**
+     * @return The exceptions thrown by the method generated for the indexed script
+     */
+    protected final Class<?>[]
+    getThrownExceptions(int index) { return this.getScript(index).thrownExceptions; }
+
+    /**
+     * Adds member declarations (fields, methods, ...) to the generated class, before the script methods are added.
+     * This default implementation does nothing.
+     */
+    protected void
+    addMemberDeclarations(Java.AbstractClassDeclaration cd) throws CompileException, IOException {}
+
     /**
      * Parses statements from the <var>parser</var> until end-of-input.
      *
@@ -973,7 +2172,11 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
         parser.read(";");
     }
 
-    private Java.MethodDeclarator
+    /**
+     * @param typesByName Whether to resolve the types by their names, as opposed to through the {@link ClassLoader}
+     *                    of this compiler; see {@link #typeByName(Location, Class)}
+     */
+    Java.MethodDeclarator
     makeMethodDeclaration(
         Location                  location,
         Java.Annotation[]         annotations,
@@ -983,7 +2186,8 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
         Class<?>[]                parameterTypes,
         String[]                  parameterNames,
         Class<?>[]                thrownExceptions,
-        List<Java.BlockStatement> statements
+        List<Java.BlockStatement> statements,
+        boolean                   typesByName
     ) {
         if (parameterNames.length != parameterTypes.length) {
             throw new InternalCompilerException(
@@ -1003,13 +2207,16 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
 
         for (int i = 0; i < fps.parameters.length; ++i) {
             fps.parameters[i] = new Java.FunctionDeclarator.FormalParameter(
-                location,                                      // location
-                true,                                          // finaL
-                this.classToType(location, parameterTypes[i]), // type
-                parameterNames[i]                              // name
+                location,                                              // location
+                true,                                                  // finaL
+                this.toType(location, parameterTypes[i], typesByName), // type
+                parameterNames[i]                                      // name
             );
         }
 
+        Java.Type[] tes = new Java.Type[thrownExceptions.length];
+        for (int i = 0; i < tes.length; i++) tes[i] = this.toType(location, thrownExceptions[i], typesByName);
+
         return new Java.MethodDeclarator(
             location,                                        // location
             null,                                            // optionalDocComment
@@ -1019,10 +2226,10 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
                 false // isDefault
             ),
             null,                                            // optionalTypeParameters
-            this.classToType(location, returnType),          // type
+            this.toType(location, returnType, typesByName),  // type
             methodName,                                      // name
             fps,                                             // formalParameters
-            this.classesToTypes(location, thrownExceptions), // thrownExceptions
+            tes,                                             // thrownExceptions
             null,                                            // defaultValue
             statements                                       // optionalStatements
         );
@@ -1144,25 +2351,68 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
     public Object
     createFastEvaluator(Scanner scanner, Class<?> interfaceToImplement, String[] parameterNames)
     throws CompileException, IOException {
+        return this.createFastEvaluator(scanner, interfaceToImplement, parameterNames, null);
+    }
+
+    /**
+     * Like {@link #createFastEvaluator(Scanner, Class, String[])}, but optionally with parameter types that are more
+     * specific than those of the implemented method. This is useful for generic interfaces, whose methods have erased
+     * parameter types, e.g. {@code Comparator<String>}:
+     * <pre>
+     *     Comparator&lt;String> c = (Comparator&lt;String>) se.createFastEvaluator(
+     *         scanner,
+     *         Comparator.class,
+     *         new String[] { "a", "b" },
+     *         new Class[] { String.class, String.class }
+     *     );
+     * </pre>
+     * In that case, the script is compiled into a method with the given <var>optionalParameterTypes</var>, plus a
+     * "bridge method" that implements the interface method, casts its arguments and invokes the script method.
+     * <p>
+     *   The <var>interfaceToImplement</var> must have exactly one abstract method, like JDK 8's "functional
+     *   interfaces"; default methods, static methods and abstract redeclarations of public {@link Object} methods
+     *   (e.g. {@link java.util.Comparator#equals(Object)}) are ignored.
+     * </p>
+     *
+     * @param optionalParameterTypes {@code null} means to use the parameter types of the interface method
+     */
+    public Object
+    createFastEvaluator(
+        Scanner              scanner,
+        Class<?>             interfaceToImplement,
+        String[]             parameterNames,
+        @Nullable Class<?>[] optionalParameterTypes
+    ) throws CompileException, IOException {
         if (!interfaceToImplement.isInterface()) {
             throw new InternalCompilerException("\"" + interfaceToImplement + "\" is not an interface");
         }
 
-        Method methodToImplement;
-        {
-            Method[] methods = interfaceToImplement.getDeclaredMethods();
-            if (methods.length != 1) {
-                throw new InternalCompilerException(
-                    "Interface \""
-                    + interfaceToImplement
-                    + "\" must declare exactly one method"
-                );
+        Method methodToImplement = ScriptEvaluator.getSingleAbstractMethod(interfaceToImplement);
+
+        Class<?>[] parameterTypes = methodToImplement.getParameterTypes();
+        boolean    bridge         = false;
+        if (optionalParameterTypes != null) {
+            if (optionalParameterTypes.length != parameterTypes.length) {
+                throw new InternalCompilerException("Wrong number of parameter types");
             }
-            methodToImplement = methods[0];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (optionalParameterTypes[i] == parameterTypes[i]) continue;
+                if (parameterTypes[i].isPrimitive() || !parameterTypes[i].isAssignableFrom(optionalParameterTypes[i])) {
+                    throw new InternalCompilerException(
+                        "Parameter type \""
+                        + optionalParameterTypes[i]
+                        + "\" is not a subtype of \""
+                        + parameterTypes[i]
+                        + "\""
+                    );
+                }
+                bridge = true;
+            }
+            parameterTypes = optionalParameterTypes;
         }
 
         this.setImplementedInterfaces(new Class[] { interfaceToImplement });
-        this.setOverrideMethod(true);
+        this.setOverrideMethod(!bridge);
         this.setStaticMethod(false);
         if (this instanceof IExpressionEvaluator) {
 
@@ -1172,9 +2422,16 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
             this.setReturnType(methodToImplement.getReturnType());
         }
         this.setMethodName(methodToImplement.getName());
-        this.setParameters(parameterNames, methodToImplement.getParameterTypes());
+        this.setParameters(parameterNames, parameterTypes);
         this.setThrownExceptions(methodToImplement.getExceptionTypes());
-        this.cook(scanner);
+
+        this.bridgedMethod = bridge ? methodToImplement : null;
+        try {
+            this.cook(scanner);
+        } finally {
+            this.bridgedMethod = null;
+        }
+
         Class<?> c = this.getMethod().getDeclaringClass();
         try {
             return c.newInstance();
@@ -1187,6 +2444,118 @@ class ScriptEvaluator extends ClassBodyEvaluator implements IScriptEvaluator {
         }
     }
 
+    /**
+     * @return The one abstract method of the <var>interfaceToImplement</var>, excluding abstract redeclarations of
+     *         public {@link Object} methods
+     */
+    private static Method
+    getSingleAbstractMethod(Class<?> interfaceToImplement) {
+
+        Map<Object /*methodKey*/, Method> abstractMethods = new HashMap<Object, Method>();
+        for (Method m : interfaceToImplement.getMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers()) || m.isBridge() || m.isSynthetic()) continue;
+
+            try {
+                Object.class.getMethod(m.getName(), m.getParameterTypes());
+                continue;
+            } catch (NoSuchMethodException nsme) {
+                ;
+            }
+
+            // The same method may be inherited from more than one superinterface.
+            abstractMethods.put(ScriptEvaluator.methodKey(m.getName(), m.getParameterTypes()), m);
+        }
+
+        if (abstractMethods.size() != 1) {
+            throw new InternalCompilerException(
+                "Interface \""
+                + interfaceToImplement
+                + "\" must declare exactly one abstract method"
+            );
+        }
+
+        return (Method) abstractMethods.values().iterator().next();
+    }
+
+    /**
+     * @return A method that implements the <var>bridgedMethod</var> by casting the arguments to the script's parameter
+     *         types, and invoking the script method
+     */
+    private Java.MethodDeclarator
+    makeBridgeMethod(Location loc, Method bridgedMethod, Script script) throws CompileException {
+
+        Class<?>[]    bridgedParameterTypes = bridgedMethod.getParameterTypes();
+        String[]      parameterNames        = new String[bridgedParameterTypes.length];
+        Java.Rvalue[] arguments             = new Java.Rvalue[bridgedParameterTypes.length];
+        for (int i = 0; i < arguments.length; i++) {
+            parameterNames[i] = "p" + i;
+            arguments[i]      = new Java.Cast(
+                loc,
+                ScriptEvaluator.typeByName(loc, script.parameterTypes[i]),
+                new Java.AmbiguousName(loc, new String[] { parameterNames[i] })
+            );
+        }
+
+        Java.Rvalue invocation = new Java.MethodInvocation(loc, null, script.methodName, arguments);
+
+        List<Java.BlockStatement> statements = new ArrayList<Java.BlockStatement>();
+        statements.add(
+            bridgedMethod.getReturnType() == void.class
+            ? new Java.ExpressionStatement(invocation)
+            : new Java.ReturnStatement(loc, invocation)
+        );
+
+        Java.Annotation override = new Java.MarkerAnnotation(this.classToType(loc, Override.class));
+
+        return this.makeMethodDeclaration(
+            loc,                                // location
+            new Java.Annotation[] { override }, // annotations
+            false,                              // staticMethod
+            bridgedMethod.getReturnType(),      // returnType
+            bridgedMethod.getName(),            // methodName
+            bridgedParameterTypes,              // parameterTypes
+            parameterNames,                     // parameterNames
+            bridgedMethod.getExceptionTypes(),  // thrownExceptions
+            statements,                         // statements
+            false                               // typesByName
+        );
+    }
+
+    private Java.Type
+    toType(Location location, Class<?> clazz, boolean byName) {
+        return byName ? ScriptEvaluator.typeByName(location, clazz) : this.classToType(location, clazz);
+    }
+
+    @Override protected Java.Type
+    classToType(Location location, Class<?> clazz) {
+
+        Java.Type result = super.classToType(location, clazz);
+
+        Map<Type, Class<?>> rt = this.reflectedTypes;
+        if (rt != null) rt.put(result, clazz);
+
+        return result;
+    }
+
+    /**
+     * Unlike {@link #classToType(Location, Class)}, the returned type can be used in the statements of a method
+     * declaration, because it is resolved by its (fully qualified) name.
+     */
+    static Java.Type
+    typeByName(Location loc, Class<?> clazz) {
+
+        if (clazz.isArray()) return new Java.ArrayType(ScriptEvaluator.typeByName(loc, clazz.getComponentType()));
+
+        if (clazz.isPrimitive()) {
+            return new Java.PrimitiveType(loc, Java.Primitive.valueOf(clazz.getName().toUpperCase(Locale.ENGLISH)));
+        }
+
+        String cn = clazz.getCanonicalName();
+        if (cn == null) throw new InternalCompilerException("\"" + clazz + "\" has no canonical name");
+
+        return new Java.ReferenceType(loc, cn.split("\\."), null);
+    }
+
     /**
      * Guesses the names of the parameters used in the given expression. The strategy is to look at all "ambiguous
      * names" in the expression (e.g. in "a.b.c.d()", the ambiguous name is "a.b.c"), and then at the components of the
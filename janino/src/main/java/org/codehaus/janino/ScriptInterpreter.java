@@ -0,0 +1,1833 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * A tree-walking interpreter for the statements of a script; see {@link ScriptEvaluator#setTieredCompilation(int,
+ * java.util.concurrent.Executor)}.
+ * <p>
+ *   {@link #prepare(UnitCompiler, ClassLoader, boolean, Class, String[], Class[], Class[], List)} resolves all names
+ *   and types once, and translates the script's AST into a tree of nodes which can then be executed many times.
+ *   Types are resolved through the {@link UnitCompiler}, and literals are evaluated by it, exactly as if the script
+ *   were compiled.
+ * </p>
+ * <p>
+ *   Only a subset of the Java language is supported: Blocks, local variable declarations, expression statements,
+ *   IF and RETURN statements; and literals, variables, fields, unary and binary operations, conditional
+ *   expressions, casts, INSTANCEOF, assignments to local variables, array accesses and method invocations. If the
+ *   script uses any other construct, or if it is not valid Java, then {@link #prepare(UnitCompiler, ClassLoader,
+ *   boolean, Class, String[], Class[], Class[], List) prepare()} returns {@code null}, and the caller must compile
+ *   the script instead; notice that the compiler then reports any errors.
+ * </p>
+ */
+final
+class ScriptInterpreter {
+
+    /**
+     * The value of {@link Statement#execute(Object[])} iff the statement completed normally.
+     */
+    private static final Object COMPLETED_NORMALLY = new Object();
+
+    private final Class<?>[] parameterTypes;
+    private final int        frameSize;
+    private final Statement  body;
+
+    private
+    ScriptInterpreter(Class<?>[] parameterTypes, int frameSize, Statement body) {
+        this.parameterTypes = parameterTypes;
+        this.frameSize      = frameSize;
+        this.body           = body;
+    }
+
+    /**
+     * Prepares the given <var>statements</var> for interpretation.
+     *
+     * @param unitCompiler          Resolves types; must compile the compilation unit that encloses the
+     *                              <var>statements</var>
+     * @param classLoader           Loads the classes that the script references
+     * @param namesMayReferToFields Whether a simple name that is not a parameter or local variable could designate
+     *                              a field, e.g. a field inherited from a superclass of the generated class, or a
+     *                              statically imported field
+     * @return                      {@code null} iff the script uses constructs that cannot be interpreted
+     */
+    @Nullable public static ScriptInterpreter
+    prepare(
+        UnitCompiler                        unitCompiler,
+        ClassLoader                         classLoader,
+        boolean                             namesMayReferToFields,
+        Class<?>                            returnType,
+        String[]                            parameterNames,
+        Class<?>[]                          parameterTypes,
+        Class<?>[]                          thrownExceptions,
+        List<? extends Java.BlockStatement> statements
+    ) {
+        Translator t = new Translator(unitCompiler, classLoader, namesMayReferToFields, returnType, thrownExceptions);
+        try {
+            for (int i = 0; i < parameterNames.length; i++) {
+                t.declare(parameterNames[i], parameterTypes[i], true);
+            }
+
+            Statement body = t.translateBlockStatements(statements);
+
+            // A non-void script must not complete normally ("missing return statement").
+            if (returnType != void.class && body.canCompleteNormally) return null;
+
+            return new ScriptInterpreter((Class[]) parameterTypes.clone(), t.nextSlot, body);
+        } catch (UnsupportedException ue) {
+            return null;
+        }
+    }
+
+    /**
+     * Executes the script, with the semantics of {@link Method#invoke(Object, Object...)}.
+     *
+     * @throws IllegalArgumentException  The number or the types of the <var>arguments</var> do not match the
+     *                                   script's parameters
+     * @throws InvocationTargetException The script completed abruptly by throwing an exception
+     */
+    @Nullable public Object
+    evaluate(@Nullable Object[] arguments) throws InvocationTargetException {
+
+        if (arguments == null) arguments = new Object[0];
+        if (arguments.length != this.parameterTypes.length) {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+
+        Object[] frame = new Object[this.frameSize];
+        for (int i = 0; i < arguments.length; i++) {
+            frame[i] = ScriptInterpreter.convertArgument(arguments[i], this.parameterTypes[i]);
+        }
+
+        Object result;
+        try {
+            result = this.body.execute(frame);
+        } catch (Throwable t) { // SUPPRESS CHECKSTYLE IllegalCatch
+
+            // Like "Method.invoke()", wrap ANY throwable that the script throws.
+            throw new InvocationTargetException(t);
+        }
+
+        return result == ScriptInterpreter.COMPLETED_NORMALLY ? null : result;
+    }
+
+    /**
+     * Converts an argument like {@link Method#invoke(Object, Object...)} does.
+     */
+    @Nullable private static Object
+    convertArgument(@Nullable Object argument, Class<?> parameterType) {
+
+        if (!parameterType.isPrimitive()) {
+            if (argument != null && !parameterType.isInstance(argument)) {
+                throw new IllegalArgumentException("argument type mismatch");
+            }
+            return argument;
+        }
+
+        Class<?> argumentType = argument == null ? null : ScriptInterpreter.unboxedType(argument.getClass());
+        if (
+            argument == null
+            || argumentType == null
+            || (argumentType != parameterType && !ScriptInterpreter.isWideningPrimitive(argumentType, parameterType))
+        ) throw new IllegalArgumentException("argument type mismatch");
+
+        return ScriptInterpreter.convertPrimitive(argument, parameterType);
+    }
+
+    // ------------------------------- Translation -------------------------------
+
+    /**
+     * Indicates that the script uses a construct that the interpreter does not support.
+     */
+    private static
+    class UnsupportedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedException() { super(null, null); }
+
+        @Override public synchronized Throwable
+        fillInStackTrace() { return this; }
+    }
+
+    /**
+     * The static type of the {@code null} literal.
+     */
+    private static final
+    class NullType { private NullType() {} }
+
+    private static
+    class Variable {
+        final int      slot;
+        final Class<?> type;
+        final boolean  finaL;
+
+        Variable(int slot, Class<?> type, boolean finaL) {
+            this.slot  = slot;
+            this.type  = type;
+            this.finaL = finaL;
+        }
+    }
+
+    /**
+     * Translates AST nodes into executable nodes.
+     */
+    private static
+    class Translator {
+
+        private final UnitCompiler unitCompiler;
+        private final ClassLoader  classLoader;
+        private final boolean      namesMayReferToFields;
+        private final Class<?>     returnType;
+        private final Class<?>[]   thrownExceptions;
+
+        private final List<Map<String, Variable>> scopes = new ArrayList<Map<String, Variable>>();
+        int                                       nextSlot;
+
+        Translator(
+            UnitCompiler unitCompiler,
+            ClassLoader  classLoader,
+            boolean      namesMayReferToFields,
+            Class<?>     returnType,
+            Class<?>[]   thrownExceptions
+        ) {
+            this.unitCompiler          = unitCompiler;
+            this.classLoader           = classLoader;
+            this.namesMayReferToFields = namesMayReferToFields;
+            this.returnType            = returnType;
+            this.thrownExceptions      = thrownExceptions;
+
+            this.scopes.add(new HashMap<String, Variable>());
+        }
+
+        Variable
+        declare(String name, Class<?> type, boolean finaL) throws UnsupportedException {
+
+            // Local variables must not shadow parameters or other local variables.
+            if (this.lookUp(name) != null) throw new UnsupportedException();
+
+            Variable v = new Variable(this.nextSlot++, type, finaL);
+            ((Map<String, Variable>) this.scopes.get(this.scopes.size() - 1)).put(name, v);
+            return v;
+        }
+
+        @Nullable Variable
+        lookUp(String name) {
+            for (int i = this.scopes.size() - 1; i >= 0; i--) {
+                Variable v = (Variable) ((Map<String, Variable>) this.scopes.get(i)).get(name);
+                if (v != null) return v;
+            }
+            return null;
+        }
+
+        // ---------------- Statements ----------------
+
+        Statement
+        translateBlockStatements(List<? extends Java.BlockStatement> blockStatements) throws UnsupportedException {
+
+            this.scopes.add(new HashMap<String, Variable>());
+            try {
+                Statement[] result = new Statement[blockStatements.size()];
+                for (int i = 0; i < result.length; i++) {
+
+                    // Reject unreachable statements.
+                    if (i > 0 && !result[i - 1].canCompleteNormally) throw new UnsupportedException();
+
+                    result[i] = this.translateBlockStatement((Java.BlockStatement) blockStatements.get(i));
+                }
+                return new Block(result);
+            } finally {
+                this.scopes.remove(this.scopes.size() - 1);
+            }
+        }
+
+        private Statement
+        translateBlockStatement(Java.BlockStatement bs) throws UnsupportedException {
+
+            if (bs instanceof Java.Block) {
+                return this.translateBlockStatements(((Java.Block) bs).statements);
+            } else
+            if (bs instanceof Java.EmptyStatement) {
+                return new Block(new Statement[0]);
+            } else
+            if (bs instanceof Java.ExpressionStatement) {
+                return new ExpressionStatement(this.translateRvalue(((Java.ExpressionStatement) bs).rvalue));
+            } else
+            if (bs instanceof Java.LocalVariableDeclarationStatement) {
+                Java.LocalVariableDeclarationStatement lvds = (Java.LocalVariableDeclarationStatement) bs;
+
+                Class<?> type  = this.resolveType(lvds.type);
+                boolean  finaL = (lvds.modifiers.accessFlags & Mod.FINAL) != 0;
+
+                Statement[] initializations = new Statement[lvds.variableDeclarators.length];
+                for (int i = 0; i < initializations.length; i++) {
+                    Java.VariableDeclarator vd = lvds.variableDeclarators[i];
+
+                    // Definite assignment analysis is not implemented, so each variable needs an initializer.
+                    if (vd.brackets != 0 || !(vd.optionalInitializer instanceof Java.Rvalue)) {
+                        throw new UnsupportedException();
+                    }
+
+                    Expression initializer = Translator.assignmentConversion(
+                        this.translateRvalue((Java.Rvalue) vd.optionalInitializer),
+                        type
+                    );
+                    initializations[i] = new ExpressionStatement(
+                        new VariableWrite(this.declare(vd.name, type, finaL), initializer)
+                    );
+                }
+                return new Block(initializations);
+            } else
+            if (bs instanceof Java.IfStatement) {
+                Java.IfStatement is = (Java.IfStatement) bs;
+
+                Expression condition     = this.translateCondition(is.condition);
+                Statement  thenStatement = this.translateBlockStatement(is.thenStatement);
+                Statement  elseStatement = (
+                    is.elseStatement == null
+                    ? new Block(new Statement[0])
+                    : this.translateBlockStatement(is.elseStatement)
+                );
+                return new IfStatement(condition, thenStatement, elseStatement, is.elseStatement == null);
+            } else
+            if (bs instanceof Java.ReturnStatement) {
+                Java.Rvalue orv = ((Java.ReturnStatement) bs).optionalReturnValue;
+                if ((orv == null) != (this.returnType == void.class)) throw new UnsupportedException();
+
+                return new ReturnStatement(
+                    orv == null
+                    ? null
+                    : Translator.assignmentConversion(this.translateRvalue(orv), this.returnType)
+                );
+            } else
+            {
+                throw new UnsupportedException();
+            }
+        }
+
+        // ---------------- Expressions ----------------
+
+        private Expression
+        translateCondition(Java.Rvalue rv) throws UnsupportedException {
+            return Translator.booleanOperand(this.translateRvalue(rv));
+        }
+
+        private Expression
+        translateRvalue(Java.Rvalue rv) throws UnsupportedException {
+
+            if (rv instanceof Java.ParenthesizedExpression) {
+                return this.translateRvalue(((Java.ParenthesizedExpression) rv).value);
+            }
+
+            // Let the UnitCompiler evaluate literals and constant expressions composed of literals, so that
+            // integer range checks, floating-point parsing and constant folding are exactly as in compiled code.
+            if (Translator.isLiteralExpression(rv)) {
+                Object cv;
+                try {
+                    cv = this.unitCompiler.getConstantValue(rv);
+                } catch (CompileException ce) {
+                    throw new UnsupportedException();
+                }
+                if (cv != UnitCompiler.NOT_CONSTANT) {
+                    if (cv instanceof String) cv = ((String) cv).intern(); // Like LDC.
+                    return new Constant(cv, cv == null ? NullType.class : ScriptInterpreter.primitiveTypeOf(cv));
+                }
+            }
+
+            if (rv instanceof Java.AmbiguousName) {
+                Java.AmbiguousName an = (Java.AmbiguousName) rv;
+
+                Object result = this.reclassifyName(an.identifiers, an.n, an.getLocation(), an.getEnclosingScope());
+                if (!(result instanceof Expression)) throw new UnsupportedException();
+                return (Expression) result;
+            } else
+            if (rv instanceof Java.UnaryOperation) {
+                Java.UnaryOperation uo = (Java.UnaryOperation) rv;
+
+                return Translator.unaryOperation(uo.operator, this.translateRvalue(uo.operand));
+            } else
+            if (rv instanceof Java.BinaryOperation) {
+                Java.BinaryOperation bo = (Java.BinaryOperation) rv;
+
+                return Translator.binaryOperation(
+                    bo.operator,
+                    this.translateRvalue(bo.lhs),
+                    this.translateRvalue(bo.rhs)
+                );
+            } else
+            if (rv instanceof Java.ConditionalExpression) {
+                Java.ConditionalExpression ce = (Java.ConditionalExpression) rv;
+
+                return Translator.conditionalExpression(
+                    this.translateCondition(ce.lhs),
+                    this.translateRvalue(ce.mhs),
+                    this.translateRvalue(ce.rhs)
+                );
+            } else
+            if (rv instanceof Java.Cast) {
+                Java.Cast c = (Java.Cast) rv;
+
+                return Translator.castConversion(this.translateRvalue(c.value), this.resolveType(c.targetType));
+            } else
+            if (rv instanceof Java.Instanceof) {
+                Java.Instanceof io = (Java.Instanceof) rv;
+
+                Expression operand = this.translateRvalue(io.lhs);
+                Class<?>   type    = this.resolveType(io.rhs);
+                if (
+                    type.isPrimitive()
+                    || operand.type.isPrimitive()
+                    || !(operand.type == NullType.class || Translator.isCastable(operand.type, type))
+                ) throw new UnsupportedException();
+
+                return new InstanceofTest(operand, type);
+            } else
+            if (rv instanceof Java.MethodInvocation) {
+                return this.translateMethodInvocation((Java.MethodInvocation) rv);
+            } else
+            if (rv instanceof Java.FieldAccessExpression) {
+                Java.FieldAccessExpression fae = (Java.FieldAccessExpression) rv;
+
+                if (!(fae.lhs instanceof Java.Rvalue)) throw new UnsupportedException();
+                return Translator.fieldAccess(this.translateRvalue((Java.Rvalue) fae.lhs), fae.fieldName);
+            } else
+            if (rv instanceof Java.ArrayAccessExpression) {
+                Java.ArrayAccessExpression aae = (Java.ArrayAccessExpression) rv;
+
+                Expression array = this.translateRvalue(aae.lhs);
+                Expression index = Translator.unaryNumericPromotion(this.translateRvalue(aae.index));
+                if (!array.type.isArray() || index.type != int.class) throw new UnsupportedException();
+
+                return new ArrayElementRead(array, index);
+            } else
+            if (rv instanceof Java.Assignment) {
+                Java.Assignment a = (Java.Assignment) rv;
+
+                Variable   v   = this.assignableVariable(a.lhs);
+                Expression rhs = this.translateRvalue(a.rhs);
+
+                if (a.operator == "=") { // SUPPRESS CHECKSTYLE StringLiteralEquality
+                    return new VariableWrite(v, Translator.assignmentConversion(rhs, v.type));
+                }
+
+                // JLS7 15.26.2: "E1 op= E2" is equivalent to "E1 = (T) ((E1) op (E2))".
+                String     op  = a.operator.substring(0, a.operator.length() - 1).intern();
+                Expression lhs = new VariableRead(v);
+                return new VariableWrite(v, Translator.castConversion(
+                    op == "+" && v.type == String.class // SUPPRESS CHECKSTYLE StringLiteralEquality
+                    ? Translator.concatenation(lhs, rhs)
+                    : Translator.binaryOperation(op, lhs, rhs),
+                    v.type
+                ));
+            } else
+            if (rv instanceof Java.Crement) {
+                Java.Crement c = (Java.Crement) rv;
+
+                Variable v = this.assignableVariable(c.operand);
+                if (!v.type.isPrimitive() || !ScriptInterpreter.isNumeric(v.type)) throw new UnsupportedException();
+
+                Expression newValue = Translator.castConversion(Translator.binaryOperation(
+                    c.operator == "++" ? "+" : "-", // SUPPRESS CHECKSTYLE StringLiteralEquality
+                    new VariableRead(v),
+                    new Constant(1, int.class)
+                ), v.type);
+                return new Crement(v, newValue, c.pre);
+            } else
+            {
+                throw new UnsupportedException();
+            }
+        }
+
+        /**
+         * @return Whether the <var>rv</var> is composed only of literals and unary and binary operators
+         */
+        private static boolean
+        isLiteralExpression(Java.Rvalue rv) {
+            if (rv instanceof Java.Literal) return true;
+            if (rv instanceof Java.ParenthesizedExpression) {
+                return Translator.isLiteralExpression(((Java.ParenthesizedExpression) rv).value);
+            }
+            if (rv instanceof Java.UnaryOperation) {
+                return Translator.isLiteralExpression(((Java.UnaryOperation) rv).operand);
+            }
+            if (rv instanceof Java.BinaryOperation) {
+                Java.BinaryOperation bo = (Java.BinaryOperation) rv;
+                return Translator.isLiteralExpression(bo.lhs) && Translator.isLiteralExpression(bo.rhs);
+            }
+            return false;
+        }
+
+        private Variable
+        assignableVariable(Java.Lvalue lv) throws UnsupportedException {
+            while (lv instanceof Java.ParenthesizedExpression) {
+                Java.Rvalue value = ((Java.ParenthesizedExpression) lv).value;
+                if (!(value instanceof Java.Lvalue)) throw new UnsupportedException();
+                lv = (Java.Lvalue) value;
+            }
+
+            if (!(lv instanceof Java.AmbiguousName) || ((Java.AmbiguousName) lv).n != 1) {
+                throw new UnsupportedException();
+            }
+
+            Variable v = this.lookUp(((Java.AmbiguousName) lv).identifiers[0]);
+            if (v == null || v.finaL) throw new UnsupportedException();
+            return v;
+        }
+
+        /**
+         * Reclassifies an ambiguous name (JLS7 6.5.2), like the {@link UnitCompiler} does.
+         *
+         * @return An {@link Expression}, or the {@link Class} that the name designates
+         */
+        private Object
+        reclassifyName(String[] identifiers, int n, Location location, Java.Scope scope)
+        throws UnsupportedException {
+
+            // Parameter or local variable?
+            Variable v = this.lookUp(identifiers[0]);
+            if (v != null) {
+                Expression result = new VariableRead(v);
+                for (int i = 1; i < n; i++) result = Translator.fieldAccess(result, identifiers[i]);
+                return result;
+            }
+
+            // Otherwise, the name could designate a field, which the interpreter cannot access.
+            if (this.namesMayReferToFields) throw new UnsupportedException();
+
+            // Find the shortest prefix that designates a type, e.g. "java.lang.Math".
+            int      k    = 1;
+            Class<?> type = null;
+            for (; k <= n && type == null; k++) type = this.resolveTypeName(identifiers, k, location, scope);
+            if (type == null) throw new UnsupportedException();
+
+            // Then, a static field takes precedence over a member type.
+            for (k--; k < n; k++) {
+                Field f = Translator.publicField(type, identifiers[k]);
+                if (f != null) {
+                    if (!Modifier.isStatic(f.getModifiers())) throw new UnsupportedException();
+
+                    Expression result = new FieldRead(null, f);
+                    for (k++; k < n; k++) result = Translator.fieldAccess(result, identifiers[k]);
+                    return result;
+                }
+
+                type = this.resolveTypeName(identifiers, k + 1, location, scope);
+                if (type == null) throw new UnsupportedException();
+            }
+
+            return type;
+        }
+
+        /**
+         * @return {@code null} iff the first <var>n</var> <var>identifiers</var> do not designate a type
+         */
+        @Nullable private Class<?>
+        resolveTypeName(String[] identifiers, int n, Location location, Java.Scope scope)
+        throws UnsupportedException {
+
+            Java.ReferenceType rt = new Java.ReferenceType(location, (String[]) Arrays.copyOf(identifiers, n), null);
+            rt.setEnclosingScope(scope);
+
+            IClass iClass;
+            try {
+                iClass = this.unitCompiler.getType(rt);
+            } catch (CompileException ce) {
+                return null;
+            }
+            return this.toClass(iClass);
+        }
+
+        private Class<?>
+        resolveType(Java.Type type) throws UnsupportedException {
+            try {
+                return this.toClass(this.unitCompiler.getType(type));
+            } catch (CompileException ce) {
+                throw new UnsupportedException();
+            }
+        }
+
+        /**
+         * @return The reflection {@link Class} that corresponds with the <var>iClass</var>; only public classes
+         *         can be referenced by the generated code, and hence by the interpreter
+         */
+        private Class<?>
+        toClass(IClass iClass) throws UnsupportedException {
+
+            String descriptor = iClass.getDescriptor();
+
+            Class<?> result = (Class<?>) ScriptInterpreter.PRIMITIVE_TYPES.get(descriptor);
+            if (result != null) return result;
+
+            try {
+                result = Class.forName(Descriptor.toClassName(descriptor), false, this.classLoader);
+            } catch (ClassNotFoundException cnfe) {
+
+                // E.g. the class that is being generated.
+                throw new UnsupportedException();
+            }
+
+            Class<?> c = result;
+            while (c.isArray()) c = c.getComponentType();
+            if (!c.isPrimitive() && !Modifier.isPublic(c.getModifiers())) throw new UnsupportedException();
+
+            return result;
+        }
+
+        private Expression
+        translateMethodInvocation(Java.MethodInvocation mi) throws UnsupportedException {
+
+            // An unqualified method name could designate an inherited, statically imported or local method.
+            Java.Atom target = mi.optionalTarget;
+            if (target == null) throw new UnsupportedException();
+
+            Expression targetExpression;
+            Class<?>   targetType;
+            if (target instanceof Java.AmbiguousName) {
+                Java.AmbiguousName an = (Java.AmbiguousName) target;
+
+                Object o = this.reclassifyName(an.identifiers, an.n, an.getLocation(), an.getEnclosingScope());
+                if (o instanceof Class) {
+                    targetExpression = null;
+                    targetType       = (Class<?>) o;
+                } else {
+                    targetExpression = (Expression) o;
+                    targetType       = targetExpression.type;
+                }
+            } else
+            if (target instanceof Java.Rvalue) {
+                targetExpression = this.translateRvalue((Java.Rvalue) target);
+                targetType       = targetExpression.type;
+            } else
+            if (target instanceof Java.Type) {
+                targetExpression = null;
+                targetType       = this.resolveType((Java.Type) target);
+            } else
+            {
+                throw new UnsupportedException();
+            }
+
+            if (targetType.isPrimitive() || targetType == NullType.class || targetType.isArray()) {
+                throw new UnsupportedException();
+            }
+
+            Expression[] arguments = new Expression[mi.arguments.length];
+            for (int i = 0; i < arguments.length; i++) arguments[i] = this.translateRvalue(mi.arguments[i]);
+
+            Method m = Translator.findMethod(targetType, mi.methodName, arguments);
+
+            // Static methods must be invoked through a type name, and instance methods through an expression.
+            if (Modifier.isStatic(m.getModifiers()) != (targetExpression == null)) throw new UnsupportedException();
+
+            // The method must not throw checked exceptions that the script does not declare.
+            for (Class<?> et : m.getExceptionTypes()) {
+                if (RuntimeException.class.isAssignableFrom(et) || Error.class.isAssignableFrom(et)) continue;
+                boolean declared = false;
+                for (Class<?> te : this.thrownExceptions) declared |= te.isAssignableFrom(et);
+                if (!declared) throw new UnsupportedException();
+            }
+
+            Class<?>[] parameterTypes = m.getParameterTypes();
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = (Expression) Translator.notNull(
+                    Translator.wideningConversion(arguments[i], parameterTypes[i])
+                );
+            }
+
+            return new Invocation(targetExpression, m, arguments);
+        }
+
+        /**
+         * Selects the most specific applicable method (JLS7 15.12.2), without variable arity invocation.
+         */
+        private static Method
+        findMethod(Class<?> type, String name, Expression[] arguments) throws UnsupportedException {
+
+            List<Method> candidates = new ArrayList<Method>();
+            {
+                List<Method> methods = new ArrayList<Method>(Arrays.asList(type.getMethods()));
+                if (type.isInterface()) methods.addAll(Arrays.asList(Object.class.getMethods()));
+                for (Method m : methods) {
+                    if (!m.getName().equals(name) || m.isBridge() || m.isSynthetic()) continue;
+                    if (m.isVarArgs()) throw new UnsupportedException();
+                    if (m.getParameterTypes().length == arguments.length) candidates.add(m);
+                }
+            }
+
+            // Phase 1: Without boxing and unboxing; phase 2: With boxing and unboxing.
+            List<Method> applicable = new ArrayList<Method>();
+            for (int phase = 1; phase <= 2 && applicable.isEmpty(); phase++) {
+                CANDIDATES:
+                for (Method m : candidates) {
+                    Class<?>[] pts = m.getParameterTypes();
+                    for (int i = 0; i < pts.length; i++) {
+                        if (!Translator.isMethodInvocationConvertible(arguments[i].type, pts[i], phase == 2)) {
+                            continue CANDIDATES;
+                        }
+                    }
+                    applicable.add(m);
+                }
+            }
+
+            // Choose the most specific method.
+            Method result = null;
+            for (Method m : applicable) {
+                boolean mostSpecific = true;
+                for (Method m2 : applicable) {
+                    mostSpecific &= Translator.isMoreSpecific(m.getParameterTypes(), m2.getParameterTypes());
+                }
+                if (!mostSpecific) continue;
+
+                // Methods with identical signatures, e.g. from multiple superinterfaces: Choose the one with the
+                // most specific return type.
+                if (result != null) {
+                    if (m.getReturnType().isAssignableFrom(result.getReturnType())) continue;
+                    if (!result.getReturnType().isAssignableFrom(m.getReturnType())) throw new UnsupportedException();
+                }
+                result = m;
+            }
+            if (result == null || !Modifier.isPublic(result.getDeclaringClass().getModifiers())) {
+                throw new UnsupportedException();
+            }
+
+            return result;
+        }
+
+        private static boolean
+        isMoreSpecific(Class<?>[] parameterTypes1, Class<?>[] parameterTypes2) {
+            for (int i = 0; i < parameterTypes1.length; i++) {
+                if (!Translator.isMethodInvocationConvertible(parameterTypes1[i], parameterTypes2[i], false)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean
+        isMethodInvocationConvertible(Class<?> from, Class<?> to, boolean boxing) {
+
+            if (from == to) return true;
+            if (from == void.class) return false;
+            if (from == NullType.class) return !to.isPrimitive();
+
+            if (from.isPrimitive() && to.isPrimitive()) return ScriptInterpreter.isWideningPrimitive(from, to);
+            if (!from.isPrimitive() && !to.isPrimitive()) return to.isAssignableFrom(from);
+
+            return boxing && (
+                from.isPrimitive()
+                ? to.isAssignableFrom(ScriptInterpreter.boxedType(from))
+                : Translator.isMethodInvocationConvertible(ScriptInterpreter.unboxedType(from), to, false)
+            );
+        }
+
+        private static Expression
+        fieldAccess(Expression target, String fieldName) throws UnsupportedException {
+
+            if (target.type.isArray() && "length".equals(fieldName)) return new ArrayLength(target);
+
+            if (target.type.isPrimitive() || target.type == NullType.class) throw new UnsupportedException();
+
+            Field f = Translator.publicField(target.type, fieldName);
+            if (f == null || Modifier.isStatic(f.getModifiers())) throw new UnsupportedException();
+
+            return new FieldRead(target, f);
+        }
+
+        @Nullable private static Field
+        publicField(Class<?> type, String name) throws UnsupportedException {
+            Field result;
+            try {
+                result = type.getField(name);
+            } catch (NoSuchFieldException nsfe) {
+                return null;
+            }
+            if (!Modifier.isPublic(result.getDeclaringClass().getModifiers())) throw new UnsupportedException();
+            return result;
+        }
+
+        // ---------------- Operators ----------------
+
+        private static Expression
+        unaryOperation(String operator, Expression operand) throws UnsupportedException {
+
+            if (operator == "!") { // SUPPRESS CHECKSTYLE StringLiteralEquality
+                return new UnaryOperation(UnaryOperation.NOT, Translator.booleanOperand(operand));
+            }
+
+            Expression promoted = Translator.unaryNumericPromotion(operand);
+            if (operator == "+") return promoted; // SUPPRESS CHECKSTYLE StringLiteralEquality
+            if (operator == "-") return new UnaryOperation(UnaryOperation.NEGATE, promoted); // SUPPRESS CHECKSTYLE StringLiteralEquality|LineLength
+            if (operator == "~" && (promoted.type == int.class || promoted.type == long.class)) { // SUPPRESS CHECKSTYLE StringLiteralEquality|LineLength
+                return new UnaryOperation(UnaryOperation.COMPLEMENT, promoted);
+            }
+            throw new UnsupportedException();
+        }
+
+        private static Expression
+        binaryOperation(String operator, Expression lhs, Expression rhs) throws UnsupportedException {
+
+            int op = Translator.binaryOperator(operator);
+
+            if (op == BinaryOperation.CONDITIONAL_AND || op == BinaryOperation.CONDITIONAL_OR) {
+                return new ConditionalAndOr(
+                    Translator.booleanOperand(lhs),
+                    Translator.booleanOperand(rhs),
+                    op == BinaryOperation.CONDITIONAL_AND
+                );
+            }
+
+            if (op == BinaryOperation.ADD && (lhs.type == String.class || rhs.type == String.class)) {
+                return Translator.concatenation(lhs, rhs);
+            }
+
+            Class<?> lt = Translator.unboxedOrSelf(lhs.type), rt = Translator.unboxedOrSelf(rhs.type);
+
+            if (op == BinaryOperation.EQ || op == BinaryOperation.NE) {
+
+                // Numeric or boolean equality requires that at least one operand is primitive.
+                if (lhs.type.isPrimitive() || rhs.type.isPrimitive()) {
+                    if (lt == boolean.class && rt == boolean.class) {
+                        return new BinaryOperation(
+                            op,
+                            Translator.booleanOperand(lhs),
+                            Translator.booleanOperand(rhs),
+                            boolean.class
+                        );
+                    }
+                    return Translator.numericBinaryOperation(op, lhs, rhs, boolean.class);
+                }
+
+                // Reference equality.
+                if (
+                    lhs.type != NullType.class
+                    && rhs.type != NullType.class
+                    && !Translator.isCastable(lhs.type, rhs.type)
+                ) throw new UnsupportedException();
+                return new ReferenceEquality(lhs, rhs, op == BinaryOperation.EQ);
+            }
+
+            switch (op) {
+
+            case BinaryOperation.LT:
+            case BinaryOperation.LE:
+            case BinaryOperation.GT:
+            case BinaryOperation.GE:
+                return Translator.numericBinaryOperation(op, lhs, rhs, boolean.class);
+
+            case BinaryOperation.AND:
+            case BinaryOperation.OR:
+            case BinaryOperation.XOR:
+                if (lt == boolean.class && rt == boolean.class) {
+                    return new BinaryOperation(
+                        op,
+                        Translator.booleanOperand(lhs),
+                        Translator.booleanOperand(rhs),
+                        boolean.class
+                    );
+                }
+                if (!ScriptInterpreter.isIntegral(lt) || !ScriptInterpreter.isIntegral(rt)) {
+                    throw new UnsupportedException();
+                }
+                return Translator.numericBinaryOperation(op, lhs, rhs, null);
+
+            case BinaryOperation.SHL:
+            case BinaryOperation.SHR:
+            case BinaryOperation.USHR:
+                if (!ScriptInterpreter.isIntegral(lt) || !ScriptInterpreter.isIntegral(rt)) {
+                    throw new UnsupportedException();
+                }
+
+                // The operands are promoted separately (JLS7 15.19).
+                Expression l = Translator.unaryNumericPromotion(lhs);
+                return new BinaryOperation(op, l, Translator.unaryNumericPromotion(rhs), l.type);
+
+            default:
+                return Translator.numericBinaryOperation(op, lhs, rhs, null);
+            }
+        }
+
+        private static int
+        binaryOperator(String operator) throws UnsupportedException {
+            Integer result = (Integer) ScriptInterpreter.BINARY_OPERATORS.get(operator);
+            if (result == null) throw new UnsupportedException();
+            return result;
+        }
+
+        /**
+         * Applies binary numeric promotion (JLS7 5.6.2) to the operands.
+         *
+         * @param resultType {@code null} means: The promoted type
+         */
+        private static Expression
+        numericBinaryOperation(int op, Expression lhs, Expression rhs, @Nullable Class<?> resultType)
+        throws UnsupportedException {
+
+            Class<?> lt = Translator.unboxedOrSelf(lhs.type), rt = Translator.unboxedOrSelf(rhs.type);
+            if (!ScriptInterpreter.isNumeric(lt) || !ScriptInterpreter.isNumeric(rt)) throw new UnsupportedException();
+
+            Class<?> promotedType = ScriptInterpreter.binaryNumericPromotion(lt, rt);
+            return new BinaryOperation(
+                op,
+                Translator.castConversion(lhs, promotedType),
+                Translator.castConversion(rhs, promotedType),
+                resultType == null ? promotedType : resultType
+            );
+        }
+
+        private static Expression
+        concatenation(Expression lhs, Expression rhs) throws UnsupportedException {
+
+            if (lhs.type == void.class || rhs.type == void.class) throw new UnsupportedException();
+
+            // "StringBuilder.append(char[])" would append the characters, and not "String.valueOf(Object)".
+            if (lhs.type == char[].class || rhs.type == char[].class) throw new UnsupportedException();
+
+            return new Concatenation(lhs, rhs);
+        }
+
+        /**
+         * Implements the typing rules of {@code UnitCompiler.getType2(ConditionalExpression)}, with the exception of
+         * mixed {@code byte}, {@code short} and {@code char} operands.
+         */
+        private static Expression
+        conditionalExpression(Expression condition, Expression mhs, Expression rhs) throws UnsupportedException {
+
+            Class<?> mt = mhs.type, rt = rhs.type, type;
+            if (mt == rt) {
+                type = mt;
+            } else
+            if (ScriptInterpreter.unboxedType(mt) == rt || ScriptInterpreter.unboxedType(rt) == mt) {
+                type = mt.isPrimitive() ? mt : rt;
+            } else
+            if (mt == NullType.class && !rt.isPrimitive()) {
+                type = rt;
+            } else
+            if (rt == NullType.class && !mt.isPrimitive()) {
+                type = mt;
+            } else
+            if (
+                ScriptInterpreter.isNumeric(Translator.unboxedOrSelf(mt))
+                && ScriptInterpreter.isNumeric(Translator.unboxedOrSelf(rt))
+            ) {
+                Class<?> mu = Translator.unboxedOrSelf(mt), ru = Translator.unboxedOrSelf(rt);
+                if (
+                    mu == byte.class || mu == short.class || mu == char.class
+                    || ru == byte.class || ru == short.class || ru == char.class
+                ) throw new UnsupportedException();
+                type = ScriptInterpreter.binaryNumericPromotion(mu, ru);
+            } else
+            if (!mt.isPrimitive() && !rt.isPrimitive() && mt.isAssignableFrom(rt)) {
+                type = mt;
+            } else
+            if (!mt.isPrimitive() && !rt.isPrimitive() && rt.isAssignableFrom(mt)) {
+                type = rt;
+            } else
+            {
+                throw new UnsupportedException();
+            }
+
+            if (type == void.class) throw new UnsupportedException();
+
+            return new ConditionalExpression(
+                condition,
+                Translator.castConversion(mhs, type),
+                Translator.castConversion(rhs, type)
+            );
+        }
+
+        // ---------------- Conversions ----------------
+
+        private static Expression
+        booleanOperand(Expression operand) throws UnsupportedException {
+            return (Expression) Translator.notNull(Translator.wideningConversion(operand, boolean.class));
+        }
+
+        /**
+         * Applies unary numeric promotion (JLS7 5.6.1).
+         */
+        private static Expression
+        unaryNumericPromotion(Expression operand) throws UnsupportedException {
+
+            Class<?> t = Translator.unboxedOrSelf(operand.type);
+            if (!ScriptInterpreter.isNumeric(t)) throw new UnsupportedException();
+
+            return Translator.castConversion(
+                operand,
+                t == byte.class || t == short.class || t == char.class ? int.class : t
+            );
+        }
+
+        /**
+         * Identity, widening primitive, widening reference, boxing and unboxing conversions (JLS7 5.3).
+         *
+         * @return {@code null} iff the conversion is not possible
+         */
+        @Nullable private static Expression
+        wideningConversion(Expression e, Class<?> to) {
+
+            Class<?> from = e.type;
+
+            if (from == to) return e;
+            if (from == void.class || to == void.class) return null;
+
+            if (from == NullType.class) return to.isPrimitive() ? null : new Retyped(e, to);
+
+            if (from.isPrimitive()) {
+                if (to.isPrimitive()) {
+                    return ScriptInterpreter.isWideningPrimitive(from, to) ? new PrimitiveConversion(e, to) : null;
+                }
+
+                // Boxing conversion, optionally followed by widening reference conversion.
+                return to.isAssignableFrom(ScriptInterpreter.boxedType(from)) ? new Retyped(e, to) : null;
+            }
+
+            if (to.isPrimitive()) {
+
+                // Unboxing conversion, optionally followed by widening primitive conversion.
+                Class<?> unboxed = ScriptInterpreter.unboxedType(from);
+                if (unboxed == null) return null;
+
+                Expression result = new Unboxing(e, unboxed);
+                if (unboxed == to) return result;
+                return ScriptInterpreter.isWideningPrimitive(unboxed, to) ? new PrimitiveConversion(result, to) : null;
+            }
+
+            return to.isAssignableFrom(from) ? new Retyped(e, to) : null;
+        }
+
+        /**
+         * Assignment conversion (JLS7 5.2), including the narrowing of constants.
+         */
+        private static Expression
+        assignmentConversion(Expression e, Class<?> to) throws UnsupportedException {
+
+            Expression result = Translator.wideningConversion(e, to);
+            if (result != null) return result;
+
+            if (
+                e instanceof Constant
+                && (e.type == int.class || e.type == short.class || e.type == char.class || e.type == byte.class)
+                && (to == byte.class || to == short.class || to == char.class)
+            ) {
+                Object value = ((Constant) e).value;
+                assert value != null;
+                Object narrowed = ScriptInterpreter.convertPrimitive(value, to);
+                if (ScriptInterpreter.intValue(narrowed) == ScriptInterpreter.intValue(value)) {
+                    return new Constant(narrowed, to);
+                }
+            }
+
+            throw new UnsupportedException();
+        }
+
+        /**
+         * Casting conversion (JLS7 5.5).
+         */
+        private static Expression
+        castConversion(Expression e, Class<?> to) throws UnsupportedException {
+
+            Expression result = Translator.wideningConversion(e, to);
+            if (result != null) return result;
+
+            Class<?> from = e.type;
+            if (from.isPrimitive() && to.isPrimitive()) {
+                if (!ScriptInterpreter.isNumeric(from) || !ScriptInterpreter.isNumeric(to)) {
+                    throw new UnsupportedException();
+                }
+                return new PrimitiveConversion(e, to);
+            }
+
+            if (!from.isPrimitive() && !to.isPrimitive() && Translator.isCastable(from, to)) return new Checkcast(e, to);
+
+            throw new UnsupportedException();
+        }
+
+        /**
+         * A conservative approximation of casting conversion between reference types: Only upcasts and downcasts.
+         */
+        private static boolean
+        isCastable(Class<?> from, Class<?> to) { return to.isAssignableFrom(from) || from.isAssignableFrom(to); }
+
+        private static Class<?>
+        unboxedOrSelf(Class<?> type) {
+            Class<?> result = ScriptInterpreter.unboxedType(type);
+            return result == null ? type : result;
+        }
+
+        private static <T> T
+        notNull(@Nullable T value) throws UnsupportedException {
+            if (value == null) throw new UnsupportedException();
+            return value;
+        }
+    }
+
+    // ------------------------------- Executable nodes -------------------------------
+
+    private abstract static
+    class Statement {
+
+        final boolean canCompleteNormally;
+
+        Statement(boolean canCompleteNormally) { this.canCompleteNormally = canCompleteNormally; }
+
+        /**
+         * @return {@link ScriptInterpreter#COMPLETED_NORMALLY}, or the value of the executed RETURN statement
+         */
+        @Nullable abstract Object
+        execute(Object[] frame) throws Throwable;
+    }
+
+    private static
+    class Block extends Statement {
+
+        private final Statement[] statements;
+
+        Block(Statement[] statements) {
+            super(statements.length == 0 || statements[statements.length - 1].canCompleteNormally);
+            this.statements = statements;
+        }
+
+        @Override @Nullable Object
+        execute(Object[] frame) throws Throwable {
+            for (Statement s : this.statements) {
+                Object result = s.execute(frame);
+                if (result != ScriptInterpreter.COMPLETED_NORMALLY) return result;
+            }
+            return ScriptInterpreter.COMPLETED_NORMALLY;
+        }
+    }
+
+    private static
+    class ExpressionStatement extends Statement {
+
+        private final Expression expression;
+
+        ExpressionStatement(Expression expression) {
+            super(true);
+            this.expression = expression;
+        }
+
+        @Override Object
+        execute(Object[] frame) throws Throwable {
+            this.expression.evaluate(frame);
+            return ScriptInterpreter.COMPLETED_NORMALLY;
+        }
+    }
+
+    private static
+    class IfStatement extends Statement {
+
+        private final Expression condition;
+        private final Statement  thenStatement, elseStatement;
+
+        IfStatement(Expression condition, Statement thenStatement, Statement elseStatement, boolean noElse) {
+            super(noElse || thenStatement.canCompleteNormally || elseStatement.canCompleteNormally);
+            this.condition     = condition;
+            this.thenStatement = thenStatement;
+            this.elseStatement = elseStatement;
+        }
+
+        @Override @Nullable Object
+        execute(Object[] frame) throws Throwable {
+            return (
+                (Boolean) this.condition.evaluate(frame)
+                ? this.thenStatement.execute(frame)
+                : this.elseStatement.execute(frame)
+            );
+        }
+    }
+
+    private static
+    class ReturnStatement extends Statement {
+
+        @Nullable private final Expression optionalReturnValue;
+
+        ReturnStatement(@Nullable Expression optionalReturnValue) {
+            super(false);
+            this.optionalReturnValue = optionalReturnValue;
+        }
+
+        @Override @Nullable Object
+        execute(Object[] frame) throws Throwable {
+            Expression rv = this.optionalReturnValue;
+            return rv == null ? null : rv.evaluate(frame);
+        }
+    }
+
+    /**
+     * Evaluates to a value of its static {@link #type}; values of primitive type are represented by their wrapper
+     * objects, e.g. {@code short} by {@link Short}.
+     */
+    private abstract static
+    class Expression {
+
+        final Class<?> type;
+
+        Expression(Class<?> type) { this.type = type; }
+
+        @Nullable abstract Object
+        evaluate(Object[] frame) throws Throwable;
+    }
+
+    private static
+    class Constant extends Expression {
+
+        @Nullable final Object value;
+
+        Constant(@Nullable Object value, Class<?> type) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) { return this.value; }
+    }
+
+    private static
+    class VariableRead extends Expression {
+
+        private final int slot;
+
+        VariableRead(Variable variable) {
+            super(variable.type);
+            this.slot = variable.slot;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) { return frame[this.slot]; }
+    }
+
+    private static
+    class VariableWrite extends Expression {
+
+        private final int        slot;
+        private final Expression value;
+
+        VariableWrite(Variable variable, Expression value) {
+            super(variable.type);
+            this.slot  = variable.slot;
+            this.value = value;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable { return (frame[this.slot] = this.value.evaluate(frame)); }
+    }
+
+    private static
+    class Crement extends Expression {
+
+        private final int        slot;
+        private final Expression newValue;
+        private final boolean    pre;
+
+        Crement(Variable variable, Expression newValue, boolean pre) {
+            super(variable.type);
+            this.slot     = variable.slot;
+            this.newValue = newValue;
+            this.pre      = pre;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable {
+            Object oldValue = frame[this.slot];
+            Object result   = (frame[this.slot] = this.newValue.evaluate(frame));
+            return this.pre ? result : oldValue;
+        }
+    }
+
+    /**
+     * Changes only the static type, e.g. for a widening reference conversion.
+     */
+    private static
+    class Retyped extends Expression {
+
+        private final Expression operand;
+
+        Retyped(Expression operand, Class<?> type) {
+            super(type);
+            this.operand = operand;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable { return this.operand.evaluate(frame); }
+    }
+
+    private static
+    class Unboxing extends Expression {
+
+        private final Expression operand;
+
+        Unboxing(Expression operand, Class<?> type) {
+            super(type);
+            this.operand = operand;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            Object result = this.operand.evaluate(frame);
+            if (result == null) throw new NullPointerException();
+            return result;
+        }
+    }
+
+    private static
+    class PrimitiveConversion extends Expression {
+
+        private final Expression operand;
+
+        PrimitiveConversion(Expression operand, Class<?> type) {
+            super(type);
+            this.operand = operand;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            Object value = this.operand.evaluate(frame);
+            assert value != null;
+            return ScriptInterpreter.convertPrimitive(value, this.type);
+        }
+    }
+
+    private static
+    class Checkcast extends Expression {
+
+        private final Expression operand;
+
+        Checkcast(Expression operand, Class<?> type) {
+            super(type);
+            this.operand = operand;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable { return this.type.cast(this.operand.evaluate(frame)); }
+    }
+
+    private static
+    class InstanceofTest extends Expression {
+
+        private final Expression operand;
+        private final Class<?>   testedType;
+
+        InstanceofTest(Expression operand, Class<?> testedType) {
+            super(boolean.class);
+            this.operand    = operand;
+            this.testedType = testedType;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable { return this.testedType.isInstance(this.operand.evaluate(frame)); }
+    }
+
+    private static
+    class UnaryOperation extends Expression {
+
+        static final int NOT = 0, NEGATE = 1, COMPLEMENT = 2;
+
+        private final int        op;
+        private final Expression operand;
+
+        UnaryOperation(int op, Expression operand) {
+            super(operand.type);
+            this.op      = op;
+            this.operand = operand;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            Object value = this.operand.evaluate(frame);
+            assert value != null;
+
+            if (this.op == UnaryOperation.NOT) return !((Boolean) value);
+
+            if (this.type == int.class) {
+                int v = (Integer) value;
+                return this.op == UnaryOperation.NEGATE ? -v : ~v;
+            }
+            if (this.type == long.class) {
+                long v = (Long) value;
+                return this.op == UnaryOperation.NEGATE ? -v : ~v;
+            }
+            if (this.type == float.class) return -((Float) value);
+            return -((Double) value);
+        }
+    }
+
+    private static
+    class BinaryOperation extends Expression {
+
+        static final int CONDITIONAL_OR = 0, CONDITIONAL_AND = 1;
+        static final int OR = 2, XOR = 3, AND = 4;
+        static final int EQ = 5, NE = 6, LT = 7, GT = 8, LE = 9, GE = 10;
+        static final int SHL = 11, SHR = 12, USHR = 13;
+        static final int ADD = 14, SUB = 15, MUL = 16, DIV = 17, REM = 18;
+
+        private final int        op;
+        private final Expression lhs, rhs;
+
+        /**
+         * The type of both operands, or, for shift operations, the type of the left operand.
+         */
+        private final Class<?> operandType;
+
+        BinaryOperation(int op, Expression lhs, Expression rhs, Class<?> type) {
+            super(type);
+            this.op          = op;
+            this.lhs         = lhs;
+            this.rhs         = rhs;
+            this.operandType = lhs.type;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            Object l = this.lhs.evaluate(frame), r = this.rhs.evaluate(frame);
+            assert l != null && r != null;
+
+            if (this.op >= BinaryOperation.SHL && this.op <= BinaryOperation.USHR) {
+                int distance = ScriptInterpreter.intValue(r);
+                if (this.operandType == int.class) {
+                    int v = (Integer) l;
+                    return (
+                        this.op == BinaryOperation.SHL ? v << distance
+                        : this.op == BinaryOperation.SHR ? v >> distance
+                        : v >>> distance
+                    );
+                } else {
+                    long v = (Long) l;
+                    return (
+                        this.op == BinaryOperation.SHL ? v << distance
+                        : this.op == BinaryOperation.SHR ? v >> distance
+                        : v >>> distance
+                    );
+                }
+            }
+
+            if (this.operandType == int.class) {
+                int a = (Integer) l, b = (Integer) r;
+                switch (this.op) {
+                case OR:  return a | b;
+                case XOR: return a ^ b;
+                case AND: return a & b;
+                case EQ:  return a == b;
+                case NE:  return a != b;
+                case LT:  return a < b;
+                case GT:  return a > b;
+                case LE:  return a <= b;
+                case GE:  return a >= b;
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case REM: return a % b;
+                default:  throw new AssertionError(this.op);
+                }
+            } else
+            if (this.operandType == long.class) {
+                long a = (Long) l, b = (Long) r;
+                switch (this.op) {
+                case OR:  return a | b;
+                case XOR: return a ^ b;
+                case AND: return a & b;
+                case EQ:  return a == b;
+                case NE:  return a != b;
+                case LT:  return a < b;
+                case GT:  return a > b;
+                case LE:  return a <= b;
+                case GE:  return a >= b;
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case REM: return a % b;
+                default:  throw new AssertionError(this.op);
+                }
+            } else
+            if (this.operandType == float.class) {
+                float a = (Float) l, b = (Float) r;
+                switch (this.op) {
+                case EQ:  return a == b;
+                case NE:  return a != b;
+                case LT:  return a < b;
+                case GT:  return a > b;
+                case LE:  return a <= b;
+                case GE:  return a >= b;
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case REM: return a % b;
+                default:  throw new AssertionError(this.op);
+                }
+            } else
+            if (this.operandType == double.class) {
+                double a = (Double) l, b = (Double) r;
+                switch (this.op) {
+                case EQ:  return a == b;
+                case NE:  return a != b;
+                case LT:  return a < b;
+                case GT:  return a > b;
+                case LE:  return a <= b;
+                case GE:  return a >= b;
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case REM: return a % b;
+                default:  throw new AssertionError(this.op);
+                }
+            } else
+            {
+                boolean a = (Boolean) l, b = (Boolean) r;
+                switch (this.op) {
+                case OR:  return a | b;
+                case XOR: return a ^ b;
+                case AND: return a & b;
+                case EQ:  return a == b;
+                case NE:  return a != b;
+                default:  throw new AssertionError(this.op);
+                }
+            }
+        }
+    }
+
+    private static
+    class ConditionalAndOr extends Expression {
+
+        private final Expression lhs, rhs;
+        private final boolean    and;
+
+        ConditionalAndOr(Expression lhs, Expression rhs, boolean and) {
+            super(boolean.class);
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.and = and;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            boolean l = (Boolean) this.lhs.evaluate(frame);
+            if (l != this.and) return l;
+            return this.rhs.evaluate(frame);
+        }
+    }
+
+    private static
+    class ReferenceEquality extends Expression {
+
+        private final Expression lhs, rhs;
+        private final boolean    equal;
+
+        ReferenceEquality(Expression lhs, Expression rhs, boolean equal) {
+            super(boolean.class);
+            this.lhs   = lhs;
+            this.rhs   = rhs;
+            this.equal = equal;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            return (this.lhs.evaluate(frame) == this.rhs.evaluate(frame)) == this.equal;
+        }
+    }
+
+    private static
+    class Concatenation extends Expression {
+
+        private final Expression lhs, rhs;
+
+        Concatenation(Expression lhs, Expression rhs) {
+            super(String.class);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            return String.valueOf(this.lhs.evaluate(frame)).concat(String.valueOf(this.rhs.evaluate(frame)));
+        }
+    }
+
+    private static
+    class ConditionalExpression extends Expression {
+
+        private final Expression condition, mhs, rhs;
+
+        ConditionalExpression(Expression condition, Expression mhs, Expression rhs) {
+            super(mhs.type);
+            this.condition = condition;
+            this.mhs       = mhs;
+            this.rhs       = rhs;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable {
+            return (Boolean) this.condition.evaluate(frame) ? this.mhs.evaluate(frame) : this.rhs.evaluate(frame);
+        }
+    }
+
+    private static
+    class FieldRead extends Expression {
+
+        @Nullable private final Expression optionalTarget;
+        private final Field                field;
+
+        FieldRead(@Nullable Expression optionalTarget, Field field) {
+            super(field.getType());
+            this.optionalTarget = optionalTarget;
+            this.field          = field;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable {
+            Expression t      = this.optionalTarget;
+            Object     target = t == null ? null : t.evaluate(frame);
+            if (t != null && target == null) throw new NullPointerException();
+            try {
+                return this.field.get(target);
+            } catch (IllegalAccessException iae) {
+                throw new IllegalAccessError(iae.getMessage());
+            }
+        }
+    }
+
+    private static
+    class ArrayLength extends Expression {
+
+        private final Expression array;
+
+        ArrayLength(Expression array) {
+            super(int.class);
+            this.array = array;
+        }
+
+        @Override Object
+        evaluate(Object[] frame) throws Throwable {
+            Object a = this.array.evaluate(frame);
+            if (a == null) throw new NullPointerException();
+            return Array.getLength(a);
+        }
+    }
+
+    private static
+    class ArrayElementRead extends Expression {
+
+        private final Expression array, index;
+
+        ArrayElementRead(Expression array, Expression index) {
+            super(array.type.getComponentType());
+            this.array = array;
+            this.index = index;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable {
+            Object a = this.array.evaluate(frame);
+            int    i = (Integer) this.index.evaluate(frame);
+            if (a == null) throw new NullPointerException();
+            return Array.get(a, i);
+        }
+    }
+
+    private static
+    class Invocation extends Expression {
+
+        @Nullable private final Expression optionalTarget;
+        private final Method               method;
+        private final Expression[]         arguments;
+
+        Invocation(@Nullable Expression optionalTarget, Method method, Expression[] arguments) {
+            super(method.getReturnType());
+            this.optionalTarget = optionalTarget;
+            this.method         = method;
+            this.arguments      = arguments;
+        }
+
+        @Override @Nullable Object
+        evaluate(Object[] frame) throws Throwable {
+            Expression t      = this.optionalTarget;
+            Object     target = t == null ? null : t.evaluate(frame);
+
+            Object[] args = new Object[this.arguments.length];
+            for (int i = 0; i < args.length; i++) args[i] = this.arguments[i].evaluate(frame);
+
+            if (t != null && target == null) throw new NullPointerException();
+            try {
+                return this.method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            } catch (IllegalAccessException iae) {
+                throw new IllegalAccessError(iae.getMessage());
+            }
+        }
+    }
+
+    // ------------------------------- Type utilities -------------------------------
+
+    private static final Map<String /*descriptor*/, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+    static {
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.VOID,    void.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.BOOLEAN, boolean.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.BYTE,    byte.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.SHORT,   short.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.CHAR,    char.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.INT,     int.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.LONG,    long.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.FLOAT,   float.class);
+        ScriptInterpreter.PRIMITIVE_TYPES.put(Descriptor.DOUBLE,  double.class);
+    }
+
+    private static final Map<String /*operator*/, Integer> BINARY_OPERATORS = new HashMap<String, Integer>();
+    static {
+        ScriptInterpreter.BINARY_OPERATORS.put("||",  BinaryOperation.CONDITIONAL_OR);
+        ScriptInterpreter.BINARY_OPERATORS.put("&&",  BinaryOperation.CONDITIONAL_AND);
+        ScriptInterpreter.BINARY_OPERATORS.put("|",   BinaryOperation.OR);
+        ScriptInterpreter.BINARY_OPERATORS.put("^",   BinaryOperation.XOR);
+        ScriptInterpreter.BINARY_OPERATORS.put("&",   BinaryOperation.AND);
+        ScriptInterpreter.BINARY_OPERATORS.put("==",  BinaryOperation.EQ);
+        ScriptInterpreter.BINARY_OPERATORS.put("!=",  BinaryOperation.NE);
+        ScriptInterpreter.BINARY_OPERATORS.put("<",   BinaryOperation.LT);
+        ScriptInterpreter.BINARY_OPERATORS.put(">",   BinaryOperation.GT);
+        ScriptInterpreter.BINARY_OPERATORS.put("<=",  BinaryOperation.LE);
+        ScriptInterpreter.BINARY_OPERATORS.put(">=",  BinaryOperation.GE);
+        ScriptInterpreter.BINARY_OPERATORS.put("<<",  BinaryOperation.SHL);
+        ScriptInterpreter.BINARY_OPERATORS.put(">>",  BinaryOperation.SHR);
+        ScriptInterpreter.BINARY_OPERATORS.put(">>>", BinaryOperation.USHR);
+        ScriptInterpreter.BINARY_OPERATORS.put("+",   BinaryOperation.ADD);
+        ScriptInterpreter.BINARY_OPERATORS.put("-",   BinaryOperation.SUB);
+        ScriptInterpreter.BINARY_OPERATORS.put("*",   BinaryOperation.MUL);
+        ScriptInterpreter.BINARY_OPERATORS.put("/",   BinaryOperation.DIV);
+        ScriptInterpreter.BINARY_OPERATORS.put("%",   BinaryOperation.REM);
+    }
+
+    private static final Class<?>[] PRIMITIVE_WRAPPERS = {
+        Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class,
+    };
+    private static final Class<?>[] UNBOXED_TYPES = {
+        boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class,
+    };
+
+    @Nullable private static Class<?>
+    unboxedType(Class<?> type) {
+        for (int i = 0; i < ScriptInterpreter.PRIMITIVE_WRAPPERS.length; i++) {
+            if (ScriptInterpreter.PRIMITIVE_WRAPPERS[i] == type) return ScriptInterpreter.UNBOXED_TYPES[i];
+        }
+        return null;
+    }
+
+    private static Class<?>
+    boxedType(Class<?> primitiveType) {
+        for (int i = 0; i < ScriptInterpreter.UNBOXED_TYPES.length; i++) {
+            if (ScriptInterpreter.UNBOXED_TYPES[i] == primitiveType) return ScriptInterpreter.PRIMITIVE_WRAPPERS[i];
+        }
+        throw new AssertionError(primitiveType);
+    }
+
+    /**
+     * @return The primitive type that the constant <var>value</var> represents, or its class
+     */
+    private static Class<?>
+    primitiveTypeOf(Object value) {
+        Class<?> result = ScriptInterpreter.unboxedType(value.getClass());
+        return result == null ? value.getClass() : result;
+    }
+
+    private static boolean
+    isNumeric(Class<?> type) { return type.isPrimitive() && type != boolean.class && type != void.class; }
+
+    private static boolean
+    isIntegral(Class<?> type) {
+        return type == byte.class || type == short.class || type == char.class || type == int.class || type == long.class;
+    }
+
+    /**
+     * @return Whether a widening primitive conversion (JLS7 5.1.2) exists
+     */
+    private static boolean
+    isWideningPrimitive(Class<?> from, Class<?> to) {
+        if (!ScriptInterpreter.isNumeric(from) || !ScriptInterpreter.isNumeric(to) || from == to) return false;
+        if (to == char.class || from == double.class) return false;
+        if (from == char.class) return to != byte.class && to != short.class;
+        return ScriptInterpreter.rank(from) < ScriptInterpreter.rank(to);
+    }
+
+    private static int
+    rank(Class<?> numericType) {
+        return (
+            numericType == byte.class  ? 0
+            : numericType == short.class ? 1
+            : numericType == char.class  ? 1
+            : numericType == int.class   ? 2
+            : numericType == long.class  ? 3
+            : numericType == float.class ? 4
+            : 5
+        );
+    }
+
+    /**
+     * Binary numeric promotion (JLS7 5.6.2).
+     */
+    private static Class<?>
+    binaryNumericPromotion(Class<?> t1, Class<?> t2) {
+        if (t1 == double.class || t2 == double.class) return double.class;
+        if (t1 == float.class || t2 == float.class) return float.class;
+        if (t1 == long.class || t2 == long.class) return long.class;
+        return int.class;
+    }
+
+    /**
+     * Converts a {@link Number} or {@link Character} to the wrapper object of the given primitive type; {@link
+     * Boolean}s are returned as they are.
+     */
+    static Object
+    convertPrimitive(Object value, Class<?> to) {
+        if (to == int.class)    return ScriptInterpreter.intValue(value);
+        if (to == long.class)   return value instanceof Character ? (long) (Character) value : ((Number) value).longValue(); // SUPPRESS CHECKSTYLE LineLength:4
+        if (to == double.class) return value instanceof Character ? (double) (Character) value : ((Number) value).doubleValue();
+        if (to == float.class)  return value instanceof Character ? (float) (Character) value : ((Number) value).floatValue();
+        if (to == byte.class)   return (byte) ScriptInterpreter.intValue(value);
+        if (to == short.class)  return (short) ScriptInterpreter.intValue(value);
+        if (to == char.class)   return (char) ScriptInterpreter.intValue(value);
+        return value;
+    }
+
+    private static int
+    intValue(Object value) {
+        return value instanceof Character ? (Character) value : ((Number) value).intValue();
+    }
+}
@@ -34,8 +34,10 @@ import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.Permissions;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -77,6 +79,27 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
     @Nullable private Permissions permissions;
 
+    @Nullable private AccessPolicy optionalAccessPolicy;
+
+    @Nullable private PurityPolicy optionalPurityPolicy;
+
+    @Nullable private CompilationListener optionalCompilationListener;
+
+    private List<MethodProfile> methodProfiles = Collections.emptyList();
+
+    /**
+     * A {@code java.lang.invoke.MethodHandles.Lookup}, or {@code null} if hidden classes are disabled.
+     */
+    @Nullable private Object hiddenClassLookup;
+
+    /**
+     * The classes that were defined as hidden classes; {@code null} if the classes were loaded through the {@link
+     * #result} class loader.
+     */
+    @Nullable private Map<String /*className*/, Class<?>> hiddenClasses;
+
+    @Nullable private PooledClassDefiner pooledClassDefiner;
+
     private EnumSet<JaninoOption> options = EnumSet.noneOf(JaninoOption.class);
 
     public static void // SUPPRESS CHECKSTYLE JavadocMethod
@@ -191,6 +214,63 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         );
     }
 
+    /**
+     * Enables the definition of the generated classes as <em>hidden classes</em> (JDK 15+) through the given {@code
+     * java.lang.invoke.MethodHandles.Lookup}, instead of through a newly created {@link ClassLoader} per {@link
+     * #cook(Map)}. Hidden classes can be unloaded individually, as soon as they are no longer reachable, which saves
+     * a lot of metaspace when very many small units are cooked.
+     * <p>
+     *   The <var>lookup</var> must have full privilege access (e.g. {@code MethodHandles.lookup()} of the calling
+     *   class), and the generated class must be declared in the same package as the lookup class; notice that
+     *   {@link ClassBodyEvaluator#setClassName(String)} et al. determine that package.
+     * </p>
+     * <p>
+     *   Because hidden classes cannot be referred to by name, only compilation units that generate exactly one class
+     *   (i.e. that declare no member, local or anonymous classes) are defined as hidden classes. Other compilation
+     *   units, compilations with {@link #setPermissions(Permissions) permissions}, and all compilations on JVMs that
+     *   do not support hidden classes fall back to the classic {@link ByteArrayClassLoader}.
+     * </p>
+     * <p>
+     *   Also sets the parent class loader to the class loader of the lookup class, because that is the class loader
+     *   that resolves the references of the hidden classes.
+     * </p>
+     *
+     * @param lookup                    A {@code java.lang.invoke.MethodHandles.Lookup} (typed as {@link Object}
+     *                                  because the lookup API is not available on all supported JVMs), or {@code
+     *                                  null} to disable hidden classes
+     * @throws IllegalArgumentException The <var>lookup</var> is not a {@code java.lang.invoke.MethodHandles.Lookup}
+     * @see #getHiddenClass(String)
+     */
+    public void
+    setHiddenClassLookup(@Nullable Object lookup) {
+
+        if (lookup != null) {
+            HiddenClasses.checkLookup(lookup);
+            if (HiddenClasses.isSupported()) {
+                this.setParentClassLoader(HiddenClasses.lookupClass(lookup).getClassLoader());
+            }
+        }
+
+        this.hiddenClassLookup = lookup;
+    }
+
+    /**
+     * Makes {@link #cook(Map)} define the generated classes through the given {@link PooledClassDefiner}, i.e. into
+     * a class loader that is shared with other units, instead of into a newly created {@link ClassLoader}.
+     * Compilations with {@link #setPermissions(Permissions) permissions} still use a class loader of their own, because
+     * permissions apply to a class loader as a whole.
+     * <p>
+     *   Also sets the parent class loader to that of the <var>pooledClassDefiner</var>.
+     * </p>
+     *
+     * @param pooledClassDefiner {@code null} to create a new class loader per {@link #cook(Map)}
+     */
+    public void
+    setPooledClassDefiner(@Nullable PooledClassDefiner pooledClassDefiner) {
+        if (pooledClassDefiner != null) this.setParentClassLoader(pooledClassDefiner.getParentClassLoader());
+        this.pooledClassDefiner = pooledClassDefiner;
+    }
+
     @Override public void
     setDebuggingInformation(boolean debugSource, boolean debugLines, boolean debugVars) {
         this.debugSource = debugSource;
@@ -213,7 +293,15 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
      */
     public void
     cook(Scanner scanner) throws CompileException, IOException {
-        this.compileToClassLoader(new Parser(scanner).parseCompilationUnit());
+        Object cookEvent = JfrEvents.COOK.begin();
+        long   start     = System.nanoTime();
+        scanner.setCompilationListener(this.optionalCompilationListener);
+
+        Java.CompilationUnit compilationUnit = new Parser(scanner).parseCompilationUnit();
+        this.parsed(scanner, start);
+
+        this.compileToClassLoader(compilationUnit);
+        SimpleCompiler.cooked(cookEvent, compilationUnit, scanner.getCharacterCount());
     }
 
     /**
@@ -224,22 +312,37 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
         SimpleCompiler.LOGGER.entering(null, "cook", compilationUnit);
 
+        this.cook(this.compileToClassFiles(compilationUnit));
+    }
+
+    /**
+     * Compiles the given <var>compilationUnit</var>, but does not yet define the generated classes; see {@link
+     * #cook(ClassFile[])}.
+     */
+    protected final ClassFile[]
+    compileToClassFiles(Java.CompilationUnit compilationUnit) throws CompileException {
+
         ClassFile[] classFiles;
 
         IClassLoader icl = (this.classLoaderIClassLoader = new ClassLoaderIClassLoader(this.parentClassLoader));
+        icl.setCompilationListener(this.optionalCompilationListener);
         try {
 
             // Compile compilation unit to class files.
             UnitCompiler unitCompiler = new UnitCompiler(compilationUnit, icl).options(this.options);
             unitCompiler.setCompileErrorHandler(this.optionalCompileErrorHandler);
             unitCompiler.setWarningHandler(this.optionalWarningHandler);
+            unitCompiler.setAccessPolicy(this.optionalAccessPolicy);
+            unitCompiler.setPurityPolicy(this.optionalPurityPolicy);
+            unitCompiler.setCompilationListener(this.optionalCompilationListener);
 
-            classFiles = unitCompiler.compileUnit(this.debugSource, this.debugLines, this.debugVars);
+            classFiles          = unitCompiler.compileUnit(this.debugSource, this.debugLines, this.debugVars);
+            this.methodProfiles = unitCompiler.getMethodProfiles();
         } finally {
             this.classLoaderIClassLoader = null;
         }
 
-        this.cook(classFiles);
+        return classFiles;
     }
 
     /**
@@ -252,7 +355,7 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         // Convert the class files to bytes and store them in a Map.
         final Map<String /*className*/, byte[] /*bytecode*/> classes = new HashMap<String, byte[]>();
         for (ClassFile cf : classFiles) {
-            classes.put(cf.getThisClassName(), cf.toByteArray());
+            classes.put(cf.getThisClassName(), CompilationEvents.toByteArray(cf, this.optionalCompilationListener));
         }
 
         this.cook(classes);
@@ -267,15 +370,58 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     public void
     cook(final Map<String /*className*/, byte[] /*bytecode*/> classes) {
 
+        // Define the class as a hidden class, if possible.
+        Object lookup = this.hiddenClassLookup;
+        if (lookup != null && HiddenClasses.isSupported() && this.permissions == null && classes.size() == 1) {
+            Map.Entry<String, byte[]> me        = (Map.Entry<String, byte[]>) classes.entrySet().iterator().next();
+            String                    className = (String) me.getKey();
+            byte[]                    bytecode  = (byte[]) me.getValue();
+
+            Class<?>    lookupClass       = HiddenClasses.lookupClass(lookup);
+            ClassLoader lookupClassLoader = lookupClass.getClassLoader();
+            if (
+                lookupClassLoader != null
+                && SimpleCompiler.getPackageName(lookupClass.getName()).equals(
+                    SimpleCompiler.getPackageName(className)
+                )
+            ) {
+                Object defineEvent = JfrEvents.CLASS_DEFINITION.begin();
+                long   start       = System.nanoTime();
+                this.hiddenClasses = Collections.<String, Class<?>>singletonMap(
+                    className,
+                    HiddenClasses.define(lookup, bytecode)
+                );
+                CompilationEvents.phaseCompleted(
+                    this.optionalCompilationListener,
+                    CompilationListener.Phase.CLASS_DEFINITION,
+                    className,
+                    start
+                );
+                JfrEvents.commit(defineEvent, new Object[] { className, (long) bytecode.length });
+                this.result = lookupClassLoader;
+                return;
+            }
+        }
+        this.hiddenClasses = null;
+
+        // Add the classes to a shared class loader, if configured.
+        PooledClassDefiner pcd = this.pooledClassDefiner;
+        if (pcd != null && this.permissions == null) {
+            this.result = pcd.define(classes);
+            return;
+        }
+
         // Create a ClassLoader that loads the generated classes.
         ClassLoader cl = (ClassLoader) AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
 
             @Override public ClassLoader
             run() {
-                return new ByteArrayClassLoader(
+                ByteArrayClassLoader bacl = new ByteArrayClassLoader(
                     classes,                              // classes
                     SimpleCompiler.this.parentClassLoader // parent
                 );
+                bacl.setCompilationListener(SimpleCompiler.this.optionalCompilationListener);
+                return bacl;
             }
         });
 
@@ -285,6 +431,22 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         this.result = cl;
     }
 
+    /**
+     * @return The class with the given name that was defined as a hidden class by the preceding {@link #cook(Map)}, or
+     *         {@code null}
+     * @see #setHiddenClassLookup(Object)
+     */
+    @Nullable public Class<?>
+    getHiddenClass(String className) {
+        this.assertCooked();
+        Map<String, Class<?>> hc = this.hiddenClasses;
+        return hc == null ? null : (Class<?>) hc.get(className);
+    }
+
+    /**
+     * Notice: If the classes were defined as hidden classes (see {@link #setHiddenClassLookup(Object)}), then the
+     * returned class loader is that of the lookup class, and the classes <em>cannot</em> be loaded through it.
+     */
     @Override public ClassLoader
     getClassLoader() {
         if (this.getClass() != SimpleCompiler.class) {
@@ -299,6 +461,98 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     @Override public void
     setNoPermissions() { this.setPermissions(new Permissions()); }
 
+    /**
+     * Confines the generated code at compile time, as an alternative to {@link #setPermissions(Permissions)} that has
+     * no runtime overhead; see {@link UnitCompiler#setAccessPolicy(AccessPolicy)}.
+     *
+     * @param optionalAccessPolicy {@code null} to allow all accesses (which is the default)
+     */
+    public void
+    setAccessPolicy(@Nullable AccessPolicy optionalAccessPolicy) { this.optionalAccessPolicy = optionalAccessPolicy; }
+
+    /**
+     * Declares additional methods as free of side effects; see {@link UnitCompiler#setPurityPolicy(PurityPolicy)}.
+     *
+     * @param optionalPurityPolicy {@code null} to regard only the methods that janino knows as pure (which is the
+     *                             default)
+     */
+    public void
+    setPurityPolicy(@Nullable PurityPolicy optionalPurityPolicy) { this.optionalPurityPolicy = optionalPurityPolicy; }
+
+    /**
+     * Reports the phases and counters of the following cooks to the given listener, see {@link CompilationListener}.
+     * (Classes that are defined through a {@link #setPooledClassDefiner(PooledClassDefiner) pooled class definer}
+     * are not reported as {@link CompilationListener.Phase#CLASS_DEFINITION}.)
+     *
+     * @param optionalCompilationListener {@code null} to disable reporting (which is the default)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.optionalCompilationListener = optionalCompilationListener;
+    }
+
+    /**
+     * Reports {@link CompilationListener.Phase#PARSE} for the source read by the <var>scanner</var>, which began at
+     * <var>startNanos</var>. Must be invoked by all {@code cook()} methods that parse, after the parsing is
+     * complete, and before the compilation unit is compiled.
+     */
+    void
+    parsed(Scanner scanner, long startNanos) {
+        CompilationEvents.phaseCompleted(
+            this.optionalCompilationListener,
+            CompilationListener.Phase.PARSE,
+            scanner.getFileName(),
+            startNanos
+        );
+    }
+
+    /**
+     * @return The {@link MethodProfile}s of the methods compiled by the last {@code cook()}; empty unless {@link
+     *         JaninoOption#METHOD_PROFILING} or {@link JaninoOption#METHOD_PROFILING_WITH_TIMING} is configured
+     * @see    MethodProfile#unregister()
+     */
+    public List<MethodProfile>
+    getMethodProfiles() { return this.methodProfiles; }
+
+    /**
+     * @see #setCompilationListener(CompilationListener)
+     */
+    @Nullable CompilationListener
+    getCompilationListener() { return this.optionalCompilationListener; }
+
+    /**
+     * Commits the {@link JfrEvents#COOK} event that a {@code cook()} method began before scanning; the class name is
+     * that of the first type declared in the <var>compilationUnit</var>.
+     *
+     * @param cookEvent  The value returned by {@link JfrEvents.Type#begin()}
+     * @param sourceSize The number of characters scanned, see {@link Scanner#getCharacterCount()}
+     */
+    static void
+    cooked(@Nullable Object cookEvent, Java.CompilationUnit compilationUnit, long sourceSize) {
+        if (cookEvent == null) return;
+
+        Java.PackageMemberTypeDeclaration[] pmtds = compilationUnit.getPackageMemberTypeDeclarations();
+        JfrEvents.commit(cookEvent, new Object[] { pmtds.length == 0 ? null : pmtds[0].getClassName(), sourceSize });
+    }
+
+    /**
+     * @return The class loader through which the generated code loads the classes it references
+     */
+    ClassLoader
+    getParentClassLoader() { return this.parentClassLoader; }
+
+    /**
+     * @return Whether the generated classes will be confined with {@link #setPermissions(Permissions) permissions}
+     */
+    boolean
+    hasPermissions() { return this.permissions != null; }
+
+    /**
+     * @return Whether the generated code is confined with an {@link #setAccessPolicy(AccessPolicy) access policy}
+     */
+    boolean
+    hasAccessPolicy() { return this.optionalAccessPolicy != null; }
+
     /**
      * Two {@link SimpleCompiler}s are regarded equal iff
      * <ul>
@@ -315,6 +569,10 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
         if (this.getClass() != that.getClass()) return false;
 
+        if (this.hiddenClasses != null || that.hiddenClasses != null) {
+            return this.hiddenClasses != null && this.hiddenClasses.equals(that.hiddenClasses);
+        }
+
         return this.assertCooked().equals(that.assertCooked());
     }
 
@@ -467,6 +725,36 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         return this.assertCooked();
     }
 
+    /**
+     * Loads one of the classes that were generated by the preceding {@link #cook(Map)}, no matter whether it was defined
+     * as a hidden class or through a class loader.
+     */
+    protected final Class<?>
+    loadCookedClass(String className) throws ClassNotFoundException {
+        Class<?> c = this.getHiddenClass(className);
+        return c != null ? c : this.assertCooked().loadClass(className);
+    }
+
+    /**
+     * @return The given <var>className</var>, or, iff a {@link PooledClassDefiner} is configured, a unique variant of
+     *         it, so that classes of different units do not collide in the shared class loader
+     * @see #setPooledClassDefiner(PooledClassDefiner)
+     */
+    protected final String
+    uniqueClassName(String className) {
+        PooledClassDefiner pcd = this.pooledClassDefiner;
+        return pcd == null ? className : pcd.uniqueClassName(className);
+    }
+
+    /**
+     * @return E.g. "pkg1.pkg2" for "pkg1.pkg2.Cls", or "" for "Cls"
+     */
+    private static String
+    getPackageName(String className) {
+        int idx = className.lastIndexOf('.');
+        return idx == -1 ? "" : className.substring(0, idx);
+    }
+
     /**
      * @return The class loader created when this {@link SimpleCompiler} was {@link #cook(Reader)}ed
      */
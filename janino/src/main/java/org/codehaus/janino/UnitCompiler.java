@@ -210,6 +210,7 @@ import org.codehaus.janino.Visitor.TypeDeclarationVisitor;
 import org.codehaus.janino.util.Annotatable;
 import org.codehaus.janino.util.ClassFile;
 import org.codehaus.janino.util.ClassFile.ClassFileException;
+import org.codehaus.janino.util.DeepCopier;
 import org.codehaus.janino.util.Numbers;
 import org.codehaus.janino.util.Objects;
 
@@ -240,6 +241,42 @@ class UnitCompiler {
      */
     private static final int STRING_CONCAT_LIMIT = 3;
 
+    /**
+     * The maximum number of expression nodes in the body of a method that is inlined; see {@link
+     * JaninoOption#INLINE_METHODS}. Roughly corresponds with HotSpot's "MaxInlineSize" of 35 bytecode bytes.
+     */
+    private static final int INLINING_MAX_SIZE = 16;
+
+    /**
+     * The methods that {@link JaninoOption#ELIMINATE_COMMON_SUBEXPRESSIONS} regards as free of side effects, in
+     * addition to those of {@link Math} and {@link StrictMath} (except {@code random()}). Methods that create new
+     * objects are not listed, because their results must remain distinct.
+     */
+    private static final Set<String> PURE_METHODS = new HashSet<String>(Arrays.asList(
+        "java.lang.String.charAt",
+        "java.lang.String.codePointAt",
+        "java.lang.String.compareTo",
+        "java.lang.String.compareToIgnoreCase",
+        "java.lang.String.contains",
+        "java.lang.String.endsWith",
+        "java.lang.String.equals",
+        "java.lang.String.equalsIgnoreCase",
+        "java.lang.String.hashCode",
+        "java.lang.String.indexOf",
+        "java.lang.String.isEmpty",
+        "java.lang.String.lastIndexOf",
+        "java.lang.String.length",
+        "java.lang.String.startsWith",
+        "java.lang.Boolean.booleanValue",
+        "java.lang.Byte.byteValue",
+        "java.lang.Character.charValue",
+        "java.lang.Double.doubleValue",
+        "java.lang.Float.floatValue",
+        "java.lang.Integer.intValue",
+        "java.lang.Long.longValue",
+        "java.lang.Short.shortValue"
+    ));
+
     /**
      * Special value for the <var>orientation</var> parameter of the {@link #compileBoolean(Java.Rvalue,
      * CodeContext.Offset, boolean)} methods, indicating that the code should be generated such that execution branches
@@ -355,6 +392,10 @@ class UnitCompiler {
      */
     public ClassFile[]
     compileUnit(boolean debugSource, boolean debugLines, boolean debugVars) throws CompileException {
+        long start = System.nanoTime();
+        this.flowAnalysisNanos = 0;
+        this.methodProfiles.clear();
+
         this.debugSource = debugSource;
         this.debugLines  = debugLines;
         this.debugVars   = debugVars;
@@ -398,6 +439,13 @@ class UnitCompiler {
                 ), null);
             }
 
+            CompilationListener cl = this.optionalCompilationListener;
+            if (cl != null) {
+                String fileName = this.compilationUnit.optionalFileName;
+                cl.phaseCompleted(CompilationListener.Phase.FLOW_ANALYSIS, fileName, this.flowAnalysisNanos);
+                cl.phaseCompleted(CompilationListener.Phase.CODE_GENERATION, fileName, System.nanoTime() - start);
+            }
+
             return (ClassFile[]) gcfs.toArray(new ClassFile[gcfs.size()]);
         } finally {
             this.generatedClassFiles = null;
@@ -1472,7 +1520,7 @@ class UnitCompiler {
         this.invoke(Located.NOWHERE, override);
         this.writeOpcode(Located.NOWHERE, Opcode.ARETURN);
         this.replaceCodeContext(savedCodeContext);
-        codeContext.flowAnalysis(override.getName());
+        this.flowAnalysis(codeContext, override.getName());
 
         // Add the code context as a code attribute to the MethodInfo.
         mi.addAttribute(new ClassFile.AttributeInfo(cf.addConstantUtf8Info("Code")) {
@@ -1490,6 +1538,8 @@ class UnitCompiler {
     private boolean
     compile(BlockStatement bs) throws CompileException {
 
+        CompileService.checkStopped(bs.getLocation());
+
         Boolean result = (Boolean) bs.accept(new BlockStatementVisitor<Boolean, CompileException>() {
 
             // SUPPRESS CHECKSTYLE LineLengthCheck:23
@@ -1592,6 +1642,7 @@ class UnitCompiler {
         }
 
         final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
+        this.checkExecutionBudget(ds);
 
         // Compile body.
         ds.whereToContinue = null;
@@ -1658,7 +1709,8 @@ class UnitCompiler {
             // Compile body.
             fs.whereToContinue = null;
             final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
-            boolean                  bodyCcn    = this.compile(fs.body);
+            this.checkExecutionBudget(fs);
+            boolean bodyCcn = this.compile(fs.body);
             if (fs.whereToContinue != null) fs.whereToContinue.set();
 
             // Compile update.
@@ -1718,6 +1770,7 @@ class UnitCompiler {
                 // Compile the body.
                 fes.whereToContinue = null;
                 final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
+                this.checkExecutionBudget(fes);
 
                 this.load(fes, expressionType, expressionLv);
                 this.load(fes, indexLv);
@@ -1778,6 +1831,7 @@ class UnitCompiler {
                 // Compile the body.
                 fes.whereToContinue = null;
                 final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
+                this.checkExecutionBudget(fes);
 
                 this.load(fes, iteratorLv);
                 this.invoke(fes.expression, this.iClassLoader.METH_java_util_Iterator__next);
@@ -1845,6 +1899,7 @@ class UnitCompiler {
         Offset wtc = (ws.whereToContinue = this.getCodeContext().new Offset());
         this.writeBranch(ws, Opcode.GOTO, wtc);
         final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
+        this.checkExecutionBudget(ws);
         this.compile(ws.body); // Return value (CCN) is ignored.
         assert ws.whereToContinue == wtc;
         wtc.set();
@@ -1867,6 +1922,7 @@ class UnitCompiler {
 
         // Compile body.
         Offset wtc = (cs.whereToContinue = this.getCodeContext().newOffset());
+        this.checkExecutionBudget(cs);
         if (this.compile(body)) this.writeBranch(cs, Opcode.GOTO, wtc);
         cs.whereToContinue = null;
 
@@ -1885,7 +1941,8 @@ class UnitCompiler {
         // Compile body.
         cs.whereToContinue = null;
         final CodeContext.Offset bodyOffset = this.getCodeContext().newOffset();
-        boolean                  bodyCcn    = this.compile(body);
+        this.checkExecutionBudget(cs);
+        boolean bodyCcn = this.compile(body);
 
         // Compile the "update".
         if (cs.whereToContinue != null) cs.whereToContinue.set();
@@ -1907,6 +1964,147 @@ class UnitCompiler {
         return true;
     }
 
+    /**
+     * Iff {@link JaninoOption#EXECUTION_BUDGET_CHECKS} is configured, generates an invocation of {@link
+     * ExecutionBudget#tick()}, and allocates and initializes the local variable that counts down the loop iterations
+     * of the function invocation (see {@link #checkExecutionBudget(ContinuableStatement)}).
+     */
+    private void
+    checkExecutionBudgetOnEntry(FunctionDeclarator fd) throws CompileException {
+        if (!this.options.contains(JaninoOption.EXECUTION_BUDGET_CHECKS)) return;
+
+        this.invokeExecutionBudget(fd, "tick");
+
+        short countdownLvIndex = this.getCodeContext().allocateLocalVariable((short) 1);
+        this.pushConstant(fd, ExecutionBudget.CHECK_INTERVAL);
+        this.store(fd, IClass.INT, countdownLvIndex);
+        this.budgetCountdowns.put(fd, countdownLvIndex);
+    }
+
+    /**
+     * Iff {@link JaninoOption#EXECUTION_BUDGET_CHECKS} is configured, generates code that decrements the loop
+     * iteration countdown of the enclosing function invocation, and invokes {@link ExecutionBudget#check()} only
+     * when it reaches zero. Loops outside of functions (i.e. in initializers) invoke {@link ExecutionBudget#tick()}
+     * instead.
+     */
+    private void
+    checkExecutionBudget(ContinuableStatement cs) throws CompileException {
+        if (!this.options.contains(JaninoOption.EXECUTION_BUDGET_CHECKS)) return;
+
+        Scope s = cs.getEnclosingScope();
+        while (s instanceof Statement || s instanceof CatchClause) s = s.getEnclosingScope();
+        Short countdownLvIndex = s instanceof FunctionDeclarator ? (Short) this.budgetCountdowns.get(s) : null;
+        if (countdownLvIndex == null) {
+            this.invokeExecutionBudget(cs, "tick");
+            return;
+        }
+
+        int lvIndex = countdownLvIndex.shortValue();
+        if (lvIndex > 255) {
+            this.writeOpcode(cs, Opcode.WIDE);
+            this.writeOpcode(cs, Opcode.IINC);
+            this.writeShort(lvIndex);
+            this.writeShort(-1);
+        } else {
+            this.writeOpcode(cs, Opcode.IINC);
+            this.writeByte(lvIndex);
+            this.writeByte(-1);
+        }
+        this.load(cs, IClass.INT, lvIndex);
+        Offset notYet = this.getCodeContext().new Offset();
+        this.writeBranch(cs, Opcode.IFGT, notYet);
+        this.pushConstant(cs, ExecutionBudget.CHECK_INTERVAL);
+        this.store(cs, IClass.INT, (short) lvIndex);
+        this.invokeExecutionBudget(cs, "check");
+        notYet.set();
+    }
+
+    /**
+     * Iff {@link JaninoOption#EXECUTION_BUDGET_CHECKS} is configured, generates an invocation of {@link
+     * ExecutionBudget#rethrowIfExhausted()} at the start of an exception handler, so that the compiled code cannot
+     * catch an {@link ExecutionBudget.ExhaustedError} and carry on.
+     */
+    private void
+    checkExecutionBudgetOnHandlerEntry(Locatable locatable) {
+        if (!this.options.contains(JaninoOption.EXECUTION_BUDGET_CHECKS)) return;
+
+        this.invokeExecutionBudget(locatable, "rethrowIfExhausted");
+    }
+
+    private void
+    invokeExecutionBudget(Locatable locatable, String methodName) {
+        this.writeOpcode(locatable, Opcode.INVOKESTATIC);
+        this.writeConstantMethodrefInfo(
+            Descriptor.fromClassName(ExecutionBudget.class.getName()), // classFd
+            methodName,                                                // methodName
+            new MethodDescriptor(Descriptor.VOID, new String[0])       // methodMd
+        );
+    }
+
+    /**
+     * Iff {@link JaninoOption#METHOD_PROFILING} or {@link JaninoOption#METHOD_PROFILING_WITH_TIMING} is configured,
+     * registers a {@link MethodProfile} for the function, and generates an invocation of {@link
+     * MethodProfile#enter(long)} or {@link MethodProfile#enterTimed(long)}. In the latter case, the start time is stored
+     * in a local variable, for {@link #profileExit(Locatable, FunctionDeclarator)}.
+     */
+    private void
+    profileEntry(FunctionDeclarator fd, ClassFile.MethodInfo mi) throws CompileException {
+        boolean timed = this.options.contains(JaninoOption.METHOD_PROFILING_WITH_TIMING);
+        if (!timed && !this.options.contains(JaninoOption.METHOD_PROFILING)) return;
+
+        MethodProfile mp = MethodProfile.register(
+            mi.getClassFile().getThisClassName(), // className
+            mi.getName(),                         // methodName
+            mi.getDescriptor()                    // methodDescriptor
+        );
+        this.methodProfiles.add(mp);
+
+        this.pushConstant(fd, mp.getHandle());
+        this.writeOpcode(fd, Opcode.INVOKESTATIC);
+        this.writeConstantMethodrefInfo(
+            Descriptor.fromClassName(MethodProfile.class.getName()),                  // classFd
+            timed ? "enterTimed" : "enter",                                           // methodName
+            new MethodDescriptor(                                                     // methodMd
+                timed ? Descriptor.LONG : Descriptor.VOID,
+                new String[] { Descriptor.LONG }
+            )
+        );
+
+        if (timed) {
+            short startNanosLvIndex = this.getCodeContext().allocateLocalVariable((short) 2);
+            this.store(fd, IClass.LONG, startNanosLvIndex);
+            this.timedFunctions.put(fd, new long[] { mp.getHandle(), startNanosLvIndex });
+        }
+    }
+
+    /**
+     * Iff the function is timed (see {@link #profileEntry(FunctionDeclarator, ClassFile.MethodInfo)}), generates an
+     * invocation of {@link MethodProfile#exit(long, long)}. Must be invoked immediately before each RETURN opcode; the
+     * return value (if any) remains on the operand stack.
+     */
+    private void
+    profileExit(Locatable locatable, FunctionDeclarator fd) throws CompileException {
+        long[] timing = (long[]) this.timedFunctions.get(fd);
+        if (timing == null) return;
+
+        this.pushConstant(locatable, timing[0]);
+        this.load(locatable, IClass.LONG, (int) timing[1]);
+        this.writeOpcode(locatable, Opcode.INVOKESTATIC);
+        this.writeConstantMethodrefInfo(
+            Descriptor.fromClassName(MethodProfile.class.getName()),                                  // classFd
+            "exit",                                                                                   // methodName
+            new MethodDescriptor(Descriptor.VOID, new String[] { Descriptor.LONG, Descriptor.LONG }) // methodMd
+        );
+    }
+
+    /**
+     * @return The {@link MethodProfile}s of the methods generated by the last {@link #compileUnit(boolean, boolean,
+     *         boolean)}; empty unless {@link JaninoOption#METHOD_PROFILING} or {@link
+     *         JaninoOption#METHOD_PROFILING_WITH_TIMING} is configured
+     */
+    public List<MethodProfile>
+    getMethodProfiles() { return Collections.unmodifiableList(this.methodProfiles); }
+
     private boolean
     compile2(LabeledStatement ls) throws CompileException {
         boolean canCompleteNormally = this.compile(ls.body);
@@ -2244,12 +2442,14 @@ class UnitCompiler {
             }
         }
 
-        this.leaveStatements(
+        if (this.leaveStatements(
             bs.getEnclosingScope(),              // from
             brokenStatement.getEnclosingScope(), // to
             null                                 // optionalStackValueType
-        );
-        this.writeBranch(bs, Opcode.GOTO, this.getWhereToBreak(brokenStatement));
+        )) {
+            this.writeBranch(bs, Opcode.GOTO, this.getWhereToBreak(brokenStatement));
+            this.endLeaveGaps();
+        }
         return false;
     }
 
@@ -2308,18 +2508,19 @@ class UnitCompiler {
             }
         }
 
+        if (!this.leaveStatements(
+            cs.getEnclosingScope(),                 // from
+            continuedStatement.getEnclosingScope(), // to
+            null                                    // optionalStackValueType
+        )) return false;
+
         Offset wtc = continuedStatement.whereToContinue;
         if (wtc == null) {
             wtc = (continuedStatement.whereToContinue = this.getCodeContext().new Offset());
         }
 
-        this.leaveStatements(
-            cs.getEnclosingScope(),                 // from
-            continuedStatement.getEnclosingScope(), // to
-            null                                    // optionalStackValueType
-        );
-
         this.writeBranch(cs, Opcode.GOTO, wtc);
+        this.endLeaveGaps();
 
         return false;
     }
@@ -2363,7 +2564,14 @@ class UnitCompiler {
 
     private boolean
     compile2(ExpressionStatement ee) throws CompileException {
-        this.compile(ee.rvalue);
+        Map<Rvalue, CommonSubexpression> saved = this.enterCommonSubexpressions(ee.rvalue);
+        this.getCodeContext().saveLocalVariables();
+        try {
+            this.compile(ee.rvalue);
+        } finally {
+            this.getCodeContext().restoreLocalVariables();
+            this.commonSubexpressions = saved;
+        }
         return true;
     }
 
@@ -2580,13 +2788,18 @@ class UnitCompiler {
             ArrayInitializerOrRvalue oi = vd.optionalInitializer;
             if (oi != null) {
                 if (oi instanceof Rvalue) {
-                    Rvalue rhs = (Rvalue) oi;
-                    this.assignmentConversion(
-                        lvds,                      // locatable
-                        this.compileGetValue(rhs), // sourceType
-                        lv.type,                   // targetType
-                        this.getConstantValue(rhs) // optionalConstantValue
-                    );
+                    Rvalue                           rhs   = (Rvalue) oi;
+                    Map<Rvalue, CommonSubexpression> saved = this.enterCommonSubexpressions(rhs);
+                    try {
+                        this.assignmentConversion(
+                            lvds,                      // locatable
+                            this.compileGetValue(rhs), // sourceType
+                            lv.type,                   // targetType
+                            this.getConstantValue(rhs) // optionalConstantValue
+                        );
+                    } finally {
+                        this.commonSubexpressions = saved;
+                    }
                 } else
                 if (oi instanceof ArrayInitializer) {
                     this.compileGetValue((ArrayInitializer) oi, lv.type);
@@ -2639,12 +2852,14 @@ class UnitCompiler {
         IClass returnType = this.getReturnType(enclosingFunction);
         if (returnType == IClass.VOID) {
             if (orv != null) this.compileError("Method must not return a value", rs.getLocation());
-            this.leaveStatements(
+            if (!this.leaveStatements(
                 rs.getEnclosingScope(), // from
                 enclosingFunction,      // to
                 null                    // optionalStackValueType
-            );
+            )) return false;
+            this.profileExit(rs, enclosingFunction);
             this.writeOpcode(rs, Opcode.RETURN);
+            this.endLeaveGaps();
             return false;
         }
 
@@ -2652,20 +2867,29 @@ class UnitCompiler {
             this.compileError("Method must return a value", rs.getLocation());
             return false;
         }
-        IClass type = this.compileGetValue(orv);
-        this.assignmentConversion(
-            rs,                        // locatable
-            type,                      // sourceType
-            returnType,                // targetType
-            this.getConstantValue(orv) // optionalConstantValue
-        );
+        Map<Rvalue, CommonSubexpression> saved = this.enterCommonSubexpressions(orv);
+        this.getCodeContext().saveLocalVariables();
+        try {
+            IClass type = this.compileGetValue(orv);
+            this.assignmentConversion(
+                rs,                        // locatable
+                type,                      // sourceType
+                returnType,                // targetType
+                this.getConstantValue(orv) // optionalConstantValue
+            );
+        } finally {
+            this.getCodeContext().restoreLocalVariables();
+            this.commonSubexpressions = saved;
+        }
 
-        this.leaveStatements(
+        if (!this.leaveStatements(
             rs.getEnclosingScope(), // from
             enclosingFunction,      // to
             returnType              // optionalStackValueType
-        );
+        )) return false;
+        this.profileExit(rs, enclosingFunction);
         this.writeOpcode(rs, Opcode.IRETURN + UnitCompiler.ilfda(returnType));
+        this.endLeaveGaps();
         return false;
     }
 
@@ -2764,18 +2988,53 @@ class UnitCompiler {
      */
     private boolean
     compileTryCatchFinallyWithResources(
-        final TryStatement          ts,
-        List<TryStatement.Resource> resources,
-        final Compilable2           compileBody,
-        @Nullable final Block       finallY
+        final TryStatement                ts,
+        final List<TryStatement.Resource> resources,
+        final Compilable2                 compileBody,
+        @Nullable Block                   finallY
     ) throws CompileException {
 
         if (resources.isEmpty()) {
 
             // Short-circuit for zero resources.
-            return this.compileTryCatchFinally(ts, compileBody, finallY);
+            return this.compileTryCatchFinally(ts, ts.catchClauses, compileBody, finallY);
         }
 
+        if (ts.catchClauses.isEmpty() && finallY == null) {
+            return this.compileTryWithResources(ts, resources, compileBody);
+        }
+
+        // JLS7 14.20.3.2: "try ResourceSpecification Block Catches Finally" is translated to
+        // "try { try ResourceSpecification Block } Catches Finally", so the resources are closed before the CATCH and
+        // FINALLY clauses are executed.
+        return this.compileTryCatchFinally(
+            ts,                 // tryStatement
+            ts.catchClauses,    // catchClauses
+            new Compilable2() { // compileBody
+
+                @Override public boolean
+                compile() throws CompileException {
+                    return UnitCompiler.this.compileTryWithResources(ts, resources, compileBody);
+                }
+            },
+            finallY             // finallY
+        );
+    }
+
+    /**
+     * Generates code for a TRY statement with (possibly zero) resources, but without CATCH and FINALLY clauses.
+     *
+     * @return Whether the code can complete normally
+     */
+    private boolean
+    compileTryWithResources(
+        final TryStatement          ts,
+        List<TryStatement.Resource> resources,
+        final Compilable2           compileBody
+    ) throws CompileException {
+
+        if (resources.isEmpty()) return compileBody.compile();
+
         // Prepare recursion for all declared resources.
         TryStatement.Resource             firstResource      = (TryStatement.Resource) resources.get(0);
         final List<TryStatement.Resource> followingResources = resources.subList(1, resources.size());
@@ -2931,20 +3190,16 @@ class UnitCompiler {
             f.setEnclosingScope(ts);
 
             return this.compileTryCatchFinally(
-                ts,                 // tryStatement
-                new Compilable2() { // compileBody
+                ts,                                    // tryStatement
+                Collections.<CatchClause>emptyList(),  // catchClauses
+                new Compilable2() {                    // compileBody
 
                     @Override public boolean
                     compile() throws CompileException {
-                        return UnitCompiler.this.compileTryCatchFinallyWithResources(
-                            ts,
-                            followingResources,
-                            compileBody,
-                            finallY
-                        );
+                        return UnitCompiler.this.compileTryWithResources(ts, followingResources, compileBody);
                     }
                 },
-                f                   // finallY
+                f                                      // finallY
             );
         } finally {
             this.getCodeContext().restoreLocalVariables();
@@ -2959,17 +3214,37 @@ class UnitCompiler {
     private boolean
     compileTryCatchFinally(
         final TryStatement       ts,
+        List<CatchClause>        catchClauses,
         final Compilable2        compileBody,
         @Nullable BlockStatement finallY
     ) throws CompileException {
 
+        if (this.inlineFinallyClauses()) {
+            return this.compileTryCatchInlinedFinally(ts, catchClauses, compileBody, finallY);
+        }
+
         final CodeContext.Offset beginningOfBody = this.getCodeContext().newOffset();
         final CodeContext.Offset afterStatement  = this.getCodeContext().new Offset();
 
+        // Records the JSRs that leave the TRY statement, see "leave2(TryStatement, IClass)".
+        final TryContext tc = new TryContext(ts, null);
+
         boolean canCompleteNormally;
 
         if (finallY == null) {
-            canCompleteNormally = this.compileTryCatch(ts, compileBody, beginningOfBody, afterStatement);
+            this.tryContexts.add(tc);
+            try {
+                canCompleteNormally = this.compileTryCatch(
+                    ts,
+                    catchClauses,
+                    compileBody,
+                    beginningOfBody,
+                    afterStatement,
+                    tc
+                );
+            } finally {
+                this.tryContexts.remove(this.tryContexts.size() - 1);
+            }
         } else {
 
             // Compile a TRY statement *with* a FINALLY clause.
@@ -2977,7 +3252,8 @@ class UnitCompiler {
             this.getCodeContext().saveLocalVariables();
             try {
 
-                final Offset fo = (ts.finallyOffset = this.getCodeContext().new Offset());
+                final Offset fo = this.getCodeContext().new Offset();
+                ts.finallyOffsets.add(fo);
 
                 // Allocate a LV for the JSR of the FINALLY clause.
                 //
@@ -2988,29 +3264,39 @@ class UnitCompiler {
                 //   See bug #56.
                 final short pcLvIndex = this.getCodeContext().allocateLocalVariable((short) 1);
 
-                canCompleteNormally = this.compileTryCatch(ts, new Compilable2() {
+                this.tryContexts.add(tc);
+                try {
+                    canCompleteNormally = this.compileTryCatch(ts, catchClauses, new Compilable2() {
 
-                    @Override public boolean
-                    compile() throws CompileException {
-                        boolean canCompleteNormally = compileBody.compile();
-                        if (canCompleteNormally) {
-                            UnitCompiler.this.writeBranch(ts, Opcode.JSR, fo);
+                        @Override public boolean
+                        compile() throws CompileException {
+                            boolean canCompleteNormally = compileBody.compile();
+                            if (canCompleteNormally) {
+                                UnitCompiler.this.writeBranch(ts, Opcode.JSR, fo);
+                            }
+                            return canCompleteNormally;
                         }
-                        return canCompleteNormally;
-                    }
-                }, beginningOfBody, afterStatement);
+                    }, beginningOfBody, afterStatement, tc);
+                } finally {
+                    this.tryContexts.remove(this.tryContexts.size() - 1);
+                }
 
                 // Generate the "catch (Throwable) {" clause that invokes the FINALLY subroutine.
                 this.getCodeContext().saveLocalVariables();
                 try {
 
-                    CodeContext.Offset here = this.getCodeContext().newOffset();
-                    this.getCodeContext().addExceptionTableEntry(
-                        beginningOfBody, // startPC
-                        here,            // endPC
-                        here,            // handlerPC
-                        null             // catchTypeFD
-                    );
+                    CodeContext.Offset       here   = this.getCodeContext().newOffset();
+                    List<CodeContext.Offset> ranges = UnitCompiler.exceptionTableRanges(beginningOfBody, here, tc.gaps);
+                    for (int i = 0; i < ranges.size(); i += 2) {
+                        this.getCodeContext().addExceptionTableEntry(
+                            (CodeContext.Offset) ranges.get(i),     // startPC
+                            (CodeContext.Offset) ranges.get(i + 1), // endPC
+                            here,                                   // handlerPC
+                            null                                    // catchTypeFD
+                        );
+                    }
+
+                    this.checkExecutionBudgetOnHandlerEntry(finallY);
 
                     // Save the exception object in an anonymous local variable.
                     short evi = this.getCodeContext().allocateLocalVariable((short) 1);
@@ -3029,7 +3315,7 @@ class UnitCompiler {
 
                     // Generate the "finally" subroutine.
                     fo.set();
-                    ts.finallyOffset = null;
+                    ts.finallyOffsets.remove(ts.finallyOffsets.size() - 1);
 
                     this.store(
                         finallY,                                 // locatable
@@ -3064,20 +3350,204 @@ class UnitCompiler {
     }
 
     /**
-     * Generates code for a TRY statement without resources and without a FINALLY clause.
+     * @return Whether FINALLY clauses are duplicated at each exit of their TRY statement, instead of being compiled
+     *         into JSR/RET subroutines
+     */
+    private boolean
+    inlineFinallyClauses() { return this.options.contains(JaninoOption.INLINE_FINALLY_CLAUSES); }
+
+    /**
+     * Generates code for a TRY statement without resources, but with an (optional) FINALLY clause, where a copy of
+     * the FINALLY clause is generated at each exit of the TRY statement. The copies are excluded from the ranges of
+     * the statement's exception handlers, so that an exception thrown by the FINALLY clause is not caught by the
+     * statement's own CATCH clauses.
+     *
+     * @return Whether the code can complete normally
+     */
+    private boolean
+    compileTryCatchInlinedFinally(
+        TryStatement             ts,
+        List<CatchClause>        catchClauses,
+        final Compilable2        compileBody,
+        @Nullable BlockStatement finallY
+    ) throws CompileException {
+
+        final CodeContext.Offset beginningOfBody = this.getCodeContext().newOffset();
+        final CodeContext.Offset afterStatement  = this.getCodeContext().new Offset();
+
+        final TryContext tc = new TryContext(ts, finallY);
+
+        boolean canCompleteNormally;
+        this.tryContexts.add(tc);
+        try {
+            canCompleteNormally = this.compileTryCatch(ts, catchClauses, new Compilable2() {
+
+                @Override public boolean
+                compile() throws CompileException {
+                    return compileBody.compile() && UnitCompiler.this.compileInlinedFinally(tc);
+                }
+            }, beginningOfBody, afterStatement, tc);
+        } finally {
+            this.tryContexts.remove(this.tryContexts.size() - 1);
+        }
+
+        if (finallY != null) {
+
+            // Generate the "catch (Throwable) {" clause that executes the FINALLY clause and re-throws the exception.
+            CodeContext.Offset       here   = this.getCodeContext().newOffset();
+            List<CodeContext.Offset> ranges = UnitCompiler.exceptionTableRanges(beginningOfBody, here, tc.gaps);
+            if (!ranges.isEmpty()) { // Avoid an unreachable exception handler.
+                for (int i = 0; i < ranges.size(); i += 2) {
+                    this.getCodeContext().addExceptionTableEntry(
+                        (CodeContext.Offset) ranges.get(i),     // startPC
+                        (CodeContext.Offset) ranges.get(i + 1), // endPC
+                        here,                                   // handlerPC
+                        null                                    // catchTypeFD
+                    );
+                }
+
+                this.getCodeContext().saveLocalVariables();
+                try {
+                    this.checkExecutionBudgetOnHandlerEntry(finallY);
+
+                    // Save the exception object in an anonymous local variable.
+                    short evi = this.getCodeContext().allocateLocalVariable((short) 1);
+                    this.store(
+                        finallY,                                 // locatable
+                        this.iClassLoader.TYPE_java_lang_Object, // lvType
+                        evi                                      // lvIndex
+                    );
+                    if (this.compile(finallY)) {
+                        this.load(
+                            finallY,                                 // locatable
+                            this.iClassLoader.TYPE_java_lang_Object, // type
+                            evi                                      // index
+                        );
+                        this.writeOpcode(finallY, Opcode.ATHROW);
+                    }
+                } finally {
+                    this.getCodeContext().restoreLocalVariables();
+                }
+            }
+        }
+
+        afterStatement.set();
+        return canCompleteNormally;
+    }
+
+    /**
+     * Generates a copy of the FINALLY clause of the <var>tryContext</var> (if any), and excludes that copy from the
+     * exception handler ranges of the <var>tryContext</var> and of all TRY statements that it encloses.
+     *
+     * @return Whether the FINALLY clause can complete normally
+     */
+    private boolean
+    compileInlinedFinally(TryContext tryContext) throws CompileException {
+
+        BlockStatement f = tryContext.finallY;
+        if (f == null) return true;
+
+        CodeContext.Offset start = this.getCodeContext().newOffset();
+
+        // BREAK, CONTINUE and RETURN statements in the FINALLY clause must not execute the clause once more.
+        boolean canCompleteNormally;
+        tryContext.finallY = null;
+        try {
+            canCompleteNormally = this.compile(f);
+        } finally {
+            tryContext.finallY = f;
+        }
+
+        CodeContext.Offset end = this.getCodeContext().newOffset();
+        for (int i = this.tryContexts.indexOf(tryContext); i < this.tryContexts.size(); i++) {
+            List<CodeContext.Offset> gaps = ((TryContext) this.tryContexts.get(i)).gaps;
+            gaps.add(start);
+            gaps.add(end);
+        }
+
+        return canCompleteNormally;
+    }
+
+    /**
+     * @param gaps Pairs of start and end offsets; may overlap and need not be sorted
+     * @return     Pairs of start and end offsets that cover the range from <var>from</var> to <var>to</var>, except
+     *             for the <var>gaps</var>; empty ranges are omitted
+     */
+    private static List<CodeContext.Offset>
+    exceptionTableRanges(CodeContext.Offset from, CodeContext.Offset to, List<CodeContext.Offset> gaps) {
+
+        List<CodeContext.Offset> result = new ArrayList<CodeContext.Offset>();
+        CodeContext.Offset       cursor = from;
+        for (;;) {
+
+            // Find the gap with the lowest start offset that ends after the cursor.
+            CodeContext.Offset gapStart = null, gapEnd = null;
+            for (int i = 0; i < gaps.size(); i += 2) {
+                CodeContext.Offset s = (CodeContext.Offset) gaps.get(i), e = (CodeContext.Offset) gaps.get(i + 1);
+                if (e.offset > cursor.offset && (gapStart == null || s.offset < gapStart.offset)) {
+                    gapStart = s;
+                    gapEnd   = e;
+                }
+            }
+            if (gapStart == null || gapEnd == null || gapStart.offset >= to.offset) break;
+
+            if (gapStart.offset > cursor.offset) {
+                result.add(cursor);
+                result.add(gapStart);
+            }
+            cursor = gapEnd;
+        }
+        if (to.offset > cursor.offset) {
+            result.add(cursor);
+            result.add(to);
+        }
+
+        return result;
+    }
+
+    /**
+     * The state of a TRY statement while it is being compiled.
+     */
+    private static final
+    class TryContext {
+
+        final TryStatement tryStatement;
+
+        /**
+         * The inlined FINALLY clause that is to be executed when the TRY statement is left; {@code null} while a copy
+         * of the FINALLY clause is being compiled, and if the FINALLY clause is compiled into a JSR/RET subroutine.
+         */
+        @Nullable BlockStatement finallY;
+
+        /**
+         * Pairs of start and end offsets of code that must not be covered by the TRY statement's exception handlers.
+         */
+        final List<CodeContext.Offset> gaps = new ArrayList<CodeContext.Offset>();
+
+        TryContext(TryStatement tryStatement, @Nullable BlockStatement finallY) {
+            this.tryStatement = tryStatement;
+            this.finallY      = finallY;
+        }
+    }
+
+    /**
+     * Generates code for a TRY statement without resources and without a FINALLY clause, or (iff
+     * <var>tryContext</var> is not {@code null}) with an inlined FINALLY clause.
      *
      * @return Whether the code can complete normally
      */
     private boolean
     compileTryCatch(
         TryStatement             tryStatement,
+        List<CatchClause>        catchClauses,
         Compilable2              compileBody,
         final CodeContext.Offset beginningOfBody,
-        final CodeContext.Offset afterStatement
+        final CodeContext.Offset afterStatement,
+        @Nullable TryContext     tryContext
     ) throws CompileException {
 
         // Initialize all catch clauses as "unreachable" only to check later that they ARE indeed reachable.
-        for (CatchClause catchClause : tryStatement.catchClauses) {
+        for (CatchClause catchClause : catchClauses) {
             catchClause.reachable = false;
             for (Type t : catchClause.catchParameter.types) {
                 IClass caughtExceptionType = this.getType(t);
@@ -3104,14 +3574,24 @@ class UnitCompiler {
             this.writeBranch(tryStatement, Opcode.GOTO, afterStatement);
         }
 
-        if (beginningOfBody.offset != afterBody.offset) { // Avoid zero-length exception table entries.
+        List<CodeContext.Offset> bodyRanges = UnitCompiler.exceptionTableRanges(
+            beginningOfBody,
+            afterBody,
+            tryContext == null ? Collections.<CodeContext.Offset>emptyList() : tryContext.gaps
+        );
+
+        // The FINALLY subroutine of this TRY statement (if any) is the innermost one.
+        List<CodeContext.Offset> fos = tryStatement.finallyOffsets;
+        CodeContext.Offset       fo  = fos.isEmpty() ? null : (CodeContext.Offset) fos.get(fos.size() - 1);
+
+        if (!bodyRanges.isEmpty()) { // Avoid zero-length exception table entries.
             this.getCodeContext().saveLocalVariables();
             try {
-                for (int i = 0; i < tryStatement.catchClauses.size(); ++i) {
+                for (int i = 0; i < catchClauses.size(); ++i) {
                     try {
                         this.getCodeContext().saveLocalVariables();
 
-                        CatchClause catchClause = (CatchClause) tryStatement.catchClauses.get(i);
+                        CatchClause catchClause = (CatchClause) catchClauses.get(i);
 
                         if (catchClause.catchParameter.types.length != 1) {
                             throw UnitCompiler.compileException(catchClause, "Multi-type CATCH parameter NYI");
@@ -3134,26 +3614,32 @@ class UnitCompiler {
                         // Kludge: Treat the exception variable like a local variable of the catch clause body.
                         this.getLocalVariable(catchClause.catchParameter).setSlot(exceptionVarSlot);
 
-                        this.getCodeContext().addExceptionTableEntry(
-                            beginningOfBody,                    // startPC
-                            afterBody,                          // endPC
-                            this.getCodeContext().newOffset(),  // handlerPC
-                            caughtExceptionType.getDescriptor() // catchTypeFD
-                        );
+                        CodeContext.Offset handlerPc = this.getCodeContext().newOffset();
+                        for (int j = 0; j < bodyRanges.size(); j += 2) {
+                            this.getCodeContext().addExceptionTableEntry(
+                                (CodeContext.Offset) bodyRanges.get(j),     // startPC
+                                (CodeContext.Offset) bodyRanges.get(j + 1), // endPC
+                                handlerPc,                                  // handlerPC
+                                caughtExceptionType.getDescriptor()         // catchTypeFD
+                            );
+                        }
+                        this.checkExecutionBudgetOnHandlerEntry(catchClause);
                         this.store(
                             catchClause,         // locatable
                             caughtExceptionType, // lvType
                             evi                  // lvIndex
                         );
 
-                        if (this.compile(catchClause.body)) {
+                        if (
+                            this.compile(catchClause.body)
+                            && (tryContext == null || this.compileInlinedFinally(tryContext))
+                        ) {
                             canCompleteNormally = true;
-                            if (tryStatement.finallyOffset != null) {
-                                this.writeBranch(tryStatement, Opcode.JSR, tryStatement.finallyOffset);
-                            }
+                            if (fo != null) this.writeBranch(tryStatement, Opcode.JSR, fo);
                             if (
-                                i < tryStatement.catchClauses.size() - 1
-                                || tryStatement.finallyOffset != null
+                                i < catchClauses.size() - 1
+                                || fo != null
+                                || (tryContext != null && tryContext.finallY != null)
                             ) this.writeBranch(catchClause, Opcode.GOTO, afterStatement);
                         }
                     } finally {
@@ -3392,6 +3878,9 @@ class UnitCompiler {
                 }
             }
 
+            this.checkExecutionBudgetOnEntry(fd);
+            this.profileEntry(fd, mi);
+
             // Compile the function body.
             List<? extends BlockStatement> oss = fd.optionalStatements;
             if (oss == null) {
@@ -3402,6 +3891,7 @@ class UnitCompiler {
                 if (this.getReturnType(fd) != IClass.VOID) {
                     this.compileError("Method must return a value", fd.getLocation());
                 }
+                this.profileExit(fd, fd);
                 this.writeOpcode(fd, Opcode.RETURN);
             }
         } finally {
@@ -3418,7 +3908,7 @@ class UnitCompiler {
         // Do flow analysis.
         if (UnitCompiler.LOGGER.isLoggable(Level.FINE)) {
             try {
-                codeContext.flowAnalysis(fd.toString());
+                this.flowAnalysis(codeContext, fd.toString());
             } catch (RuntimeException re) {
                 UnitCompiler.LOGGER.log(Level.FINE, "*** FLOW ANALYSIS", re);
 
@@ -3427,7 +3917,7 @@ class UnitCompiler {
             }
         } else {
             try {
-                codeContext.flowAnalysis(fd.toString());
+                this.flowAnalysis(codeContext, fd.toString());
             } catch (RuntimeException re) {
                 throw new InternalCompilerException("Compiling \"" + fd + "\"; " + re.getMessage(), re);
             }
@@ -3923,6 +4413,15 @@ class UnitCompiler {
 
         if (superclass == null) throw new CompileException("Class has no superclass", sci.getLocation());
 
+        // Every class ultimately invokes "Object()", so that is always allowed. The "super(...)" of an anonymous
+        // class is checked by "compileGet2(NewAnonymousClassInstance)".
+        if (
+            superclass != this.iClassLoader.TYPE_java_lang_Object
+            && !(declaringClass instanceof AnonymousClassDeclaration)
+        ) {
+            this.checkAccessPolicy(superclass, "<init>", sci.getLocation());
+        }
+
         Rvalue optionalEnclosingInstance;
         if (sci.optionalQualification != null) {
             optionalEnclosingInstance = sci.optionalQualification;
@@ -4514,6 +5013,7 @@ class UnitCompiler {
     private IClass
     compileGet2(FieldAccess fa) throws CompileException {
         this.checkAccessible(fa.field, fa.getEnclosingScope(), fa.getLocation());
+        this.checkAccessPolicy(fa.field.getDeclaringIClass(), fa.field.getName(), fa.getLocation());
         this.getfield(fa, fa.field);
         return fa.field.getType();
     }
@@ -4957,6 +5457,11 @@ class UnitCompiler {
             return this.compileGet2((BooleanRvalue) bo);
         }
 
+        if (this.options.contains(JaninoOption.ALGEBRAIC_SIMPLIFICATION)) {
+            IClass type = this.compileSimplified(bo);
+            if (type != null) return type;
+        }
+
         // Implements "| ^ & * / % + - << >> >>>".
         return this.compileArithmeticOperation(
             bo,                         // locatable
@@ -4966,6 +5471,95 @@ class UnitCompiler {
         );
     }
 
+    /**
+     * Implements {@link JaninoOption#ALGEBRAIC_SIMPLIFICATION} for an arithmetic operation: Iff one operand is a
+     * constant that makes the operation an identity ({@code x * 1}, {@code 1 * x}, {@code x / 1}, {@code x - 0}, and,
+     * for integral types, {@code x + 0} and {@code 0 + x}), then only the other operand is compiled. An integral
+     * multiplication with a power of two ({@code x * 2^n}, {@code 2^n * x}) is compiled as a left shift.
+     * <p>
+     *   The other operand must have the same type as the operation, so that no numeric promotion is lost. The
+     *   floating-point {@code x + 0} is not simplified, because {@code -0.0 + 0} equals {@code +0.0}.
+     * </p>
+     *
+     * @return The type of the operation, or {@code null} iff it cannot be simplified
+     */
+    @Nullable private IClass
+    compileSimplified(BinaryOperation bo) throws CompileException {
+
+        IClass type = this.getType(bo);
+        if (type != IClass.INT && type != IClass.LONG && type != IClass.FLOAT && type != IClass.DOUBLE) return null;
+        boolean integral = type == IClass.INT || type == IClass.LONG;
+
+        String op  = bo.operator;
+        Object lcv = this.getConstantValue(bo.lhs);
+        Object rcv = this.getConstantValue(bo.rhs);
+
+        Rvalue operand;
+        int    shift = 0;
+        if (op == "*" || op == "/") { // SUPPRESS CHECKSTYLE StringLiteralEquality:3
+            if (UnitCompiler.isOne(rcv)) {
+                operand = bo.lhs;
+            } else
+            if (op == "*" && UnitCompiler.isOne(lcv)) {
+                operand = bo.rhs;
+            } else
+            if (op == "*" && integral && (shift = UnitCompiler.log2(rcv)) > 0) {
+                operand = bo.lhs;
+            } else
+            if (op == "*" && integral && (shift = UnitCompiler.log2(lcv)) > 0) {
+                operand = bo.rhs;
+            } else
+            {
+                return null;
+            }
+        } else
+        if (op == "+" || op == "-") { // SUPPRESS CHECKSTYLE StringLiteralEquality:3
+            if ((integral || op == "-") && UnitCompiler.isZero(rcv)) {
+                operand = bo.lhs;
+            } else
+            if (integral && op == "+" && UnitCompiler.isZero(lcv)) {
+                operand = bo.rhs;
+            } else
+            {
+                return null;
+            }
+        } else
+        {
+            return null;
+        }
+
+        if (this.getType(operand) != type) return null;
+
+        this.compileGetValue(operand);
+        if (shift > 0) {
+            this.pushConstant(bo, shift);
+            this.writeOpcode(bo, type == IClass.INT ? Opcode.ISHL : Opcode.LSHL);
+        }
+        return type;
+    }
+
+    private static boolean
+    isOne(@Nullable Object cv) { return cv instanceof Number && ((Number) cv).doubleValue() == 1.0; }
+
+    /**
+     * @return Whether the <var>cv</var> is zero, but not {@code -0.0}
+     */
+    private static boolean
+    isZero(@Nullable Object cv) {
+        return cv instanceof Number && Double.doubleToRawLongBits(((Number) cv).doubleValue()) == 0L;
+    }
+
+    /**
+     * @return <var>n</var> iff <var>cv</var> is an integral constant equal to 2^<var>n</var>, where <var>n</var> &gt;
+     *         0; otherwise 0
+     */
+    private static int
+    log2(@Nullable Object cv) {
+        if (!(cv instanceof Integer) && !(cv instanceof Long)) return 0;
+        long v = ((Number) cv).longValue();
+        return v > 1 && (v & (v - 1)) == 0 ? Long.numberOfTrailingZeros(v) : 0;
+    }
+
     private IClass
     compileGet2(Cast c) throws CompileException {
 
@@ -5014,6 +5608,14 @@ class UnitCompiler {
     compileGet2(MethodInvocation mi) throws CompileException {
         IClass.IMethod iMethod = this.findIMethod(mi);
 
+        IClass inlinedType = this.compileInlined(mi, iMethod);
+        if (inlinedType != null) return inlinedType;
+
+        if (this.options.contains(JaninoOption.ALGEBRAIC_SIMPLIFICATION)) {
+            IClass squareType = this.compileSquare(mi, iMethod);
+            if (squareType != null) return squareType;
+        }
+
         // Compute the objectref for an instance method.
         Atom ot = mi.optionalTarget;
         if (ot == null) {
@@ -5140,6 +5742,7 @@ class UnitCompiler {
 
         // Invoke!
         this.checkAccessible(iMethod, mi.getEnclosingScope(), mi.getLocation());
+        this.checkAccessPolicy(iMethod.getDeclaringIClass(), iMethod.getName(), mi.getLocation());
         if (iMethod.getDeclaringIClass().isInterface()) {
             this.invoke(mi, iMethod);
         } else {
@@ -5165,7 +5768,299 @@ class UnitCompiler {
                 this.invoke(mi, iMethod);
             }
         }
-        return iMethod.getReturnType();
+        return iMethod.getReturnType();
+    }
+
+    /**
+     * Implements {@link JaninoOption#ALGEBRAIC_SIMPLIFICATION} for {@code Math.pow(x, 2)} and {@code
+     * StrictMath.pow(x, 2)}, which are compiled as {@code x * x}. (That is exact, because both methods special-case
+     * the exponent 2.)
+     *
+     * @return The type of the invocation, or {@code null} iff it cannot be simplified
+     */
+    @Nullable private IClass
+    compileSquare(MethodInvocation mi, IMethod iMethod) throws CompileException {
+
+        if (!"pow".equals(iMethod.getName()) || mi.arguments.length != 2) return null;
+
+        String dd = iMethod.getDeclaringIClass().getDescriptor();
+        if (!"Ljava/lang/Math;".equals(dd) && !"Ljava/lang/StrictMath;".equals(dd)) return null;
+
+        Object cv = this.getConstantValue(mi.arguments[1]);
+        if (!(cv instanceof Number) || ((Number) cv).doubleValue() != 2.0) return null;
+
+        // A static method may have an rvalue as its target, which must be evaluated for its side effects.
+        Atom ot = mi.optionalTarget;
+        if (ot != null && !this.isType(ot)) {
+            Rvalue rot = this.toRvalueOrCompileException(ot);
+            if (UnitCompiler.mayHaveSideEffects(rot)) this.pop(ot, this.compileGetValue(rot));
+        }
+
+        this.assignmentConversion(
+            mi,                                    // locatable
+            this.compileGetValue(mi.arguments[0]), // sourceType
+            IClass.DOUBLE,                         // targetType
+            this.getConstantValue(mi.arguments[0]) // optionalConstantValue
+        );
+        this.dup(mi, 2);
+        this.writeOpcode(mi, Opcode.DMUL);
+        return IClass.DOUBLE;
+    }
+
+    /**
+     * Iff the <var>iMethod</var> can be inlined at the invocation (see {@link #getInlinableMethod(MethodInvocation,
+     * IMethod)}), evaluates the arguments into fresh local variables, and then compiles a copy of the method's body
+     * (instead of the invocation), where the method's parameters designate these local variables.
+     *
+     * @return The type of the invocation, or {@code null} iff the method cannot be inlined
+     */
+    @Nullable private IClass
+    compileInlined(MethodInvocation mi, IMethod iMethod) throws CompileException {
+
+        MethodDeclarator md = this.getInlinableMethod(mi, iMethod);
+        if (md == null) return null;
+
+        List<? extends BlockStatement> statements = md.optionalStatements;
+        assert statements != null;
+        BlockStatement body = (BlockStatement) statements.get(0);
+
+        Rvalue expression;
+        if (body instanceof ReturnStatement) {
+            Rvalue rv = ((ReturnStatement) body).optionalReturnValue;
+            if (rv == null) return null;
+            expression = rv;
+        } else
+        if (body instanceof ExpressionStatement) {
+            expression = ((ExpressionStatement) body).rvalue;
+        } else
+        {
+            return null;
+        }
+
+        if (!UnitCompiler.isInlinable(expression, md.name, new int[] { UnitCompiler.INLINING_MAX_SIZE })) return null;
+        Rvalue copy = new DeepCopier().copyRvalue(expression);
+
+        // A static method may have an rvalue as its target, which must be evaluated for its side effects.
+        Atom ot = mi.optionalTarget;
+        if (ot != null && !this.isType(ot)) {
+            Rvalue rot = this.toRvalueOrCompileException(ot);
+            if (UnitCompiler.mayHaveSideEffects(rot)) this.pop(ot, this.compileGetValue(rot));
+        }
+
+        // Evaluate the arguments (JLS7 15.12.4.2).
+        IClass[] parameterTypes = iMethod.getParameterTypes();
+        for (int i = 0; i < mi.arguments.length; ++i) {
+            this.assignmentConversion(
+                mi,                                    // locatable
+                this.compileGetValue(mi.arguments[i]), // sourceType
+                parameterTypes[i],                     // targetType
+                this.getConstantValue(mi.arguments[i]) // optionalConstantValue
+            );
+        }
+
+        this.getCodeContext().saveLocalVariables();
+        this.inlinedMethods.add(md);
+        try {
+
+            // Store the arguments in fresh local variables, which replace the method's parameters.
+            FormalParameter[]          fps       = md.formalParameters.parameters;
+            LocalVariable[]            lvs       = new LocalVariable[fps.length];
+            Map<String, LocalVariable> localVars = new HashMap<String, LocalVariable>();
+            for (int i = 0; i < fps.length; i++) {
+                lvs[i] = new LocalVariable(fps[i].finaL, parameterTypes[i]);
+                lvs[i].setSlot(this.getCodeContext().allocateLocalVariable(
+                    Descriptor.size(parameterTypes[i].getDescriptor()),
+                    fps[i].name,
+                    parameterTypes[i]
+                ));
+                localVars.put(fps[i].name, lvs[i]);
+            }
+            for (int i = lvs.length - 1; i >= 0; i--) this.store(mi, lvs[i]);
+
+            // Place the copy in the scope of the method, so that all other names (fields, types, methods) resolve
+            // exactly as in the method itself. Checked exceptions are thus verified against the method's THROWS
+            // clause, and at runtime propagate into the exception handlers of the invoker.
+            IClass returnType = iMethod.getReturnType();
+            if (body instanceof ReturnStatement) {
+                ReturnStatement rs = new ReturnStatement(body.getLocation(), copy);
+                rs.setEnclosingScope(md);
+                rs.localVariables = localVars;
+
+                this.assignmentConversion(
+                    rs,                         // locatable
+                    this.compileGetValue(copy), // sourceType
+                    returnType,                 // targetType
+                    this.getConstantValue(copy) // optionalConstantValue
+                );
+            } else
+            {
+                ExpressionStatement es = new ExpressionStatement(copy);
+                es.setEnclosingScope(md);
+                es.localVariables = localVars;
+
+                this.compile(copy);
+            }
+
+            return returnType;
+        } finally {
+            this.inlinedMethods.remove(md);
+            this.getCodeContext().restoreLocalVariables();
+        }
+    }
+
+    /**
+     * A method is inlined iff
+     * <ul>
+     *   <li>{@link JaninoOption#INLINE_METHODS} is configured,</li>
+     *   <li>it is declared by the class that contains the invocation (not by an enclosing or enclosed class),</li>
+     *   <li>it cannot be overridden (because it is {@code static}, {@code private} or {@code final}),</li>
+     *   <li>it is not {@code synchronized}, generic or variable-arity,</li>
+     *   <li>its body is a single {@code return} or expression statement that {@link #isInlinable(Rvalue, String,
+     *     int[])} accepts, and</li>
+     *   <li>it is not already being inlined (indirect recursion).</li>
+     * </ul>
+     * An instance method must furthermore be invoked on {@code this}, from a non-static context.
+     *
+     * @return The declaration of the <var>iMethod</var>, or {@code null} iff it cannot be inlined
+     */
+    @Nullable private MethodDeclarator
+    getInlinableMethod(MethodInvocation mi, IMethod iMethod) throws CompileException {
+
+        if (!this.options.contains(JaninoOption.INLINE_METHODS)) return null;
+
+        if (iMethod.isVarargs()) return null;
+
+        // Determine the type body declaration and the class declaration that contain the invocation.
+        Scope s;
+        for (s = mi.getEnclosingScope(); !(s instanceof TypeBodyDeclaration); s = s.getEnclosingScope());
+        TypeBodyDeclaration scopeTbd = (TypeBodyDeclaration) s;
+        if (!(s instanceof TypeDeclaration)) s = s.getEnclosingScope();
+        if (!(s instanceof AbstractClassDeclaration)) return null;
+        AbstractClassDeclaration scopeClassDeclaration = (AbstractClassDeclaration) s;
+
+        if (this.resolve(scopeClassDeclaration) != iMethod.getDeclaringIClass()) return null;
+
+        MethodDeclarator md = null;
+        for (MethodDeclarator md2 : scopeClassDeclaration.getMethodDeclarations()) {
+            if (this.toIMethod(md2) == iMethod) {
+                md = md2;
+                break;
+            }
+        }
+        if (md == null || md == scopeTbd || this.inlinedMethods.contains(md)) return null;
+
+        short mods = md.modifiers.accessFlags;
+        if (Mod.isStatic(mods)) {
+            ;
+        } else
+        if (Mod.isPrivateAccess(mods) || Mod.isFinal(mods)) {
+            if (mi.optionalTarget != null && !(mi.optionalTarget instanceof ThisReference)) return null;
+            if (scopeTbd.isStatic()) return null;
+        } else
+        {
+            return null;
+        }
+        if (Mod.isSynchronized(mods) || md.getOptionalTypeParameters() != null) return null;
+
+        List<? extends BlockStatement> statements = md.optionalStatements;
+        if (statements == null || statements.size() != 1) return null;
+
+        return md;
+    }
+
+    /**
+     * Checks whether an expression can be inlined. Only names, literals, operators, casts, conditional expressions,
+     * assignments, crements, field and array accesses, and method invocations are supported; notably, nested class
+     * declarations must not be copied, because that would declare the class twice.
+     *
+     * @param methodName The name of the inlined method; invocations of methods with that name (potential recursion)
+     *                   are not inlinable
+     * @param budget     The maximum number of nodes; is decremented for each node
+     * @return           Whether the <var>subject</var> contains only supported constructs, and not too many nodes
+     */
+    private static boolean
+    isInlinable(@Nullable Rvalue subject, String methodName, int[] budget) {
+
+        if (subject == null || --budget[0] < 0) return false;
+
+        if (
+            subject instanceof AmbiguousName
+            || subject instanceof Literal
+            || subject instanceof ThisReference
+        ) {
+            return true;
+        } else
+        if (subject instanceof ParenthesizedExpression) {
+            return UnitCompiler.isInlinable(((ParenthesizedExpression) subject).value, methodName, budget);
+        } else
+        if (subject instanceof UnaryOperation) {
+            return UnitCompiler.isInlinable(((UnaryOperation) subject).operand, methodName, budget);
+        } else
+        if (subject instanceof BinaryOperation) {
+            BinaryOperation bo = (BinaryOperation) subject;
+            return (
+                UnitCompiler.isInlinable(bo.lhs, methodName, budget)
+                && UnitCompiler.isInlinable(bo.rhs, methodName, budget)
+            );
+        } else
+        if (subject instanceof ConditionalExpression) {
+            ConditionalExpression ce = (ConditionalExpression) subject;
+            return (
+                UnitCompiler.isInlinable(ce.lhs, methodName, budget)
+                && UnitCompiler.isInlinable(ce.mhs, methodName, budget)
+                && UnitCompiler.isInlinable(ce.rhs, methodName, budget)
+            );
+        } else
+        if (subject instanceof Cast) {
+            Cast c = (Cast) subject;
+            return UnitCompiler.isInlinable(c.targetType) && UnitCompiler.isInlinable(c.value, methodName, budget);
+        } else
+        if (subject instanceof Assignment) {
+            Assignment a = (Assignment) subject;
+            return (
+                UnitCompiler.isInlinable(a.lhs, methodName, budget)
+                && UnitCompiler.isInlinable(a.rhs, methodName, budget)
+            );
+        } else
+        if (subject instanceof Crement) {
+            return UnitCompiler.isInlinable(((Crement) subject).operand, methodName, budget);
+        } else
+        if (subject instanceof FieldAccessExpression) {
+            return UnitCompiler.isInlinable(((FieldAccessExpression) subject).lhs.toRvalue(), methodName, budget);
+        } else
+        if (subject instanceof ArrayAccessExpression) {
+            ArrayAccessExpression aae = (ArrayAccessExpression) subject;
+            return (
+                UnitCompiler.isInlinable(aae.lhs, methodName, budget)
+                && UnitCompiler.isInlinable(aae.index, methodName, budget)
+            );
+        } else
+        if (subject instanceof MethodInvocation) {
+            MethodInvocation mi = (MethodInvocation) subject;
+            if (mi.methodName.equals(methodName)) return false;
+
+            Atom ot = mi.optionalTarget;
+            if (ot != null && !UnitCompiler.isInlinable(ot.toRvalue(), methodName, budget)) return false;
+
+            for (Rvalue argument : mi.arguments) {
+                if (!UnitCompiler.isInlinable(argument, methodName, budget)) return false;
+            }
+            return true;
+        } else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether the <var>subject</var> is a primitive type, or a reference type without type arguments
+     */
+    private static boolean
+    isInlinable(Type subject) {
+
+        if (subject instanceof PrimitiveType) return true;
+        if (subject instanceof ReferenceType) return ((ReferenceType) subject).optionalTypeArguments == null;
+        return false;
     }
 
     private static boolean
@@ -5250,6 +6145,7 @@ class UnitCompiler {
     private IClass
     compileGet2(SuperclassMethodInvocation scmi) throws CompileException {
         final IClass.IMethod iMethod = this.findIMethod(scmi);
+        this.checkAccessPolicy(iMethod.getDeclaringIClass(), iMethod.getName(), scmi.getLocation());
 
         Scope s;
         for (
@@ -5305,6 +6201,7 @@ class UnitCompiler {
 
         if (iClass.isInterface()) this.compileError("Cannot instantiate \"" + iClass + "\"", nci.getLocation());
         this.checkAccessible(iClass, nci.getEnclosingScope(), nci.getLocation());
+        this.checkAccessPolicy(iClass, "<init>", nci.getLocation());
         if (iClass.isAbstract()) {
             this.compileError("Cannot instantiate abstract \"" + iClass + "\"", nci.getLocation());
         }
@@ -5387,6 +6284,10 @@ class UnitCompiler {
         IClass sc = this.resolve(acd).getSuperclass();
         assert sc != null;
 
+        if (sc != this.iClassLoader.TYPE_java_lang_Object) {
+            this.checkAccessPolicy(sc, "<init>", naci.getLocation());
+        }
+
         IClass.IConstructor[] superclassIConstructors = sc.getDeclaredIConstructors();
         if (superclassIConstructors.length == 0) {
             throw new InternalCompilerException("SNO: Superclass has no constructors");
@@ -5620,10 +6521,377 @@ class UnitCompiler {
             return this.getType(rv);
         }
 
+        CommonSubexpression cse = (CommonSubexpression) this.commonSubexpressions.get(rv);
+        if (cse != null) return this.compileCommonSubexpression(rv, cse);
+
         this.compileContext(rv);
         return this.compileGet(rv);
     }
 
+    /**
+     * Iff {@link JaninoOption#ELIMINATE_COMMON_SUBEXPRESSIONS} is configured, identifies the common subexpressions of
+     * the <var>rvalue</var> for its following compilation.
+     *
+     * @return The previously identified common subexpressions, which the caller must restore after it has compiled
+     *         the <var>rvalue</var>
+     */
+    private Map<Rvalue, CommonSubexpression>
+    enterCommonSubexpressions(Rvalue rvalue) throws CompileException {
+
+        Map<Rvalue, CommonSubexpression> result = this.commonSubexpressions;
+        if (this.options.contains(JaninoOption.ELIMINATE_COMMON_SUBEXPRESSIONS)) {
+            this.commonSubexpressions = this.findCommonSubexpressions(rvalue);
+        }
+        return result;
+    }
+
+    /**
+     * Identifies the subexpressions of the <var>rvalue</var> that occur more than once, and can be evaluated only
+     * once. That is only possible if all subexpressions are free of side effects, except for the <var>rvalue</var>
+     * itself, which may be an assignment or a method invocation.
+     * <p>
+     *   Each first occurrence that is evaluated unconditionally (i.e. not in the right operand of {@code &&} and {@code
+     *   ||}, nor in the second or third operand of {@code ?:}) stores its value in a synthetic local variable, and the
+     *   subsequent occurrences load it from there.
+     * </p>
+     */
+    private Map<Rvalue, CommonSubexpression>
+    findCommonSubexpressions(Rvalue rvalue) throws CompileException {
+
+        // Errors are reported later, when the rvalue is actually compiled.
+        ErrorHandler   eh         = this.optionalCompileErrorHandler;
+        WarningHandler wh         = this.optionalWarningHandler;
+        int            errorCount = this.compileErrorCount;
+        this.optionalCompileErrorHandler = null;
+        this.optionalWarningHandler      = null;
+
+        List<CommonSubexpressionCandidate> candidates = new ArrayList<CommonSubexpressionCandidate>();
+        try {
+            if (!this.findCommonSubexpressionCandidates(rvalue, candidates)) return Collections.emptyMap();
+        } catch (CompileException ce) {
+            return Collections.emptyMap();
+        } finally {
+            this.optionalCompileErrorHandler = eh;
+            this.optionalWarningHandler      = wh;
+            this.compileErrorCount           = errorCount;
+        }
+
+        Map<String, int[] /*count*/> counts = new HashMap<String, int[]>();
+        for (CommonSubexpressionCandidate c : candidates) {
+            int[] count = (int[]) counts.get(c.key);
+            if (count == null) counts.put(c.key, (count = new int[1]));
+            count[0]++;
+        }
+
+        Map<String, CommonSubexpression> groups = new HashMap<String, CommonSubexpression>();
+        Map<Rvalue, CommonSubexpression> result = new HashMap<Rvalue, CommonSubexpression>();
+        for (int i = 0; i < candidates.size();) {
+            CommonSubexpressionCandidate c = (CommonSubexpressionCandidate) candidates.get(i);
+            if (((int[]) counts.get(c.key))[0] >= 2) {
+                CommonSubexpression cse = (CommonSubexpression) groups.get(c.key);
+                if (cse != null) {
+
+                    // A subsequent occurrence; its own subexpressions will not be evaluated.
+                    cse.repeated = true;
+                    result.put(c.rvalue, cse);
+                    i = c.end;
+                    continue;
+                }
+                if (!c.conditional) {
+                    groups.put(c.key, (cse = new CommonSubexpression(c.rvalue)));
+                    result.put(c.rvalue, cse);
+                }
+            }
+            i++;
+        }
+
+        for (Iterator<CommonSubexpression> it = result.values().iterator(); it.hasNext();) {
+            if (!((CommonSubexpression) it.next()).repeated) it.remove();
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether the subexpressions of <var>rvalue</var> are free of side effects
+     */
+    private boolean
+    findCommonSubexpressionCandidates(Rvalue rvalue, List<CommonSubexpressionCandidate> candidates)
+    throws CompileException {
+
+        if (rvalue instanceof Assignment) {
+            return this.findCommonSubexpressionCandidates(((Assignment) rvalue).rhs, false, candidates) != null;
+        }
+
+        if (rvalue instanceof MethodInvocation) {
+            MethodInvocation mi = (MethodInvocation) rvalue;
+            Atom             ot = mi.optionalTarget;
+            if (ot != null && this.commonSubexpressionKey(ot, false, candidates) == null) return false;
+            for (Rvalue argument : mi.arguments) {
+                if (this.findCommonSubexpressionCandidates(argument, false, candidates) == null) return false;
+            }
+            return true;
+        }
+
+        return this.findCommonSubexpressionCandidates(rvalue, false, candidates) != null;
+    }
+
+    /**
+     * Adds the <var>rv</var> and its subexpressions that are worth being evaluated only once to the
+     * <var>candidates</var>, in evaluation order.
+     *
+     * @param conditional Whether <var>rv</var> is not necessarily evaluated
+     * @return            A key that is equal for structurally identical subexpressions, or {@code null} iff
+     *                    <var>rv</var> is not free of side effects
+     */
+    @Nullable private String
+    findCommonSubexpressionCandidates(Rvalue rv, boolean conditional, List<CommonSubexpressionCandidate> candidates)
+    throws CompileException {
+
+        // Constants are never evaluated at runtime.
+        Object cv = this.getConstantValue(rv);
+        if (cv != UnitCompiler.NOT_CONSTANT) {
+            if (cv == null) return "null";
+            String s = cv.toString();
+            return cv.getClass().getName() + '(' + s.length() + ')' + s;
+        }
+
+        // Worth being evaluated only once? (Notice that string concatenations must not be eliminated, because they
+        // create distinct objects, and that comparisons and boolean operations are cheap.)
+        CommonSubexpressionCandidate candidate = null;
+        if (
+            rv instanceof MethodInvocation
+            || rv instanceof FieldAccessExpression
+            || rv instanceof FieldAccess
+            || rv instanceof ArrayAccessExpression
+            || (rv instanceof AmbiguousName && ((AmbiguousName) rv).n >= 2)
+            || (rv instanceof BinaryOperation && this.getType(rv).isPrimitiveNumeric())
+        ) candidates.add((candidate = new CommonSubexpressionCandidate(rv, conditional)));
+
+        String key = this.commonSubexpressionKey(rv, conditional, candidates);
+        if (key == null) return null;
+
+        if (candidate != null) {
+            candidate.key = key;
+            candidate.end = candidates.size();
+        }
+        return key;
+    }
+
+    @Nullable private String
+    commonSubexpressionKey(Rvalue rv, boolean conditional, List<CommonSubexpressionCandidate> candidates)
+    throws CompileException {
+
+        if (rv instanceof AmbiguousName || rv instanceof ThisReference || rv instanceof QualifiedThisReference) {
+            return rv.toString();
+        }
+
+        // The targets of method invocations are reclassified before they are compiled.
+        if (rv instanceof LocalVariableAccess) {
+            short slotIndex = ((LocalVariableAccess) rv).localVariable.getSlotIndex();
+            return slotIndex == -1 ? null : "#" + slotIndex;
+        }
+
+        if (rv instanceof FieldAccess) {
+            FieldAccess fa = (FieldAccess) rv;
+            String      k  = this.commonSubexpressionKey(fa.lhs, conditional, candidates);
+            return k == null ? null : k + '.' + fa.field.getName();
+        }
+
+        if (rv instanceof ParenthesizedExpression) {
+            ParenthesizedExpression pe = (ParenthesizedExpression) rv;
+            return this.findCommonSubexpressionCandidates(pe.value, conditional, candidates);
+        }
+
+        if (rv instanceof UnaryOperation) {
+            UnaryOperation uo = (UnaryOperation) rv;
+            String         k  = this.findCommonSubexpressionCandidates(uo.operand, conditional, candidates);
+            return k == null ? null : uo.operator + '(' + k + ')';
+        }
+
+        if (rv instanceof BinaryOperation) {
+            BinaryOperation bo = (BinaryOperation) rv;
+            String          k1 = this.findCommonSubexpressionCandidates(bo.lhs, conditional, candidates);
+            if (k1 == null) return null;
+            String k2 = this.findCommonSubexpressionCandidates(
+                bo.rhs,
+                conditional || bo.operator == "&&" || bo.operator == "||", // SUPPRESS CHECKSTYLE StringLiteralEquality
+                candidates
+            );
+            return k2 == null ? null : '(' + k1 + ' ' + bo.operator + ' ' + k2 + ')';
+        }
+
+        if (rv instanceof ConditionalExpression) {
+            ConditionalExpression ce = (ConditionalExpression) rv;
+            String                k1 = this.findCommonSubexpressionCandidates(ce.lhs, conditional, candidates);
+            if (k1 == null) return null;
+            String k2 = this.findCommonSubexpressionCandidates(ce.mhs, true, candidates);
+            if (k2 == null) return null;
+            String k3 = this.findCommonSubexpressionCandidates(ce.rhs, true, candidates);
+            return k3 == null ? null : '(' + k1 + " ? " + k2 + " : " + k3 + ')';
+        }
+
+        if (rv instanceof Cast) {
+            Cast   c = (Cast) rv;
+            String k = this.findCommonSubexpressionCandidates(c.value, conditional, candidates);
+            return k == null ? null : "((" + c.targetType + ") " + k + ')';
+        }
+
+        if (rv instanceof Instanceof) {
+            Instanceof io = (Instanceof) rv;
+            String     k  = this.findCommonSubexpressionCandidates(io.lhs, conditional, candidates);
+            return k == null ? null : '(' + k + " instanceof " + io.rhs + ')';
+        }
+
+        if (rv instanceof FieldAccessExpression) {
+            FieldAccessExpression fae = (FieldAccessExpression) rv;
+            String                k   = this.commonSubexpressionKey(fae.lhs, conditional, candidates);
+            return k == null ? null : k + '.' + fae.fieldName;
+        }
+
+        if (rv instanceof ArrayAccessExpression) {
+            ArrayAccessExpression aae = (ArrayAccessExpression) rv;
+            String                k1  = this.findCommonSubexpressionCandidates(aae.lhs, conditional, candidates);
+            if (k1 == null) return null;
+            String k2 = this.findCommonSubexpressionCandidates(aae.index, conditional, candidates);
+            return k2 == null ? null : k1 + '[' + k2 + ']';
+        }
+
+        if (rv instanceof MethodInvocation) {
+            MethodInvocation mi = (MethodInvocation) rv;
+
+            IMethod iMethod = this.findIMethod(mi);
+            if (iMethod.getReturnType() == IClass.VOID || !this.isPure(iMethod)) return null;
+
+            Atom          ot = mi.optionalTarget;
+            StringBuilder sb = new StringBuilder();
+            if (ot != null) {
+                String k = this.commonSubexpressionKey(ot, conditional, candidates);
+                if (k == null) return null;
+                sb.append(k).append('.');
+            }
+            sb.append(mi.methodName).append('(');
+            for (int i = 0; i < mi.arguments.length; i++) {
+                String k = this.findCommonSubexpressionCandidates(mi.arguments[i], conditional, candidates);
+                if (k == null) return null;
+                if (i > 0) sb.append(", ");
+                sb.append(k);
+            }
+            return sb.append(')').toString();
+        }
+
+        // All other rvalues are regarded as having side effects, or are not worth the effort.
+        return null;
+    }
+
+    @Nullable private String
+    commonSubexpressionKey(Atom target, boolean conditional, List<CommonSubexpressionCandidate> candidates)
+    throws CompileException {
+        if (this.isType(target)) return target.toString();
+        return this.findCommonSubexpressionCandidates(
+            this.toRvalueOrCompileException(target),
+            conditional,
+            candidates
+        );
+    }
+
+    /**
+     * @return Whether invocations of the <var>iMethod</var> are regarded as free of side effects; see {@link
+     *         JaninoOption#ELIMINATE_COMMON_SUBEXPRESSIONS}
+     */
+    private boolean
+    isPure(IMethod iMethod) throws CompileException {
+
+        String className  = Descriptor.toClassName(iMethod.getDeclaringIClass().getDescriptor());
+        String methodName = iMethod.getName();
+
+        if ("java.lang.Math".equals(className) || "java.lang.StrictMath".equals(className)) {
+            return !"random".equals(methodName);
+        }
+        if (UnitCompiler.PURE_METHODS.contains(className + '.' + methodName)) return true;
+
+        PurityPolicy pp = this.optionalPurityPolicy;
+        return pp != null && pp.isPure(className, methodName);
+    }
+
+    /**
+     * Compiles an occurrence of a common subexpression; see {@link #findCommonSubexpressions(Rvalue)}.
+     */
+    private IClass
+    compileCommonSubexpression(Rvalue rv, CommonSubexpression cse) throws CompileException {
+
+        LocalVariable lv = cse.localVariable;
+        if (rv != cse.first) {
+            if (lv == null) {
+
+                // The first occurrence was not compiled through "compileGetValue()", e.g. because it is an operand of
+                // an unrolled left-associative operation.
+                this.compileContext(rv);
+                return this.compileGet(rv);
+            }
+            this.load(rv, lv);
+            return lv.type;
+        }
+
+        this.compileContext(rv);
+        IClass type = this.compileGet(rv);
+
+        short size = Descriptor.size(type.getDescriptor());
+        lv = new LocalVariable(true, type);
+        lv.setSlot(this.getCodeContext().allocateLocalVariable(size, null, type));
+        this.dup(rv, size);
+        this.store(rv, lv);
+        cse.localVariable = lv;
+
+        return type;
+    }
+
+    /**
+     * An rvalue that occurs more than once in an expression; see {@link #findCommonSubexpressions(Rvalue)}.
+     */
+    private static
+    class CommonSubexpression {
+
+        /**
+         * The first occurrence, which is actually evaluated.
+         */
+        final Rvalue first;
+
+        /**
+         * Whether the rvalue occurs more than once.
+         */
+        boolean repeated;
+
+        /**
+         * The synthetic local variable that holds the value of the rvalue, or {@code null} before the first occurrence
+         * is compiled.
+         */
+        @Nullable LocalVariable localVariable;
+
+        CommonSubexpression(Rvalue first) { this.first = first; }
+    }
+
+    private static
+    class CommonSubexpressionCandidate {
+
+        final Rvalue  rvalue;
+        final boolean conditional;
+
+        /**
+         * A key that is equal for structurally identical subexpressions.
+         */
+        @Nullable String key;
+
+        /**
+         * The index of the first candidate that is not a subexpression of this candidate.
+         */
+        int end;
+
+        CommonSubexpressionCandidate(Rvalue rvalue, boolean conditional) {
+            this.rvalue      = rvalue;
+            this.conditional = conditional;
+        }
+    }
+
     // -------------------- Rvalue.getConstantValue() -----------------
 
     /**
@@ -6344,8 +7612,9 @@ class UnitCompiler {
     private void
     leave2(TryStatement ts, @Nullable IClass optionalStackValueType) {
 
-        Offset fo = ts.finallyOffset;
-        if (fo == null) return;
+        // A TRY-with-resources statement has more than one FINALLY subroutine; execute them innermost first.
+        List<Offset> fos = ts.finallyOffsets;
+        if (fos.isEmpty()) return;
 
         this.getCodeContext().saveLocalVariables();
         try {
@@ -6360,7 +7629,23 @@ class UnitCompiler {
                 this.store(ts, optionalStackValueType, sv);
             }
 
-            this.writeBranch(ts, Opcode.JSR, fo);
+            CodeContext.Offset start = this.getCodeContext().newOffset();
+            for (int i = fos.size() - 1; i >= 0; i--) this.writeBranch(ts, Opcode.JSR, (Offset) fos.get(i));
+            CodeContext.Offset end = this.getCodeContext().new Offset();
+            this.leaveGapEnds.add(end);
+
+            // Like JAVAC, exclude the JSRs and the following jump from the exception handler ranges of the TRY
+            // statement (and of all TRY statements that it encloses), because the outer subroutines re-use the local
+            // variables of the inner ones, which the old bytecode verifier rejects.
+            boolean enclosed = false;
+            for (int i = 0; i < this.tryContexts.size(); i++) {
+                TryContext tc = (TryContext) this.tryContexts.get(i);
+                enclosed |= tc.tryStatement == ts;
+                if (enclosed) {
+                    tc.gaps.add(start);
+                    tc.gaps.add(end);
+                }
+            }
 
             if (optionalStackValueType != null) {
                 this.load(ts, optionalStackValueType, sv);
@@ -6402,6 +7687,7 @@ class UnitCompiler {
     private void
     compileSet2(FieldAccess fa) throws CompileException {
         this.checkAccessible(fa.field, fa.getEnclosingScope(), fa.getLocation());
+        this.checkAccessPolicy(fa.field.getDeclaringIClass(), fa.field.getName(), fa.getLocation());
         this.putfield(fa, fa.field);
     }
     private void
@@ -6425,7 +7711,7 @@ class UnitCompiler {
 
     // ---------------- Atom.getType() ----------------
 
-    private IClass
+    IClass
     getType(Atom a) throws CompileException {
 
         IClass result = (IClass) a.accept(new AtomVisitor<IClass, CompileException>() {
@@ -6547,6 +7833,7 @@ class UnitCompiler {
             this.compileError("Reference type \"" + rt + "\" not found", rt.getLocation());
             return this.iClassLoader.TYPE_java_lang_Object;
         }
+        this.checkAccessPolicy(result, rt.getLocation());
 
         return result;
     }
@@ -7282,6 +8569,69 @@ class UnitCompiler {
     private boolean
     isType2(AmbiguousName an) throws CompileException { return this.isType(this.reclassify(an)); }
 
+    /**
+     * Checks the <var>type</var> against the {@link #setAccessPolicy(AccessPolicy) access policy}. Issues a {@link
+     * #compileError(String)} if the reference is not allowed.
+     */
+    private void
+    checkAccessPolicy(IClass type, Location location) throws CompileException {
+
+        AccessPolicy ap = this.optionalAccessPolicy;
+        if (ap == null) return;
+
+        IClass t = type;
+        while (t.isArray()) {
+            IClass ct = t.getComponentType();
+            assert ct != null;
+            t = ct;
+        }
+        if (t.isPrimitive()) return;
+        if (this.isDeclaredInThisCompilationUnit(t)) return;
+
+        String className = Descriptor.toClassName(t.getDescriptor());
+        if (!ap.isTypeAllowed(className)) {
+            this.compileError("Access to type \"" + className + "\" is not allowed", location);
+        }
+    }
+
+    /**
+     * Checks the member of the <var>declaringType</var> against the {@link #setAccessPolicy(AccessPolicy) access
+     * policy}. Issues a {@link #compileError(String)} if the access is not allowed.
+     *
+     * @param memberName The name of the field or method, or {@code "<init>"}
+     */
+    private void
+    checkAccessPolicy(IClass declaringType, String memberName, Location location) throws CompileException {
+
+        AccessPolicy ap = this.optionalAccessPolicy;
+        if (ap == null) return;
+
+        if (this.isDeclaredInThisCompilationUnit(declaringType)) return;
+
+        String className = Descriptor.toClassName(declaringType.getDescriptor());
+        if (!ap.isMemberAllowed(className, memberName)) {
+            this.compileError("Access to \"" + className + "." + memberName + "\" is not allowed", location);
+        }
+    }
+
+    /**
+     * @return Whether <var>iClass</var> is a top-level type of this compilation unit, or a member, local or anonymous
+     *         type nested therein
+     */
+    private boolean
+    isDeclaredInThisCompilationUnit(IClass iClass) throws CompileException {
+
+        IClass outermost = iClass;
+        for (IClass dc = outermost.getDeclaringIClass(); dc != null; dc = outermost.getDeclaringIClass()) {
+            outermost = dc;
+        }
+
+        for (PackageMemberTypeDeclaration pmtd : this.compilationUnit.getPackageMemberTypeDeclarations()) {
+            if (this.resolve(pmtd) == outermost) return true;
+        }
+        return false;
+    }
+
     /**
      * Determines whether the given {@link IClass.IMember} is accessible in the given context, according to
      * JLS7 6.6.1.BL1.B4. Issues a {@link #compileError(String)} if not.
@@ -7592,14 +8942,69 @@ class UnitCompiler {
      * Statements that jump out of blocks ({@code return}, {@code break}, {@code continue}) must call this method to
      * make sure that the {@code finally} clauses of all {@code try ... catch} and {@code synchronized} statements are
      * executed.
+     *
+     * @return Whether the code can complete normally, i.e. {@code false} iff an inlined FINALLY clause cannot complete
+     *         normally
      */
-    private void
-    leaveStatements(Scope from, Scope to, @Nullable IClass optionalStackValueType) {
+    private boolean
+    leaveStatements(Scope from, Scope to, @Nullable IClass optionalStackValueType) throws CompileException {
         for (Scope s = from; s != to; s = s.getEnclosingScope()) {
+            if (s instanceof TryStatement && !this.leaveInlinedFinally((TryStatement) s, optionalStackValueType)) {
+                return false;
+            }
             if (s instanceof BlockStatement) {
                 this.leave((BlockStatement) s, optionalStackValueType);
             }
         }
+        return true;
+    }
+
+    /**
+     * Ends the exception handler gaps that {@link #leaveStatements(Scope, Scope, IClass)} opened for the JSRs to
+     * FINALLY subroutines; must be invoked immediately after the GOTO or RETURN opcode that leaves the statements.
+     */
+    private void
+    endLeaveGaps() {
+        for (int i = 0; i < this.leaveGapEnds.size(); i++) ((CodeContext.Offset) this.leaveGapEnds.get(i)).set();
+        this.leaveGapEnds.clear();
+    }
+
+    /**
+     * Generates copies of the inlined FINALLY clauses of the <var>tryStatement</var> (a TRY-with-resources statement
+     * has more than one), innermost first.
+     *
+     * @return Whether all these FINALLY clauses can complete normally
+     */
+    private boolean
+    leaveInlinedFinally(TryStatement tryStatement, @Nullable IClass optionalStackValueType) throws CompileException {
+
+        for (int i = this.tryContexts.size() - 1; i >= 0; i--) {
+            TryContext tc = (TryContext) this.tryContexts.get(i);
+            if (tc.tryStatement != tryStatement || tc.finallY == null) continue;
+
+            this.getCodeContext().saveLocalVariables();
+            try {
+                short sv = 0;
+
+                // The copy of the FINALLY clause is excluded from exception handler ranges, and these must begin with
+                // an empty operand stack.
+                if (optionalStackValueType != null) {
+                    sv = this.getCodeContext().allocateLocalVariable(
+                        Descriptor.size(optionalStackValueType.getDescriptor())
+                    );
+                    this.store(tryStatement, optionalStackValueType, sv);
+                }
+
+                if (!this.compileInlinedFinally(tc)) return false;
+
+                if (optionalStackValueType != null) {
+                    this.load(tryStatement, optionalStackValueType, sv);
+                }
+            } finally {
+                this.getCodeContext().restoreLocalVariables();
+            }
+        }
+        return true;
     }
 
     /**
@@ -11989,6 +13394,75 @@ class UnitCompiler {
         this.optionalWarningHandler = optionalWarningHandler;
     }
 
+    /**
+     * Installs a "compile-time sandbox": Each reference to a type (in a declaration, cast, class literal, ...), and
+     * each access to a field, method or constructor is checked against the <var>optionalAccessPolicy</var>, and a
+     * violation is reported as a compile error. The types declared in the compilation unit itself are always allowed.
+     * <p>
+     *   Notice that the policy must deny any means to escape it, e.g. reflection ({@code java.lang.Class},
+     *   {@code java.lang.reflect.*}), class loading and {@code java.lang.System.exit()}.
+     * </p>
+     *
+     * @param optionalAccessPolicy {@code null} to allow all accesses (which is the default)
+     */
+    public void
+    setAccessPolicy(@Nullable AccessPolicy optionalAccessPolicy) {
+        this.optionalAccessPolicy = optionalAccessPolicy;
+    }
+
+    /**
+     * Declares additional methods as free of side effects, so that {@link
+     * JaninoOption#ELIMINATE_COMMON_SUBEXPRESSIONS} evaluates repeated invocations of them only once.
+     *
+     * @param optionalPurityPolicy {@code null} to regard only the methods that janino knows as pure (which is the
+     *                             default)
+     */
+    public void
+    setPurityPolicy(@Nullable PurityPolicy optionalPurityPolicy) {
+        this.optionalPurityPolicy = optionalPurityPolicy;
+    }
+
+    /**
+     * Iff non-{@code null}, then {@link CompilationListener.Phase#CODE_GENERATION} and {@link
+     * CompilationListener.Phase#FLOW_ANALYSIS} are reported to the given listener when {@link #compileUnit(boolean,
+     * boolean, boolean)} completes.
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener optionalCompilationListener) {
+        this.optionalCompilationListener = optionalCompilationListener;
+    }
+
+    /**
+     * Invokes {@link CodeContext#flowAnalysis(String)} and, iff a {@link #setCompilationListener(CompilationListener)
+     * compilation listener} is configured, measures its duration. Afterwards the method's code is complete, so this
+     * is where {@link JfrEvents#METHOD_GENERATED} is emitted.
+     */
+    private void
+    flowAnalysis(CodeContext codeContext, String functionName) {
+
+        if (this.optionalCompilationListener == null) {
+            codeContext.flowAnalysis(functionName);
+        } else {
+            long start = System.nanoTime();
+            try {
+                codeContext.flowAnalysis(functionName);
+            } finally {
+                this.flowAnalysisNanos += System.nanoTime() - start;
+            }
+        }
+
+        Object methodEvent = JfrEvents.METHOD_GENERATED.begin();
+        if (methodEvent != null) {
+            JfrEvents.commit(methodEvent, new Object[] {
+                codeContext.getClassFile().getThisClassName(),
+                functionName,
+                (long) codeContext.getCodeLength(),
+                (long) codeContext.getMaxStack(),
+                (long) codeContext.getMaxLocals()
+            });
+        }
+    }
+
     @Nullable private CodeContext
     replaceCodeContext(@Nullable CodeContext newCodeContext) {
         CodeContext oldCodeContext = this.codeContext;
@@ -12321,6 +13795,35 @@ class UnitCompiler {
     // Used for elaborate warning handling.
     @Nullable private WarningHandler optionalWarningHandler;
 
+    // Used for the "compile-time sandbox".
+    @Nullable private AccessPolicy optionalAccessPolicy;
+
+    // Used for reporting to a "CompilationListener".
+    @Nullable private CompilationListener optionalCompilationListener;
+    private long                          flowAnalysisNanos;
+
+    // Used for "METHOD_PROFILING" and "METHOD_PROFILING_WITH_TIMING".
+    private final List<MethodProfile>            methodProfiles = new ArrayList<MethodProfile>();
+    private final Map<FunctionDeclarator, long[] /*profileHandle+startNanosLvIndex*/>
+    timedFunctions = new HashMap<FunctionDeclarator, long[]>();
+
+    // Used for "EXECUTION_BUDGET_CHECKS".
+    private final Map<FunctionDeclarator, Short /*countdownLvIndex*/>
+    budgetCountdowns = new HashMap<FunctionDeclarator, Short>();
+
+    // Used for "INLINE_METHODS".
+    private final Set<MethodDeclarator> inlinedMethods = new HashSet<MethodDeclarator>();
+
+    // Used for "ELIMINATE_COMMON_SUBEXPRESSIONS".
+    private Map<Rvalue, CommonSubexpression> commonSubexpressions = Collections.emptyMap();
+    @Nullable private PurityPolicy           optionalPurityPolicy;
+
+    // The TRY statements that are currently being compiled, innermost last.
+    private final List<TryContext> tryContexts = new ArrayList<TryContext>();
+
+    // See "endLeaveGaps()".
+    private final List<CodeContext.Offset> leaveGapEnds = new ArrayList<CodeContext.Offset>();
+
     private final CompilationUnit compilationUnit;
 
     private final IClassLoader iClassLoader;
@@ -2445,6 +2445,21 @@ class ClassFile implements Annotatable {
             this.attributes            = attributes;
         }
 
+        /**
+         * @return The maximum depth of the operand stack of the method
+         */
+        public short getMaxStack() { return this.maxStack; }
+
+        /**
+         * @return The number of local variable slots of the method, including those of its parameters
+         */
+        public short getMaxLocals() { return this.maxLocals; }
+
+        /**
+         * @return The number of bytes of the method's bytecode
+         */
+        public int getCodeLength() { return this.code.length; }
+
         private static AttributeInfo
         loadBody(short attributeNameIndex, ClassFile classFile, DataInputStream dis) throws IOException {
 
@@ -2881,7 +2896,7 @@ class ClassFile implements Annotatable {
                     frameType == 247 ? new SameLocals1StackItemFrameExtended(dis.readUnsignedShort(), StackMapTableAttribute.loadVerificationTypeInfo(dis)) :
                     frameType <= 250 ? new ChopFrame(dis.readUnsignedShort(), 251 - frameType) :
                     frameType == 251 ? new SameFrameExtended(dis.readUnsignedShort()) :
-                    frameType <= 254 ? new AppendFrame(dis.readUnsignedShort(), StackMapTableAttribute.loadVerificationTypeInfos(dis, dis.readUnsignedShort())) :
+                    frameType <= 254 ? new AppendFrame(dis.readUnsignedShort(), StackMapTableAttribute.loadVerificationTypeInfos(dis, frameType - 251)) :
                     frameType == 255 ? new FullFrame(
                         dis.readUnsignedShort(),                                                        // offsetDelta
                         StackMapTableAttribute.loadVerificationTypeInfos(dis, dis.readUnsignedShort()), // locals
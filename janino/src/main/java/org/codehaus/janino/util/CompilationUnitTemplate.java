@@ -0,0 +1,293 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Java.AmbiguousName;
+import org.codehaus.janino.Java.CompilationUnit;
+import org.codehaus.janino.Java.Lvalue;
+import org.codehaus.janino.Java.ReferenceType;
+import org.codehaus.janino.Java.Rvalue;
+import org.codehaus.janino.Java.Type;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+
+/**
+ * A {@link CompilationUnit} with "holes", which is parsed only once, and then instantiated many times with different
+ * values for the holes, e.g.
+ * <pre>
+ *     CompilationUnitTemplate t = CompilationUnitTemplate.parse(null, new StringReader(
+ *         "public class $Class { public static $T get() { return $value; } }"
+ *     ));
+ *     ...
+ *     SimpleCompiler sc = new SimpleCompiler();
+ *     sc.cook(t.instantiate(constants, identifiers, types));
+ * </pre>
+ * <p>
+ *   A hole is a simple name that appears in the template source, and that is bound by {@link #instantiate(Map, Map,
+ *   Map)}; it is recommended to let hole names begin with a dollar sign, so that they do not clash with "regular"
+ *   names. There are three kinds of holes:
+ * </p>
+ * <dl>
+ *   <dt>Constant holes</dt>
+ *   <dd>
+ *     A name in an expression is replaced with a literal; e.g. {@code return $value;} becomes {@code return 7;}, or
+ *     {@code return "abc";}. Supported constant values are {@code null}, {@link String}, {@link Character}, {@link
+ *     Boolean}, {@link Byte}, {@link Short}, {@link Integer}, {@link Long}, {@link Float} and {@link Double}.
+ *   </dd>
+ *   <dt>Identifier holes</dt>
+ *   <dd>
+ *     The identifier is replaced wherever it appears: in the names of declared classes, methods, fields, parameters
+ *     and variables, and in names that reference these.
+ *   </dd>
+ *   <dt>Type holes</dt>
+ *   <dd>
+ *     A type name (e.g. in a variable declaration or a cast) is replaced with the given {@link Class}; a class also
+ *     replaces the first component of a name, as in {@code $T.valueOf(x)}.
+ *   </dd>
+ * </dl>
+ * <p>
+ *   Instantiating copies the template, as with {@link DeepCopier}, which is much faster than scanning and parsing the
+ *   source again. (The instances cannot share any subtrees with the template or with each other, because the compiler
+ *   binds each AST node to its enclosing scope.) The template itself is never modified, thus it may be instantiated
+ *   concurrently by multiple threads; it must, however, not be compiled itself.
+ * </p>
+ */
+public final
+class CompilationUnitTemplate {
+
+    private final CompilationUnit compilationUnit;
+
+    /**
+     * @param compilationUnit Must not have been compiled, and must not be compiled later
+     */
+    public
+    CompilationUnitTemplate(CompilationUnit compilationUnit) { this.compilationUnit = compilationUnit; }
+
+    /**
+     * Parses a template from the <var>reader</var>.
+     *
+     * @param optionalFileName The file name to use in error messages
+     */
+    public static CompilationUnitTemplate
+    parse(@Nullable String optionalFileName, Reader reader) throws CompileException, IOException {
+        return new CompilationUnitTemplate(new Parser(new Scanner(optionalFileName, reader)).parseCompilationUnit());
+    }
+
+    /**
+     * Creates a new instance of the template, with the holes replaced as described {@link CompilationUnitTemplate
+     * above}. The result is typically passed to {@link org.codehaus.janino.SimpleCompiler#cook(CompilationUnit)}.
+     *
+     * @param constants   Maps hole names to constant values
+     * @param identifiers Maps hole names to identifiers
+     * @param types       Maps hole names to types; array types and primitive types are also supported
+     * @throws IllegalArgumentException A constant value is of an unsupported type, or a type has no canonical name
+     */
+    public CompilationUnit
+    instantiate(
+        final Map<String, ?>        constants,
+        final Map<String, String>   identifiers,
+        final Map<String, Class<?>> types
+    ) throws CompileException {
+
+        return new DeepCopier() {
+
+            @Override public Rvalue
+            copyRvalue(Rvalue subject) throws CompileException {
+                if (subject instanceof AmbiguousName) {
+                    AmbiguousName an = (AmbiguousName) subject;
+                    if (an.n == 1 && constants.containsKey(an.identifiers[0])) {
+                        return CompilationUnitTemplate.literal(an.getLocation(), constants.get(an.identifiers[0]));
+                    }
+                }
+                return super.copyRvalue(subject);
+            }
+
+            @Override public Lvalue
+            copyAmbiguousName(AmbiguousName subject) throws CompileException {
+
+                Class<?> clazz = (Class<?>) types.get(subject.identifiers[0]);
+                if (clazz == null) return super.copyAmbiguousName(subject);
+
+                List<String> result = new ArrayList<String>();
+                for (String identifier : CompilationUnitTemplate.canonicalName(clazz).split("\\.")) {
+                    result.add(identifier);
+                }
+                for (int i = 1; i < subject.n; i++) result.add(this.copyIdentifier(subject.identifiers[i]));
+
+                return new AmbiguousName(subject.getLocation(), (String[]) result.toArray(new String[result.size()]));
+            }
+
+            @Override public Type
+            copyType(Type subject) throws CompileException {
+                if (subject instanceof ReferenceType) {
+                    ReferenceType rt = (ReferenceType) subject;
+                    if (rt.identifiers.length == 1) {
+                        Class<?> clazz = (Class<?>) types.get(rt.identifiers[0]);
+                        if (clazz != null) {
+                            return CompilationUnitTemplate.type(
+                                rt.getLocation(),
+                                clazz,
+                                this.copyOptionalTypeArguments(rt.optionalTypeArguments)
+                            );
+                        }
+                    }
+                }
+                return super.copyType(subject);
+            }
+
+            @Override public String
+            copyIdentifier(String identifier) {
+                String result = (String) identifiers.get(identifier);
+                return result != null ? result : identifier;
+            }
+        }.copyCompilationUnit(this.compilationUnit);
+    }
+
+    private static Type
+    type(Location location, Class<?> clazz, @Nullable Java.TypeArgument[] optionalTypeArguments) {
+
+        if (clazz.isArray()) {
+            return new Java.ArrayType(CompilationUnitTemplate.type(location, clazz.getComponentType(), null));
+        }
+
+        if (clazz.isPrimitive()) {
+            return new Java.PrimitiveType(
+                location,
+                Java.Primitive.valueOf(clazz.getName().toUpperCase(Locale.ENGLISH))
+            );
+        }
+
+        return new ReferenceType(
+            location,
+            CompilationUnitTemplate.canonicalName(clazz).split("\\."),
+            optionalTypeArguments
+        );
+    }
+
+    private static String
+    canonicalName(Class<?> clazz) {
+        String result = clazz.getCanonicalName();
+        if (result == null) throw new IllegalArgumentException("\"" + clazz + "\" has no canonical name");
+        return result;
+    }
+
+    private static Rvalue
+    literal(Location location, @Nullable Object value) {
+
+        if (value == null) return new Java.NullLiteral(location);
+
+        if (value instanceof String) {
+            return new Java.StringLiteral(location, '"' + CompilationUnitTemplate.escape((String) value) + '"');
+        }
+
+        if (value instanceof Character) {
+            return new Java.CharacterLiteral(
+                location,
+                "'" + CompilationUnitTemplate.escape(String.valueOf(value)) + "'"
+            );
+        }
+
+        if (value instanceof Boolean) return new Java.BooleanLiteral(location, value.toString());
+
+        if (value instanceof Integer) return CompilationUnitTemplate.integerLiteral(location, value.toString());
+
+        if (value instanceof Long) return CompilationUnitTemplate.integerLiteral(location, value + "L");
+
+        if (value instanceof Short || value instanceof Byte) {
+            return new Java.Cast(
+                location,
+                new Java.PrimitiveType(location, value instanceof Short ? Java.Primitive.SHORT : Java.Primitive.BYTE),
+                CompilationUnitTemplate.integerLiteral(location, value.toString())
+            );
+        }
+
+        if (value instanceof Double || value instanceof Float) {
+            String suffix = value instanceof Double ? "D" : "F";
+            double d      = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                String wrapper = value instanceof Double ? "Double" : "Float";
+                String field   = Double.isNaN(d) ? "NaN" : d > 0 ? "POSITIVE_INFINITY" : "NEGATIVE_INFINITY";
+                return new AmbiguousName(location, new String[] { "java", "lang", wrapper, field });
+            }
+            String s = value.toString();
+            if (s.startsWith("-")) {
+                return new Java.UnaryOperation(
+                    location,
+                    "-",
+                    new Java.FloatingPointLiteral(location, s.substring(1) + suffix)
+                );
+            }
+            return new Java.FloatingPointLiteral(location, s + suffix);
+        }
+
+        throw new IllegalArgumentException("Unsupported constant value type \"" + value.getClass() + "\"");
+    }
+
+    /**
+     * @param s E.g. {@code "123"}, {@code "-7L"}
+     */
+    private static Rvalue
+    integerLiteral(Location location, String s) {
+        return (
+            s.startsWith("-")
+            ? new Java.UnaryOperation(location, "-", new Java.IntegerLiteral(location, s.substring(1)))
+            : new Java.IntegerLiteral(location, s)
+        );
+    }
+
+    /**
+     * @return The <var>s</var>, with escape sequences for backslashes, quotes and control characters
+     */
+    private static String
+    escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"' || c == '\'') {
+                sb.append('\\').append(c);
+            } else
+            if (c < ' ') {
+                sb.append('\\').append((char) ('0' + (c >> 6))).append((char) ('0' + ((c >> 3) & 7)));
+                sb.append((char) ('0' + (c & 7)));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
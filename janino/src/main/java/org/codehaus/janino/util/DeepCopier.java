@@ -32,6 +32,7 @@ import java.util.List;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.IClass;
 import org.codehaus.janino.InternalCompilerException;
 import org.codehaus.janino.Java;
 import org.codehaus.janino.Java.AlternateConstructorInvocation;
@@ -364,20 +365,37 @@ class DeepCopier {
     // ------------------------------ "copy*()" methods on abstract types
 
     // SUPPRESS CHECKSTYLE LineLengthCheck:14
-    public ImportDeclaration     copyImportDeclaration(ImportDeclaration subject)         throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.importCopier));                }
-    public TypeDeclaration       copyTypeDeclaration(TypeDeclaration subject)             throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.typeDeclarationCopier));       }
-    public TypeBodyDeclaration   copyTypeBodyDeclaration(TypeBodyDeclaration subject)     throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.typeBodyDeclarationCopier));   }
-    public FunctionDeclarator    copyFunctionDeclarator(FunctionDeclarator subject)       throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.functionDeclaratorCopier));    }
-    public BlockStatement        copyBlockStatement(BlockStatement subject)               throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.blockStatementCopier));        }
-    public Resource              copyResource(Resource subject)                           throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.resourceCopier));              }
-    public TypeArgument          copyTypeArgument(TypeArgument subject)                   throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.typeArgumentCopier));          }
-    public ConstructorInvocation copyConstructorInvocation(ConstructorInvocation subject) throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.constructorInvocationCopier)); }
-    public ElementValue          copyElementValue(ElementValue subject)                   throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.elementValueCopier));          }
-    public Annotation            copyAnnotation(Annotation subject)                       throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.annotationCopier));            }
-    public Rvalue                copyRvalue(Rvalue subject)                               throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.rvalueCopier));                }
-    public Lvalue                copyLvalue(Lvalue subject)                               throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.lvalueCopier));                }
-    public Type                  copyType(Type subject)                                   throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.typeCopier));                  }
-    public Atom                  copyAtom(Atom subject)                                   throws CompileException { return DeepCopier.assertNotNull(subject.accept(this.atomCopier));                  }
+    public ImportDeclaration     copyImportDeclaration(ImportDeclaration subject)         throws CompileException { return (ImportDeclaration) DeepCopier.assertNotNull(subject.accept(this.importCopier));                    }
+    public TypeDeclaration       copyTypeDeclaration(TypeDeclaration subject)             throws CompileException { return (TypeDeclaration) DeepCopier.assertNotNull(subject.accept(this.typeDeclarationCopier));             }
+    public TypeBodyDeclaration   copyTypeBodyDeclaration(TypeBodyDeclaration subject)     throws CompileException { return (TypeBodyDeclaration) DeepCopier.assertNotNull(subject.accept(this.typeBodyDeclarationCopier));     }
+    public FunctionDeclarator    copyFunctionDeclarator(FunctionDeclarator subject)       throws CompileException { return (FunctionDeclarator) DeepCopier.assertNotNull(subject.accept(this.functionDeclaratorCopier));       }
+    public BlockStatement        copyBlockStatement(BlockStatement subject)               throws CompileException { return (BlockStatement) DeepCopier.assertNotNull(subject.accept(this.blockStatementCopier));               }
+    public Resource              copyResource(Resource subject)                           throws CompileException { return (Resource) DeepCopier.assertNotNull(subject.accept(this.resourceCopier));                           }
+    public TypeArgument          copyTypeArgument(TypeArgument subject)                   throws CompileException { return (TypeArgument) DeepCopier.assertNotNull(subject.accept(this.typeArgumentCopier));                   }
+    public ConstructorInvocation copyConstructorInvocation(ConstructorInvocation subject) throws CompileException { return (ConstructorInvocation) DeepCopier.assertNotNull(subject.accept(this.constructorInvocationCopier)); }
+    public ElementValue          copyElementValue(ElementValue subject)                   throws CompileException { return (ElementValue) DeepCopier.assertNotNull(subject.accept(this.elementValueCopier));                   }
+    public Annotation            copyAnnotation(Annotation subject)                       throws CompileException { return (Annotation) DeepCopier.assertNotNull(subject.accept(this.annotationCopier));                       }
+    public Rvalue                copyRvalue(Rvalue subject)                               throws CompileException { return (Rvalue) DeepCopier.assertNotNull(subject.accept(this.rvalueCopier));                               }
+    public Lvalue                copyLvalue(Lvalue subject)                               throws CompileException { return (Lvalue) DeepCopier.assertNotNull(subject.accept(this.lvalueCopier));                               }
+    public Type                  copyType(Type subject)                                   throws CompileException { return (Type) DeepCopier.assertNotNull(subject.accept(this.typeCopier));                                   }
+    public Atom                  copyAtom(Atom subject)                                   throws CompileException { return (Atom) DeepCopier.assertNotNull(subject.accept(this.atomCopier));                                   }
+
+    /**
+     * Copies the name of a declared or referenced class, method, field, parameter or variable. This default
+     * implementation returns the <var>identifier</var> unchanged; derived classes may override it to rename things.
+     */
+    public String
+    copyIdentifier(String identifier) { return identifier; }
+
+    /**
+     * @return The result of {@link #copyIdentifier(String)} for each of the <var>identifiers</var>
+     */
+    public String[]
+    copyIdentifiers(String[] identifiers) {
+        String[] result = new String[identifiers.length];
+        for (int i = 0; i < identifiers.length; i++) result[i] = this.copyIdentifier(identifiers[i]);
+        return result;
+    }
 
     // SUPPRESS CHECKSTYLE LineLengthCheck:3
     public PackageMemberTypeDeclaration copyPackageMemberTypeDeclaration(PackageMemberTypeDeclaration subject) throws CompileException { return (PackageMemberTypeDeclaration) this.copyTypeDeclaration(subject); }
@@ -420,8 +438,8 @@ class DeepCopier {
     public TypeParameter[]            copyTypeParameters(TypeParameter[] subject)                       throws CompileException { TypeParameter[]            result = new TypeParameter[subject.length];              for (int i = 0; i < subject.length; i++) result[i] = this.copyTypeParameter(subject[i]);                    return result; }
 
     // SUPPRESS CHECKSTYLE LineLengthCheck:2
-    public Annotation[] copyAnnotations(Annotation[] subject) throws CompileException { return this.copyAnnotations(Arrays.asList(subject)).toArray(new Annotation[0]); }
-    public Rvalue[]     copyRvalues(Rvalue[] subject)         throws CompileException { return this.copyRvalues(Arrays.asList(subject)).toArray(new Rvalue[0]);         }
+    public Annotation[] copyAnnotations(Annotation[] subject) throws CompileException { return (Annotation[]) this.copyAnnotations(Arrays.asList(subject)).toArray(new Annotation[0]); }
+    public Rvalue[]     copyRvalues(Rvalue[] subject)         throws CompileException { return (Rvalue[]) this.copyRvalues(Arrays.asList(subject)).toArray(new Rvalue[0]);         }
 
     public FormalParameters
     copyFormalParameters(FunctionDeclarator.FormalParameters subject) throws CompileException {
@@ -472,22 +490,22 @@ class DeepCopier {
 
     public ImportDeclaration
     copySingleTypeImportDeclaration(CompilationUnit.SingleTypeImportDeclaration stid) throws CompileException {
-        return new CompilationUnit.SingleTypeImportDeclaration(stid.getLocation(), stid.identifiers.clone());
+        return new CompilationUnit.SingleTypeImportDeclaration(stid.getLocation(), (String[]) stid.identifiers.clone());
     }
 
     public ImportDeclaration
     copyTypeImportOnDemandDeclaration(CompilationUnit.TypeImportOnDemandDeclaration tiodd) throws CompileException {
-        return new CompilationUnit.TypeImportOnDemandDeclaration(tiodd.getLocation(), tiodd.identifiers.clone());
+        return new CompilationUnit.TypeImportOnDemandDeclaration(tiodd.getLocation(), (String[]) tiodd.identifiers.clone());
     }
 
     public ImportDeclaration
     copySingleStaticImportDeclaration(CompilationUnit.SingleStaticImportDeclaration stid) throws CompileException {
-        return new CompilationUnit.SingleStaticImportDeclaration(stid.getLocation(), stid.identifiers.clone());
+        return new CompilationUnit.SingleStaticImportDeclaration(stid.getLocation(), (String[]) stid.identifiers.clone());
     }
 
     public ImportDeclaration
     copyStaticImportOnDemandDeclaration(CompilationUnit.StaticImportOnDemandDeclaration siodd) throws CompileException {
-        return new CompilationUnit.StaticImportOnDemandDeclaration(siodd.getLocation(), siodd.identifiers.clone());
+        return new CompilationUnit.StaticImportOnDemandDeclaration(siodd.getLocation(), (String[]) siodd.identifiers.clone());
     }
 
     public AnonymousClassDeclaration
@@ -519,7 +537,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             subject.getOptionalTypeParameters(),
             subject.optionalExtendedType,
             subject.implementedTypes
@@ -547,7 +565,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyOptionalTypeParameters(subject.getOptionalTypeParameters()),
             this.copyOptionalType(subject.optionalExtendedType),
             this.copyTypes(subject.implementedTypes)
@@ -574,7 +592,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyOptionalTypeParameters(subject.getOptionalTypeParameters()),
             this.copyTypes(subject.extendedTypes)
         );
@@ -596,7 +614,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyOptionalTypeParameters(subject.getOptionalTypeParameters()),
             this.copyTypes(subject.extendedTypes)
         );
@@ -621,7 +639,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyOptionalTypeParameters(subject.getOptionalTypeParameters()),
             this.copyOptionalType(subject.optionalExtendedType),
             this.copyTypes(subject.implementedTypes)
@@ -652,7 +670,7 @@ class DeepCopier {
             this.copyFormalParameters(subject.formalParameters),
             this.copyTypes(subject.thrownExceptions),
             this.copyOptionalConstructorInvocation(subject.optionalConstructorInvocation),
-            this.copyBlockStatements(DeepCopier.assertNotNull(subject.optionalStatements))
+            this.copyBlockStatements((List<? extends BlockStatement>) DeepCopier.assertNotNull(subject.optionalStatements))
         );
     }
 
@@ -669,7 +687,7 @@ class DeepCopier {
             this.copyModifiers(subject.modifiers),
             this.copyOptionalTypeParameters(subject.optionalTypeParameters),
             this.copyType(subject.type),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyFormalParameters(subject.formalParameters),
             this.copyTypes(subject.thrownExceptions),
             this.copyOptionalElementValue(subject.defaultValue),
@@ -692,7 +710,7 @@ class DeepCopier {
     copyVariableDeclarator(VariableDeclarator subject) throws CompileException {
         return new VariableDeclarator(
             subject.getLocation(),
-            subject.name,
+            this.copyIdentifier(subject.name),
             subject.brackets,
             this.copyOptionalArrayInitializerOrRvalue(subject.optionalInitializer)
         );
@@ -939,7 +957,7 @@ class DeepCopier {
         return new MethodInvocation(
             subject.getLocation(),
             this.copyOptionalAtom(subject.optionalTarget),
-            subject.methodName,
+            this.copyIdentifier(subject.methodName),
             this.copyRvalues(subject.arguments)
         );
     }
@@ -948,7 +966,7 @@ class DeepCopier {
     copySuperclassMethodInvocation(SuperclassMethodInvocation subject) throws CompileException {
         return new SuperclassMethodInvocation(
             subject.getLocation(),
-            subject.methodName,
+            this.copyIdentifier(subject.methodName),
             this.copyRvalues(subject.arguments)
         );
     }
@@ -1040,13 +1058,13 @@ class DeepCopier {
             ? new NewClassInstance(
                 subject.getLocation(),
                 this.copyOptionalRvalue(subject.optionalQualification),
-                this.copyType(DeepCopier.assertNotNull(subject.type)),
+                this.copyType((Type) DeepCopier.assertNotNull(subject.type)),
                 this.copyRvalues(subject.arguments)
             )
             : new NewClassInstance(
                 subject.getLocation(),
                 this.copyOptionalRvalue(subject.optionalQualification),
-                DeepCopier.assertNotNull(subject.iClass),
+                (IClass) DeepCopier.assertNotNull(subject.iClass),
                 this.copyRvalues(subject.arguments)
             )
         );
@@ -1103,7 +1121,7 @@ class DeepCopier {
     copyReferenceType(ReferenceType subject) throws CompileException {
         return new ReferenceType(
             subject.getLocation(),
-            subject.identifiers,
+            this.copyIdentifiers(subject.identifiers),
             this.copyOptionalTypeArguments(subject.optionalTypeArguments)
         );
     }
@@ -1132,7 +1150,10 @@ class DeepCopier {
 
     public Lvalue
     copyAmbiguousName(AmbiguousName subject) throws CompileException {
-        return new AmbiguousName(subject.getLocation(), Arrays.copyOf(subject.identifiers, subject.n));
+        return new AmbiguousName(
+            subject.getLocation(),
+            this.copyIdentifiers((String[]) Arrays.copyOf(subject.identifiers, subject.n))
+        );
     }
 
     public Lvalue
@@ -1151,7 +1172,11 @@ class DeepCopier {
 
     public Lvalue
     copyFieldAccessExpression(FieldAccessExpression subject) throws CompileException {
-        return new FieldAccessExpression(subject.getLocation(), this.copyAtom(subject.lhs), subject.fieldName);
+        return new FieldAccessExpression(
+            subject.getLocation(),
+            this.copyAtom(subject.lhs),
+            this.copyIdentifier(subject.fieldName)
+        );
     }
 
     public Lvalue
@@ -1159,7 +1184,7 @@ class DeepCopier {
         return new SuperclassFieldAccessExpression(
             subject.getLocation(),
             this.copyOptionalType(subject.optionalQualification),
-            subject.fieldName
+            this.copyIdentifier(subject.fieldName)
         );
     }
 
@@ -1206,12 +1231,22 @@ class DeepCopier {
 
     public FunctionDeclarator.FormalParameter
     copyFormalParameter(FunctionDeclarator.FormalParameter subject) throws CompileException {
-        return new FormalParameter(subject.getLocation(), subject.finaL, this.copyType(subject.type), subject.name);
+        return new FormalParameter(
+            subject.getLocation(),
+            subject.finaL,
+            this.copyType(subject.type),
+            this.copyIdentifier(subject.name)
+        );
     }
 
     public CatchParameter
     copyCatchParameter(CatchParameter subject) throws CompileException {
-        return new CatchParameter(subject.getLocation(), subject.finaL, this.copyTypes(subject.types), subject.name);
+        return new CatchParameter(
+            subject.getLocation(),
+            subject.finaL,
+            this.copyTypes(subject.types),
+            this.copyIdentifier(subject.name)
+        );
     }
 
     public EnumConstant
@@ -1221,7 +1256,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.optionalDocComment,
             this.copyAnnotations(subject.annotations),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyOptionalRvalues(subject.optionalArguments)
         );
 
@@ -1239,7 +1274,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), subject.getAnnotations(), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyTypes(subject.implementedTypes)
         );
 
@@ -1269,7 +1304,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), subject.getAnnotations(), false),
-            subject.name,
+            this.copyIdentifier(subject.name),
             this.copyTypes(subject.implementedTypes)
         );
 
@@ -1299,7 +1334,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), subject.getAnnotations(), false),
-            subject.name
+            this.copyIdentifier(subject.name)
         );
 
         for (FieldDeclaration fd : subject.constantDeclarations) {
@@ -1316,7 +1351,7 @@ class DeepCopier {
             subject.getLocation(),
             subject.getDocComment(),
             new Modifiers(subject.getModifierFlags(), this.copyAnnotations(subject.getAnnotations()), false),
-            subject.name
+            this.copyIdentifier(subject.name)
         );
 
         for (FieldDeclaration cd : subject.constantDeclarations) {
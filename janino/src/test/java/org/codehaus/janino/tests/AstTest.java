@@ -34,7 +34,9 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Location;
@@ -72,6 +74,7 @@ import org.codehaus.janino.Parser;
 import org.codehaus.janino.Scanner;
 import org.codehaus.janino.SimpleCompiler;
 import org.codehaus.janino.Unparser;
+import org.codehaus.janino.util.CompilationUnitTemplate;
 import org.codehaus.janino.util.DeepCopier;
 import org.junit.Assert;
 import org.junit.Test;
@@ -517,6 +520,39 @@ class AstTest {
         }
     }
 
+    @Test public void
+    testCompilationUnitTemplate() throws Exception {
+
+        CompilationUnitTemplate t = CompilationUnitTemplate.parse(null, new StringReader(
+            ""
+            + "public class HandMade {\n"
+            + "    public Object calculate() {\n"
+            + "        $T $x = $value;\n"
+            + "        return $T.valueOf($x + $s.length()) + $s;\n"
+            + "    }\n"
+            + "}\n"
+        ));
+
+        Map<String, Object>   constants   = new HashMap<String, Object>();
+        Map<String, String>   identifiers = new HashMap<String, String>();
+        Map<String, Class<?>> types       = new HashMap<String, Class<?>>();
+        identifiers.put("$x", "count");
+
+        constants.put("$value", 7);
+        constants.put("$s", "a\"b\n");
+        types.put("$T", Integer.class);
+        CompilationUnit cu1 = t.instantiate(constants, identifiers, types);
+
+        constants.put("$value", -3L);
+        constants.put("$s", "");
+        types.put("$T", Long.class);
+        CompilationUnit cu2 = t.instantiate(constants, identifiers, types);
+
+        Assert.assertEquals("11a\"b\n", AstTest.compileAndEval(cu1));
+        Assert.assertEquals("-3", AstTest.compileAndEval(cu2));
+        Assert.assertTrue(AstTest.unparse(cu2).contains("java.lang.Long count = -3L;"));
+    }
+
     private static CompilationUnit
     parseCompilationUnit(File f) throws CompileException, IOException {
 
@@ -440,6 +440,79 @@ class CompilerTest {
         s.getClassLoader().loadClass("a.TestLocalVarTable");
     }
 
+    @Test public void
+    testReturnFromNestedTryFinally() throws Exception {
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "public class A {\n"
+            + "    public static String trace = \"\";\n"
+            + "    public static Object meth() {\n"
+            + "        try {\n"
+            + "            try { trace += \"b\"; return \"r\"; } finally { trace += \"f1\"; }\n"
+            + "        } finally {\n"
+            + "            trace += \"f2\";\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n"
+        );
+        Class<?> c = sc.getClassLoader().loadClass("A");
+        Assert.assertEquals("r", c.getMethod("meth").invoke(null));
+        Assert.assertEquals("bf1f2", c.getField("trace").get(null));
+    }
+
+    @Test public void
+    testReturnFromTryWithResources() throws Exception {
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "public class A {\n"
+            + "    public static String trace = \"\";\n"
+            + "    public static Object meth() throws Exception {\n"
+            + "        try (R r1 = new R(\"1\"); R r2 = new R(\"2\")) { trace += \"b\"; return \"r\"; }\n"
+            + "    }\n"
+            + "    public static class R implements AutoCloseable {\n"
+            + "        final String name;\n"
+            + "        R(String name) { this.name = name; }\n"
+            + "        public void close() { trace += \"x\" + this.name; }\n"
+            + "    }\n"
+            + "}\n"
+        );
+        Class<?> c = sc.getClassLoader().loadClass("A");
+        Assert.assertEquals("r", c.getMethod("meth").invoke(null));
+        Assert.assertEquals("bx2x1", c.getField("trace").get(null));
+    }
+
+    @Test public void
+    testTryWithResourcesClosesBeforeCatchAndFinally() throws Exception {
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "public class A {\n"
+            + "    public static String trace = \"\";\n"
+            + "    public static Object meth() throws Exception {\n"
+            + "        try (R r1 = new R(\"1\"); R r2 = new R(\"2\")) {\n"
+            + "            trace += \"b\";\n"
+            + "            if (trace != null) throw new IllegalStateException();\n"
+            + "        } catch (IllegalStateException e) {\n"
+            + "            trace += \"c\";\n"
+            + "        } finally {\n"
+            + "            trace += \"f\";\n"
+            + "        }\n"
+            + "        return \"r\";\n"
+            + "    }\n"
+            + "    public static class R implements AutoCloseable {\n"
+            + "        final String name;\n"
+            + "        R(String name) { this.name = name; }\n"
+            + "        public void close() { trace += \"x\" + this.name; }\n"
+            + "    }\n"
+            + "}\n"
+        );
+        Class<?> c = sc.getClassLoader().loadClass("A");
+        Assert.assertEquals("r", c.getMethod("meth").invoke(null));
+        Assert.assertEquals("bx2x1cf", c.getField("trace").get(null));
+    }
+
     public static List<ClassFile>
     doCompile(
         boolean   debugSource,
@@ -27,12 +27,28 @@
 package org.codehaus.janino.tests;
 
 import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.codehaus.commons.compiler.BatchResult;
+import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.IExpressionEvaluator;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener;
+import org.codehaus.janino.CompilationListener.Counter;
+import org.codehaus.janino.CompilationListener.Phase;
+import org.codehaus.janino.ExpressionBindings;
 import org.codehaus.janino.ExpressionEvaluator;
+import org.codehaus.janino.PooledClassDefiner;
 import org.codehaus.janino.Scanner;
 import org.codehaus.janino.ScriptEvaluator;
 import org.junit.Assert;
@@ -68,6 +84,35 @@ class ExpressionEvaluatorTest {
         Assert.assertEquals(new HashSet<String>(Arrays.asList("b", "d")), parameterNames);
     }
 
+    @Test public void
+    testCookInferringParameters() throws Exception {
+
+        // Without resolver, all parameters are OBJECT.
+        ExpressionEvaluator ee             = new ExpressionEvaluator();
+        String[]            parameterNames = ee.cookInferringParameters(new Scanner(null, new StringReader(
+            "import java.util.*;\n"
+            + "b.toString() + a + Collections.EMPTY_LIST"
+        )), null);
+        Assert.assertArrayEquals(new String[] { "b", "a" }, parameterNames);
+        Assert.assertEquals("x7[]", ee.evaluate(new Object[] { "x", 7 }));
+
+        // The resolver determines the parameter types, and rejects "out", which is a statically imported field.
+        ee             = new ExpressionEvaluator();
+        parameterNames = ee.cookInferringParameters(
+            new Scanner(null, new StringReader("import static java.lang.System.out;\n(out == null ? 1 : a) * b")),
+            new ExpressionEvaluator.ParameterTypeResolver() {
+
+                @Override @Nullable public Class<?>
+                getParameterType(String name) {
+                    return "a".equals(name) ? int.class : "b".equals(name) ? double.class : null;
+                }
+            }
+        );
+        Assert.assertArrayEquals(new String[] { "a", "b" }, parameterNames);
+        Assert.assertArrayEquals(new Class<?>[] { int.class, double.class }, ee.getMethod().getParameterTypes());
+        Assert.assertEquals(1.0, ee.evaluate(new Object[] { 2, 0.5 }));
+    }
+
     @Test public void
     testAnyType1() throws Exception {
 
@@ -103,4 +148,312 @@ class ExpressionEvaluatorTest {
         ee.setStaticMethod(new boolean[] { false, false });
         ee.cook("9*3;7+1".split(";"));
     }
+
+    @Test public void
+    testHiddenClass() throws Exception {
+
+        // The "MethodHandles" API exists only since Java 7.
+        Object lookup;
+        try {
+            lookup = Class.forName("java.lang.invoke.MethodHandles").getMethod("lookup").invoke(null);
+        } catch (ClassNotFoundException cnfe) {
+            return;
+        }
+
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setHiddenClassLookup(lookup);
+        ee.setClassName(ExpressionEvaluatorTest.class.getPackage().getName() + ".Expr");
+        ee.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        ee.setExpressionType(int.class);
+        ee.cook("a * b");
+        Assert.assertEquals(42, ee.evaluate(new Object[] { 6, 7 }));
+
+        // On JVMs that support hidden classes, no class loader must have been created.
+        Method isHidden;
+        try {
+            isHidden = Class.class.getMethod("isHidden");
+        } catch (NoSuchMethodException nsme) {
+            return;
+        }
+        Class<?> c = ee.getMethod().getDeclaringClass();
+        Assert.assertEquals(true, isHidden.invoke(c));
+        Assert.assertSame(ExpressionEvaluatorTest.class.getClassLoader(), c.getClassLoader());
+    }
+
+    @Test public void
+    testPooledClassDefiner() throws Exception {
+
+        PooledClassDefiner pcd = new PooledClassDefiner(ExpressionEvaluatorTest.class.getClassLoader(), 3, 1000000);
+
+        ExpressionEvaluator[] ees = new ExpressionEvaluator[5];
+        for (int i = 0; i < ees.length; i++) {
+            ExpressionEvaluator ee = (ees[i] = new ExpressionEvaluator());
+            ee.setPooledClassDefiner(pcd);
+            ee.setExpressionType(int.class);
+            ee.cook(i + " * 2");
+        }
+
+        Set<String> classNames = new HashSet<String>();
+        for (int i = 0; i < ees.length; i++) {
+            Assert.assertEquals(i * 2, ees[i].evaluate(null));
+            classNames.add(ees[i].getMethod().getDeclaringClass().getName());
+        }
+        Assert.assertEquals("Class names must be unique", ees.length, classNames.size());
+
+        // Three classes per generation.
+        ClassLoader g1 = ees[0].getMethod().getDeclaringClass().getClassLoader();
+        ClassLoader g2 = ees[3].getMethod().getDeclaringClass().getClassLoader();
+        Assert.assertSame(g1, ees[2].getMethod().getDeclaringClass().getClassLoader());
+        Assert.assertNotSame(g1, g2);
+        Assert.assertSame(g2, ees[4].getMethod().getDeclaringClass().getClassLoader());
+
+        // Retiring forces a new generation.
+        pcd.retireCurrentGeneration();
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setPooledClassDefiner(pcd);
+        ee.cook("7");
+        Assert.assertNotSame(g2, ee.getMethod().getDeclaringClass().getClassLoader());
+    }
+
+    @Test public void
+    testCookBatch() throws Exception {
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setExpressionTypes(new Class<?>[] { int.class, String.class, int.class, boolean.class, long.class });
+        String[][]   parameterNames = new String[5][];
+        Class<?>[][] parameterTypes = new Class<?>[5][];
+        Arrays.fill(parameterNames, new String[] { "a", "b" });
+        Arrays.fill(parameterTypes, new Class<?>[] { int.class, int.class });
+        ee.setParameters(parameterNames, parameterTypes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        BatchResult br;
+        try {
+            br = ee.cookBatch(
+                new String[] { "e0", "e1", "e2", "e3", "e4" },
+                new String[] { "a + b", "\"x\" + a", "a +* b", "a < c", "(long) a * b" },
+                executor
+            );
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(2, br.getFailureCount());
+        Assert.assertNotNull(br.getException(2)); // Parse error.
+        Assert.assertNotNull(br.getException(3)); // Compile error: Unknown variable "c".
+        Assert.assertEquals(1, br.getClassCount());
+
+        Object[] args = { 3, 4 };
+        Assert.assertEquals(7, ee.evaluate(0, args));
+        Assert.assertEquals("x3", ee.evaluate(1, args));
+        Assert.assertEquals(12L, ee.evaluate(4, args));
+        Assert.assertNull(br.getException(0));
+    }
+
+    @Test public void
+    testColumnarEvaluation() throws Exception {
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setExpressionType(double.class);
+        ee.cookColumnar("a * 2 + b", new String[] { "a", "b" }, new Class<?>[] { int.class, double.class });
+
+        int[]    a      = { 1, 2, 3, 4 };
+        double[] b      = { 0.5, 0.25, 0.125, 0.0625 };
+        double[] result = new double[4];
+        ee.evaluateColumnar(4, null, new Object[] { a, b }, result);
+        Assert.assertArrayEquals(new double[] { 2.5, 4.25, 6.125, 8.0625 }, result, 0.0);
+
+        // With selection vector.
+        result = new double[4];
+        ee.evaluateColumnar(2, new int[] { 1, 3 }, new Object[] { a, b }, result);
+        Assert.assertArrayEquals(new double[] { 0, 4.25, 0, 8.0625 }, result, 0.0);
+
+        // Reference types and boxing.
+        ee = new ExpressionEvaluator();
+        ee.cookColumnar("s.length() + n", new String[] { "s", "n" }, new Class<?>[] { String.class, long.class });
+        Object[] result2 = new Object[2];
+        ee.evaluateColumnar(2, null, new Object[] { new String[] { "abc", "" }, new long[] { 10, 20 } }, result2);
+        Assert.assertArrayEquals(new Object[] { 13L, 20L }, result2);
+
+        // The configuration is left unchanged, so the evaluator can be cooked again, columnar or not.
+        ee = new ExpressionEvaluator();
+        ee.setExpressionType(int.class);
+        ee.setParameters(new String[] { "x" }, new Class<?>[] { int.class });
+        ee.cookColumnar("a + 1", new String[] { "a" }, new Class<?>[] { int.class });
+        ee.cookColumnar("a + 2", new String[] { "a" }, new Class<?>[] { int.class });
+        int[] result3 = new int[2];
+        ee.evaluateColumnar(2, null, new Object[] { new int[] { 10, 20 } }, result3);
+        Assert.assertArrayEquals(new int[] { 12, 22 }, result3);
+        ee.cook("x * 3");
+        Assert.assertEquals(21, ee.evaluate(new Object[] { 7 }));
+
+        // The names of the generated method's parameters and local variables are not visible in the expression.
+        ee = new ExpressionEvaluator();
+        ee.setExpressionType(int.class);
+        ee.cookColumnar(
+            "row$ + result$ + rowCount$",
+            new String[] { "row$", "result$", "rowCount$" },
+            new Class<?>[] { int.class, int.class, int.class }
+        );
+        ee.evaluateColumnar(1, null, new Object[] { new int[] { 1 }, new int[] { 20 }, new int[] { 300 } }, result3);
+        Assert.assertEquals(321, result3[0]);
+        try {
+            ee.cookColumnar("selection$ == null", new String[0], new Class<?>[0]);
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+            ;
+        }
+    }
+
+    @Test public void
+    testBindings() throws Exception {
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setExpressionType(double.class);
+        ee.cookWithBindings(
+            "flag ? price * quantity : -1",
+            new String[] { "price", "quantity", "flag" },
+            new Class<?>[] { double.class, int.class, boolean.class }
+        );
+
+        int priceSlot = ee.getSlot("price"), quantitySlot = ee.getSlot("quantity"), flagSlot = ee.getSlot("flag");
+
+        ExpressionBindings b = ee.newBindings();
+        b.setDouble(priceSlot, 2.5);
+        b.setInt(quantitySlot, 4);
+        b.setBoolean(flagSlot, true);
+        Assert.assertEquals(10.0, b.evaluateDouble(), 0.0);
+        b.setInt(quantitySlot, 3);
+        Assert.assertEquals(7.5, b.evaluate());
+        b.set(flagSlot, false);
+        Assert.assertEquals(-1.0, b.evaluateDouble(), 0.0);
+
+        // Reference slots, and "set()" with boxed values.
+        ee = new ExpressionEvaluator();
+        ee.setExpressionType(String.class);
+        ee.cookWithBindings("s + n", new String[] { "s", "n" }, new Class<?>[] { String.class, long.class });
+        b = ee.newBindings();
+        b.set(0, "x");
+        b.set(1, 7L);
+        Assert.assertEquals("x7", b.evaluate());
+        b.setLong(1, 8);
+        Assert.assertEquals("x8", b.evaluate());
+
+        try {
+            b.set(2, null);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException ioobe) {
+            ;
+        }
+        try {
+            ee.getSlot("t");
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {
+            ;
+        }
+
+        // The slots are forgotten by the next cook.
+        ee.setExtendedClass(Object.class);
+        ee.setStaticMethod(true);
+        ee.cook("\"y\"");
+        Assert.assertEquals("y", ee.evaluate(new Object[0]));
+        try {
+            ee.getSlot("s");
+            Assert.fail();
+        } catch (IllegalStateException ise) {
+            ;
+        }
+    }
+
+    @Test public void
+    testBindingsRestoreConfiguration() throws Exception {
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setExpressionType(int.class);
+        ee.cookWithBindings("a * 2", new String[] { "a" }, new Class<?>[] { int.class });
+
+        // "cookWithBindings()" must not change the configuration for the following cooks.
+        ee.cook("1 + 2");
+        Method m = ee.getMethod();
+        Assert.assertTrue(Modifier.isStatic(m.getModifiers()));
+        Assert.assertEquals(Object.class, m.getDeclaringClass().getSuperclass());
+        Assert.assertEquals(0, m.getParameterTypes().length);
+        Assert.assertEquals(0, m.getExceptionTypes().length);
+        Assert.assertFalse("evaluate$".equals(m.getName()));
+        Assert.assertEquals(3, ee.evaluate(new Object[0]));
+
+        // Also not a configuration that was set before.
+        ee = new ExpressionEvaluator();
+        ee.setExpressionType(int.class);
+        ee.setMethodName("calc");
+        ee.setParameters(new String[] { "x" }, new Class<?>[] { int.class });
+        ee.setThrownExceptions(new Class<?>[] { Exception.class });
+        ee.cookWithBindings("a * 2", new String[] { "a" }, new Class<?>[] { int.class });
+        ee.cook("x + 2");
+        m = ee.getMethod();
+        Assert.assertEquals("calc", m.getName());
+        Assert.assertEquals(Arrays.asList(Exception.class), Arrays.asList(m.getExceptionTypes()));
+        Assert.assertEquals(5, ee.evaluate(new Object[] { 3 }));
+    }
+
+    @Test public void
+    testCompilationListener() throws Exception {
+        final Map<CompilationListener.Phase, Long>   durations = new EnumMap<Phase, Long>(Phase.class);
+        final Map<CompilationListener.Counter, Long> counters  = new EnumMap<Counter, Long>(Counter.class);
+
+        ExpressionEvaluator ee = new ExpressionEvaluator();
+        ee.setCompilationListener(new CompilationListener() {
+
+            @Override public void
+            phaseCompleted(Phase phase, @Nullable String subject, long durationNanos) {
+                Long d = durations.get(phase);
+                durations.put(phase, (d == null ? 0 : d) + durationNanos);
+            }
+
+            @Override public void
+            counted(Counter counter, @Nullable String subject, long value) {
+                Long c = counters.get(counter);
+                counters.put(counter, (c == null ? 0 : c) + value);
+            }
+        });
+        ee.setParameters(new String[] { "a" }, new Class<?>[] { String.class });
+        ee.cook("a.length() + java.util.Collections.emptyList().size()");
+        Assert.assertEquals(3, ee.evaluate(new Object[] { "abc" }));
+
+        Assert.assertEquals(EnumSet.allOf(Phase.class), durations.keySet());
+        Assert.assertTrue(durations.get(Phase.PARSE) >= durations.get(Phase.SCAN));
+        Assert.assertTrue(durations.get(Phase.CODE_GENERATION) >= durations.get(Phase.FLOW_ANALYSIS));
+
+        Assert.assertEquals(EnumSet.allOf(Counter.class), counters.keySet());
+        Assert.assertTrue(counters.get(Counter.ICLASS_CACHE_MISSES) >= counters.get(Counter.ICLASSES_LOADED));
+        Assert.assertTrue(counters.get(Counter.BYTECODE_SIZE) > 100);
+    }
+
+    @SuppressWarnings("unchecked") @Test public void
+    testFastEvaluatorForFunctionalInterfaces() throws Exception {
+
+        // "Comparator" has an abstract redeclaration of "equals()", and, as of JDK 8, default methods.
+        Comparator<Object> c1 = (Comparator<Object>) new ExpressionEvaluator().createFastEvaluator(
+            "a.hashCode() - b.hashCode()",
+            Comparator.class,
+            new String[] { "a", "b" }
+        );
+        Assert.assertEquals(-2, c1.compare(1, 3));
+
+        // Specific parameter types require a bridge method.
+        Comparator<String> c2 = (Comparator<String>) new ExpressionEvaluator().createFastEvaluator(
+            new Scanner(null, new StringReader("a.length() - b.length()")),
+            Comparator.class,
+            new String[] { "a", "b" },
+            new Class<?>[] { String.class, String.class }
+        );
+        Assert.assertEquals(1, c2.compare("aa", "b"));
+        Assert.assertEquals(0, ((Comparator<Object>) (Comparator<?>) c2).compare("", ""));
+
+        // A primitive-specialized interface, if available.
+        Class<?> ibo;
+        try {
+            ibo = Class.forName("java.util.function.IntBinaryOperator");
+        } catch (ClassNotFoundException cnfe) {
+            return;
+        }
+        Object o = new ExpressionEvaluator().createFastEvaluator("a * b + 1", ibo, new String[] { "a", "b" });
+        Assert.assertEquals(13, ibo.getMethod("applyAsInt", int.class, int.class).invoke(o, 3, 4));
+    }
 }
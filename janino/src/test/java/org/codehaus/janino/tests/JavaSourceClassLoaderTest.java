@@ -0,0 +1,452 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2018 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CachingJavaSourceClassLoader;
+import org.codehaus.janino.JavaSourceClassLoader;
+import org.codehaus.janino.JavaSourceReloader;
+import org.codehaus.janino.util.resource.MapResourceCreator;
+import org.codehaus.janino.util.resource.MapResourceFinder;
+import org.codehaus.janino.util.resource.Resource;
+import org.codehaus.janino.util.resource.ResourceFinder;
+import org.junit.Assert;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the {@link JavaSourceClassLoader}.
+ */
+public
+class JavaSourceClassLoaderTest {
+
+    private static final int CLASS_COUNT  = 20;
+    private static final int THREAD_COUNT = 8;
+
+    @Test public void
+    testConcurrentLoading() throws Exception {
+
+        // Class "pkg.C<n>" references "pkg.C<n+1>", so that compiling one class implicitly compiles others.
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        for (int i = 0; i < JavaSourceClassLoaderTest.CLASS_COUNT; i++) {
+            sourceFinder.addResource("pkg/C" + i + ".java", (
+                ""
+                + "package pkg;\n"
+                + "public class C" + i + " {\n"
+                + "    public static int meth() {\n"
+                + "        return " + (
+                    i == JavaSourceClassLoaderTest.CLASS_COUNT - 1
+                    ? "0"
+                    : "1 + C" + (i + 1) + ".meth()"
+                ) + ";\n"
+                + "    }\n"
+                + "}\n"
+            ));
+        }
+
+        final JavaSourceClassLoader jscl = new JavaSourceClassLoader(
+            ClassLoader.getSystemClassLoader(),
+            sourceFinder,
+            null
+        );
+
+        final Class<?>[][] results = new Class<?>[JavaSourceClassLoaderTest.THREAD_COUNT][];
+        final Throwable[]  ex      = new Throwable[1];
+        List<Thread>       threads = new ArrayList<Thread>();
+        for (int t = 0; t < JavaSourceClassLoaderTest.THREAD_COUNT; t++) {
+            final int threadIndex = t;
+            Thread thread = new Thread() {
+
+                @Override public void
+                run() {
+                    Class<?>[] classes = new Class<?>[JavaSourceClassLoaderTest.CLASS_COUNT];
+                    try {
+                        for (int i = 0; i < classes.length; i++) {
+
+                            // Each thread loads the classes in a different order.
+                            int j = (i + threadIndex * 7) % classes.length;
+                            classes[j] = jscl.loadClass("pkg.C" + j);
+                        }
+                    } catch (Throwable th) { // SUPPRESS CHECKSTYLE IllegalCatch
+                        ex[0] = th;
+                    }
+                    results[threadIndex] = classes;
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        if (ex[0] != null) throw new AssertionError(ex[0]);
+
+        // Verify that all threads got the same classes.
+        for (int t = 1; t < JavaSourceClassLoaderTest.THREAD_COUNT; t++) {
+            Assert.assertArrayEquals(results[0], results[t]);
+        }
+        Assert.assertEquals(
+            JavaSourceClassLoaderTest.CLASS_COUNT - 1,
+            results[0][0].getMethod("meth").invoke(null)
+        );
+    }
+
+    @Test public void
+    testConcurrentParsing() throws Exception {
+
+        // Opening a source blocks until ALL threads have opened theirs, which proves that the threads scan and parse
+        // their compilation units concurrently; serialized parsing would run into the timeout.
+        final CountDownLatch allOpened  = new CountDownLatch(JavaSourceClassLoaderTest.THREAD_COUNT);
+        final boolean[]      concurrent = { true };
+
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        for (int i = 0; i < JavaSourceClassLoaderTest.THREAD_COUNT; i++) {
+            final String fileName = "pkg/Q" + i + ".java";
+            final byte[] source   = (
+                "package pkg; public class Q" + i + " { public static int meth() { return " + i + "; } }"
+            ).getBytes();
+            sourceFinder.addResource(new Resource() {
+
+                @Override public InputStream
+                open() throws IOException {
+                    allOpened.countDown();
+                    try {
+                        if (concurrent[0] && !allOpened.await(10, TimeUnit.SECONDS)) concurrent[0] = false;
+                    } catch (InterruptedException ie) {
+                        throw new IOException(ie.toString());
+                    }
+                    return new ByteArrayInputStream(source);
+                }
+
+                @Override public String getFileName()  { return fileName; }
+                @Override public long   lastModified() { return 0;        }
+            });
+        }
+
+        final JavaSourceClassLoader jscl = new JavaSourceClassLoader(
+            ClassLoader.getSystemClassLoader(),
+            sourceFinder,
+            null
+        );
+
+        final Object[] results = new Object[JavaSourceClassLoaderTest.THREAD_COUNT];
+        List<Thread>   threads = new ArrayList<Thread>();
+        for (int t = 0; t < JavaSourceClassLoaderTest.THREAD_COUNT; t++) {
+            final int threadIndex = t;
+            Thread thread = new Thread() {
+
+                @Override public void
+                run() {
+                    try {
+                        results[threadIndex] = jscl.loadClass("pkg.Q" + threadIndex).getMethod("meth").invoke(null);
+                    } catch (Throwable th) { // SUPPRESS CHECKSTYLE IllegalCatch
+                        results[threadIndex] = th;
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        for (int t = 0; t < JavaSourceClassLoaderTest.THREAD_COUNT; t++) {
+            Assert.assertEquals(t, results[t]);
+        }
+        Assert.assertTrue("Compilation units were not parsed concurrently", concurrent[0]);
+    }
+
+    @Test public void
+    testReload() throws Exception {
+
+        // "A" depends on "B"; "C" is independent.
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/A.java", 1000, (
+            "package pkg; public class A { public static int meth() { return B.X; } }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 1000, (
+            "package pkg; public class B { public static final int X = 1; }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/C.java", 1000, (
+            "package pkg; public class C { public static int meth() { return 7; } }"
+        ));
+
+        JavaSourceReloader reloader = new JavaSourceReloader(ClassLoader.getSystemClassLoader(), sourceFinder, null);
+
+        ClassLoader cl1 = reloader.getClassLoader();
+        Assert.assertEquals(1, cl1.loadClass("pkg.A").getMethod("meth").invoke(null));
+        Assert.assertEquals(7, cl1.loadClass("pkg.C").getMethod("meth").invoke(null));
+
+        // Nothing modified.
+        Assert.assertFalse(reloader.reload());
+        Assert.assertSame(cl1, reloader.getClassLoader());
+
+        // Modify "B"; its constant is inlined into "A", so "A" must be recompiled, too. Replace "C" with uncompilable
+        // code WITHOUT modifying its timestamp, which proves that "C" is NOT recompiled.
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 2000, (
+            "package pkg; public class B { public static final int X = 2; }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/C.java", 1000, "this is not java");
+        Assert.assertTrue(reloader.reload());
+        Assert.assertEquals(1, reloader.getGenerationNumber());
+
+        ClassLoader cl2 = reloader.getClassLoader();
+        Assert.assertNotSame(cl1, cl2);
+        Assert.assertEquals(2, cl2.loadClass("pkg.A").getMethod("meth").invoke(null));
+        Assert.assertEquals(7, cl2.loadClass("pkg.C").getMethod("meth").invoke(null));
+
+        // The previous generation is unaffected.
+        Assert.assertEquals(1, cl1.loadClass("pkg.A").getMethod("meth").invoke(null));
+    }
+
+    @Test public void
+    testReloadAfterCompileError() throws Exception {
+
+        // "A" depends on the broken "B"; "D" depends on the top-level class "D$E" (whose name contains a dollar sign)
+        // that is declared in the same compilation unit.
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/A.java", 1000, (
+            "package pkg; public class A { public static int meth() { return B.X; } }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 1000, "this is not java");
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/D.java", 1000, (
+            "package pkg; public class D { public static int meth() { return D$E.meth(); } } class D$E { static int meth() { return 5; } }" // SUPPRESS CHECKSTYLE LineLength
+        ));
+
+        JavaSourceReloader reloader = new JavaSourceReloader(ClassLoader.getSystemClassLoader(), sourceFinder, null);
+
+        ClassLoader cl1 = reloader.getClassLoader();
+        Assert.assertEquals(5, cl1.loadClass("pkg.D").getMethod("meth").invoke(null));
+        try {
+            cl1.loadClass("pkg.A");
+            Assert.fail();
+        } catch (ClassNotFoundException cnfe) {
+            ;
+        }
+
+        // As long as the broken source is not modified, no new generation must be published.
+        Assert.assertFalse(reloader.reload());
+        Assert.assertFalse(reloader.reload());
+        Assert.assertSame(cl1, reloader.getClassLoader());
+
+        // Fix "B". Replace "D" with uncompilable code WITHOUT modifying its timestamp, which proves that "D" and "D$E"
+        // are carried over and NOT recompiled.
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 2000, (
+            "package pkg; public class B { public static final int X = 3; }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/D.java", 1000, "this is not java");
+        Assert.assertTrue(reloader.reload());
+
+        ClassLoader cl2 = reloader.getClassLoader();
+        Assert.assertEquals(3, cl2.loadClass("pkg.A").getMethod("meth").invoke(null));
+        Assert.assertEquals(5, cl2.loadClass("pkg.D").getMethod("meth").invoke(null));
+        Assert.assertFalse(reloader.reload());
+    }
+
+    @Test public void
+    testPrecompile() throws Exception {
+
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        List<String>      classNames   = new ArrayList<String>();
+        for (int i = 0; i < JavaSourceClassLoaderTest.CLASS_COUNT; i++) {
+            JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/P" + i + ".java", 1000, (
+                "package pkg; public class P" + i + " { public static int meth() { return " + i + "; } }"
+            ));
+            classNames.add("pkg.P" + i);
+        }
+
+        JavaSourceClassLoader jscl = new JavaSourceClassLoader(ClassLoader.getSystemClassLoader(), sourceFinder, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(JavaSourceClassLoaderTest.THREAD_COUNT);
+        try {
+            jscl.precompile(classNames, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Break all sources, which proves that the classes are NOT compiled on "loadClass()".
+        for (int i = 0; i < JavaSourceClassLoaderTest.CLASS_COUNT; i++) {
+            JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/P" + i + ".java", 1000, "this is not java");
+        }
+
+        for (int i = 0; i < JavaSourceClassLoaderTest.CLASS_COUNT; i++) {
+            Assert.assertEquals(i, jscl.loadClass("pkg.P" + i).getMethod("meth").invoke(null));
+        }
+    }
+
+    @Test public void
+    testCaching() throws Exception {
+
+        // "A" depends on "B"; "C" is independent.
+        MapResourceFinder sourceFinder = new MapResourceFinder();
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/A.java", 1000, (
+            "package pkg; public class A { public static int meth() { return B.X; } }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 1000, (
+            "package pkg; public class B { public static final int X = 1; }"
+        ));
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/C.java", 1000, (
+            "package pkg; public class C { public static int meth() { return 7; } Runnable r = new Runnable() { public void run() {} }; }" // SUPPRESS CHECKSTYLE LineLength
+        ));
+
+        MapResourceCreator cache1 = new MapResourceCreator();
+        {
+            ClassLoader cl = new CachingJavaSourceClassLoader(
+                ClassLoader.getSystemClassLoader(),
+                sourceFinder,
+                null,
+                JavaSourceClassLoaderTest.mapResourceFinder(cache1.getMap()),
+                cache1
+            );
+            Assert.assertEquals(1, cl.loadClass("pkg.A").getMethod("meth").invoke(null));
+            Assert.assertEquals(7, cl.loadClass("pkg.C").getMethod("meth").invoke(null));
+        }
+        Assert.assertEquals(
+            new HashSet<String>(Arrays.asList("pkg/A.cache", "pkg/B.cache", "pkg/C.cache")),
+            cache1.getMap().keySet()
+        );
+
+        // Modify "B" WITHOUT modifying its timestamp; since the constant is inlined into "A", the cache entries of
+        // "A" and "B" are stale, but that of "C" is not.
+        JavaSourceClassLoaderTest.addSource(sourceFinder, "pkg/B.java", 1000, (
+            "package pkg; public class B { public static final int X = 2; }"
+        ));
+
+        MapResourceCreator cache2 = new MapResourceCreator();
+        {
+            ClassLoader cl = new CachingJavaSourceClassLoader(
+                ClassLoader.getSystemClassLoader(),
+                sourceFinder,
+                null,
+                JavaSourceClassLoaderTest.mapResourceFinder(cache1.getMap()),
+                cache2
+            );
+            Assert.assertEquals(2, cl.loadClass("pkg.A").getMethod("meth").invoke(null));
+            Assert.assertEquals(7, cl.loadClass("pkg.C").getMethod("meth").invoke(null));
+            cl.loadClass("pkg.C$1");
+        }
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("pkg/A.cache", "pkg/B.cache")), cache2.getMap().keySet());
+    }
+
+    @Test public void
+    testCachingReadsEachSourceOnce() throws Exception {
+
+        // "A" depends on "B".
+        final Map<String, String> sources = new HashMap<String, String>();
+        sources.put("pkg/A.java", "package pkg; public class A { public static int meth() { return B.X; } }");
+        sources.put("pkg/B.java", "package pkg; public class B { public static final int X = 1; }");
+
+        final Map<String, Integer> openCounts   = new HashMap<String, Integer>();
+        ResourceFinder             sourceFinder = new ResourceFinder() {
+
+            @Override @Nullable public Resource
+            findResource(final String resourceName) {
+                final String source = sources.get(resourceName);
+                if (source == null) return null;
+                return new Resource() {
+
+                    @Override public InputStream
+                    open() {
+                        Integer count = openCounts.get(resourceName);
+                        openCounts.put(resourceName, count == null ? 1 : count + 1);
+                        return new ByteArrayInputStream(source.getBytes());
+                    }
+
+                    @Override public String getFileName()  { return resourceName; }
+                    @Override public long   lastModified() { return 0;            }
+                };
+            }
+        };
+
+        // Compile "A" and "B", and write their cache entries.
+        MapResourceCreator cache = new MapResourceCreator();
+        ClassLoader        cl    = new CachingJavaSourceClassLoader(
+            ClassLoader.getSystemClassLoader(),
+            sourceFinder,
+            null,
+            JavaSourceClassLoaderTest.mapResourceFinder(cache.getMap()),
+            cache
+        );
+        Assert.assertEquals(1, cl.loadClass("pkg.A").getMethod("meth").invoke(null));
+        Assert.assertEquals(Integer.valueOf(1), openCounts.get("pkg/A.java"));
+        Assert.assertEquals(Integer.valueOf(1), openCounts.get("pkg/B.java"));
+
+        // Modify "B", which invalidates both cache entries; now each source is hashed (to validate the entry) AND
+        // compiled.
+        sources.put("pkg/B.java", "package pkg; public class B { public static final int X = 2; }");
+        openCounts.clear();
+        cl = new CachingJavaSourceClassLoader(
+            ClassLoader.getSystemClassLoader(),
+            sourceFinder,
+            null,
+            JavaSourceClassLoaderTest.mapResourceFinder(cache.getMap()),
+            cache
+        );
+        Assert.assertEquals(2, cl.loadClass("pkg.A").getMethod("meth").invoke(null));
+        Assert.assertEquals(Integer.valueOf(1), openCounts.get("pkg/A.java"));
+        Assert.assertEquals(Integer.valueOf(1), openCounts.get("pkg/B.java"));
+    }
+
+    private static ResourceFinder
+    mapResourceFinder(final Map<String, byte[]> map) {
+        return new ResourceFinder() {
+
+            @Override @Nullable public Resource
+            findResource(final String resourceName) {
+                final byte[] data = map.get(resourceName);
+                if (data == null) return null;
+                return new Resource() {
+                    @Override public InputStream open()         { return new ByteArrayInputStream(data); }
+                    @Override public String      getFileName()  { return resourceName;                   }
+                    @Override public long        lastModified() { return 0;                              }
+                };
+            }
+        };
+    }
+
+    private static void
+    addSource(MapResourceFinder sourceFinder, final String fileName, final long lastModified, final String source) {
+        sourceFinder.addResource(new Resource() {
+            @Override public InputStream open()         { return new ByteArrayInputStream(source.getBytes()); }
+            @Override public String      getFileName()  { return fileName;                                    }
+            @Override public long        lastModified() { return lastModified;                                }
+        });
+    }
+}
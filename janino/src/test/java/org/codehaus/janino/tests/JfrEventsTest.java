@@ -0,0 +1,154 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2010 Arno Unkrig. All rights reserved.
+ * Copyright (c) 2015-2016 TIBCO Software Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Tests the <em>Java Flight Recorder</em> events that JANINO emits. All JFR classes are accessed reflectively, so
+ * that this test compiles and is skipped on JVMs without JFR.
+ */
+public
+class JfrEventsTest {
+
+    private static final String[] EVENT_NAMES = {
+        "org.codehaus.janino.Cook",
+        "org.codehaus.janino.IClassLoad",
+        "org.codehaus.janino.MethodGenerated",
+        "org.codehaus.janino.ClassDefinition",
+    };
+
+    @Test public void
+    testEvents() throws Exception {
+
+        Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException cnfe) {
+            recordingClass = null;
+        }
+        Assume.assumeTrue("JFR is not available", recordingClass != null);
+        assert recordingClass != null;
+
+        String source = "public class A { public int meth(String s) { return s.length(); } }";
+
+        // Record the events of one "cook()" and the loading of the generated class.
+        Object recording = recordingClass.newInstance();
+        for (String eventName : JfrEventsTest.EVENT_NAMES) {
+            recordingClass.getMethod("enable", String.class).invoke(recording, eventName);
+        }
+        recordingClass.getMethod("start").invoke(recording);
+        try {
+            SimpleCompiler sc = new SimpleCompiler();
+            sc.cook(source);
+            sc.getClassLoader().loadClass("A");
+        } finally {
+            recordingClass.getMethod("stop").invoke(recording);
+        }
+
+        List<Object> events;
+        File         file = File.createTempFile("janino", ".jfr");
+        try {
+            Object path = File.class.getMethod("toPath").invoke(file);
+            recordingClass.getMethod("dump", Class.forName("java.nio.file.Path")).invoke(recording, path);
+            events = JfrEventsTest.readAllEvents(path);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            file.delete();
+        }
+
+        Object cook = JfrEventsTest.findEvent(events, "org.codehaus.janino.Cook", "className", "A");
+        Assert.assertEquals((long) source.length(), JfrEventsTest.getValue(cook, "sourceSize"));
+
+        Object iClassLoad = JfrEventsTest.findEvent(
+            events,
+            "org.codehaus.janino.IClassLoad",
+            "descriptor",
+            "Ljava/lang/String;"
+        );
+        Assert.assertEquals(true, JfrEventsTest.getValue(iClassLoad, "found"));
+
+        Object methodGenerated = JfrEventsTest.findEvent(
+            events,
+            "org.codehaus.janino.MethodGenerated",
+            "method",
+            "meth(String s)"
+        );
+        Assert.assertEquals("A", JfrEventsTest.getValue(methodGenerated, "className"));
+        Assert.assertTrue((Long) JfrEventsTest.getValue(methodGenerated, "codeSize") > 0);
+        Assert.assertEquals(1L, JfrEventsTest.getValue(methodGenerated, "maxStack"));
+        Assert.assertEquals(2L, JfrEventsTest.getValue(methodGenerated, "maxLocals"));
+
+        Object classDefinition = JfrEventsTest.findEvent(
+            events,
+            "org.codehaus.janino.ClassDefinition",
+            "className",
+            "A"
+        );
+        Assert.assertTrue((Long) JfrEventsTest.getValue(classDefinition, "bytecodeSize") > 0);
+    }
+
+    /**
+     * @return The first of the <var>events</var> with the given name and field value
+     */
+    private static Object
+    findEvent(List<Object> events, String eventName, String fieldName, Object fieldValue) throws Exception {
+        for (Object event : events) {
+            Object eventType = event.getClass().getMethod("getEventType").invoke(event);
+            if (
+                eventName.equals(eventType.getClass().getMethod("getName").invoke(eventType))
+                && fieldValue.equals(JfrEventsTest.getValue(event, fieldName))
+            ) return event;
+        }
+        throw new AssertionError("No \"" + eventName + "\" event with " + fieldName + "=\"" + fieldValue + "\"");
+    }
+
+    private static Object
+    getValue(Object recordedEvent, String fieldName) throws Exception {
+        Method getValue = Class.forName("jdk.jfr.consumer.RecordedObject").getMethod("getValue", String.class);
+        return getValue.invoke(recordedEvent, fieldName);
+    }
+
+    private static List<Object>
+    readAllEvents(Object path) throws Exception {
+        Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod(
+            "readAllEvents",
+            Class.forName("java.nio.file.Path")
+        );
+        return new ArrayList<Object>((List<?>) readAllEvents.invoke(null, path));
+    }
+}
@@ -26,6 +26,7 @@
 
 package org.codehaus.janino.tests;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -35,6 +36,7 @@ import java.util.logging.Logger;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.janino.JaninoOption;
+import org.codehaus.janino.PurityPolicy;
 import org.codehaus.janino.ScriptEvaluator;
 import org.codehaus.janino.SimpleCompiler;
 import org.codehaus.janino.UnitCompiler;
@@ -93,6 +95,273 @@ class OptionsTest {
         OptionsTest.assertScriptExecutable(script, JaninoOption.EXPRESSIONS_IN_TRY_WITH_RESOURCES_ALLOWED);
     }
 
+    /**
+     * Tests {@link JaninoOption#INLINE_METHODS}.
+     */
+    @Test public void
+    testInlineMethods() throws Exception {
+        String cu = (
+            ""
+            + "public class A {\n"
+            + "    private int count;\n"
+            + "    public int run(int n) {\n"
+            + "        for (int i = 0; i < n; i++) inc(i);\n"
+            + "        return twice(this.count) + max3(1, n, 2);\n"
+            + "    }\n"
+            + "    private void inc(int d) { count += d; }\n"
+            + "    private static int twice(int x) { return x * 2; }\n"
+            + "    static int max3(int a, int b, int c) { return Math.max(a, Math.max(b, c)); }\n"
+            + "    public static int sqNext(int[] c) { return sq(++c[0]); }\n"
+            + "    private static int sq(int x) { return x * x; }\n"
+            + "    public static int divide(int a, int b) { return quotient(a, b); }\n"
+            + "    private static int quotient(int a, int b) { return a / b; }\n"
+            + "    public static int fac(int n) { return n <= 1 ? 1 : n * fac(n - 1); }\n"
+            + "}\n"
+        );
+
+        for (boolean inline : new boolean[] { false, true }) {
+            SimpleCompiler sc = new SimpleCompiler();
+            if (inline) sc.options(EnumSet.of(JaninoOption.INLINE_METHODS));
+            sc.cook(cu);
+            Class<?> c = sc.getClassLoader().loadClass("A");
+
+            Assert.assertEquals(25, c.getMethod("run", int.class).invoke(c.newInstance(), 5));
+            Assert.assertEquals(120, c.getMethod("fac", int.class).invoke(null, 5));
+
+            // The argument must be evaluated exactly once.
+            int[] counter = { 2 };
+            Assert.assertEquals(9, c.getMethod("sqNext", int[].class).invoke(null, counter));
+            Assert.assertEquals(3, counter[0]);
+
+            // The exception is thrown by the inlined code, i.e. by the invoking method.
+            try {
+                c.getMethod("divide", int.class, int.class).invoke(null, 7, 0);
+                Assert.fail();
+            } catch (InvocationTargetException ite) {
+                Assert.assertTrue(ite.getCause() instanceof ArithmeticException);
+                Assert.assertEquals(
+                    inline ? "divide" : "quotient",
+                    ite.getCause().getStackTrace()[0].getMethodName()
+                );
+            }
+        }
+    }
+
+    /**
+     * Tests {@link JaninoOption#ELIMINATE_COMMON_SUBEXPRESSIONS}.
+     */
+    @Test public void
+    testEliminateCommonSubexpressions() throws Exception {
+        String cu = (
+            ""
+            + "public class A {\n"
+            + "    public static int calls;\n"
+            + "    public int[] values = { 3, 4 };\n"
+            + "    public A next;\n"
+            + "    public int get() { calls++; return values[0]; }\n"
+            + "    public static double norm(A a) {\n"
+            + "        return Math.sqrt(a.next.get() * a.next.get() + a.values[1] * a.values[1]);\n"
+            + "    }\n"
+            + "    public static void store(A a) { a.next.values[1] = a.get() + a.get() + a.get(); }\n"
+            + "    public static int conditional(A a, boolean b) {\n"
+            + "        int x = b && a.get() > 0 ? a.get() + a.get() : a.get();\n"
+            + "        return x;\n"
+            + "    }\n"
+            + "    public static int sideEffect(A a) { return a.get() + a.values[0]++ + a.get(); }\n"
+            + "}\n"
+        );
+
+        for (boolean eliminate : new boolean[] { false, true }) {
+            SimpleCompiler sc = new SimpleCompiler();
+            if (eliminate) sc.options(EnumSet.of(JaninoOption.ELIMINATE_COMMON_SUBEXPRESSIONS));
+            sc.setPurityPolicy(new PurityPolicy() {
+
+                @Override public boolean
+                isPure(String className, String methodName) {
+                    return "A".equals(className) && "get".equals(methodName);
+                }
+            });
+            sc.cook(cu);
+            Class<?> c = sc.getClassLoader().loadClass("A");
+
+            Object a = c.newInstance();
+            c.getField("next").set(a, c.newInstance());
+            Field calls = c.getField("calls");
+
+            Assert.assertEquals(5.0, c.getMethod("norm", c).invoke(null, a));
+            Assert.assertEquals(eliminate ? 1 : 2, calls.getInt(null));
+
+            calls.setInt(null, 0);
+            c.getMethod("store", c).invoke(null, a);
+            Assert.assertEquals(9, ((int[]) c.getField("values").get(c.getField("next").get(a)))[1]);
+            Assert.assertEquals(eliminate ? 1 : 3, calls.getInt(null));
+
+            // Occurrences that are evaluated conditionally must not be reused.
+            calls.setInt(null, 0);
+            Assert.assertEquals(6, c.getMethod("conditional", c, boolean.class).invoke(null, a, true));
+            Assert.assertEquals(3, calls.getInt(null));
+            Assert.assertEquals(3, c.getMethod("conditional", c, boolean.class).invoke(null, a, false));
+
+            // Side effects prevent the elimination.
+            calls.setInt(null, 0);
+            Assert.assertEquals(10, c.getMethod("sideEffect", c).invoke(null, a));
+            Assert.assertEquals(2, calls.getInt(null));
+        }
+    }
+
+    /**
+     * Tests {@link JaninoOption#ALGEBRAIC_SIMPLIFICATION}.
+     */
+    @Test public void
+    testAlgebraicSimplification() throws Exception {
+        String cu = (
+            ""
+            + "public class B {\n"
+            + "    public static int    i(int x)       { return x * 1 + 0 + x * 8 + 4 * x - 0; }\n"
+            + "    public static long   l(long x)      { return 0 + x * 16 + x / 1; }\n"
+            + "    public static double d(double x)    { return (x - 0) * 1.0 / 1; }\n"
+            + "    public static double p(double x)    { return x + 0; }\n"
+            + "    public static double sq(double x)   { return Math.pow(x, 2); }\n"
+            + "    public static int    b(byte x)      { return x * 1; }\n"
+            + "    public static String s(String x)    { return x + 0; }\n"
+            + "}\n"
+        );
+
+        for (boolean simplify : new boolean[] { false, true }) {
+            SimpleCompiler sc = new SimpleCompiler();
+            if (simplify) sc.options(EnumSet.of(JaninoOption.ALGEBRAIC_SIMPLIFICATION));
+            sc.cook(cu);
+            Class<?> c = sc.getClassLoader().loadClass("B");
+
+            for (int x : new int[] { 3, -5, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+                Assert.assertEquals(13 * x, c.getMethod("i", int.class).invoke(null, x));
+            }
+            for (long x : new long[] { 3, Long.MIN_VALUE + 3 }) {
+                Assert.assertEquals(17 * x, c.getMethod("l", long.class).invoke(null, x));
+            }
+            Assert.assertEquals(-0.0, c.getMethod("d", double.class).invoke(null, -0.0));
+            Assert.assertEquals(Double.NaN, c.getMethod("d", double.class).invoke(null, Double.NaN));
+            Assert.assertEquals(0.0, c.getMethod("p", double.class).invoke(null, -0.0));
+            for (double x : new double[] { 3, -0.0, 1.1, 1e-160, 1e200, Double.NaN }) {
+                Assert.assertEquals(Math.pow(x, 2), c.getMethod("sq", double.class).invoke(null, x));
+            }
+            Assert.assertEquals(-3, c.getMethod("b", byte.class).invoke(null, (byte) -3));
+            Assert.assertEquals("a0", c.getMethod("s", String.class).invoke(null, "a"));
+        }
+    }
+
+    @Test public void
+    testInlineFinallyClauses() throws Exception {
+        String cu = (
+            ""
+            + "public class B {\n"
+            + "    public static String trace;\n"
+            + "    static void t(String s) { trace += s; }\n"
+            + "    public static Object normal() { try { t(\"b\"); } finally { t(\"f\"); } return 1; }\n"
+            + "    public static Object ret() { int x = 1; try { t(\"b\"); return x; } finally { x = 7; t(\"f\"); } }\n"
+            + "    public static Object loop() {\n"
+            + "        for (int i = 0;; i++) {\n"
+            + "            try {\n"
+            + "                if (i == 1) continue;\n"
+            + "                if (i == 3) break;\n"
+            + "                t(\"b\" + i);\n"
+            + "            } finally {\n"
+            + "                t(\"f\" + i);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return 2;\n"
+            + "    }\n"
+            + "    public static Object thrown() {\n"
+            + "        try {\n"
+            + "            try { throw new IllegalStateException(\"x\"); } finally { t(\"f\"); }\n"
+            + "        } catch (IllegalStateException e) {\n"
+            + "            t(\"c\" + e.getMessage());\n"
+            + "        }\n"
+            + "        return 3;\n"
+            + "    }\n"
+            + "    public static Object caught() {\n"
+            + "        try {\n"
+            + "            t(\"b\");\n"
+            + "            throw new IllegalStateException();\n"
+            + "        } catch (IllegalStateException e) {\n"
+            + "            t(\"c\");\n"
+            + "            return 4;\n"
+            + "        } finally {\n"
+            + "            t(\"f\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "    public static Object nested() {\n"
+            + "        try { try { return 5; } finally { t(\"f1\"); } } finally { t(\"f2\"); }\n"
+            + "    }\n"
+            + "    public static Object overridden() {\n"
+            + "        while (true) { try { return 6; } finally { break; } }\n"
+            + "        return 7;\n"
+            + "    }\n"
+            + "    public static Object finallyThrows() {\n"
+            + "        try {\n"
+            + "            try {\n"
+            + "                t(\"b\");\n"
+            + "            } catch (IllegalStateException e) {\n"
+            + "                t(\"c\");\n"
+            + "            } finally {\n"
+            + "                t(\"f\");\n"
+            + "                if (trace != null) throw new IllegalStateException(\"x\");\n"
+            + "            }\n"
+            + "        } catch (IllegalStateException e) {\n"
+            + "            t(\"o\" + e.getMessage());\n"
+            + "        }\n"
+            + "        return 8;\n"
+            + "    }\n"
+            + "    public static Object resources() throws Exception {\n"
+            + "        try (R r1 = new R(\"1\"); R r2 = new R(\"2\")) { t(\"b\"); return 9; } finally { t(\"f\"); }\n"
+            + "    }\n"
+            + "    public static Object resourcesCaught() throws Exception {\n"
+            + "        try (R r1 = new R(\"1\"); R r2 = new R(\"2\")) {\n"
+            + "            t(\"b\");\n"
+            + "            if (trace != null) throw new IllegalStateException();\n"
+            + "        } catch (IllegalStateException e) {\n"
+            + "            t(\"c\");\n"
+            + "        } finally {\n"
+            + "            t(\"f\");\n"
+            + "        }\n"
+            + "        return 10;\n"
+            + "    }\n"
+            + "    public static class R implements AutoCloseable {\n"
+            + "        final String name;\n"
+            + "        R(String name) { this.name = name; }\n"
+            + "        public void close() { t(\"x\" + this.name); }\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        String[][] expected = {
+            { "normal",          "1",  "bf"             },
+            { "ret",             "1",  "bf"             },
+            { "loop",            "2",  "b0f0f1b2f2f3"   },
+            { "thrown",          "3",  "fcx"            },
+            { "caught",          "4",  "bcf"            },
+            { "nested",          "5",  "f1f2"           },
+            { "overridden",      "7",  ""               },
+            { "finallyThrows",   "8",  "bfox"           },
+            { "resources",       "9",  "bx2x1f"         },
+            { "resourcesCaught", "10", "bx2x1cf"        },
+        };
+
+        for (boolean inline : new boolean[] { false, true }) {
+            SimpleCompiler sc = new SimpleCompiler();
+            if (inline) sc.options(EnumSet.of(JaninoOption.INLINE_FINALLY_CLAUSES));
+            sc.cook(cu);
+            Class<?> c     = sc.getClassLoader().loadClass("B");
+            Field    trace = c.getField("trace");
+
+            for (String[] e : expected) {
+                trace.set(null, "");
+                Assert.assertEquals(e[0], e[1], String.valueOf(c.getMethod(e[0]).invoke(null)));
+                Assert.assertEquals(e[0], e[2], trace.get(null));
+            }
+        }
+    }
+
     private static void
     assertScriptExecutable(String script, JaninoOption... options)
     throws CompileException, InvocationTargetException {
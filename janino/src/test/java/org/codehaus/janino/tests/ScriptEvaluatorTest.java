@@ -26,12 +26,36 @@
 
 package org.codehaus.janino.tests;
 
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
+import org.codehaus.commons.compiler.BatchResult;
 import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.Cookable;
+import org.codehaus.commons.compiler.ErrorHandler;
 import org.codehaus.commons.compiler.IScriptEvaluator;
+import org.codehaus.commons.compiler.WarningHandler;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.AccessPolicy;
+import org.codehaus.janino.CompilationListener;
+import org.codehaus.janino.CompilationListener.Counter;
+import org.codehaus.janino.CompilationListener.Phase;
+import org.codehaus.janino.CompileService;
+import org.codehaus.janino.ExecutionBudget;
 import org.codehaus.janino.JaninoOption;
+import org.codehaus.janino.MethodProfile;
+import org.codehaus.janino.PatternAccessPolicy;
 import org.codehaus.janino.ScriptEvaluator;
+import org.codehaus.janino.SimpleCompiler;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -107,4 +131,607 @@ class ScriptEvaluatorTest {
             Assert.assertTrue(ce.getMessage().contains("Private member cannot be accessed"));
         }
     }
+
+    @Test public void
+    testTieredExecution() throws Exception {
+        List<Runnable> scheduled = new ArrayList<Runnable>();
+
+        ScriptEvaluator se = ScriptEvaluatorTest.tieredScriptEvaluator(3, scheduled);
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        se.cook("int c = a * b; if (c > 10) return c - 10; return c;");
+
+        // Interpreted.
+        Assert.assertEquals(2,  se.evaluate(new Object[] { 3, 4 }));
+        Assert.assertEquals(6,  se.evaluate(new Object[] { 2, 3 }));
+        Assert.assertEquals(0,  scheduled.size());
+        Assert.assertEquals(10, se.evaluate(new Object[] { 5, 4 }));
+        Assert.assertEquals(1,  scheduled.size());
+        Assert.assertEquals(7,  se.evaluate(new Object[] { 1, 7 }));
+        Assert.assertEquals(1,  scheduled.size());
+
+        // Compiled.
+        scheduled.get(0).run();
+        Assert.assertEquals(2, se.evaluate(new Object[] { 3, 4 }));
+        Assert.assertEquals(2, se.getMethod().invoke(null, 3, 4));
+
+        // A script with a loop cannot be interpreted, and is thus compiled immediately.
+        scheduled.clear();
+        se = ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled);
+        se.setReturnType(int.class);
+        se.cook("int x = 0; for (int i = 0; i < 3; i++) x += i; return x;");
+        Assert.assertEquals(3, se.evaluate(new Object[0]));
+        Assert.assertEquals(0, scheduled.size());
+
+        // Parse and name resolution errors are reported by "cook()", as usual.
+        try {
+            ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled).cook("return 1 +;");
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+            ;
+        }
+        try {
+            ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled).cook("return x;");
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+            ;
+        }
+
+        // "cook()" does not generate code; that is deferred, together with the definition of the class.
+        final List<Phase> phases = new ArrayList<Phase>();
+        scheduled.clear();
+        se = ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled);
+        se.setCompilationListener(new CompilationListener() {
+
+            @Override public void
+            phaseCompleted(Phase phase, @Nullable String subject, long durationNanos) { phases.add(phase); }
+
+            @Override public void
+            counted(Counter counter, @Nullable String subject, long value) {}
+        });
+        se.setReturnType(int.class);
+        se.cook("return 7;");
+        Assert.assertFalse(phases.contains(Phase.CODE_GENERATION));
+        Assert.assertFalse(phases.contains(Phase.CLASS_DEFINITION));
+        Assert.assertEquals(7, se.evaluate(new Object[0]));
+        Assert.assertEquals(1, scheduled.size());
+
+        scheduled.get(0).run();
+        Assert.assertTrue(phases.contains(Phase.CODE_GENERATION));
+        Assert.assertTrue(phases.contains(Phase.CLASS_DEFINITION));
+        Assert.assertEquals(7, se.evaluate(new Object[0]));
+        Assert.assertNull(se.getDeferredCompileException());
+    }
+
+    @Test public void
+    testTieredExecutionDeferredCompileError() throws Exception {
+        List<Runnable> scheduled = new ArrayList<Runnable>();
+
+        // A script that the interpreter accepts, but whose method grows beyond 64 KB.
+        StringBuilder sb = new StringBuilder("int x = 0;");
+        for (int i = 0; i < 17000; i++) sb.append(" x = x + a;");
+        sb.append(" return x;");
+
+        ScriptEvaluator se = ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled);
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+        se.cook(sb.toString());
+        Assert.assertEquals(17000, se.evaluate(new Object[] { 1 }));
+        Assert.assertNull(se.getDeferredCompileException());
+
+        // The compiler's error is reported through "getDeferredCompileException()", and the script continues to be
+        // interpreted.
+        scheduled.get(0).run();
+        Assert.assertNotNull(se.getDeferredCompileException());
+        Assert.assertEquals(34000, se.evaluate(new Object[] { 2 }));
+        try {
+            se.getMethod();
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ise) {
+            Assert.assertSame(se.getDeferredCompileException(), ise.getCause());
+        }
+    }
+
+    @Test public void
+    testTieredExecutionEquivalence() throws Exception {
+
+        String[]   parameterNames = { "i", "l", "d", "s", "boxed", "nul", "c", "b", "z", "arr" };
+        Class<?>[] parameterTypes = {
+            int.class, long.class, double.class, String.class, Integer.class, Integer.class, char.class, byte.class,
+            boolean.class, int[].class,
+        };
+        Object[] arguments = { 7, -3L, 2.5, "abc", 42, null, 'x', (byte) -2, true, new int[] { 1, 2, 3 } };
+
+        String[] scripts = {
+            "return i + l;",
+            "return i / 2;",
+            "return i % -3;",
+            "return l * d;",
+            "return -i;",
+            "return ~b;",
+            "return !z;",
+            "return b + c;",
+            "return (char) (c + 1);",
+            "return s + i;",
+            "return s + c;",
+            "return i + c + s;",
+            "return s + null;",
+            "return \"a\" + 1 + 2;",
+            "return 1 + 2 * 3;",
+            "return boxed + i;",
+            "return boxed == 42;",
+            "return boxed.intValue();",
+            "return s.length() + i;",
+            "return s.substring(1);",
+            "return s.charAt(0);",
+            "return Math.max(i, l);",
+            "return Math.max(i, 3);",
+            "return Math.abs(d - 10);",
+            "return Integer.toString(i);",
+            "return String.valueOf(c);",
+            "return z ? i : d;",
+            "return z ? s : null;",
+            "return z && i > 3;",
+            "return z || 1 / 0 == 0;",
+            "return i << 33;",
+            "return l >>> 1;",
+            "return i >> 1;",
+            "return i & 3 | 8 ^ 1;",
+            "return arr[1] + arr.length;",
+            "return (byte) 300 + b;",
+            "return (int) d;",
+            "return (long) d * 3;",
+            "return s instanceof Comparable;",
+            "return s == \"abc\";",
+            "return Integer.MAX_VALUE + 1;",
+            "return i == 7.0;",
+            "return d > i;",
+            "return java.lang.Math.PI * 2;",
+            "return s.equals(\"abc\") ? 1 : 2;",
+            "int x = i * 2; if (x > 10) return x; else return -x;",
+            "long sum = 0; sum += i; sum += l; return sum;",
+            "String r = s; r += c; r += i; return r;",
+            "int j = i; j++; ++j; return j-- + --j;",
+            "byte y = 10; y *= 30; return y;",
+            "{ double e = d; e /= 0; return e; }",
+            "return i / 0;",
+            "return arr[5];",
+            "return nul + 1;",
+            "return s.charAt(10);",
+            "return (String) (Object) boxed;",
+        };
+
+        for (String script : scripts) {
+            List<Runnable> scheduled = new ArrayList<Runnable>();
+
+            ScriptEvaluator interpreted = ScriptEvaluatorTest.tieredScriptEvaluator(1, scheduled);
+            interpreted.setReturnType(Object.class);
+            interpreted.setParameters(parameterNames, parameterTypes);
+            interpreted.cook(script);
+
+            ScriptEvaluator compiled = new ScriptEvaluator();
+            compiled.setReturnType(Object.class);
+            compiled.setParameters(parameterNames, parameterTypes);
+            compiled.cook(script);
+
+            Object expected = ScriptEvaluatorTest.evaluate(compiled, arguments);
+            Object actual   = ScriptEvaluatorTest.evaluate(interpreted, arguments);
+            Assert.assertEquals(script, 1, scheduled.size());
+            Assert.assertEquals(script, expected, actual);
+        }
+    }
+
+    @Test public void
+    testCompileService() throws Exception {
+
+        CompileService cs = new CompileService(1, 10);
+        try {
+
+            // Deadline expires while the compilation waits for the (only) worker thread.
+            BlockingCookable         blocker = new BlockingCookable();
+            Future<BlockingCookable> f0      = cs.submit(blocker, "");
+            Future<ScriptEvaluator>  f1      = cs.submit(new ScriptEvaluator(), null, "return;", 0, 1);
+            blocker.started.await();
+            Thread.sleep(10);
+            blocker.release.countDown();
+            Assert.assertSame(blocker, f0.get());
+            try {
+                f1.get();
+                Assert.fail("ExecutionException expected");
+            } catch (ExecutionException ee) {
+                Assert.assertTrue(ee.getCause() instanceof CompileException);
+                Assert.assertTrue(ee.getCause().getMessage().contains("deadline"));
+            }
+
+            // Cancelled while waiting.
+            blocker = new BlockingCookable();
+            f0      = cs.submit(blocker, "");
+            Future<ScriptEvaluator> f2 = cs.submit(new ScriptEvaluator(), "return;");
+            blocker.started.await();
+            Assert.assertTrue(f2.cancel(false));
+            blocker.release.countDown();
+            f0.get();
+            try {
+                f2.get();
+                Assert.fail("CancellationException expected");
+            } catch (CancellationException ce) {
+                ;
+            }
+
+            // Cancelled while running, without interruption.
+            blocker = new BlockingCookable();
+            f0      = cs.submit(blocker, "");
+            blocker.started.await();
+            Assert.assertTrue(f0.cancel(false));
+            blocker.release.countDown();
+            blocker.completed.await();
+            Assert.assertFalse(blocker.interrupted);
+
+            // Cancelled while running, with interruption.
+            blocker = new BlockingCookable();
+            f0      = cs.submit(blocker, "");
+            blocker.started.await();
+            Assert.assertTrue(f0.cancel(true));
+            blocker.completed.await();
+            Assert.assertTrue(blocker.interrupted);
+
+            // Completes.
+            ScriptEvaluator se = new ScriptEvaluator();
+            se.setReturnType(int.class);
+            Assert.assertSame(se, cs.submit(se, "return 7;").get());
+            Assert.assertEquals(7, se.evaluate(new Object[0]));
+        } finally {
+            cs.shutdown();
+        }
+    }
+
+    @Test public void
+    testAccessPolicy() throws Exception {
+        AccessPolicy policy = new PatternAccessPolicy("java.lang.*-java.lang.System.exit-java.lang.Runtime*+java.util.*");
+
+        // Allowed: types and members of "java.lang" and "java.util", and the script's own local method.
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setAccessPolicy(policy);
+        se.setReturnType(String.class);
+        se.cook(
+            ""
+            + "java.util.List<String> l = new java.util.ArrayList<String>();\n"
+            + "l.add(String.valueOf(Math.max(1, 2)));\n"
+            + "return twice(l.toString());\n"
+            + "static String twice(String s) { return s + s; }\n"
+        );
+        Assert.assertEquals("[2][2]", se.evaluate(new Object[0]));
+
+        // Denied.
+        String[] violations = {
+            "System.exit(0);",
+            "Runtime.getRuntime();",
+            "java.io.File f = null;",
+            "new java.io.File(\"x\");",
+            "Object o = java.io.File.separator;",
+            "Object o = (java.io.File) null;",
+        };
+        for (String script : violations) {
+            se = new ScriptEvaluator();
+            se.setAccessPolicy(policy);
+            try {
+                se.cook(script);
+                Assert.fail(script);
+            } catch (CompileException ce) {
+                Assert.assertTrue(ce.getMessage(), ce.getMessage().contains("is not allowed"));
+            }
+        }
+    }
+
+    @Test public void
+    testAccessPolicyLocalTypesAndConstructors() throws Exception {
+
+        // Types declared in the compilation unit, including nested, local and anonymous ones, are always allowed.
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.setAccessPolicy(new PatternAccessPolicy("java.lang.*"));
+        sc.cook("public class A { B b; B[][] bs; A.C c; class C {} } class B {}");
+
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setAccessPolicy(new PatternAccessPolicy("java.lang.*"));
+        se.cook("class T {} new T(); new Object() {}; Runnable r = new Runnable() { public void run() {} };");
+
+        // Constructors are also checked when invoked through "super(...)", implicitly, or by an anonymous class.
+        String[] violations = {
+            "new Thread();",
+            "new Thread() {};",
+            "class T extends Thread {} new T();",
+            "class T extends Thread { T() { super(\"x\"); } }",
+        };
+        for (String script : violations) {
+            se = new ScriptEvaluator();
+            se.setAccessPolicy(new PatternAccessPolicy("java.lang.*-java.lang.Thread.<init>"));
+            try {
+                se.cook(script);
+                Assert.fail(script);
+            } catch (CompileException ce) {
+                Assert.assertTrue(ce.getMessage(), ce.getMessage().contains("java.lang.Thread.<init>\" is not allowed"));
+            }
+        }
+    }
+
+    @Test public void
+    testExecutionBudget() throws Exception {
+
+        // Runaway loop.
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_CHECKS));
+        se.cook("int i = 0; while (true) { if (++i == 0) break; }");
+        ExecutionBudget budget = new ExecutionBudget(50, -1);
+        budget.start();
+        try {
+            se.evaluate(new Object[0]);
+            Assert.fail();
+        } catch (InvocationTargetException ite) {
+            Assert.assertTrue(ite.getCause() instanceof ExecutionBudget.ExhaustedError);
+        } finally {
+            budget.stop();
+        }
+
+        // Runaway recursion, without any loops.
+        se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_CHECKS));
+        se.cook("static int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\nfib(100);");
+        budget = new ExecutionBudget(50, -1);
+        budget.start();
+        try {
+            se.evaluate(new Object[0]);
+            Assert.fail();
+        } catch (InvocationTargetException ite) {
+            Assert.assertTrue(ite.getCause() instanceof ExecutionBudget.ExhaustedError);
+        } finally {
+            budget.stop();
+        }
+
+        // Excessive allocation.
+        if (ExecutionBudget.isAllocationMeasurementSupported()) {
+            se = new ScriptEvaluator();
+            se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_CHECKS));
+            se.cook("static byte[] alloc() { return new byte[1000]; }\nfor (;;) alloc();");
+            budget = new ExecutionBudget(-1, 100000);
+            budget.start();
+            try {
+                se.evaluate(new Object[0]);
+                Assert.fail();
+            } catch (InvocationTargetException ite) {
+                Assert.assertTrue(ite.getCause() instanceof ExecutionBudget.ExhaustedError);
+            } finally {
+                budget.stop();
+            }
+        }
+
+        // Catching the ExhaustedError must not escape the budget.
+        String[] escapes = {
+            "int n = 0; for (;;) { try { for (;;) n++; } catch (Throwable t) { if (++n < 0) break; } }",
+            "int n = 0; for (;;) { try { for (;;) n++; } finally { if (++n > 0) continue; } }",
+        };
+        for (int i = 0; i < escapes.length; i++) {
+            se = new ScriptEvaluator();
+            se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_CHECKS));
+            se.cook(escapes[i]);
+            budget = new ExecutionBudget(200, -1);
+            budget.start();
+            try {
+                se.evaluate(new Object[0]);
+                Assert.fail(escapes[i]);
+            } catch (InvocationTargetException ite) {
+                Assert.assertTrue(escapes[i], ite.getCause() instanceof ExecutionBudget.ExhaustedError);
+            } finally {
+                budget.stop();
+            }
+        }
+
+        // Within the budget.
+        se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_CHECKS));
+        se.setReturnType(int.class);
+        se.cook("int sum = 0; for (int i = 0; i < 10000; i++) { if (i % 2 == 0) continue; sum += i; } return sum;");
+        budget = new ExecutionBudget(10000, -1);
+        budget.start();
+        try {
+            Assert.assertEquals(25000000, se.evaluate(new Object[0]));
+        } finally {
+            budget.stop();
+        }
+    }
+
+    @Test public void
+    testMethodProfiling() throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.METHOD_PROFILING_WITH_TIMING));
+        se.setReturnTypes(new Class[] { int.class, void.class });
+        se.setParameters(new String[][] { { "x" }, {} }, new Class[][] { { int.class }, {} });
+        se.cook(new String[] {
+            "if (x < 0) return -x; long n = 0; for (int i = 0; i < 100000; i++) n += i; return (int) n + x;",
+            "Thread.yield();",
+        });
+
+        for (int i = 0; i < 3; i++) Assert.assertEquals(7, se.evaluate(0, new Object[] { -7 }));
+        se.evaluate(0, new Object[] { 1 });
+        se.evaluate(1, new Object[0]);
+
+        MethodProfile mp0 = se.getMethodProfile(0);
+        MethodProfile mp1 = se.getMethodProfile(1);
+        Assert.assertNotNull(mp0);
+        Assert.assertNotNull(mp1);
+        Assert.assertEquals(4, mp0.getInvocationCount());
+        Assert.assertEquals(1, mp1.getInvocationCount());
+        Assert.assertTrue(mp0.getTotalNanos() > 0);
+        Assert.assertTrue(MethodProfile.getAll().contains(mp0));
+
+        mp0.reset();
+        Assert.assertEquals(0, mp0.getInvocationCount());
+        Assert.assertEquals(0, mp0.getTotalNanos());
+
+        // After unregistration, the invocations are no longer counted, not even when the slot is reused.
+        mp0.unregister();
+        Assert.assertFalse(MethodProfile.getAll().contains(mp0));
+        ScriptEvaluator se2 = new ScriptEvaluator();
+        se2.options(EnumSet.of(JaninoOption.METHOD_PROFILING));
+        se2.cook("return;");
+        se.evaluate(0, new Object[] { 1 });
+        Assert.assertEquals(0, mp0.getInvocationCount());
+        for (MethodProfile mp : se2.getMethodProfiles()) Assert.assertEquals(0, mp.getInvocationCount());
+
+        // Without the option, there are no profiles.
+        se = new ScriptEvaluator();
+        se.cook("return;");
+        Assert.assertNull(se.getMethodProfile(0));
+    }
+
+    @Test public void
+    testProfileGuidedRecompilation() throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setProfileGuidedRecompilation(10, null, EnumSet.noneOf(JaninoOption.class));
+        se.setReturnTypes(new Class[] { int.class, void.class });
+        se.setParameters(
+            new String[][] { { "mode", "s", "x" }, { "x" } },
+            new Class[][] { { int.class, String.class, int.class }, { int.class } }
+        );
+        se.cook(new String[] {
+            "if (mode == 1) return x * 2; if (\"\\u00e4\\n\".equals(s)) return -x; return x + 1;",
+            "if (x < 0) throw new IllegalArgumentException();",
+        });
+
+        Method original  = se.getMethod(0);
+        Method original1 = se.getMethod(1);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(2 * i, se.evaluate(0, new Object[] { 1, "\u00e4\n", i }));
+        }
+
+        // The threshold was reached; script 0 was recompiled, specialized on "mode" and "s", but not "x".
+        Method recompiled = se.getMethod(0);
+        Assert.assertNotSame(original, recompiled);
+        Assert.assertNotNull(
+            recompiled.getDeclaringClass().getDeclaredMethod("eval0$specialized", int.class, String.class, int.class)
+        );
+        Assert.assertEquals(14, se.evaluate(0, new Object[] { 1, "\u00e4\n", 7 }));
+
+        // Arguments that differ from the profile take the generic path.
+        Assert.assertEquals(-7, se.evaluate(0, new Object[] { 2, "\u00e4\n", 7 }));
+        Assert.assertEquals(8, se.evaluate(0, new Object[] { 2, "b", 7 }));
+        Assert.assertEquals(8, se.evaluate(0, new Object[] { 2, null, 7 }));
+
+        // Script 1 was not yet evaluated often enough.
+        se.evaluate(1, new Object[] { 3 });
+        Assert.assertSame(original1, se.getMethod(1));
+
+        // A String argument that was always null is not specialized, so there is nothing to recompile.
+        se = new ScriptEvaluator();
+        se.setProfileGuidedRecompilation(3, null, EnumSet.noneOf(JaninoOption.class));
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "s" }, new Class[] { String.class });
+        se.cook("return s == null ? -1 : s.length();");
+        original = se.getMethod();
+        for (int i = 0; i < 3; i++) Assert.assertEquals(-1, se.evaluate(new Object[] { null }));
+        Assert.assertSame(original, se.getMethod());
+        Assert.assertEquals(3, se.evaluate(new Object[] { "abc" }));
+    }
+
+    @Test public void
+    testCookBatchWithLocalMethods() throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setReturnTypes(new Class[] { int.class, int.class, int.class, int.class });
+        BatchResult br = se.cookBatch(null, new String[] {
+            "return helper(); static int helper() { return 1; }",
+            "return helper(); static int helper() { return 2; }",
+            "return helper(); static int helper() { return 3; } static int helper() { return 4; }",
+            "return 5;",
+        }, null);
+
+        // The equally named local methods go into separate classes.
+        Assert.assertEquals(1, br.getFailureCount());
+        Assert.assertEquals(2, br.getClassCount());
+        Assert.assertEquals(1, se.evaluate(0, new Object[0]));
+        Assert.assertEquals(2, se.evaluate(1, new Object[0]));
+        Assert.assertEquals(5, se.evaluate(3, new Object[0]));
+
+        // A script that declares the same local method twice fails on its own.
+        Assert.assertNotNull(br.getException(2));
+    }
+
+    @Test public void
+    testProfileGuidedRecompilationOfAssignedParameter() throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setProfileGuidedRecompilation(3, null, EnumSet.noneOf(JaninoOption.class));
+        se.setReturnTypes(new Class[] { int.class, int.class });
+        se.setParameters(
+            new String[][] { { "p", "q" }, { "p" } },
+            new Class[][] { { int.class, int.class }, { int.class } }
+        );
+        se.cook(new String[] { "p = p + 1; return p + q;", "(p)++; return p;" });
+
+        // "p" is assigned to, so only "q" is specialized.
+        for (int i = 0; i < 5; i++) Assert.assertEquals(16, se.evaluate(0, new Object[] { 5, 10 }));
+        Assert.assertNotNull(
+            se.getMethod(0).getDeclaringClass().getDeclaredMethod("eval0$specialized", int.class, int.class)
+        );
+
+        // "p" is incremented, so there is nothing to specialize, and nothing to recompile.
+        Method original = se.getMethod(1);
+        for (int i = 0; i < 5; i++) Assert.assertEquals(6, se.evaluate(1, new Object[] { 5 }));
+        Assert.assertSame(original, se.getMethod(1));
+    }
+
+    /**
+     * Blocks in {@link #cook(String, Reader)} until {@link #release} is counted down, or the thread is interrupted.
+     */
+    static
+    class BlockingCookable extends Cookable {
+
+        final CountDownLatch started   = new CountDownLatch(1);
+        final CountDownLatch release   = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile boolean     interrupted;
+
+        @Override public void
+        cook(@Nullable String optionalFileName, Reader r) {
+            this.started.countDown();
+            try {
+                this.release.await();
+                this.interrupted = Thread.currentThread().isInterrupted();
+            } catch (InterruptedException ie) {
+                this.interrupted = true;
+            } finally {
+                this.completed.countDown();
+            }
+        }
+
+        @Override public void
+        setParentClassLoader(@Nullable ClassLoader optionalParentClassLoader) {}
+
+        @Override public void
+        setDebuggingInformation(boolean debugSource, boolean debugLines, boolean debugVars) {}
+
+        @Override public void
+        setCompileErrorHandler(@Nullable ErrorHandler optionalCompileErrorHandler) {}
+
+        @Override public void
+        setWarningHandler(@Nullable WarningHandler optionalWarningHandler) {}
+    }
+
+    private static ScriptEvaluator
+    tieredScriptEvaluator(int compileThreshold, final List<Runnable> scheduled) {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setTieredCompilation(compileThreshold, new Executor() {
+            @Override public void execute(Runnable command) { scheduled.add(command); }
+        });
+        return se;
+    }
+
+    /**
+     * @return The result of the evaluation, or the class of the exception that the script threw
+     */
+    private static Object
+    evaluate(ScriptEvaluator se, Object[] arguments) {
+        try {
+            return se.evaluate(arguments);
+        } catch (InvocationTargetException ite) {
+            return ite.getTargetException().getClass();
+        }
+    }
 }
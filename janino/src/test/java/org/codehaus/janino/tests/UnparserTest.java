@@ -567,6 +567,9 @@ class UnparserTest {
 
             UnparserTest.helpTestCu(input, expect);
         }
+
+        // A member enum of an interface is implicitly PUBLIC and STATIC.
+        UnparserTest.helpTestCu("interface I { enum E { A, B ; } }", "interface I { public static enum E { A, B ; } }");
     }
 
     @Test public void